@@ -7,4 +7,17 @@ public class EventMapKeys {
     public static final String NAME = "name";
     public static final String DURATION = "duration";
     public static final String VIDEO_ID = "video_id";
+    public static final String SOURCE = "source";
+    public static final String RENDITION = "rendition";
+    public static final String CONFIG_FETCH_DURATION = "config_fetch_ms";
+    public static final String URL_SELECTION_DURATION = "url_selection_ms";
+    public static final String PREPARE_DURATION = "prepare_ms";
+    public static final String FIRST_FRAME_DURATION = "first_frame_ms";
+    public static final String FIRST_FRAME_BUCKET = "first_frame_bucket";
+    public static final String STALL_COUNT = "stall_count";
+    public static final String STALL_DURATION = "stall_ms";
+    public static final String SEEK_COUNT = "seek_count";
+    public static final String SEEK_DURATION = "seek_ms";
+    public static final String WATCH_DURATION = "watch_ms";
+    public static final String ERROR = "error";
 }
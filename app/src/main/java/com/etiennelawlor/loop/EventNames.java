@@ -6,5 +6,7 @@ package com.etiennelawlor.loop;
 public class EventNames {
     public static final String VIDEO_DISLIKED = "video_disliked";
     public static final String VIDEO_LIKED = "video_liked";
+    public static final String PLAYBACK_STARTUP = "playback_startup";
+    public static final String PLAYBACK_SESSION = "playback_session";
 
 }
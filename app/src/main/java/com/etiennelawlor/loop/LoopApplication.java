@@ -5,6 +5,9 @@ import android.content.Context;
 import android.util.Log;
 
 import com.crashlytics.android.Crashlytics;
+import com.etiennelawlor.loop.realm.CommentOutbox;
+import com.etiennelawlor.loop.realm.MutationQueue;
+import com.etiennelawlor.loop.realm.VideoDownloader;
 import com.flurry.android.FlurryAgent;
 import com.squareup.leakcanary.LeakCanary;
 import com.squareup.leakcanary.RefWatcher;
@@ -41,6 +44,9 @@ public class LoopApplication extends Application {
 
         sCurrentApplication = this;
 
+        initializeMutationQueue();
+        initializeCommentOutbox();
+        initializeVideoDownloader();
     }
 
     // region Helper Methods
@@ -86,6 +92,21 @@ public class LoopApplication extends Application {
         }
     }
 
+    // Sends the like and watch later changes that did not make it out before
+    private void initializeMutationQueue(){
+        MutationQueue.getInstance().start(this);
+    }
+
+    // Sends the comment posts and deletions that did not make it out before
+    private void initializeCommentOutbox(){
+        CommentOutbox.getInstance().start(this);
+    }
+
+    // Resumes the watch later downloads that did not finish before
+    private void initializeVideoDownloader(){
+        VideoDownloader.getInstance().start(this);
+    }
+
     private void initializeFlurry(){
         FlurryAgent.setLogEnabled(false);
 
@@ -16,6 +16,7 @@ import com.etiennelawlor.loop.network.VimeoService;
 import com.etiennelawlor.loop.models.AccessToken;
 import com.etiennelawlor.loop.network.models.response.AuthorizedUser;
 import com.etiennelawlor.loop.network.models.response.OAuthResponse;
+import com.etiennelawlor.loop.realm.MutationQueue;
 import com.etiennelawlor.loop.utilities.LogUtility;
 
 import butterknife.Bind;
@@ -108,6 +109,7 @@ public class LoginActivity extends AppCompatActivity {
                     AccessToken token = new AccessToken(tokenType, accessToken);
                     PreferencesHelper.saveAccessToken(getApplicationContext(), token);
                     PreferencesHelper.saveAuthorizedUser(getApplicationContext(), authorizedUser);
+                    MutationQueue.getInstance().onAuthenticated();
 
                     Intent intent = new Intent(LoginActivity.this, MainActivity.class);
                     intent.putExtra(getString(R.string.authorized_user), authorizedUser);
@@ -20,9 +20,14 @@ import com.etiennelawlor.loop.R;
 import com.etiennelawlor.loop.fragments.ExploreFragment;
 import com.etiennelawlor.loop.fragments.LikedVideosFragment;
 import com.etiennelawlor.loop.fragments.PlaceholderFragment;
+import com.etiennelawlor.loop.fragments.VideosFragment;
 import com.etiennelawlor.loop.fragments.WatchLaterVideosFragment;
 import com.etiennelawlor.loop.fragments.WatchNowFragment;
 import com.etiennelawlor.loop.helper.PreferencesHelper;
+import com.etiennelawlor.loop.models.AccessToken;
+import com.etiennelawlor.loop.network.FeedWarmer;
+import com.etiennelawlor.loop.network.ServiceGenerator;
+import com.etiennelawlor.loop.network.VimeoService;
 import com.etiennelawlor.loop.network.models.response.AuthorizedUser;
 import com.etiennelawlor.loop.network.models.response.Picture;
 import com.etiennelawlor.loop.otto.BusProvider;
@@ -145,6 +150,10 @@ public class MainActivity extends AppCompatActivity {
                 .replace(R.id.content_fl, WatchNowFragment.newInstance(), "")
                 .commit();
 
+        if (savedInstanceState == null) {
+            warmUpFeeds();
+        }
+
         BusProvider.getInstance().register(this);
     }
 
@@ -208,6 +217,21 @@ public class MainActivity extends AppCompatActivity {
     // endregion
 
     // region Helper Methods
+    // Fetches the first page of every Watch Now tab in the background, so tabs open without a spinner
+    private void warmUpFeeds() {
+        AccessToken token = PreferencesHelper.getAccessToken(this);
+        VimeoService vimeoService = ServiceGenerator.createService(
+                VimeoService.class,
+                VimeoService.BASE_URL,
+                token);
+
+        FeedWarmer.getInstance().warmUp(vimeoService,
+                WatchNowFragment.getTabQueries(this),
+                VideosFragment.DEFAULT_SORT_BY,
+                VideosFragment.DEFAULT_SORT_ORDER,
+                VideosFragment.PAGE_SIZE);
+    }
+
     private void setUpAvatar(){
         if(mAuthorizedUser != null){
             List<Picture> pictures = mAuthorizedUser.getPictures();
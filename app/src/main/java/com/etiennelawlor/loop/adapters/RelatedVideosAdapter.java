@@ -15,6 +15,7 @@ import android.widget.TextView;
 import com.bumptech.glide.Glide;
 import com.etiennelawlor.loop.LoopApplication;
 import com.etiennelawlor.loop.R;
+import com.etiennelawlor.loop.models.VideoRow;
 import com.etiennelawlor.loop.network.models.response.Interaction;
 import com.etiennelawlor.loop.network.models.response.Interactions;
 import com.etiennelawlor.loop.network.models.response.Metadata;
@@ -27,16 +28,12 @@ import com.etiennelawlor.loop.network.models.response.Video;
 import com.etiennelawlor.loop.otto.BusProvider;
 import com.etiennelawlor.loop.otto.events.SearchPerformedEvent;
 import com.etiennelawlor.loop.ui.LoadingImageView;
-import com.etiennelawlor.loop.utilities.DateUtility;
+import com.etiennelawlor.loop.utilities.RowFormatter;
 import com.etiennelawlor.loop.utilities.Transformers;
 import com.greenfrvr.hashtagview.HashtagView;
 
 import java.text.NumberFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
@@ -55,11 +52,15 @@ public class RelatedVideosAdapter extends RecyclerView.Adapter<RecyclerView.View
     public static final int HEADER = 0;
     public static final int ITEM = 1;
     public static final int LOADING = 2;
+
+    // Videos are kept resident a page at a time, the rest of a long feed is compacted
+    private static final int PAGE_SIZE = 30;
     // endregion
 
     // region Member Variables
     private Video mVideo;
-    private List<Video> mVideos;
+    private WindowedList<VideoRow> mRows;
+    private VideoRowProjector mVideoRowProjector;
     private OnItemClickListener mOnItemClickListener;
     private OnLikeClickListener mOnLikeClickListener;
     private OnWatchLaterClickListener mOnWatchLaterClickListener;
@@ -101,7 +102,14 @@ public class RelatedVideosAdapter extends RecyclerView.Adapter<RecyclerView.View
     // region Constructors
     public RelatedVideosAdapter(Video video) {
         mVideo = video;
-        mVideos = new ArrayList<>();
+        mRows = new WindowedList<>(VideoRowProjector.COMPACTOR, PAGE_SIZE, 1);
+        mRows.setOnRangeRehydratedListener(new WindowedList.OnRangeRehydratedListener() {
+            @Override
+            public void onRangeRehydrated(int positionStart, int itemCount) {
+                notifyItemRangeChanged(positionStart, itemCount);
+            }
+        });
+        mVideoRowProjector = new VideoRowProjector(mRows, this);
 
         mBoldFont = Typeface.createFromAsset(LoopApplication.getInstance().getApplicationContext().getAssets(), "fonts/Roboto-Bold.ttf");
     }
@@ -131,6 +139,10 @@ public class RelatedVideosAdapter extends RecyclerView.Adapter<RecyclerView.View
 
     @Override
     public void onBindViewHolder(RecyclerView.ViewHolder viewHolder, int position) {
+        if (position < mRows.size()) {
+            mRows.onPositionBound(position);
+        }
+
         switch (getItemViewType(position)) {
             case HEADER:
                 bindHeaderViewHolder(viewHolder);
@@ -148,7 +160,8 @@ public class RelatedVideosAdapter extends RecyclerView.Adapter<RecyclerView.View
 
     @Override
     public int getItemCount() {
-        return mVideos.size();
+        // The loading footer is not part of the windowed rows
+        return mRows.size() + (mIsLoadingFooterAdded ? 1 : 0);
     }
 
     @Override
@@ -156,75 +169,75 @@ public class RelatedVideosAdapter extends RecyclerView.Adapter<RecyclerView.View
         if(position == 0)
             return HEADER;
         else
-            return (position == getItemCount()-1 && mIsLoadingFooterAdded) ? LOADING : ITEM;
+            return position >= mRows.size() ? LOADING : ITEM;
     }
 
     // region Helper Methods
-    private void add(Video item) {
-        mVideos.add(item);
-        notifyItemInserted(getItemCount()-1);
+    private void add(VideoRow row) {
+        mRows.add(row);
+        notifyItemInserted(mRows.size()-1);
     }
 
+    // Rows show as placeholders until they have been built off the main thread
     public void addAll(List<Video> videos) {
-        for (Video video : videos) {
-            add(video);
-        }
-    }
-
-    public void remove(Video item) {
-        int position = mVideos.indexOf(item);
-        if (position > -1) {
-            mVideos.remove(position);
-            notifyItemRemoved(position);
-        }
+        mVideoRowProjector.addAll(videos);
     }
 
     public void clear() {
+        int itemCount = getItemCount();
         mIsLoadingFooterAdded = false;
-        while (getItemCount() > 0) {
-            remove(getItem(0));
-        }
+        mVideoRowProjector.invalidate();
+        mRows.clear();
+        notifyItemRangeRemoved(0, itemCount);
     }
 
     public boolean isEmpty() {
         return getItemCount() == 0;
     }
 
+    // Swaps in the hydrated video and rebinds the header
+    public void setVideo(Video video) {
+        mVideo = video;
+        if (getItemCount() > 0) {
+            notifyItemChanged(0);
+        }
+    }
+
     public void addHeader(){
-        add(new Video());
+        add(VideoRow.empty());
     }
 
     public void addLoading(){
         if(!mIsLoadingFooterAdded){
             mIsLoadingFooterAdded = true;
-            add(new Video());
+            notifyItemInserted(mRows.size());
         }
     }
 
     public void removeLoading() {
         if(mIsLoadingFooterAdded){
             mIsLoadingFooterAdded = false;
-
-            int itemCount = getItemCount();
-            if(itemCount > 0){
-                int position = itemCount - 1;
-                Video item = getItem(position);
-
-                if (item != null) {
-                    mVideos.remove(position);
-                    notifyItemRemoved(position);
-                }
-            }
+            notifyItemRemoved(mRows.size());
         }
     }
 
+    // Materializes the full video of this row, null for placeholder, header and footer rows
     public Video getItem(int position) {
-        if(position>=0)
-            return mVideos.get(position);
-        else
+        if(position>=0 && position<mRows.size()) {
+            VideoRow row = mRows.get(position);
+            return row == null ? null : row.getVideo();
+        } else
             return null;
     }
 
+    public void setMaxResidentPages(int maxResidentPages) {
+        mRows.setMaxResidentPages(maxResidentPages);
+    }
+
+    public int getResidentItemCount() {
+        return mRows.getResidentItemCount();
+    }
+
     public void setOnItemClickListener(OnItemClickListener onItemClickListener) {
         this.mOnItemClickListener = onItemClickListener;
     }
@@ -339,16 +352,29 @@ public class RelatedVideosAdapter extends RecyclerView.Adapter<RecyclerView.View
     private void bindVideoViewHolder(RecyclerView.ViewHolder viewHolder, int position) {
         final VideoViewHolder holder = (VideoViewHolder) viewHolder;
 
-        final Video video = mVideos.get(position);
-        if (video != null) {
-            setUpTitle(holder.mTitleTextView, video);
-            setUpSubtitle(holder.mSubtitleTextView, video);
-            setUpVideoThumbnail(holder.mVideoThumbnailImageView, video);
-            setUpDuration(holder.mDurationTextView, video);
-            setUpUploadedDate(holder.mUploadedDateTextView, video);
+        final VideoRow row = mRows.get(position);
+        mVideoRowProjector.onRowBound(row);
+        if (row != null) {
+            holder.mTitleTextView.setText(row.getTitle());
+            holder.mSubtitleTextView.setText(row.getSubtitle());
+            setUpVideoThumbnail(holder.mVideoThumbnailImageView, row.getThumbnailUrl());
+            holder.mDurationTextView.setText(row.getDuration());
+            holder.mUploadedDateTextView.setText(row.getDetails());
+        } else {
+            // Placeholder while the row is being projected or its page rehydrated
+            bindPlaceholder(holder);
         }
     }
 
+    private void bindPlaceholder(VideoViewHolder holder) {
+        Glide.clear(holder.mVideoThumbnailImageView);
+        holder.mVideoThumbnailImageView.setImageBitmap(null);
+        holder.mTitleTextView.setText("");
+        holder.mSubtitleTextView.setText("");
+        holder.mDurationTextView.setText("");
+        holder.mUploadedDateTextView.setText("");
+    }
+
     private void bindLoadingViewHolder(RecyclerView.ViewHolder viewHolder){
         MoreViewHolder holder = (MoreViewHolder) viewHolder;
 
@@ -414,108 +440,19 @@ public class RelatedVideosAdapter extends RecyclerView.Adapter<RecyclerView.View
 
     public void setIsWatchLaterOn(boolean isWatchLaterOn) { mIsWatchLaterOn = isWatchLaterOn; }
 
-    private void setUpVideoThumbnail(ImageView iv, Video video) {
-        Pictures pictures = video.getPictures();
-        if (pictures != null) {
-            List<Size> sizes = pictures.getSizes();
-            if (sizes != null && sizes.size() > 0) {
-                Size size = sizes.get(sizes.size() - 1);
-                if (size != null) {
-                    String link = size.getLink();
-                    if (!TextUtils.isEmpty(link)) {
-                        Glide.with(iv.getContext())
-                                .load(link)
+    private void setUpVideoThumbnail(ImageView iv, String link) {
+        if (!TextUtils.isEmpty(link)) {
+            Glide.with(iv.getContext())
+                    .load(link)
 //                                .placeholder(R.drawable.ic_placeholder)
 //                                .error(R.drawable.ic_error)
-                                .into(iv);
-                    }
-                }
-            }
-        }
-    }
-
-    private void setUpDuration(TextView tv, Video video) {
-        Integer duration = video.getDuration();
-
-        long minutes = duration / 60;
-        long seconds = duration % 60;
-
-        String time;
-        if (minutes == 0L) {
-            if (seconds > 0L) {
-                if (seconds < 10L)
-                    time = String.format("0:0%s", String.valueOf(seconds));
-                else
-                    time = String.format("0:%s", String.valueOf(seconds));
-            } else {
-                time = "0:00";
-            }
-
-        } else {
-            if (seconds > 0L) {
-                if (seconds < 10L)
-                    time = String.format("%s:0%s", String.valueOf(minutes), String.valueOf(seconds));
-                else
-                    time = String.format("%s:%s", String.valueOf(minutes), String.valueOf(seconds));
-            } else {
-                time = String.format("%s:00", String.valueOf(minutes));
-            }
-        }
-
-        tv.setText(time);
-    }
-
-    private void setUpUploadedDate(TextView tv, Video video) {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'hh:mm:ssZ", Locale.ENGLISH);
-        String uploadDate = "";
-
-        String createdTime = video.getCreatedTime();
-        try {
-            Date date = sdf.parse(createdTime);
-
-            Calendar futureCalendar = Calendar.getInstance();
-            futureCalendar.setTime(date);
-
-            uploadDate = DateUtility.getRelativeDate(futureCalendar);
-        } catch (ParseException e) {
-            Timber.e("");
-        }
-
-        int viewCount = 0;
-        Stats stats = video.getStats();
-        if (stats != null) {
-            viewCount = stats.getPlays();
-        }
-
-        if (viewCount > 0) {
-//                String formattedViewCount = NumberFormat.getNumberInstance(Locale.US).format(viewCount);
-            String formattedViewCount = formatViewCount(viewCount);
-            if(!TextUtils.isEmpty(uploadDate))
-                tv.setText(String.format("%s - %s", uploadDate, formattedViewCount));
-            else
-                tv.setText(formattedViewCount);
-
+                    .into(iv);
         } else {
-            tv.setText(String.format("%s", uploadDate));
+            Glide.clear(iv);
+            iv.setImageBitmap(null);
         }
     }
 
-    private String formatViewCount(int viewCount) {
-        String formattedViewCount = "";
-
-        if (viewCount < 1000000000 && viewCount >= 1000000) {
-            formattedViewCount = String.format("%dM views", viewCount / 1000000);
-        } else if (viewCount < 1000000 && viewCount >= 1000) {
-            formattedViewCount = String.format("%dK views", viewCount / 1000);
-        } else if (viewCount < 1000 && viewCount > 1) {
-            formattedViewCount = String.format("%d views", viewCount);
-        } else if (viewCount == 1) {
-            formattedViewCount = String.format("%d view", viewCount);
-        }
-
-        return formattedViewCount;
-    }
-
     private void setUpUserImage(ImageView iv, Video video) {
         boolean isPictureAvailable = false;
 
@@ -569,21 +506,7 @@ public class RelatedVideosAdapter extends RecyclerView.Adapter<RecyclerView.View
     }
 
     private void setUpUploadedDate2(TextView tv, Video video) {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'hh:mm:ssZ", Locale.ENGLISH);
-        String uploadDate = "";
-
-        String createdTime = video.getCreatedTime();
-
-        try {
-            Date date = sdf.parse(createdTime);
-
-            Calendar futureCalendar = Calendar.getInstance();
-            futureCalendar.setTime(date);
-
-            uploadDate = DateUtility.getRelativeDate(futureCalendar);
-        } catch (ParseException e) {
-            Timber.e("");
-        }
+        String uploadDate = RowFormatter.formatRelativeDate(RowFormatter.parseTimestamp(video.getCreatedTime()), System.currentTimeMillis());
 
         if (!TextUtils.isEmpty(uploadDate)) {
             tv.setText(String.format("Uploaded %s", uploadDate));
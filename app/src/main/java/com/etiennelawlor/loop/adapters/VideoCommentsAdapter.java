@@ -2,6 +2,8 @@ package com.etiennelawlor.loop.adapters;
 
 import android.content.Context;
 import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
@@ -17,21 +19,20 @@ import com.etiennelawlor.loop.network.models.response.Comment;
 import com.etiennelawlor.loop.network.models.response.Pictures;
 import com.etiennelawlor.loop.network.models.response.Size;
 import com.etiennelawlor.loop.network.models.response.User;
-import com.etiennelawlor.loop.utilities.DateUtility;
+import com.etiennelawlor.loop.realm.CommentOutbox;
+import com.etiennelawlor.loop.utilities.RowFormatter;
 import com.etiennelawlor.trestle.library.Span;
 import com.etiennelawlor.trestle.library.Trestle;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import butterknife.Bind;
 import butterknife.ButterKnife;
-import timber.log.Timber;
 
 /**
  * Created by etiennelawlor on 12/20/15.
@@ -39,8 +40,16 @@ import timber.log.Timber;
 
 public class VideoCommentsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
+    // region Static Variables
+    private static final ExecutorService sExecutorService = Executors.newSingleThreadExecutor();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    // endregion
+
     // region Member Variables
     private List<Comment> mComments;
+    // Relative dates are formatted off the main thread and kept until their bucket changes
+    private final Map<Comment, CommentDate> mCommentDates = new IdentityHashMap<>();
+    private final Map<Comment, Boolean> mPendingCommentDates = new IdentityHashMap<>();
     private Context mContext;
     private Typeface mBoldFont;
     private OnItemLongClickListener mOnItemLongClickListener;
@@ -93,6 +102,8 @@ public class VideoCommentsAdapter extends RecyclerView.Adapter<RecyclerView.View
         if (comment != null) {
             setUpCommentText(holder.mCommentTextView, comment);
             setUpCommentImage(holder.mCommentImageView, comment);
+            // Comments that have not reached the server yet are dimmed
+            holder.itemView.setAlpha(CommentOutbox.getInstance().isPending(comment) ? 0.5f : 1.0f);
         }
     }
 
@@ -105,12 +116,19 @@ public class VideoCommentsAdapter extends RecyclerView.Adapter<RecyclerView.View
     public void add(Comment item, int position) {
         mComments.add(item);
         notifyItemInserted(position);
+
+        List<Comment> comments = new ArrayList<>();
+        comments.add(item);
+        formatCommentDates(comments);
     }
 
     public void addAll(List<Comment> comments) {
         for (Comment comment : comments) {
-            add(comment, getItemCount()-1);
+            mComments.add(comment);
+            notifyItemInserted(getItemCount()-1);
         }
+
+        formatCommentDates(comments);
     }
 
     public void clear() {
@@ -127,10 +145,25 @@ public class VideoCommentsAdapter extends RecyclerView.Adapter<RecyclerView.View
         int position = mComments.indexOf(item);
         if (position > -1) {
             mComments.remove(position);
+            mCommentDates.remove(item);
             notifyItemRemoved(position);
         }
     }
 
+    // Swaps a pending comment for the one the server returned
+    public void replace(Comment oldItem, Comment newItem) {
+        int position = mComments.indexOf(oldItem);
+        if (position > -1) {
+            mComments.set(position, newItem);
+            mCommentDates.remove(oldItem);
+            notifyItemChanged(position);
+
+            List<Comment> comments = new ArrayList<>();
+            comments.add(newItem);
+            formatCommentDates(comments);
+        }
+    }
+
     public Comment getItem(int position) {
         return mComments.get(position);
     }
@@ -153,54 +186,84 @@ public class VideoCommentsAdapter extends RecyclerView.Adapter<RecyclerView.View
 
         List<Span> spans = new ArrayList<>();
 
-        if(!TextUtils.isEmpty(displayName)
-                && !TextUtils.isEmpty(commentText)
-                && !TextUtils.isEmpty(commentDate)){
-            spans.add(new Span.Builder(String.format("%s ", displayName))
-                    .foregroundColor(ContextCompat.getColor(tv.getContext(), R.color.primary))
-                    .typeface(mBoldFont)
-                    .build());
-            spans.add(new Span.Builder(commentText)
-                    .build());
-            spans.add(new Span.Builder("\n")
-                    .build());
-            spans.add(new Span.Builder(commentDate)
-                    .foregroundColor(ContextCompat.getColor(tv.getContext(), R.color.grey_400))
-                    .typeface(mItalicFont)
-                    .build());
-        } else if(!TextUtils.isEmpty(commentText)
-                    && !TextUtils.isEmpty(commentDate)){
+        if(!TextUtils.isEmpty(commentText)){
+            if(!TextUtils.isEmpty(displayName)){
+                spans.add(new Span.Builder(String.format("%s ", displayName))
+                        .foregroundColor(ContextCompat.getColor(tv.getContext(), R.color.primary))
+                        .typeface(mBoldFont)
+                        .build());
+            }
             spans.add(new Span.Builder(commentText)
                     .build());
-            spans.add(new Span.Builder("\n")
-                    .build());
-            spans.add(new Span.Builder(commentDate)
-                    .foregroundColor(ContextCompat.getColor(tv.getContext(), R.color.grey_400))
-                    .typeface(mItalicFont)
-                    .build());
+            // The date shows up once it has been formatted in the background
+            if(!TextUtils.isEmpty(commentDate)){
+                spans.add(new Span.Builder("\n")
+                        .build());
+                spans.add(new Span.Builder(commentDate)
+                        .foregroundColor(ContextCompat.getColor(tv.getContext(), R.color.grey_400))
+                        .typeface(mItalicFont)
+                        .build());
+            }
         }
 
         CharSequence formattedText = Trestle.getFormattedText(spans);
         tv.setText(formattedText);
     }
 
+    // Returns the last formatted date, and formats it again in the background once it went out of date
     private String getCommentDate(Comment comment){
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'hh:mm:ssZ", Locale.ENGLISH);
-        String commentDate = "";
-
-        String createdOn = comment.getCreatedOn();
-        try {
-            Date date = sdf.parse(createdOn);
+        CommentDate commentDate = mCommentDates.get(comment);
+        if (commentDate == null || System.currentTimeMillis() >= commentDate.mExpiry) {
+            List<Comment> comments = new ArrayList<>();
+            comments.add(comment);
+            formatCommentDates(comments);
+        }
 
-            Calendar futureCalendar = Calendar.getInstance();
-            futureCalendar.setTime(date);
+        return commentDate == null ? "" : commentDate.mText;
+    }
 
-            commentDate = DateUtility.getRelativeDate(futureCalendar);
-        } catch (ParseException e) {
-            Timber.e("");
+    private void formatCommentDates(List<Comment> comments) {
+        final List<Comment> pendingComments = new ArrayList<>();
+        for (Comment comment : comments) {
+            if (comment != null && !mPendingCommentDates.containsKey(comment)) {
+                mPendingCommentDates.put(comment, Boolean.TRUE);
+                pendingComments.add(comment);
+            }
         }
 
-        return commentDate;
+        if (pendingComments.isEmpty())
+            return;
+
+        sExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                final List<CommentDate> commentDates = new ArrayList<>(pendingComments.size());
+                for (Comment comment : pendingComments) {
+                    long time = RowFormatter.parseTimestamp(comment.getCreatedOn());
+                    commentDates.add(new CommentDate(RowFormatter.formatRelativeDate(time, now),
+                            RowFormatter.getRelativeDateExpiry(time, now)));
+                }
+
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < pendingComments.size(); i++) {
+                            Comment comment = pendingComments.get(i);
+                            mPendingCommentDates.remove(comment);
+
+                            int position = mComments.indexOf(comment);
+                            if (position > -1) {
+                                CommentDate oldCommentDate = mCommentDates.put(comment, commentDates.get(i));
+                                if (oldCommentDate == null || !oldCommentDate.mText.equals(commentDates.get(i).mText)) {
+                                    notifyItemChanged(position);
+                                }
+                            }
+                        }
+                    }
+                });
+            }
+        });
     }
 
     private void setUpCommentImage(ImageView iv, Comment comment){
@@ -237,6 +300,16 @@ public class VideoCommentsAdapter extends RecyclerView.Adapter<RecyclerView.View
 
     // region Inner Classes
 
+    private static class CommentDate {
+        final String mText;
+        final long mExpiry;
+
+        CommentDate(String text, long expiry) {
+            mText = text;
+            mExpiry = expiry;
+        }
+    }
+
     public static class CommentViewHolder extends RecyclerView.ViewHolder {
         @Bind(R.id.comment_tv)
         TextView mCommentTextView;
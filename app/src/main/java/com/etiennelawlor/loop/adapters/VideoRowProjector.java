@@ -0,0 +1,209 @@
+package com.etiennelawlor.loop.adapters;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.widget.RecyclerView;
+
+import com.etiennelawlor.loop.models.VideoRow;
+import com.etiennelawlor.loop.network.models.response.Video;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Background stage that turns pages of videos into ready to bind {@link VideoRow}s for an adapter.
+ *
+ * Rows get placeholders in the adapter right away and are filled in once built, at the positions they
+ * moved to if rows were inserted or removed in the meantime. Rows whose relative date went out of date
+ * are rebuilt in the background the first time one of them is bound.
+ *
+ * Created by etiennelawlor on 12/13/15.
+ */
+public class VideoRowProjector {
+
+    // region Constants
+    // Evicted rows keep only their gzipped video, the text is formatted again when they come back
+    public static final WindowedList.Compactor<VideoRow> COMPACTOR = new WindowedList.Compactor<VideoRow>() {
+        @Override
+        public byte[] compact(VideoRow row) {
+            return row.getGzippedVideo();
+        }
+
+        @Override
+        public VideoRow expand(byte[] gzippedVideo) {
+            return gzippedVideo == null ? VideoRow.empty() : VideoRow.from(gzippedVideo, System.currentTimeMillis());
+        }
+    };
+    // endregion
+
+    // region Static Variables
+    // A single thread keeps pages projected in the order they arrived
+    private static final ExecutorService sExecutorService = Executors.newSingleThreadExecutor();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    // endregion
+
+    // region Member Variables
+    private final WindowedList<VideoRow> mRows;
+    private final RecyclerView.Adapter<?> mAdapter;
+    // Bumped by invalidate() so that rows built for the old contents are dropped
+    private int mGeneration = 0;
+    private boolean mIsRefreshing = false;
+    // Positions of the rows being built, -1 once removed, kept up to date by add() and remove()
+    private final List<int[]> mPendingPositions = new ArrayList<>();
+    // endregion
+
+    // region Constructors
+    public VideoRowProjector(WindowedList<VideoRow> rows, RecyclerView.Adapter<?> adapter) {
+        mRows = rows;
+        mAdapter = adapter;
+    }
+    // endregion
+
+    // region Helper Methods
+    public void addAll(List<Video> videos) {
+        int start = mRows.size();
+        int[] positions = new int[videos.size()];
+        for (int i = 0; i < positions.length; i++) {
+            mRows.addPlaceholder();
+            positions[i] = start + i;
+        }
+        mAdapter.notifyItemRangeInserted(start, positions.length);
+
+        project(videos, positions);
+    }
+
+    public void add(int position, Video video) {
+        mRows.addPlaceholder(position);
+        shiftPendingPositions(position, 1);
+        mAdapter.notifyItemInserted(position);
+
+        List<Video> videos = new ArrayList<>(1);
+        videos.add(video);
+        project(videos, new int[] {position});
+    }
+
+    public void remove(int position) {
+        mRows.remove(position);
+        shiftPendingPositions(position, -1);
+        mAdapter.notifyItemRemoved(position);
+    }
+
+    // Call from onBindViewHolder()
+    public void onRowBound(VideoRow row) {
+        if (row != null && !mIsRefreshing && row.isExpired(System.currentTimeMillis())) {
+            refreshExpiredRows();
+        }
+    }
+
+    // Call when the adapter is cleared
+    public void invalidate() {
+        mGeneration += 1;
+        mIsRefreshing = false;
+        mPendingPositions.clear();
+    }
+
+    private void project(List<Video> videos, final int[] positions) {
+        final int generation = mGeneration;
+        final List<Video> snapshot = new ArrayList<>(videos);
+        mPendingPositions.add(positions);
+
+        sExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                final List<VideoRow> rows = new ArrayList<>(snapshot.size());
+                for (Video video : snapshot) {
+                    rows.add(video == null ? VideoRow.empty() : VideoRow.from(video, now));
+                }
+
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration)
+                            return;
+
+                        mPendingPositions.remove(positions);
+                        fill(positions, rows);
+                    }
+                });
+            }
+        });
+    }
+
+    private void fill(int[] positions, List<VideoRow> rows) {
+        int rangeStart = -1;
+        int rangeCount = 0;
+        for (int i = 0; i < positions.length; i++) {
+            if (!mRows.fill(positions[i], rows.get(i)))
+                continue;
+
+            if (positions[i] != rangeStart + rangeCount) {
+                notifyRangeChanged(rangeStart, rangeCount);
+                rangeStart = positions[i];
+                rangeCount = 0;
+            }
+            rangeCount += 1;
+        }
+        notifyRangeChanged(rangeStart, rangeCount);
+    }
+
+    private void notifyRangeChanged(int positionStart, int itemCount) {
+        if (itemCount > 0) {
+            mAdapter.notifyItemRangeChanged(positionStart, itemCount);
+        }
+    }
+
+    // delta is 1 for a row inserted at position, -1 for the row removed from it
+    private void shiftPendingPositions(int position, int delta) {
+        for (int[] positions : mPendingPositions) {
+            for (int i = 0; i < positions.length; i++) {
+                if (delta < 0 && positions[i] == position) {
+                    positions[i] = -1;
+                } else if (positions[i] >= position) {
+                    positions[i] += delta;
+                }
+            }
+        }
+    }
+
+    private void refreshExpiredRows() {
+        mIsRefreshing = true;
+        final int generation = mGeneration;
+        final List<VideoRow> rows = new ArrayList<>(mRows.size());
+        for (int i = 0; i < mRows.size(); i++) {
+            rows.add(mRows.get(i));
+        }
+
+        sExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                final List<VideoRow> refreshedRows = new ArrayList<>(rows.size());
+                for (VideoRow row : rows) {
+                    refreshedRows.add(row != null && row.isExpired(now) ? row.refresh(now) : row);
+                }
+
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration)
+                            return;
+
+                        mIsRefreshing = false;
+                        for (int i = 0; i < refreshedRows.size() && i < mRows.size(); i++) {
+                            VideoRow row = rows.get(i);
+                            // Skip rows that were evicted or replaced in the meantime
+                            if (refreshedRows.get(i) != row && mRows.get(i) == row) {
+                                mRows.set(i, refreshedRows.get(i));
+                                mAdapter.notifyItemChanged(i);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+    // endregion
+}
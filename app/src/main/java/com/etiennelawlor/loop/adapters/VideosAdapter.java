@@ -12,21 +12,12 @@ import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
 import com.etiennelawlor.loop.R;
-import com.etiennelawlor.loop.network.models.response.Pictures;
-import com.etiennelawlor.loop.network.models.response.Size;
-import com.etiennelawlor.loop.network.models.response.Stats;
-import com.etiennelawlor.loop.network.models.response.User;
+import com.etiennelawlor.loop.models.VideoRow;
 import com.etiennelawlor.loop.network.models.response.Video;
 import com.etiennelawlor.loop.ui.LoadingImageView;
-import com.etiennelawlor.loop.utilities.DateUtility;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
 import butterknife.Bind;
 import butterknife.ButterKnife;
@@ -42,10 +33,16 @@ public class VideosAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
     public static final int HEADER = 0;
     public static final int ITEM = 1;
     public static final int LOADING = 2;
+
+    // Videos are kept resident a page at a time, the rest of a long feed is compacted
+    private static final int PAGE_SIZE = 30;
     // endregion
 
     // region Member Variables
-    private List<Video> mVideos;
+    private WindowedList<VideoRow> mRows;
+    private VideoRowProjector mVideoRowProjector;
+    // Uri of the video at each position, so that rows can be found while they are compacted
+    private final List<String> mUris = new ArrayList<>();
     private OnItemClickListener mOnItemClickListener;
     private boolean mIsLoadingFooterAdded = false;
     // endregion
@@ -61,7 +58,14 @@ public class VideosAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 
     // region Constructors
     public VideosAdapter() {
-        mVideos = new ArrayList<>();
+        mRows = new WindowedList<>(VideoRowProjector.COMPACTOR, PAGE_SIZE, 0);
+        mRows.setOnRangeRehydratedListener(new WindowedList.OnRangeRehydratedListener() {
+            @Override
+            public void onRangeRehydrated(int positionStart, int itemCount) {
+                notifyItemRangeChanged(positionStart, itemCount);
+            }
+        });
+        mVideoRowProjector = new VideoRowProjector(mRows, this);
     }
     // endregion
 
@@ -88,6 +92,10 @@ public class VideosAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 
     @Override
     public void onBindViewHolder(RecyclerView.ViewHolder viewHolder, int position) {
+        if (position < mRows.size()) {
+            mRows.onPositionBound(position);
+        }
+
         switch (getItemViewType(position)) {
             case HEADER:
                 break;
@@ -103,39 +111,48 @@ public class VideosAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 
     @Override
     public int getItemCount() {
-        return mVideos.size();
+        // The loading footer is not part of the windowed rows
+        return mRows.size() + (mIsLoadingFooterAdded ? 1 : 0);
     }
 
     @Override
     public int getItemViewType(int position) {
-        return (position == mVideos.size()-1 && mIsLoadingFooterAdded) ? LOADING : ITEM;
+        return position >= mRows.size() ? LOADING : ITEM;
     }
 
     // region Helper Methods
-    private void add(Video item) {
-        mVideos.add(item);
-        notifyItemInserted(mVideos.size()-1);
-    }
 
+    // Rows show as placeholders until they have been built off the main thread
     public void addAll(List<Video> videos) {
         for (Video video : videos) {
-            add(video);
+            mUris.add(video == null ? null : video.getUri());
         }
+        mVideoRowProjector.addAll(videos);
     }
 
-    public void remove(Video item) {
-        int position = mVideos.indexOf(item);
-        if (position > -1) {
-            mVideos.remove(position);
-            notifyItemRemoved(position);
-        }
+    // Inserts a single row without touching the others, e.g. a video that was just liked
+    public void add(int position, Video video) {
+        mUris.add(position, video.getUri());
+        mVideoRowProjector.add(position, video);
+    }
+
+    public void remove(int position) {
+        mUris.remove(position);
+        mVideoRowProjector.remove(position);
+    }
+
+    // Returns the position of the row of this video, or -1
+    public int indexOf(Video video) {
+        return video == null || video.getUri() == null ? -1 : mUris.indexOf(video.getUri());
     }
 
     public void clear() {
+        int itemCount = getItemCount();
         mIsLoadingFooterAdded = false;
-        while (getItemCount() > 0) {
-            remove(getItem(0));
-        }
+        mVideoRowProjector.invalidate();
+        mRows.clear();
+        mUris.clear();
+        notifyItemRangeRemoved(0, itemCount);
     }
 
     public boolean isEmpty() {
@@ -143,24 +160,34 @@ public class VideosAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
     }
 
     public void addLoading(){
-        mIsLoadingFooterAdded = true;
-        add(new Video());
+        if(!mIsLoadingFooterAdded){
+            mIsLoadingFooterAdded = true;
+            notifyItemInserted(mRows.size());
+        }
     }
 
     public void removeLoading() {
-        mIsLoadingFooterAdded = false;
-
-        int position = mVideos.size() - 1;
-        Video item = getItem(position);
-
-        if (item != null) {
-            mVideos.remove(position);
-            notifyItemRemoved(position);
+        if(mIsLoadingFooterAdded){
+            mIsLoadingFooterAdded = false;
+            notifyItemRemoved(mRows.size());
         }
     }
 
+    // Materializes the full video of this row, null for placeholder, header and footer rows
     public Video getItem(int position) {
-        return mVideos.get(position);
+        if (position < 0 || position >= mRows.size())
+            return null;
+
+        VideoRow row = mRows.get(position);
+        return row == null ? null : row.getVideo();
+    }
+
+    public void setMaxResidentPages(int maxResidentPages) {
+        mRows.setMaxResidentPages(maxResidentPages);
+    }
+
+    public int getResidentItemCount() {
+        return mRows.getResidentItemCount();
     }
 
     public void setOnItemClickListener(OnItemClickListener onItemClickListener) {
@@ -203,148 +230,49 @@ public class VideosAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
     private void bindVideoViewHolder(RecyclerView.ViewHolder viewHolder, int position) {
         final VideoViewHolder holder = (VideoViewHolder) viewHolder;
 
-        final Video video = mVideos.get(position);
-        if (video != null) {
-            setUpTitle(holder.mTitleTextView, video);
-            setUpSubtitle(holder.mSubtitleTextView, video);
-            setUpVideoThumbnail(holder.mVideoThumbnailImageView, video);
-            setUpDuration(holder.mDurationTextView, video);
-            setUpUploadedDate(holder.mUploadedDateTextView, video);
+        final VideoRow row = mRows.get(position);
+        mVideoRowProjector.onRowBound(row);
+        if (row != null) {
+            holder.mTitleTextView.setText(row.getTitle());
+            holder.mSubtitleTextView.setText(row.getSubtitle());
+            setUpVideoThumbnail(holder.mVideoThumbnailImageView, row.getThumbnailUrl());
+            holder.mDurationTextView.setText(row.getDuration());
+            holder.mUploadedDateTextView.setText(row.getDetails());
 
             int adapterPos = holder.getAdapterPosition();
             ViewCompat.setTransitionName(holder.mSubtitleTextView,"myTransition"+adapterPos);
+        } else {
+            // Placeholder while the row is being projected or its page rehydrated
+            bindPlaceholder(holder);
         }
     }
 
+    private void bindPlaceholder(VideoViewHolder holder) {
+        Glide.clear(holder.mVideoThumbnailImageView);
+        holder.mVideoThumbnailImageView.setImageBitmap(null);
+        holder.mTitleTextView.setText("");
+        holder.mSubtitleTextView.setText("");
+        holder.mDurationTextView.setText("");
+        holder.mUploadedDateTextView.setText("");
+    }
+
     private void bindLoadingViewHolder(RecyclerView.ViewHolder viewHolder){
         MoreViewHolder holder = (MoreViewHolder) viewHolder;
 
         holder.mLoadingImageView.setMaskOrientation(LoadingImageView.MaskOrientation.LeftToRight);
     }
 
-    private void setUpTitle(TextView tv, Video video) {
-        String name = video.getName();
-        if (!TextUtils.isEmpty(name)) {
-            tv.setText(name);
-        }
-    }
-
-    private void setUpSubtitle(TextView tv, Video video) {
-        User user = video.getUser();
-        if (user != null) {
-            String userName = user.getName();
-            if (!TextUtils.isEmpty(userName)) {
-                tv.setText(userName);
-            }
-        }
-    }
-
-    private void setUpVideoThumbnail(ImageView iv, Video video) {
-        boolean isPictureSet = false;
-        Pictures pictures = video.getPictures();
-        if (pictures != null) {
-            List<Size> sizes = pictures.getSizes();
-            if (sizes != null && sizes.size() > 0) {
-                Size size = sizes.get(sizes.size() - 1);
-                if (size != null) {
-                    String link = size.getLink();
-                    if (!TextUtils.isEmpty(link)) {
-                        Glide.with(iv.getContext())
-                                .load(link)
+    private void setUpVideoThumbnail(ImageView iv, String link) {
+        if (!TextUtils.isEmpty(link)) {
+            Glide.with(iv.getContext())
+                    .load(link)
 //                                .placeholder(R.drawable.ic_placeholder)
 //                                .error(R.drawable.ic_error)
-                                .into(iv);
-                        isPictureSet = true;
-                    }
-                }
-            }
-        }
-
-        if(!isPictureSet){
-            iv.setImageBitmap(null);
-        }
-    }
-
-    private void setUpDuration(TextView tv, Video video) {
-        Integer duration = video.getDuration();
-
-        long minutes = duration / 60;
-        long seconds = duration % 60;
-
-        String time;
-        if (minutes == 0L) {
-            if (seconds > 0L) {
-                if (seconds < 10L)
-                    time = String.format("0:0%s", String.valueOf(seconds));
-                else
-                    time = String.format("0:%s", String.valueOf(seconds));
-            } else {
-                time = "0:00";
-            }
-
+                    .into(iv);
         } else {
-            if (seconds > 0L) {
-                if (seconds < 10L)
-                    time = String.format("%s:0%s", String.valueOf(minutes), String.valueOf(seconds));
-                else
-                    time = String.format("%s:%s", String.valueOf(minutes), String.valueOf(seconds));
-            } else {
-                time = String.format("%s:00", String.valueOf(minutes));
-            }
-        }
-
-        tv.setText(time);
-    }
-
-    private void setUpUploadedDate(TextView tv, Video video) {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'hh:mm:ssZ", Locale.ENGLISH);
-        String uploadDate = "";
-
-        String createdTime = video.getCreatedTime();
-        try {
-            Date date = sdf.parse(createdTime);
-
-            Calendar futureCalendar = Calendar.getInstance();
-            futureCalendar.setTime(date);
-
-            uploadDate = DateUtility.getRelativeDate(futureCalendar);
-        } catch (ParseException e) {
-            Timber.e("");
-        }
-
-        int viewCount = 0;
-        Stats stats = video.getStats();
-        if (stats != null) {
-            viewCount = stats.getPlays();
-        }
-
-        if (viewCount > 0) {
-//                String formattedViewCount = NumberFormat.getNumberInstance(Locale.US).format(viewCount);
-            String formattedViewCount = formatViewCount(viewCount);
-            if(!TextUtils.isEmpty(uploadDate))
-                tv.setText(String.format("%s - %s", uploadDate, formattedViewCount));
-            else
-                tv.setText(formattedViewCount);
-
-        } else {
-            tv.setText(String.format("%s", uploadDate));
-        }
-    }
-
-    private String formatViewCount(int viewCount) {
-        String formattedViewCount = "";
-
-        if (viewCount < 1000000000 && viewCount >= 1000000) {
-            formattedViewCount = String.format("%dM views", viewCount / 1000000);
-        } else if (viewCount < 1000000 && viewCount >= 1000) {
-            formattedViewCount = String.format("%dK views", viewCount / 1000);
-        } else if (viewCount < 1000 && viewCount > 1) {
-            formattedViewCount = String.format("%d views", viewCount);
-        } else if (viewCount == 1) {
-            formattedViewCount = String.format("%d view", viewCount);
+            Glide.clear(iv);
+            iv.setImageBitmap(null);
         }
-
-        return formattedViewCount;
     }
     // endregion
 
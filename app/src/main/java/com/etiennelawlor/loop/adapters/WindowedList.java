@@ -0,0 +1,323 @@
+package com.etiennelawlor.loop.adapters;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Positional list for adapters that only keeps a sliding window of pages resident.
+ *
+ * Pages far from the last bound position are evicted: each item is swapped for the compact form its
+ * {@link Compactor} gives (e.g. the gzipped video a VideoRow already holds), which stays in the item's
+ * slot. Binding an evicted slot rehydrates its page in the background and the listener is told
+ * which ranges to rebind. Since evicted items stay in their slots, items can be inserted and removed
+ * anywhere, evicted pages included.
+ *
+ * Placeholders come in two kinds: slots added through addPlaceholder() that are waiting for fill(), and
+ * evicted slots that only a rehydration puts back. Both read as null. Rows that are not part of the
+ * paged content, like a loading footer, belong to the adapter and not in here.
+ *
+ * Created by etiennelawlor on 12/12/15.
+ */
+public class WindowedList<T> {
+
+    // region Constants
+    public static final int DEFAULT_MAX_RESIDENT_PAGES = 5;
+    // endregion
+
+    // region Static Variables
+    // Shared by every list so that evictions and rehydrations stay ordered
+    private static final Executor sExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private static final Executor sMainThreadExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            sMainHandler.post(command);
+        }
+    };
+    // endregion
+
+    // region Member Variables
+    // Holds items of type T, null while waiting for fill() or an Evicted item
+    private final List<Object> mItems = new ArrayList<>();
+    private final Compactor<T> mCompactor;
+    private final Executor mBackgroundExecutor;
+    private final Executor mMainThreadExecutor;
+    private final int mPageSize;
+    private final int mOffset;
+    private int mMaxResidentPages = DEFAULT_MAX_RESIDENT_PAGES;
+    private OnRangeRehydratedListener mOnRangeRehydratedListener;
+    // endregion
+
+    // region Interfaces
+    public interface OnRangeRehydratedListener {
+        void onRangeRehydrated(int positionStart, int itemCount);
+    }
+
+    public interface Compactor<T> {
+        // Called on the main thread when a page is evicted, so it must not do any work, only hand out
+        // what the item already holds
+        byte[] compact(T item);
+
+        // Called off the main thread when a page is rehydrated
+        T expand(byte[] compacted);
+    }
+    // endregion
+
+    // region Constructors
+    /**
+     * @param offset number of leading items (e.g. a header) that are never evicted
+     */
+    public WindowedList(Compactor<T> compactor, int pageSize, int offset) {
+        this(compactor, pageSize, offset, sExecutor, sMainThreadExecutor);
+    }
+
+    // Lets tests run the rehydrations without a Looper
+    WindowedList(Compactor<T> compactor, int pageSize, int offset, Executor backgroundExecutor, Executor mainThreadExecutor) {
+        mCompactor = compactor;
+        mPageSize = pageSize;
+        mOffset = offset;
+        mBackgroundExecutor = backgroundExecutor;
+        mMainThreadExecutor = mainThreadExecutor;
+    }
+    // endregion
+
+    // region Helper Methods
+    public void setMaxResidentPages(int maxResidentPages) {
+        mMaxResidentPages = Math.max(1, maxResidentPages);
+    }
+
+    public void setOnRangeRehydratedListener(OnRangeRehydratedListener onRangeRehydratedListener) {
+        mOnRangeRehydratedListener = onRangeRehydratedListener;
+    }
+
+    public int size() {
+        return mItems.size();
+    }
+
+    public void add(T item) {
+        mItems.add(item);
+    }
+
+    // Shifts the items from this index on, evicted ones included
+    public void add(int index, T item) {
+        mItems.add(index, item);
+    }
+
+    // Returns null when the item was waiting for fill() or evicted
+    public T remove(int index) {
+        Object item = mItems.remove(index);
+        return item instanceof Evicted ? null : cast(item);
+    }
+
+    public void set(int index, T item) {
+        mItems.set(index, item);
+    }
+
+    // Appends a placeholder to be filled later through fill()
+    public void addPlaceholder() {
+        mItems.add(null);
+    }
+
+    // Inserts a placeholder to be filled later through fill()
+    public void addPlaceholder(int index) {
+        mItems.add(index, null);
+    }
+
+    /**
+     * Puts items into the placeholders added through addPlaceholder() starting at this index.
+     * Other slots, evicted ones included, are left alone.
+     *
+     * @return the number of positions from start up to the last filled one
+     */
+    public int fill(int start, List<T> items) {
+        int count = 0;
+        for (int i = 0; i < items.size() && start + i < mItems.size(); i++) {
+            if (fill(start + i, items.get(i))) {
+                count = i + 1;
+            }
+        }
+        return count;
+    }
+
+    // Returns false when the slot is not waiting for fill()
+    public boolean fill(int index, T item) {
+        if (index < 0 || index >= mItems.size() || mItems.get(index) != null)
+            return false;
+
+        mItems.set(index, item);
+        return true;
+    }
+
+    public int indexOf(T item) {
+        return item == null ? -1 : mItems.indexOf(item);
+    }
+
+    public void clear() {
+        // Rehydrations still in flight find none of their slots and are dropped
+        mItems.clear();
+    }
+
+    // Returns null while the item is waiting for fill() or its page is evicted
+    public T get(int index) {
+        Object item = mItems.get(index);
+        return item instanceof Evicted ? null : cast(item);
+    }
+
+    public boolean isPlaceholder(int index) {
+        return index >= mOffset && get(index) == null;
+    }
+
+    public int getResidentItemCount() {
+        int count = 0;
+        for (Object item : mItems) {
+            if (item != null && !(item instanceof Evicted)) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Call from onBindViewHolder(). Moves the window to this position, evicts the pages outside of it
+     * and starts rehydrating the evicted pages inside of it.
+     */
+    public void onPositionBound(int position) {
+        if (position < mOffset)
+            return;
+
+        int anchorPage = getPage(position);
+        int lastPage = getPage(mItems.size() - 1);
+        int halfWindow = mMaxResidentPages / 2;
+
+        for (int page = 0; page <= lastPage; page++) {
+            if (Math.abs(page - anchorPage) > halfWindow) {
+                evict(page);
+            }
+        }
+
+        // Rehydrate the window, not only the bound page, so that scrolling back stays smooth
+        for (int page = anchorPage - halfWindow; page <= anchorPage + halfWindow; page++) {
+            if (page >= 0 && page <= lastPage) {
+                rehydrate(page);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Object item) {
+        return (T) item;
+    }
+
+    private int getPage(int position) {
+        return (position - mOffset) / mPageSize;
+    }
+
+    private int getPageStart(int page) {
+        return mOffset + page * mPageSize;
+    }
+
+    // Nothing to compute, so the page is evicted right away
+    private void evict(int page) {
+        int start = getPageStart(page);
+        int end = Math.min(start + mPageSize, mItems.size());
+
+        for (int i = start; i < end; i++) {
+            if (mItems.get(i) == null)
+                // Still being projected, try again on a later bind
+                return;
+        }
+
+        for (int i = start; i < end; i++) {
+            Object item = mItems.get(i);
+            if (!(item instanceof Evicted)) {
+                mItems.set(i, new Evicted(mCompactor.compact(cast(item))));
+            }
+        }
+    }
+
+    private void rehydrate(int page) {
+        int start = getPageStart(page);
+        int end = Math.min(start + mPageSize, mItems.size());
+
+        final List<Evicted> evictedItems = new ArrayList<>();
+        final List<Integer> positions = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            Object item = mItems.get(i);
+            if (item instanceof Evicted && !((Evicted) item).mIsRehydrating) {
+                ((Evicted) item).mIsRehydrating = true;
+                evictedItems.add((Evicted) item);
+                positions.add(i);
+            }
+        }
+        if (evictedItems.isEmpty())
+            return;
+
+        mBackgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<T> items = new ArrayList<>(evictedItems.size());
+                for (Evicted evictedItem : evictedItems) {
+                    items.add(mCompactor.expand(evictedItem.mCompacted));
+                }
+
+                mMainThreadExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        restore(evictedItems, positions, items);
+                    }
+                });
+            }
+        });
+    }
+
+    // Puts the items back into the slots that still hold their evicted form, wherever those moved to
+    private void restore(List<Evicted> evictedItems, List<Integer> positions, List<T> items) {
+        int rangeStart = -1;
+        int rangeCount = 0;
+        for (int i = 0; i < evictedItems.size(); i++) {
+            Evicted evictedItem = evictedItems.get(i);
+            int position = positions.get(i);
+            if (position >= mItems.size() || mItems.get(position) != evictedItem) {
+                // Shifted by an insert or a remove, or gone
+                position = mItems.indexOf(evictedItem);
+                if (position == -1)
+                    continue;
+            }
+            mItems.set(position, items.get(i));
+
+            if (position != rangeStart + rangeCount) {
+                notifyRangeRehydrated(rangeStart, rangeCount);
+                rangeStart = position;
+                rangeCount = 0;
+            }
+            rangeCount += 1;
+        }
+        notifyRangeRehydrated(rangeStart, rangeCount);
+    }
+
+    private void notifyRangeRehydrated(int positionStart, int itemCount) {
+        if (itemCount > 0 && mOnRangeRehydratedListener != null) {
+            mOnRangeRehydratedListener.onRangeRehydrated(positionStart, itemCount);
+        }
+    }
+    // endregion
+
+    // region Inner Classes
+
+    // What an evicted slot holds
+    private static class Evicted {
+        private final byte[] mCompacted;
+        private boolean mIsRehydrating = false;
+
+        Evicted(byte[] compacted) {
+            mCompacted = compacted;
+        }
+    }
+
+    // endregion
+}
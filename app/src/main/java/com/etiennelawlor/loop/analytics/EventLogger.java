@@ -8,11 +8,17 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
+import timber.log.Timber;
+
 /**
  * Created by etiennelawlor on 9/22/15.
  */
 public class EventLogger {
 
+    // region Constants
+    // Flurry drops the parameters past this many
+    private static final int MAX_FLURRY_PARAMETERS = 10;
+    // endregion
 
     public static void logEvent(Event event){
         logFabricEvent(event);
@@ -46,6 +52,10 @@ public class EventLogger {
         String name = event.getName();
         HashMap<String, Object> map = event.getMap();
 
+        if (map.size() > MAX_FLURRY_PARAMETERS) {
+            Timber.w("logFlurryEvent() : %s has %d parameters, Flurry keeps %d", name, map.size(), MAX_FLURRY_PARAMETERS);
+        }
+
         Map<String, String> flurryMap = new HashMap<>();
 
         for (Object o : map.entrySet()) {
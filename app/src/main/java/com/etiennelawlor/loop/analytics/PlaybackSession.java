@@ -0,0 +1,364 @@
+package com.etiennelawlor.loop.analytics;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.widget.MediaController;
+
+import com.etiennelawlor.loop.EventMapKeys;
+import com.etiennelawlor.loop.EventNames;
+import com.etiennelawlor.loop.utilities.LatencyHistogram;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Measures the quality of experience of one playback, from the moment the player is opened until it
+ * is closed:
+ *
+ * - startup: config fetch, URL selection, prepare and time to first frame, recorded the first time only
+ * - stalls: buffering once the first frame is shown, except the buffering caused by a seek
+ * - seeks: from the seek until it completes and the buffering it caused has ended
+ * - watch time, the chosen rendition and the first error
+ *
+ * {@link #end()} records the durations in histograms, overall and per rendition, and logs them through
+ * the {@link EventLogger} as two events, the startup and the rest of the session, since Flurry keeps at
+ * most 10 parameters per event. Must be used from the main thread.
+ *
+ * Created by etiennelawlor on 12/27/15.
+ */
+public class PlaybackSession {
+
+    // region Constants
+    public static final String SOURCE_NETWORK = "network";
+    public static final String SOURCE_PREFETCH = "prefetch";
+    public static final String SOURCE_OFFLINE = "offline";
+    public static final String SOURCE_SAVED_STATE = "saved_state";
+
+    public static final String RENDITION_OFFLINE = "offline";
+
+    private static final long NONE = -1L;
+    // The last bucket holds 32 s and up, as startups and stalls on a poor link take seconds
+    private static final int BUCKET_COUNT = 16;
+    // endregion
+
+    // region Static Variables
+    private static final LatencyHistogram sConfigFetchLatencies = new LatencyHistogram("Config fetch", BUCKET_COUNT);
+    private static final LatencyHistogram sPrepareLatencies = new LatencyHistogram("Prepare", BUCKET_COUNT);
+    private static final LatencyHistogram sFirstFrameLatencies = new LatencyHistogram("First frame", BUCKET_COUNT);
+    private static final LatencyHistogram sStallDurations = new LatencyHistogram("Stalls", BUCKET_COUNT);
+    private static final LatencyHistogram sSeekDurations = new LatencyHistogram("Seeks", BUCKET_COUNT);
+    private static final Map<String, LatencyHistogram> sFirstFrameLatenciesByRendition = new HashMap<>();
+    private static final Map<String, LatencyHistogram> sStallDurationsByRendition = new HashMap<>();
+    // endregion
+
+    // region Member Variables
+    private final long mVideoId;
+    private final long mStartTime = SystemClock.elapsedRealtime();
+    private String mSource;
+    private String mRendition;
+    private String mError;
+
+    private long mConfigRequestTime = NONE;
+    private long mConfigFetchDuration = NONE;
+    private long mUrlSelectionStartTime = NONE;
+    private long mUrlSelectionDuration = NONE;
+    private long mPrepareStartTime = NONE;
+    private long mPrepareDuration = NONE;
+    private long mFirstFrameDuration = NONE;
+
+    private boolean mIsBuffering = false;
+    private long mStallStartTime = NONE;
+    private int mStallCount = 0;
+    private long mStallDuration = 0L;
+
+    private long mSeekStartTime = NONE;
+    private int mSeekCount = 0;
+    private long mSeekDuration = 0L;
+
+    private long mPlayStartTime = NONE;
+    private long mWatchDuration = 0L;
+
+    private boolean mIsEnded = false;
+    // endregion
+
+    // region Constructors
+    public PlaybackSession(long videoId) {
+        mVideoId = videoId;
+    }
+    // endregion
+
+    public void onConfigRequested() {
+        if (mConfigRequestTime == NONE) {
+            mConfigRequestTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    // Where the video came from, see the SOURCE_ constants
+    public void onConfigLoaded(String source) {
+        if (mSource != null)
+            return;
+
+        mSource = source;
+        if (mConfigRequestTime != NONE) {
+            mConfigFetchDuration = SystemClock.elapsedRealtime() - mConfigRequestTime;
+        }
+    }
+
+    public void onUrlSelectionStarted() {
+        if (mUrlSelectionStartTime == NONE) {
+            mUrlSelectionStartTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    public void onUrlSelected(String rendition) {
+        if (mRendition != null)
+            return;
+
+        mRendition = rendition;
+        if (mUrlSelectionStartTime != NONE) {
+            mUrlSelectionDuration = SystemClock.elapsedRealtime() - mUrlSelectionStartTime;
+        }
+    }
+
+    public void onPrepareStarted() {
+        if (mPrepareStartTime == NONE) {
+            mPrepareStartTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    public void onPrepared() {
+        if (mPrepareStartTime != NONE && mPrepareDuration == NONE) {
+            mPrepareDuration = SystemClock.elapsedRealtime() - mPrepareStartTime;
+        }
+    }
+
+    public void onFirstFrame() {
+        if (mFirstFrameDuration == NONE) {
+            mFirstFrameDuration = SystemClock.elapsedRealtime() - mStartTime;
+            Timber.d("onFirstFrame() : %d - %d ms (%s, %s)", mVideoId, mFirstFrameDuration, mSource, mRendition);
+        }
+    }
+
+    public void onBufferingStarted() {
+        mIsBuffering = true;
+        // Buffering before the first frame is part of the startup, after a seek part of the seek
+        if (mFirstFrameDuration != NONE && mSeekStartTime == NONE && mStallStartTime == NONE) {
+            mStallStartTime = SystemClock.elapsedRealtime();
+            mStallCount++;
+        }
+    }
+
+    public void onBufferingEnded() {
+        mIsBuffering = false;
+        if (mSeekStartTime != NONE) {
+            endSeek();
+        } else {
+            endStall();
+        }
+    }
+
+    public void onSeekStarted() {
+        // A stall the user seeks out of ends there, the rest of the wait is the seek's
+        endStall();
+        // Successive seeks while scrubbing count as one
+        if (mSeekStartTime == NONE) {
+            mSeekStartTime = SystemClock.elapsedRealtime();
+            mSeekCount++;
+        }
+    }
+
+    public void onSeekCompleted() {
+        // Otherwise the seek lasts until the buffering ends
+        if (!mIsBuffering) {
+            endSeek();
+        }
+    }
+
+    public void onPlay() {
+        if (mPlayStartTime == NONE) {
+            mPlayStartTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    public void onPause() {
+        if (mPlayStartTime != NONE) {
+            mWatchDuration += SystemClock.elapsedRealtime() - mPlayStartTime;
+            mPlayStartTime = NONE;
+        }
+        // Not playing anymore, so not stalling or seeking either
+        mIsBuffering = false;
+        endStall();
+        endSeek();
+    }
+
+    // Only the first error is kept, as "what/extra" of MediaPlayer.OnErrorListener
+    public void onError(int what, int extra) {
+        if (mError == null) {
+            mError = what + "/" + extra;
+        }
+    }
+
+    // Reports the seeks made with the controls
+    public MediaController.MediaPlayerControl wrap(final MediaController.MediaPlayerControl mediaPlayerControl) {
+        return new MediaController.MediaPlayerControl() {
+            @Override
+            public void start() {
+                mediaPlayerControl.start();
+                onPlay();
+            }
+
+            @Override
+            public void pause() {
+                mediaPlayerControl.pause();
+                onPause();
+            }
+
+            @Override
+            public int getDuration() {
+                return mediaPlayerControl.getDuration();
+            }
+
+            @Override
+            public int getCurrentPosition() {
+                return mediaPlayerControl.getCurrentPosition();
+            }
+
+            @Override
+            public void seekTo(int pos) {
+                onSeekStarted();
+                mediaPlayerControl.seekTo(pos);
+            }
+
+            @Override
+            public boolean isPlaying() {
+                return mediaPlayerControl.isPlaying();
+            }
+
+            @Override
+            public int getBufferPercentage() {
+                return mediaPlayerControl.getBufferPercentage();
+            }
+
+            @Override
+            public boolean canPause() {
+                return mediaPlayerControl.canPause();
+            }
+
+            @Override
+            public boolean canSeekBackward() {
+                return mediaPlayerControl.canSeekBackward();
+            }
+
+            @Override
+            public boolean canSeekForward() {
+                return mediaPlayerControl.canSeekForward();
+            }
+
+            @Override
+            public int getAudioSessionId() {
+                return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2
+                        ? mediaPlayerControl.getAudioSessionId()
+                        : 0;
+            }
+        };
+    }
+
+    // Records and logs the session, once. Sessions that never started preparing are dropped.
+    public void end() {
+        if (mIsEnded)
+            return;
+
+        mIsEnded = true;
+        onPause();
+        if (mPrepareStartTime == NONE)
+            return;
+
+        String rendition = mRendition == null ? "unknown" : mRendition;
+        if (SOURCE_NETWORK.equals(mSource) && mConfigFetchDuration != NONE) {
+            sConfigFetchLatencies.record(mConfigFetchDuration);
+        }
+        if (mPrepareDuration != NONE) {
+            sPrepareLatencies.record(mPrepareDuration);
+        }
+        if (mFirstFrameDuration != NONE) {
+            sFirstFrameLatencies.record(mFirstFrameDuration);
+            getHistogram(sFirstFrameLatenciesByRendition, "First frame", rendition).record(mFirstFrameDuration);
+        }
+        if (mStallCount > 0) {
+            sStallDurations.record(mStallDuration);
+            getHistogram(sStallDurationsByRendition, "Stalls", rendition).record(mStallDuration);
+        }
+        if (mSeekCount > 0) {
+            sSeekDurations.record(mSeekDuration / mSeekCount);
+        }
+
+        // At most 9 parameters each, video id, source and rendition tie the two together
+        HashMap<String, Object> startupMap = createMap(rendition);
+        putDuration(startupMap, EventMapKeys.CONFIG_FETCH_DURATION, mConfigFetchDuration);
+        putDuration(startupMap, EventMapKeys.URL_SELECTION_DURATION, mUrlSelectionDuration);
+        putDuration(startupMap, EventMapKeys.PREPARE_DURATION, mPrepareDuration);
+        putDuration(startupMap, EventMapKeys.FIRST_FRAME_DURATION, mFirstFrameDuration);
+        if (mFirstFrameDuration != NONE) {
+            // Bounded set of values, so the dashboards can break it down
+            startupMap.put(EventMapKeys.FIRST_FRAME_BUCKET, sFirstFrameLatencies.getBucketLabel(mFirstFrameDuration));
+        }
+        if (mError != null) {
+            startupMap.put(EventMapKeys.ERROR, mError);
+        }
+
+        HashMap<String, Object> sessionMap = createMap(rendition);
+        sessionMap.put(EventMapKeys.STALL_COUNT, mStallCount);
+        sessionMap.put(EventMapKeys.STALL_DURATION, mStallDuration);
+        sessionMap.put(EventMapKeys.SEEK_COUNT, mSeekCount);
+        sessionMap.put(EventMapKeys.SEEK_DURATION, mSeekDuration);
+        sessionMap.put(EventMapKeys.WATCH_DURATION, mWatchDuration);
+        if (mError != null) {
+            sessionMap.put(EventMapKeys.ERROR, mError);
+        }
+
+        Timber.d("end() : %s %s", startupMap, sessionMap);
+        EventLogger.logEvent(new Event(EventNames.PLAYBACK_STARTUP, startupMap));
+        EventLogger.logEvent(new Event(EventNames.PLAYBACK_SESSION, sessionMap));
+    }
+
+    // region Helper Methods
+    private void endStall() {
+        if (mStallStartTime != NONE) {
+            mStallDuration += SystemClock.elapsedRealtime() - mStallStartTime;
+            mStallStartTime = NONE;
+        }
+    }
+
+    private void endSeek() {
+        if (mSeekStartTime != NONE) {
+            mSeekDuration += SystemClock.elapsedRealtime() - mSeekStartTime;
+            mSeekStartTime = NONE;
+        }
+    }
+
+    private static LatencyHistogram getHistogram(Map<String, LatencyHistogram> histograms, String name, String rendition) {
+        LatencyHistogram histogram = histograms.get(rendition);
+        if (histogram == null) {
+            histogram = new LatencyHistogram(name + " (" + rendition + ")", BUCKET_COUNT);
+            histograms.put(rendition, histogram);
+        }
+        return histogram;
+    }
+
+    private HashMap<String, Object> createMap(String rendition) {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put(EventMapKeys.VIDEO_ID, mVideoId);
+        map.put(EventMapKeys.SOURCE, mSource == null ? "unknown" : mSource);
+        map.put(EventMapKeys.RENDITION, rendition);
+        return map;
+    }
+
+    private static void putDuration(HashMap<String, Object> map, String key, long duration) {
+        if (duration != NONE) {
+            map.put(key, duration);
+        }
+    }
+    // endregion
+}
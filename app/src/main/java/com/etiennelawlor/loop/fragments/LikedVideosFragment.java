@@ -14,6 +14,7 @@ import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.support.v7.widget.Toolbar;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -37,13 +38,16 @@ import com.etiennelawlor.loop.network.models.response.Video;
 import com.etiennelawlor.loop.network.models.response.VideosCollection;
 import com.etiennelawlor.loop.otto.BusProvider;
 import com.etiennelawlor.loop.otto.events.VideoLikedEvent;
+import com.etiennelawlor.loop.realm.VideoStore;
 import com.etiennelawlor.loop.ui.LoadingImageView;
+import com.etiennelawlor.loop.ui.PaginationController;
 import com.etiennelawlor.loop.utilities.LogUtility;
 import com.squareup.otto.Subscribe;
 
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.List;
 
 import butterknife.Bind;
@@ -59,7 +63,7 @@ import timber.log.Timber;
 /**
  * Created by etiennelawlor on 5/23/15.
  */
-public class LikedVideosFragment extends BaseFragment implements VideosAdapter.OnItemClickListener {
+public class LikedVideosFragment extends BaseFragment implements VideosAdapter.OnItemClickListener, PaginationController.Callbacks<Video> {
 
     // region Constants
     public static final int PAGE_SIZE = 30;
@@ -83,62 +87,33 @@ public class LikedVideosFragment extends BaseFragment implements VideosAdapter.O
 //    @Bind(R.id.search_view_widget)
 //    SearchViewWidget mSearchViewWidget;
 
-    private boolean mIsLastPage = false;
-    private int mCurrentPage = 1;
     private int mSelectedSortByKey = 0;
     private int mSelectedSortOrderKey = 1;
-    private boolean mIsLoading = false;
     private String mSortByValue = "date";
     private String mSortOrderValue = "desc";
     private VideosAdapter mVideosAdapter;
     private String mQuery;
     private LinearLayoutManager mLayoutManager;
+    private PaginationController<Video> mPaginationController;
     private VimeoService mVimeoService;
-    private VideoLikedEvent mVideoLikedEvent;
+    // Changes that came while the screen was in the background, applied in order on resume
+    private final List<VideoLikedEvent> mPendingVideoLikedEvents = new ArrayList<>();
     // endregion
 
     // region Listeners
-    private RecyclerView.OnScrollListener mRecyclerViewOnScrollListener = new RecyclerView.OnScrollListener() {
-        @Override
-        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
-            super.onScrollStateChanged(recyclerView, newState);
-        }
-
-        @Override
-        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
-            super.onScrolled(recyclerView, dx, dy);
-            int visibleItemCount = mLayoutManager.getChildCount();
-            int totalItemCount = mLayoutManager.getItemCount();
-            int firstVisibleItemPosition = mLayoutManager.findFirstVisibleItemPosition();
-
-            if (!mIsLoading && !mIsLastPage) {
-                if ((visibleItemCount + firstVisibleItemPosition) >= totalItemCount) {
-                    loadMoreItems();
-                }
-            }
-        }
-    };
-
     @OnClick(R.id.reload_btn)
     public void onReloadButtonClicked() {
         mErrorLinearLayout.setVisibility(View.GONE);
         mLoadingImageView.setVisibility(View.VISIBLE);
 
-        Call findLikedVideosCall = mVimeoService.findLikedVideos(mQuery,
-                mSortByValue,
-                mSortOrderValue,
-                mCurrentPage,
-                PAGE_SIZE);
-        mCalls.add(findLikedVideosCall);
-        findLikedVideosCall.enqueue(mFindVideosFirstFetchCallback);
+        mPaginationController.loadFirstPage();
     }
 
     private View.OnClickListener mReloadOnClickListener = new View.OnClickListener() {
         @Override
         public void onClick(View v) {
-            mCurrentPage -= 1;
             mVideosAdapter.addLoading();
-            loadMoreItems();
+            mPaginationController.retry();
         }
     };
     // endregion
@@ -149,24 +124,16 @@ public class LikedVideosFragment extends BaseFragment implements VideosAdapter.O
         public void onResponse(Response<VideosCollection> response, Retrofit retrofit) {
             Timber.d("onResponse()");
             mLoadingImageView.setVisibility(View.GONE);
-            mIsLoading = false;
 
             if (response != null) {
                 if(response.isSuccess()){
                     VideosCollection videosCollection = response.body();
                     if (videosCollection != null) {
-                        List<Video> videos = videosCollection.getVideos();
-                        if (videos != null) {
-                            mVideosAdapter.addAll(videos);
-
-                            if(videos.size() >= PAGE_SIZE){
-                                mVideosAdapter.addLoading();
-                            } else {
-                                mIsLastPage = true;
-                            }
-                        }
+                        mPaginationController.onPageLoaded(videosCollection);
                     }
                 } else {
+                    mPaginationController.onPageLoadFailed();
+
                     com.squareup.okhttp.Response rawResponse = response.raw();
                     if (rawResponse != null) {
                         LogUtility.logFailedResponse(rawResponse);
@@ -184,24 +151,18 @@ public class LikedVideosFragment extends BaseFragment implements VideosAdapter.O
                 }
             }
 
-            if (mVideosAdapter.isEmpty()) {
-                mEmptyTextView.setText(getString(R.string.likes_empty_prompt));
-                Drawable drawable = ContextCompat.getDrawable(getActivity(), R.drawable.ic_likes_large);
-                DrawableCompat.setTint(drawable, ContextCompat.getColor(getActivity(), R.color.grey_500));
-                mEmptyTextView.setCompoundDrawablesWithIntrinsicBounds(null, drawable, null, null);
-                mEmptyView.setVisibility(View.VISIBLE);
-            }
+            setUpEmptyView();
         }
 
         @Override
         public void onFailure(Throwable t) {
+            mPaginationController.onPageLoadFailed();
             if (t != null) {
                 String message = t.getMessage();
                 LogUtility.logFailure(t);
 
                 if (t instanceof SocketTimeoutException || t instanceof UnknownHostException) {
                     Timber.e("Timeout occurred");
-                    mIsLoading = false;
                     mLoadingImageView.setVisibility(View.GONE);
 
                     mErrorTextView.setText("Can't load data.\nCheck your network connection.");
@@ -210,7 +171,6 @@ public class LikedVideosFragment extends BaseFragment implements VideosAdapter.O
                     if(message.equals("Canceled")){
                         Timber.e("onFailure() : Canceled");
                     } else {
-                        mIsLoading = false;
                         mLoadingImageView.setVisibility(View.GONE);
                     }
                 }
@@ -222,25 +182,17 @@ public class LikedVideosFragment extends BaseFragment implements VideosAdapter.O
         @Override
         public void onResponse(Response<VideosCollection> response, Retrofit retrofit) {
             Timber.d("onResponse()");
-            mVideosAdapter.removeLoading();
-            mIsLoading = false;
 
             if (response != null) {
                 if(response.isSuccess()){
                     VideosCollection videosCollection = response.body();
                     if (videosCollection != null) {
-                        List<Video> videos = videosCollection.getVideos();
-                        if (videos != null) {
-                            mVideosAdapter.addAll(videos);
-
-                            if(videos.size() >= PAGE_SIZE){
-                                mVideosAdapter.addLoading();
-                            } else {
-                                mIsLastPage = true;
-                            }
-                        }
+                        mPaginationController.onPageLoaded(videosCollection);
                     }
                 } else {
+                    mVideosAdapter.removeLoading();
+                    mPaginationController.onPageLoadFailed();
+
                     com.squareup.okhttp.Response rawResponse = response.raw();
                     if (rawResponse != null) {
                         LogUtility.logFailedResponse(rawResponse);
@@ -261,6 +213,7 @@ public class LikedVideosFragment extends BaseFragment implements VideosAdapter.O
 
         @Override
         public void onFailure(Throwable t) {
+            mPaginationController.onPageLoadFailed();
             mVideosAdapter.removeLoading();
             if (t != null) {
                 String message = t.getMessage();
@@ -349,25 +302,20 @@ public class LikedVideosFragment extends BaseFragment implements VideosAdapter.O
         mVideosRecyclerView.setAdapter(mVideosAdapter);
 
         // Pagination
-        mVideosRecyclerView.addOnScrollListener(mRecyclerViewOnScrollListener);
+        mPaginationController = new PaginationController<>(mLayoutManager, PAGE_SIZE, this);
+        mVideosRecyclerView.addOnScrollListener(mPaginationController);
 
-        Call findLikedVideosCall = mVimeoService.findLikedVideos(mQuery,
-                mSortByValue,
-                mSortOrderValue,
-                mCurrentPage,
-                PAGE_SIZE);
-        mCalls.add(findLikedVideosCall);
-        findLikedVideosCall.enqueue(mFindVideosFirstFetchCallback);
+        loadVideos();
     }
 
     @Override
     public void onResume() {
         super.onResume();
 
-        if(mVideoLikedEvent != null){
-            refreshAdapter();
-            mVideoLikedEvent = null;
+        for (VideoLikedEvent event : mPendingVideoLikedEvents) {
+            refreshAdapter(event);
         }
+        mPendingVideoLikedEvents.clear();
     }
 
     @Override
@@ -464,27 +412,117 @@ public class LikedVideosFragment extends BaseFragment implements VideosAdapter.O
         Timber.d("onVideoLikedEvent");
 
         if (isResumed()) {
-            refreshAdapter();
-            mVideoLikedEvent = null;
+            refreshAdapter(event);
         } else {
-            mVideoLikedEvent = event;
+            mPendingVideoLikedEvents.add(event);
+        }
+    }
+    // endregion
+
+    // region PaginationController.Callbacks Methods
+    @Override
+    public void onLoadPage(int page, String link) {
+        Call findLikedVideosCall;
+        if (TextUtils.isEmpty(link)) {
+            findLikedVideosCall = mVimeoService.findLikedVideos(mQuery,
+                    mSortByValue,
+                    mSortOrderValue,
+                    page,
+                    PAGE_SIZE,
+                    VimeoService.LIST_ROW_FIELDS);
+        } else {
+            findLikedVideosCall = mVimeoService.getVideosPage(link);
+        }
+        mCalls.add(findLikedVideosCall);
+        findLikedVideosCall.enqueue(page == 1 ? mFindVideosFirstFetchCallback : mFindVideosNextFetchCallback);
+    }
+
+    @Override
+    public void onAppendPage(int page, List<Video> videos, boolean isLastPage) {
+        if (page > 1) {
+            mVideosAdapter.removeLoading();
+        }
+
+        if (videos != null) {
+            mVideosAdapter.addAll(videos);
+        }
+
+        if (!isLastPage) {
+            mVideosAdapter.addLoading();
         }
     }
     // endregion
 
     // region Helper Methods
-    private void loadMoreItems() {
-        mIsLoading = true;
+    // The default order is kept in VideoStore, so it opens from disk and only the changes are fetched
+    private boolean isStoredOrder() {
+        return TextUtils.isEmpty(mQuery)
+                && VideoStore.SORT.equals(mSortByValue)
+                && VideoStore.DIRECTION.equals(mSortOrderValue);
+    }
 
-        mCurrentPage += 1;
+    private void loadVideos() {
+        if (!isStoredOrder()) {
+            mPaginationController.loadFirstPage();
+            return;
+        }
 
-        Call findLikedVideosCall = mVimeoService.findLikedVideos(mQuery,
-                mSortByValue,
-                mSortOrderValue,
-                mCurrentPage,
-                PAGE_SIZE);
-        mCalls.add(findLikedVideosCall);
-        findLikedVideosCall.enqueue(mFindVideosNextFetchCallback);
+        VideoStore.getInstance().load(VideoStore.COLLECTION_LIKES, new VideoStore.OnVideosLoadedListener() {
+            @Override
+            public void onVideosLoaded(List<Video> videos) {
+                if (mVideosRecyclerView == null || !isStoredOrder())
+                    return;
+
+                if (videos == null) {
+                    // Never synced, page through the network while the store fills up
+                    mPaginationController.loadFirstPage();
+                } else {
+                    showStoredVideos(videos);
+                }
+                syncVideos(videos != null);
+            }
+        });
+    }
+
+    private void syncVideos(final boolean isShowingStoredVideos) {
+        VideoStore.getInstance().sync(VideoStore.COLLECTION_LIKES, mVimeoService, new VideoStore.OnSyncedListener() {
+            @Override
+            public void onSynced(List<Video> videos, boolean isChanged) {
+                if (mVideosRecyclerView == null || !isStoredOrder())
+                    return;
+
+                if (isShowingStoredVideos && isChanged) {
+                    showStoredVideos(videos);
+                }
+            }
+
+            @Override
+            public void onSyncFailed() {
+                // Keep showing what is on disk, e.g. while offline
+            }
+        });
+    }
+
+    private void showStoredVideos(List<Video> videos) {
+        mLoadingImageView.setVisibility(View.GONE);
+        mErrorLinearLayout.setVisibility(View.GONE);
+        mEmptyView.setVisibility(View.GONE);
+
+        mVideosAdapter.clear();
+        mPaginationController.markLastPage();
+        mVideosAdapter.addAll(videos);
+
+        setUpEmptyView();
+    }
+
+    private void setUpEmptyView() {
+        if (mVideosAdapter.isEmpty()) {
+            mEmptyTextView.setText(getString(R.string.likes_empty_prompt));
+            Drawable drawable = ContextCompat.getDrawable(getActivity(), R.drawable.ic_likes_large);
+            DrawableCompat.setTint(drawable, ContextCompat.getColor(getActivity(), R.color.grey_500));
+            mEmptyTextView.setCompoundDrawablesWithIntrinsicBounds(null, drawable, null, null);
+            mEmptyView.setVisibility(View.VISIBLE);
+        }
     }
 
     private void showSortDialog() {
@@ -522,15 +560,7 @@ public class LikedVideosFragment extends BaseFragment implements VideosAdapter.O
 
                 mLoadingImageView.setVisibility(View.VISIBLE);
 
-                mCurrentPage = 1;
-
-                Call findLikedVideosCall = mVimeoService.findLikedVideos(mQuery,
-                        mSortByValue,
-                        mSortOrderValue,
-                        mCurrentPage,
-                        PAGE_SIZE);
-                mCalls.add(findLikedVideosCall);
-                findLikedVideosCall.enqueue(mFindVideosFirstFetchCallback);
+                loadVideos();
 
                 dialog.dismiss();
             }
@@ -545,20 +575,38 @@ public class LikedVideosFragment extends BaseFragment implements VideosAdapter.O
         alertDialogBuilder.show();
     }
 
-    private void refreshAdapter(){
+    // Applies the change to the rows on screen, without reloading the others
+    private void refreshAdapter(VideoLikedEvent event){
+        Video video = event.getVideo();
+        int position = mVideosAdapter.indexOf(video);
+
+        if (!event.isLiked()) {
+            // Goes away whatever the order, nothing to fetch
+            if (position != -1) {
+                mVideosAdapter.remove(position);
+                setUpEmptyView();
+            }
+            return;
+        }
+
+        if (isStoredOrder()) {
+            // Newest first, so the video goes on top. VideoStore already has it, so there is nothing to sync
+            if (position != 0) {
+                if (position != -1) {
+                    mVideosAdapter.remove(position);
+                }
+                mVideosAdapter.add(0, video);
+                mEmptyView.setVisibility(View.GONE);
+            }
+            return;
+        }
+
+        // Where it goes in another order or search is up to the server
         mVideosAdapter.clear();
 
         mLoadingImageView.setVisibility(View.VISIBLE);
 
-        mCurrentPage = 1;
-
-        Call findLikedVideosCall = mVimeoService.findLikedVideos(mQuery,
-                mSortByValue,
-                mSortOrderValue,
-                mCurrentPage,
-                PAGE_SIZE);
-        mCalls.add(findLikedVideosCall);
-        findLikedVideosCall.enqueue(mFindVideosFirstFetchCallback);
+        loadVideos();
     }
 
     private void showReloadSnackbar(String message){
@@ -571,7 +619,7 @@ public class LikedVideosFragment extends BaseFragment implements VideosAdapter.O
     }
 
     private void removeListeners(){
-        mVideosRecyclerView.removeOnScrollListener(mRecyclerViewOnScrollListener);
+        mVideosRecyclerView.removeOnScrollListener(mPaginationController);
     }
     // endregion
 }
@@ -43,7 +43,9 @@ import com.etiennelawlor.loop.otto.events.SearchPerformedEvent;
 import com.etiennelawlor.loop.otto.events.ShowSearchSuggestionsEvent;
 import com.etiennelawlor.loop.realm.RealmUtility;
 import com.etiennelawlor.loop.ui.LoadingImageView;
+import com.etiennelawlor.loop.ui.PaginationController;
 import com.etiennelawlor.loop.ui.MaterialSearchView;
+import com.etiennelawlor.loop.ui.SuggestionPipeline;
 import com.etiennelawlor.loop.utilities.LogUtility;
 import com.squareup.otto.Subscribe;
 
@@ -66,7 +68,7 @@ import timber.log.Timber;
 /**
  * Created by etiennelawlor on 5/23/15.
  */
-public class SearchableFragment extends BaseFragment implements VideosAdapter.OnItemClickListener {
+public class SearchableFragment extends BaseFragment implements VideosAdapter.OnItemClickListener, PaginationController.Callbacks<Video> {
 
     // region Constants
     public static final int PAGE_SIZE = 30;
@@ -90,47 +92,31 @@ public class SearchableFragment extends BaseFragment implements VideosAdapter.On
 //    @Bind(R.id.toolbar)
 //    Toolbar mToolbar;
 
-    private boolean mIsLastPage = false;
-    private int mCurrentPage = 1;
     private int mSelectedSortByKey = 0;
     private int mSelectedSortOrderKey = 1;
-    private boolean mIsLoading = false;
     private String mSortByValue = "relevant";
     private String mSortOrderValue = "desc";
     private VideosAdapter mVideosAdapter;
     private String mQuery;
     private LinearLayoutManager mLayoutManager;
+    private PaginationController<Video> mPaginationController;
     private VimeoService mVimeoService;
+    private SuggestionPipeline mSuggestionPipeline;
     // endregion
 
     // region Listeners
-    private RecyclerView.OnScrollListener mRecyclerViewOnScrollListener = new RecyclerView.OnScrollListener() {
+    private SuggestionPipeline.OnSuggestionsLoadedListener mOnSuggestionsLoadedListener = new SuggestionPipeline.OnSuggestionsLoadedListener() {
         @Override
-        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
-            super.onScrollStateChanged(recyclerView, newState);
-        }
-
-        @Override
-        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
-            super.onScrolled(recyclerView, dx, dy);
-            int visibleItemCount = mLayoutManager.getChildCount();
-            int totalItemCount = mLayoutManager.getItemCount();
-            int firstVisibleItemPosition = mLayoutManager.findFirstVisibleItemPosition();
-
-            if (!mIsLoading && !mIsLastPage) {
-                if ((visibleItemCount + firstVisibleItemPosition) >= totalItemCount) {
-                    loadMoreItems();
-                }
-            }
+        public void onSuggestionsLoaded(List<String> suggestions) {
+            mMaterialSearchView.addSuggestions(suggestions);
         }
     };
 
     private View.OnClickListener mReloadOnClickListener = new View.OnClickListener() {
         @Override
         public void onClick(View v) {
-            mCurrentPage -= 1;
             mVideosAdapter.addLoading();
-            loadMoreItems();
+            mPaginationController.retry();
         }
     };
 
@@ -141,13 +127,7 @@ public class SearchableFragment extends BaseFragment implements VideosAdapter.On
 
         mMaterialSearchView.disableFilter();
 
-        Call findVideosCall = mVimeoService.findVideos(mQuery,
-                mSortByValue,
-                mSortOrderValue,
-                mCurrentPage,
-                PAGE_SIZE);
-        mCalls.add(findVideosCall);
-        findVideosCall.enqueue(mFindVideosFirstFetchCallback);
+        mPaginationController.loadFirstPage();
     }
     // endregion
 
@@ -157,26 +137,18 @@ public class SearchableFragment extends BaseFragment implements VideosAdapter.On
         public void onResponse(Response<VideosCollection> response, Retrofit retrofit) {
             Timber.d("onResponse()");
             mLoadingImageView.setVisibility(View.GONE);
-            mIsLoading = false;
 
             if (response != null) {
                 if(response.isSuccess()){
                     VideosCollection videosCollection = response.body();
                     if (videosCollection != null) {
-                        List<Video> videos = videosCollection.getVideos();
-                        if (videos != null) {
-                            mVideosAdapter.addAll(videos);
-
-                            if(videos.size() >= PAGE_SIZE){
-                                mVideosAdapter.addLoading();
-                            } else {
-                                mIsLastPage = true;
-                            }
-                        }
+                        mPaginationController.onPageLoaded(videosCollection);
                     }
 
                     mMaterialSearchView.enableFilter();
                 } else {
+                    mPaginationController.onPageLoadFailed();
+
                     com.squareup.okhttp.Response rawResponse = response.raw();
                     if (rawResponse != null) {
                         LogUtility.logFailedResponse(rawResponse);
@@ -205,13 +177,13 @@ public class SearchableFragment extends BaseFragment implements VideosAdapter.On
 
         @Override
         public void onFailure(Throwable t) {
+            mPaginationController.onPageLoadFailed();
             if (t != null) {
                 String message = t.getMessage();
                 LogUtility.logFailure(t);
 
                 if (t instanceof SocketTimeoutException || t instanceof UnknownHostException) {
                     Timber.e("Timeout occurred");
-                    mIsLoading = false;
                     mLoadingImageView.setVisibility(View.GONE);
 
                     mErrorTextView.setText("Can't load data.\nCheck your network connection.");
@@ -220,7 +192,6 @@ public class SearchableFragment extends BaseFragment implements VideosAdapter.On
                     if(message.equals("Canceled")){
                         Timber.e("onFailure() : Canceled");
                     } else {
-                        mIsLoading = false;
                         mLoadingImageView.setVisibility(View.GONE);
                     }
                 }
@@ -232,25 +203,17 @@ public class SearchableFragment extends BaseFragment implements VideosAdapter.On
         @Override
         public void onResponse(Response<VideosCollection> response, Retrofit retrofit) {
             Timber.d("onResponse()");
-            mVideosAdapter.removeLoading();
-            mIsLoading = false;
 
             if (response != null) {
                 if(response.isSuccess()){
                     VideosCollection videosCollection = response.body();
                     if (videosCollection != null) {
-                        List<Video> videos = videosCollection.getVideos();
-                        if (videos != null) {
-                            mVideosAdapter.addAll(videos);
-
-                            if(videos.size() >= PAGE_SIZE){
-                                mVideosAdapter.addLoading();
-                            } else {
-                                mIsLastPage = true;
-                            }
-                        }
+                        mPaginationController.onPageLoaded(videosCollection);
                     }
                 } else {
+                    mVideosAdapter.removeLoading();
+                    mPaginationController.onPageLoadFailed();
+
                     com.squareup.okhttp.Response rawResponse = response.raw();
                     if (rawResponse != null) {
                         LogUtility.logFailedResponse(rawResponse);
@@ -272,6 +235,7 @@ public class SearchableFragment extends BaseFragment implements VideosAdapter.On
 
         @Override
         public void onFailure(Throwable t) {
+            mPaginationController.onPageLoadFailed();
             mVideosAdapter.removeLoading();
             if (t != null) {
                 String message = t.getMessage();
@@ -354,6 +318,8 @@ public class SearchableFragment extends BaseFragment implements VideosAdapter.On
 //        ab.setDisplayHomeAsUpEnabled(true);
 //        ab.setTitle("");
 
+        mSuggestionPipeline = new SuggestionPipeline(mVimeoService, mOnSuggestionsLoadedListener);
+
         setupSearchView();
 
 //        mSearchViewWidget.setQuery(mQuery, false);
@@ -422,15 +388,10 @@ public class SearchableFragment extends BaseFragment implements VideosAdapter.On
         mVideosRecyclerView.setAdapter(mVideosAdapter);
 
         // Pagination
-        mVideosRecyclerView.addOnScrollListener(mRecyclerViewOnScrollListener);
+        mPaginationController = new PaginationController<>(mLayoutManager, PAGE_SIZE, this);
+        mVideosRecyclerView.addOnScrollListener(mPaginationController);
 
-        Call findVideosCall = mVimeoService.findVideos(mQuery,
-                mSortByValue,
-                mSortOrderValue,
-                mCurrentPage,
-                PAGE_SIZE);
-        mCalls.add(findVideosCall);
-        findVideosCall.enqueue(mFindVideosFirstFetchCallback);
+        mPaginationController.loadFirstPage();
     }
 
     @Override
@@ -450,6 +411,7 @@ public class SearchableFragment extends BaseFragment implements VideosAdapter.On
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        mSuggestionPipeline.cancel();
         removeListeners();
         ButterKnife.unbind(this);
     }
@@ -549,25 +511,45 @@ public class SearchableFragment extends BaseFragment implements VideosAdapter.On
     public void onShowSearchSuggestions(ShowSearchSuggestionsEvent event) {
         String query = event.getQuery();
 
-        mMaterialSearchView.addSuggestions(RealmUtility.getSuggestions(query));
+        mSuggestionPipeline.request(query);
     }
     // endregion
 
-    // region Helper Methods
-    private void loadMoreItems() {
-        mIsLoading = true;
+    // region PaginationController.Callbacks Methods
+    @Override
+    public void onLoadPage(int page, String link) {
+        Call findVideosCall;
+        if (TextUtils.isEmpty(link)) {
+            findVideosCall = mVimeoService.findVideos(mQuery,
+                    mSortByValue,
+                    mSortOrderValue,
+                    page,
+                    PAGE_SIZE,
+                    VimeoService.LIST_ROW_FIELDS);
+        } else {
+            findVideosCall = mVimeoService.getVideosPage(link);
+        }
+        mCalls.add(findVideosCall);
+        findVideosCall.enqueue(page == 1 ? mFindVideosFirstFetchCallback : mFindVideosNextFetchCallback);
+    }
 
-        mCurrentPage += 1;
+    @Override
+    public void onAppendPage(int page, List<Video> videos, boolean isLastPage) {
+        if (page > 1) {
+            mVideosAdapter.removeLoading();
+        }
 
-        Call findVideosCall = mVimeoService.findVideos(mQuery,
-                mSortByValue,
-                mSortOrderValue,
-                mCurrentPage,
-                PAGE_SIZE);
-        mCalls.add(findVideosCall);
-        findVideosCall.enqueue(mFindVideosNextFetchCallback);
+        if (videos != null) {
+            mVideosAdapter.addAll(videos);
+        }
+
+        if (!isLastPage) {
+            mVideosAdapter.addLoading();
+        }
     }
+    // endregion
 
+    // region Helper Methods
     private void showSortDialog() {
         LayoutInflater li = LayoutInflater.from(getActivity());
         View promptsView = li.inflate(R.layout.sort_dialog, null);
@@ -603,17 +585,9 @@ public class SearchableFragment extends BaseFragment implements VideosAdapter.On
 
                 mLoadingImageView.setVisibility(View.VISIBLE);
 
-                mCurrentPage = 1;
-
                 mMaterialSearchView.disableFilter();
 
-                Call findVideosCall = mVimeoService.findVideos(mQuery,
-                        mSortByValue,
-                        mSortOrderValue,
-                        mCurrentPage,
-                        PAGE_SIZE);
-                mCalls.add(findVideosCall);
-                findVideosCall.enqueue(mFindVideosFirstFetchCallback);
+                mPaginationController.loadFirstPage();
 
                 dialog.dismiss();
             }
@@ -650,7 +624,7 @@ public class SearchableFragment extends BaseFragment implements VideosAdapter.On
     }
 
     private void removeListeners(){
-        mVideosRecyclerView.removeOnScrollListener(mRecyclerViewOnScrollListener);
+        mVideosRecyclerView.removeOnScrollListener(mPaginationController);
     }
     // endregion
 }
@@ -28,17 +28,20 @@ import com.etiennelawlor.loop.helper.PreferencesHelper;
 import com.etiennelawlor.loop.models.AccessToken;
 import com.etiennelawlor.loop.network.ServiceGenerator;
 import com.etiennelawlor.loop.network.VimeoService;
-import com.etiennelawlor.loop.network.models.request.CommentPost;
 import com.etiennelawlor.loop.network.models.response.AuthorizedUser;
 import com.etiennelawlor.loop.network.models.response.Comment;
 import com.etiennelawlor.loop.network.models.response.CommentsCollection;
+import com.etiennelawlor.loop.network.models.response.Paging;
 import com.etiennelawlor.loop.network.models.response.User;
 import com.etiennelawlor.loop.network.models.response.Video;
 import com.etiennelawlor.loop.otto.BusProvider;
+import com.etiennelawlor.loop.otto.events.CommentPostedEvent;
+import com.etiennelawlor.loop.realm.CommentOutbox;
 import com.etiennelawlor.loop.ui.LoadingImageView;
 import com.etiennelawlor.loop.utilities.DisplayUtility;
 import com.etiennelawlor.loop.utilities.LogUtility;
 import com.google.common.collect.Lists;
+import com.squareup.otto.Subscribe;
 
 import java.io.IOException;
 import java.net.SocketTimeoutException;
@@ -124,16 +127,15 @@ public class VideoCommentsFragment extends BaseFragment implements VideoComments
     public void submitComment() {
         String comment = mCommentEditText.getText().toString();
         if (!TextUtils.isEmpty(comment)) {
-            CommentPost commentPost = new CommentPost();
-            commentPost.setText(comment);
-//
-            mSubmitCommentFrameLayout.setBackgroundColor(ContextCompat.getColor(getContext(), R.color.grey_200));
-            mSubmitCommentImageView.setVisibility(View.GONE);
-            mSubmitCommentProgressBar.setVisibility(View.VISIBLE);
+            mCommentChangeMade = true;
 
-            Call addCommentCall = mVimeoService.addComment(mVideoId, commentPost);
-            mCalls.add(addCommentCall);
-            addCommentCall.enqueue(mAddCommentCallback);
+            // Shown right away, the outbox sends it once the device is online
+            Comment pendingComment = CommentOutbox.getInstance().post(mVideoId, comment);
+            mVideoCommentsAdapter.add(pendingComment, mVideoCommentsAdapter.getItemCount());
+            mCommentsRecyclerView.smoothScrollToPosition(mVideoCommentsAdapter.getItemCount());
+
+            mCommentEditText.setText("");
+            DisplayUtility.hideKeyboard(getActivity(), mCommentEditText);
         }
     }
     // endregion
@@ -189,6 +191,7 @@ public class VideoCommentsFragment extends BaseFragment implements VideoComments
                     Timber.e("Timeout occurred");
                     mIsLoading = false;
                     mLoadingImageView.setVisibility(View.GONE);
+                    showPendingComments();
 //
 //                    mErrorTextView.setText("Can't load data.\nCheck your network connection.");
 //                    mErrorLinearLayout.setVisibility(View.VISIBLE);
@@ -204,133 +207,6 @@ public class VideoCommentsFragment extends BaseFragment implements VideoComments
         }
     };
 
-
-    private Callback<Comment> mAddCommentCallback = new Callback<Comment>() {
-        @Override
-        public void onResponse(Response<Comment> response, Retrofit retrofit) {
-            mCommentChangeMade = true;
-
-            Timber.d("onResponse()");
-//            mLoadingImageView.setVisibility(View.GONE);
-
-            mSubmitCommentFrameLayout.setBackgroundColor(ContextCompat.getColor(getContext(), R.color.primary));
-            mSubmitCommentProgressBar.setVisibility(View.GONE);
-            mSubmitCommentImageView.setVisibility(View.VISIBLE);
-
-            mCommentEditText.setText("");
-            DisplayUtility.hideKeyboard(getActivity(), mCommentEditText);
-
-            if (response != null) {
-                if (response.isSuccess()) {
-                    Comment comment = response.body();
-                    mVideoCommentsAdapter.add(comment, mVideoCommentsAdapter.getItemCount()-1);
-                } else {
-                    com.squareup.okhttp.Response rawResponse = response.raw();
-                    if (rawResponse != null) {
-                        LogUtility.logFailedResponse(rawResponse);
-
-                        int code = rawResponse.code();
-                        switch (code) {
-                            case 500:
-//                                mErrorTextView.setText("Can't load data.\nCheck your network connection.");
-//                                mErrorLinearLayout.setVisibility(View.VISIBLE);
-                                break;
-                            default:
-                                break;
-                        }
-                    }
-                }
-            }
-        }
-
-        @Override
-        public void onFailure(Throwable t) {
-            if (t != null) {
-                String message = t.getMessage();
-                LogUtility.logFailure(t);
-
-                mSubmitCommentFrameLayout.setBackgroundColor(ContextCompat.getColor(getContext(), R.color.primary));
-                mSubmitCommentProgressBar.setVisibility(View.GONE);
-                mSubmitCommentImageView.setVisibility(View.VISIBLE);
-
-                mCommentEditText.setText("");
-                DisplayUtility.hideKeyboard(getActivity(), mCommentEditText);
-
-                if (t instanceof SocketTimeoutException || t instanceof UnknownHostException) {
-                    Timber.e("Timeout occurred");
-                    mIsLoading = false;
-//                    mLoadingImageView.setVisibility(View.GONE);
-//
-//                    mErrorTextView.setText("Can't load data.\nCheck your network connection.");
-//                    mErrorLinearLayout.setVisibility(View.VISIBLE);
-                } else if (t instanceof IOException) {
-                    if (message.equals("Canceled")) {
-                        Timber.e("onFailure() : Canceled");
-                    } else {
-                        mIsLoading = false;
-//                        mLoadingImageView.setVisibility(View.GONE);
-                    }
-                }
-            }
-        }
-    };
-
-    private Callback<Object> mDeleteCommentCallback = new Callback<Object>() {
-        @Override
-        public void onResponse(Response<Object> response, Retrofit retrofit) {
-            mCommentChangeMade = true;
-
-
-            if (response != null) {
-                if (response.isSuccess()) {
-                    Object object = response.body();
-                    Timber.d("");
-//                    mVideoCommentsAdapter.add(comment, mVideoCommentsAdapter.getItemCount()-1);
-                } else {
-                    com.squareup.okhttp.Response rawResponse = response.raw();
-                    if (rawResponse != null) {
-                        LogUtility.logFailedResponse(rawResponse);
-
-                        int code = rawResponse.code();
-                        switch (code) {
-                            case 500:
-//                                mErrorTextView.setText("Can't load data.\nCheck your network connection.");
-//                                mErrorLinearLayout.setVisibility(View.VISIBLE);
-                                break;
-                            default:
-                                break;
-                        }
-                    }
-                }
-            }
-        }
-
-        @Override
-        public void onFailure(Throwable t) {
-            if (t != null) {
-                String message = t.getMessage();
-                LogUtility.logFailure(t);
-
-                if (t instanceof SocketTimeoutException || t instanceof UnknownHostException) {
-                    Timber.e("Timeout occurred");
-                    mIsLoading = false;
-//                    mLoadingImageView.setVisibility(View.GONE);
-//
-//                    mErrorTextView.setText("Can't load data.\nCheck your network connection.");
-//                    mErrorLinearLayout.setVisibility(View.VISIBLE);
-                } else if (t instanceof IOException) {
-                    if (message.equals("Canceled")) {
-                        Timber.e("onFailure() : Canceled");
-                    } else {
-                        mIsLoading = false;
-//                        mLoadingImageView.setVisibility(View.GONE);
-                    }
-                }
-            }
-        }
-    };
-
-
 //    private Callback<Response> mDeleteCommentCallback = new Callback<Response>() {
 //        @Override
 //        public void success(Response response, Response response2) {
@@ -516,13 +392,10 @@ public class VideoCommentsFragment extends BaseFragment implements VideoComments
 
                     deleteCommentAlert.setPositiveButton("Yes", new DialogInterface.OnClickListener() {
                         public void onClick(DialogInterface dialog, int whichButton) {
-                            mVideoCommentsAdapter.remove(comment);
-                            mVideoCommentsAdapter.notifyDataSetChanged();
+                            mCommentChangeMade = true;
 
-                            Call deleteCommentCall = mVimeoService.deleteComment(mVideoId,
-                                    comment.getId());
-                            mCalls.add(deleteCommentCall);
-                            deleteCommentCall.enqueue(mDeleteCommentCallback);
+                            mVideoCommentsAdapter.remove(comment);
+                            CommentOutbox.getInstance().delete(mVideoId, comment);
                         }
                     });
 
@@ -554,17 +427,56 @@ public class VideoCommentsFragment extends BaseFragment implements VideoComments
         if (comments != null && comments.size() > 0) {
 
             Collections.reverse(comments);
-            mVideoCommentsAdapter.addAll(comments);
+            mVideoCommentsAdapter.addAll(getVisibleComments(comments));
             mCommentsRecyclerView.smoothScrollToPosition(mVideoCommentsAdapter.getItemCount());
 //
 //            mVideoCommentsAdapter.addAll(comments);
 
-            if (comments.size() >= PAGE_SIZE) {
+            Paging paging = mCommentsCollection.getPaging();
+            if (paging != null ? !TextUtils.isEmpty(paging.getNext()) : comments.size() >= PAGE_SIZE) {
 //                            mVideoCommentsAdapter.addLoading();
             } else {
                 mIsLastPage = true;
             }
         }
+
+        showPendingComments();
+    }
+
+    // Comments that have not reached the server yet go after the newest one
+    private void showPendingComments() {
+        List<Comment> pendingComments = CommentOutbox.getInstance().getPendingComments(mVideoId);
+        if (pendingComments.size() > 0) {
+            mVideoCommentsAdapter.addAll(pendingComments);
+            mCommentsRecyclerView.smoothScrollToPosition(mVideoCommentsAdapter.getItemCount());
+        }
+    }
+
+    // Leaves out the comments that are about to be deleted
+    private List<Comment> getVisibleComments(List<Comment> comments) {
+        List<Comment> visibleComments = new ArrayList<>(comments.size());
+        for (Comment comment : comments) {
+            if (!CommentOutbox.getInstance().isPendingDeletion(comment)) {
+                visibleComments.add(comment);
+            }
+        }
+        return visibleComments;
+    }
+    // endregion
+
+    // region Otto Methods
+    @Subscribe
+    public void onCommentPostedEvent(CommentPostedEvent event) {
+        if (event.getVideoId() != mVideoId || mVideoCommentsAdapter == null)
+            return;
+
+        Comment comment = event.getComment();
+        if (comment != null) {
+            mVideoCommentsAdapter.replace(event.getPendingComment(), comment);
+        } else {
+            // Rejected by the server
+            mVideoCommentsAdapter.remove(event.getPendingComment());
+        }
     }
     // endregion
 }
\ No newline at end of file
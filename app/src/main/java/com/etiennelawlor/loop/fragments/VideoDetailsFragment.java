@@ -38,6 +38,8 @@ import com.etiennelawlor.loop.analytics.EventLogger;
 import com.etiennelawlor.loop.helper.PreferencesHelper;
 import com.etiennelawlor.loop.models.AccessToken;
 import com.etiennelawlor.loop.network.ServiceGenerator;
+import com.etiennelawlor.loop.network.VideoConfigPrefetcher;
+import com.etiennelawlor.loop.network.VimeoPlayerService;
 import com.etiennelawlor.loop.network.VimeoService;
 import com.etiennelawlor.loop.network.models.response.Pictures;
 import com.etiennelawlor.loop.network.models.response.Size;
@@ -45,8 +47,9 @@ import com.etiennelawlor.loop.network.models.response.Video;
 import com.etiennelawlor.loop.network.models.response.VideosCollection;
 import com.etiennelawlor.loop.otto.BusProvider;
 import com.etiennelawlor.loop.otto.events.SearchPerformedEvent;
-import com.etiennelawlor.loop.otto.events.VideoLikedEvent;
-import com.etiennelawlor.loop.otto.events.WatchLaterEvent;
+import com.etiennelawlor.loop.realm.MutationQueue;
+import com.etiennelawlor.loop.realm.VideoStore;
+import com.etiennelawlor.loop.ui.PaginationController;
 import com.etiennelawlor.loop.utilities.LogUtility;
 import com.squareup.otto.Subscribe;
 
@@ -72,7 +75,8 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
         RelatedVideosAdapter.OnLikeClickListener,
         RelatedVideosAdapter.OnWatchLaterClickListener,
         RelatedVideosAdapter.OnCommentsClickListener,
-        RelatedVideosAdapter.OnInfoClickListener {
+        RelatedVideosAdapter.OnInfoClickListener,
+        PaginationController.Callbacks<Video> {
 
     // region Constants
     public static final int PAGE_SIZE = 30;
@@ -91,11 +95,10 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
     private String mTransitionName;
     private RelatedVideosAdapter mRelatedVideosAdapter;
     private VimeoService mVimeoService;
+    private VimeoPlayerService mVimeoPlayerService;
     private LinearLayoutManager mLayoutManager;
+    private PaginationController<Video> mPaginationController;
     private Long mVideoId = -1L;
-    private boolean mIsLastPage = false;
-    private int mCurrentPage = 1;
-    private boolean mIsLoading = false;
     private boolean mIsInfoExpanded = false;
     // endregion
 
@@ -115,40 +118,46 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
         }
     }
 
-    private RecyclerView.OnScrollListener mRecyclerViewOnScrollListener = new RecyclerView.OnScrollListener() {
+    private View.OnClickListener mReloadOnClickListener = new View.OnClickListener() {
         @Override
-        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
-            super.onScrollStateChanged(recyclerView, newState);
+        public void onClick(View v) {
+            mRelatedVideosAdapter.addLoading();
+            mPaginationController.retry();
         }
+    };
+    // endregion
 
+    // region Callbacks
+
+    private Callback<Video> mGetVideoCallback = new Callback<Video>() {
         @Override
-        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
-            super.onScrolled(recyclerView, dx, dy);
-            int visibleItemCount = mLayoutManager.getChildCount();
-            int totalItemCount = mLayoutManager.getItemCount();
-            int firstVisibleItemPosition = mLayoutManager.findFirstVisibleItemPosition();
-
-            if (!mIsLoading && !mIsLastPage) {
-                if ((visibleItemCount + firstVisibleItemPosition) >= totalItemCount
-                        && firstVisibleItemPosition >= 0
-                        && totalItemCount >= PAGE_SIZE) {
-                    loadMoreItems();
+        public void onResponse(Response<Video> response, Retrofit retrofit) {
+            if (response != null) {
+                if (response.isSuccess()) {
+                    Video video = response.body();
+                    if (video != null && isAdded()) {
+                        // Likes and watch later changes may not have reached the server yet
+                        MutationQueue.getInstance().applyPendingStates(video);
+                        mVideo = video;
+                        mRelatedVideosAdapter.setVideo(video);
+                    }
+                } else {
+                    com.squareup.okhttp.Response rawResponse = response.raw();
+                    if (rawResponse != null) {
+                        LogUtility.logFailedResponse(rawResponse);
+                    }
                 }
             }
         }
-    };
 
-    private View.OnClickListener mReloadOnClickListener = new View.OnClickListener() {
         @Override
-        public void onClick(View v) {
-            mCurrentPage -= 1;
-            mRelatedVideosAdapter.addLoading();
-            loadMoreItems();
+        public void onFailure(Throwable t) {
+            // The header keeps showing what came with the list row
+            if (t != null) {
+                LogUtility.logFailure(t);
+            }
         }
     };
-    // endregion
-
-    // region Callbacks
 
     private Callback<VideosCollection> mGetRelatedVideosFirstFetchCallback = new Callback<VideosCollection>() {
         @Override
@@ -157,18 +166,11 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
                 if (response.isSuccess()) {
                     VideosCollection videosCollection = response.body();
                     if (videosCollection != null) {
-                        List<Video> videos = videosCollection.getVideos();
-                        if (videos != null) {
-                            mRelatedVideosAdapter.addAll(videos);
-
-                            if (videos.size() >= PAGE_SIZE) {
-                                mRelatedVideosAdapter.addLoading();
-                            } else {
-                                mIsLastPage = true;
-                            }
-                        }
+                        mPaginationController.onPageLoaded(videosCollection);
                     }
                 } else {
+                    mPaginationController.onPageLoadFailed();
+
                     com.squareup.okhttp.Response rawResponse = response.raw();
                     if (rawResponse != null) {
                         LogUtility.logFailedResponse(rawResponse);
@@ -199,6 +201,7 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
 
         @Override
         public void onFailure(Throwable t) {
+            mPaginationController.onPageLoadFailed();
             if (t != null) {
                 String message = t.getMessage();
                 LogUtility.logFailure(t);
@@ -226,9 +229,6 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
     private Callback<VideosCollection> mGetRelatedVideosNextFetchCallback = new Callback<VideosCollection>() {
         @Override
         public void onResponse(Response<VideosCollection> response, Retrofit retrofit) {
-            mRelatedVideosAdapter.removeLoading();
-            mIsLoading = false;
-
             Timber.d("onResponse()");
             if (response != null) {
                 if (response.isSuccess()) {
@@ -236,19 +236,12 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
 
                     VideosCollection videosCollection = response.body();
                     if (videosCollection != null) {
-                        List<Video> videos = videosCollection.getVideos();
-                        if (videos != null) {
-                            Timber.d("onResponse() : Success : videos.size() - " + videos.size());
-                            mRelatedVideosAdapter.addAll(videos);
-
-                            if (videos.size() >= PAGE_SIZE) {
-                                mRelatedVideosAdapter.addLoading();
-                            } else {
-                                mIsLastPage = true;
-                            }
-                        }
+                        mPaginationController.onPageLoaded(videosCollection);
                     }
                 } else {
+                    mRelatedVideosAdapter.removeLoading();
+                    mPaginationController.onPageLoadFailed();
+
                     com.squareup.okhttp.Response rawResponse = response.raw();
                     if (rawResponse != null) {
                         LogUtility.logFailedResponse(rawResponse);
@@ -280,6 +273,7 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
         @Override
         public void onFailure(Throwable t) {
             mRelatedVideosAdapter.removeLoading();
+            mPaginationController.onPageLoadFailed();
             if (t != null) {
                 String message = t.getMessage();
                 LogUtility.logFailure(t);
@@ -298,329 +292,6 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
         }
     };
 
-    private Callback<Object> mLikeVideoCallback = new Callback<Object>() {
-        @Override
-        public void onResponse(Response<Object> response, Retrofit retrofit) {
-            if (response != null) {
-                if (response.isSuccess()) {
-                    Timber.d("callbackResponse");
-
-//                    Response callbackResponse = response.body();
-//                    if(callbackResponse != null){
-//                        Timber.d("callbackResponse");
-//                    }
-
-//                    VideosCollection videosCollection = response.body();
-//                    if (videosCollection != null) {
-//                        List<Video> videos = videosCollection.getVideos();
-//                        if (videos != null) {
-//                            mRelatedVideosAdapter.addAll(videos);
-//                            mRelatedVideosAdapter.addLoading();
-//                        }
-//                    }
-                    com.squareup.okhttp.Response rawResponse = response.raw();
-                    if (rawResponse != null) {
-                        String message = rawResponse.message();
-                        int code = rawResponse.code();
-                        Timber.d("onResponse() : message - " + message);
-                        Timber.d("onResponse() : code - " + code);
-
-                        switch (code) {
-                            case 204:
-                                // No Content
-                                BusProvider.getInstance().post(new VideoLikedEvent());
-
-                                Timber.d("mLikeVideoCallback() : duration - " + mVideo.getDuration());
-                                Timber.d("mLikeVideoCallback() : mVideoId - " + mVideoId);
-
-                                HashMap<String, Object> map = new HashMap<>();
-                                map.put(EventMapKeys.NAME, mVideo.getName());
-                                map.put(EventMapKeys.DURATION, mVideo.getDuration());
-                                map.put(EventMapKeys.VIDEO_ID, mVideoId);
-
-                                Event event = new Event(EventNames.VIDEO_LIKED, map);
-                                EventLogger.logEvent(event);
-
-                                break;
-                            case 400:
-                                // If the video is owned by the authenticated user
-                                break;
-                            case 403:
-                                // If the authenticated user is not allowed to like videos
-                                break;
-                        }
-                    }
-                } else {
-                    com.squareup.okhttp.Response rawResponse = response.raw();
-                    if (rawResponse != null) {
-                        LogUtility.logFailedResponse(rawResponse);
-
-                        int code = rawResponse.code();
-                        switch (code) {
-                            case 500:
-                                Timber.e("Display error message in place of load more");
-//                                mErrorTextView.setText("Can't load data.\nCheck your network connection.");
-//                                mErrorLinearLayout.setVisibility(View.VISIBLE);
-                                break;
-                            default:
-                                break;
-                        }
-                    }
-                }
-            }
-        }
-
-        @Override
-        public void onFailure(Throwable t) {
-            if (t != null) {
-                String message = t.getMessage();
-                LogUtility.logFailure(t);
-
-                if (t instanceof SocketTimeoutException || t instanceof UnknownHostException) {
-                    Timber.e("Timeout occurred");
-                } else if (t instanceof IOException) {
-                    if (message.equals("Canceled")) {
-                        Timber.e("onFailure() : Canceled");
-                    }
-                }
-            }
-        }
-    };
-
-    private Callback<Object> mUnlikeVideoCallback = new Callback<Object>() {
-        @Override
-        public void onResponse(Response<Object> response, Retrofit retrofit) {
-            if (response != null) {
-                if (response.isSuccess()) {
-                    Timber.d("callbackResponse");
-
-//                    Response callbackResponse = response.body();
-//                    if(callbackResponse != null){
-//                        Timber.d("callbackResponse");
-//                    }
-
-//                    VideosCollection videosCollection = response.body();
-//                    if (videosCollection != null) {
-//                        List<Video> videos = videosCollection.getVideos();
-//                        if (videos != null) {
-//                            mRelatedVideosAdapter.addAll(videos);
-//                            mRelatedVideosAdapter.addLoading();
-//                        }
-//                    }
-                    com.squareup.okhttp.Response rawResponse = response.raw();
-                    if (rawResponse != null) {
-                        String message = rawResponse.message();
-                        int code = rawResponse.code();
-                        Timber.d("onResponse() : message - " + message);
-                        Timber.d("onResponse() : code - " + code);
-
-                        switch (code) {
-                            case 204:
-                                // No Content
-                                BusProvider.getInstance().post(new VideoLikedEvent());
-
-                                HashMap<String, Object> map = new HashMap<>();
-                                map.put(EventMapKeys.NAME, mVideo.getName());
-                                map.put(EventMapKeys.DURATION, mVideo.getDuration());
-                                map.put(EventMapKeys.VIDEO_ID, mVideoId);
-
-                                Event event = new Event(EventNames.VIDEO_DISLIKED, map);
-                                EventLogger.logEvent(event);
-
-                                break;
-                            case 403:
-                                // If the authenticated user is not allowed to like videos
-                                break;
-                        }
-                    }
-                } else {
-                    com.squareup.okhttp.Response rawResponse = response.raw();
-                    if (rawResponse != null) {
-                        LogUtility.logFailedResponse(rawResponse);
-
-                        int code = rawResponse.code();
-                        switch (code) {
-                            case 500:
-                                Timber.e("Display error message in place of load more");
-//                                mErrorTextView.setText("Can't load data.\nCheck your network connection.");
-//                                mErrorLinearLayout.setVisibility(View.VISIBLE);
-                                break;
-                            default:
-                                break;
-                        }
-                    }
-                }
-            }
-        }
-
-        @Override
-        public void onFailure(Throwable t) {
-            if (t != null) {
-                String message = t.getMessage();
-                LogUtility.logFailure(t);
-
-                if (t instanceof SocketTimeoutException || t instanceof UnknownHostException) {
-                    Timber.e("Timeout occurred");
-                } else if (t instanceof IOException) {
-                    if (message.equals("Canceled")) {
-                        Timber.e("onFailure() : Canceled");
-                    }
-                }
-            }
-        }
-    };
-
-    private Callback<Object> mAddVideoToWatchLaterCallback = new Callback<Object>() {
-        @Override
-        public void onResponse(Response<Object> response, Retrofit retrofit) {
-            if (response != null) {
-                if (response.isSuccess()) {
-                    Timber.d("callbackResponse");
-
-//                    Response callbackResponse = response.body();
-//                    if(callbackResponse != null){
-//                        Timber.d("callbackResponse");
-//                    }
-
-//                    VideosCollection videosCollection = response.body();
-//                    if (videosCollection != null) {
-//                        List<Video> videos = videosCollection.getVideos();
-//                        if (videos != null) {
-//                            mRelatedVideosAdapter.addAll(videos);
-//                            mRelatedVideosAdapter.addLoading();
-//                        }
-//                    }
-                    com.squareup.okhttp.Response rawResponse = response.raw();
-                    if (rawResponse != null) {
-                        String message = rawResponse.message();
-                        int code = rawResponse.code();
-                        Timber.d("onResponse() : message - " + message);
-                        Timber.d("onResponse() : code - " + code);
-
-                        switch (code) {
-                            case 204:
-                                // No Content
-                                BusProvider.getInstance().post(new WatchLaterEvent());
-                                break;
-//                            case 400:
-//                                // If the video is owned by the authenticated user
-//                                break;
-//                            case 403:
-//                                // If the authenticated user is not allowed to like videos
-//                                break;
-                        }
-                    }
-                } else {
-                    com.squareup.okhttp.Response rawResponse = response.raw();
-                    if (rawResponse != null) {
-                        LogUtility.logFailedResponse(rawResponse);
-
-                        int code = rawResponse.code();
-                        switch (code) {
-                            case 500:
-                                Timber.e("Display error message in place of load more");
-//                                mErrorTextView.setText("Can't load data.\nCheck your network connection.");
-//                                mErrorLinearLayout.setVisibility(View.VISIBLE);
-                                break;
-                            default:
-                                break;
-                        }
-                    }
-                }
-            }
-        }
-
-        @Override
-        public void onFailure(Throwable t) {
-            if (t != null) {
-                String message = t.getMessage();
-                LogUtility.logFailure(t);
-
-                if (t instanceof SocketTimeoutException || t instanceof UnknownHostException) {
-                    Timber.e("Timeout occurred");
-                } else if (t instanceof IOException) {
-                    if (message.equals("Canceled")) {
-                        Timber.e("onFailure() : Canceled");
-                    }
-                }
-            }
-        }
-    };
-
-    private Callback<Object> mRemoveVideoFromWatchLaterCallback = new Callback<Object>() {
-        @Override
-        public void onResponse(Response<Object> response, Retrofit retrofit) {
-            if (response != null) {
-                if (response.isSuccess()) {
-                    Timber.d("callbackResponse");
-
-//                    Response callbackResponse = response.body();
-//                    if(callbackResponse != null){
-//                        Timber.d("callbackResponse");
-//                    }
-
-//                    VideosCollection videosCollection = response.body();
-//                    if (videosCollection != null) {
-//                        List<Video> videos = videosCollection.getVideos();
-//                        if (videos != null) {
-//                            mRelatedVideosAdapter.addAll(videos);
-//                            mRelatedVideosAdapter.addLoading();
-//                        }
-//                    }
-                    com.squareup.okhttp.Response rawResponse = response.raw();
-                    if (rawResponse != null) {
-                        String message = rawResponse.message();
-                        int code = rawResponse.code();
-                        Timber.d("onResponse() : message - " + message);
-                        Timber.d("onResponse() : code - " + code);
-
-                        switch (code) {
-                            case 204:
-                                // No Content
-                                BusProvider.getInstance().post(new WatchLaterEvent());
-                                break;
-//                            case 403:
-//                                // If the authenticated user is not allowed to like videos
-//                                break;
-                        }
-                    }
-                } else {
-                    com.squareup.okhttp.Response rawResponse = response.raw();
-                    if (rawResponse != null) {
-                        LogUtility.logFailedResponse(rawResponse);
-
-                        int code = rawResponse.code();
-                        switch (code) {
-                            case 500:
-                                Timber.e("Display error message in place of load more");
-//                                mErrorTextView.setText("Can't load data.\nCheck your network connection.");
-//                                mErrorLinearLayout.setVisibility(View.VISIBLE);
-                                break;
-                            default:
-                                break;
-                        }
-                    }
-                }
-            }
-        }
-
-        @Override
-        public void onFailure(Throwable t) {
-            if (t != null) {
-                String message = t.getMessage();
-                LogUtility.logFailure(t);
-
-                if (t instanceof SocketTimeoutException || t instanceof UnknownHostException) {
-                    Timber.e("Timeout occurred");
-                } else if (t instanceof IOException) {
-                    if (message.equals("Canceled")) {
-                        Timber.e("onFailure() : Canceled");
-                    }
-                }
-            }
-        }
-    };
-
     // endregion
 
     // region Constructors
@@ -653,6 +324,9 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
 
         if (getArguments() != null) {
             mVideo = (Video) getArguments().get("video");
+            if (mVideo != null) {
+                MutationQueue.getInstance().applyPendingStates(mVideo);
+            }
 //            mTransitionName = getArguments().getString("TRANSITION_KEY");
         }
 
@@ -661,6 +335,10 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
                 VimeoService.class,
                 VimeoService.BASE_URL,
                 token);
+        mVimeoPlayerService = ServiceGenerator.createService(
+                VimeoPlayerService.class,
+                VimeoPlayerService.BASE_URL,
+                token);
 
         setHasOptionsMenu(true);
     }
@@ -694,6 +372,8 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
             long id = mVideo.getId();
             if (id != -1L) {
                 mVideoId = id;
+                // Resolved while the user reads the details, so the player can start streaming right away
+                VideoConfigPrefetcher.getInstance().prefetch(mVimeoPlayerService, mVideoId);
 
                 mLayoutManager = new LinearLayoutManager(getActivity());
                 mVideosRecyclerView.setLayoutManager(mLayoutManager);
@@ -707,11 +387,14 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
                 mVideosRecyclerView.setAdapter(mRelatedVideosAdapter);
 
                 // Pagination
-                mVideosRecyclerView.addOnScrollListener(mRecyclerViewOnScrollListener);
+                mPaginationController = new PaginationController<>(mLayoutManager, PAGE_SIZE, this);
+                mVideosRecyclerView.addOnScrollListener(mPaginationController);
+
+                mPaginationController.loadFirstPage();
 
-                Call findRelatedVideosCall = mVimeoService.findRelatedVideos(mVideoId, mCurrentPage, PAGE_SIZE);
-                mCalls.add(findRelatedVideosCall);
-                findRelatedVideosCall.enqueue(mGetRelatedVideosFirstFetchCallback);
+                if (isPartial(mVideo)) {
+                    hydrateVideo();
+                }
             }
         }
 
@@ -830,9 +513,8 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
                     mRelatedVideosAdapter.setIsLikeOn(false);
                     imageView.setImageResource(R.drawable.ic_like_off);
 
-                    Call unlikeVideoCall = mVimeoService.unlikeVideo(String.valueOf(mVideoId));
-                    mCalls.add(unlikeVideoCall);
-                    unlikeVideoCall.enqueue(mUnlikeVideoCallback);
+                    MutationQueue.getInstance().enqueue(VideoStore.COLLECTION_LIKES, mVideo, false);
+                    logLikeEvent(EventNames.VIDEO_DISLIKED);
                 }
             });
             alertDialogBuilder.setNegativeButton("No", new DialogInterface.OnClickListener() {
@@ -845,9 +527,8 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
             mRelatedVideosAdapter.setIsLikeOn(true);
             imageView.setImageResource(R.drawable.ic_like_on);
 
-            Call likeVideoCall = mVimeoService.likeVideo(String.valueOf(mVideoId));
-            mCalls.add(likeVideoCall);
-            likeVideoCall.enqueue(mLikeVideoCallback);
+            MutationQueue.getInstance().enqueue(VideoStore.COLLECTION_LIKES, mVideo, true);
+            logLikeEvent(EventNames.VIDEO_LIKED);
         }
     }
     // endregion
@@ -863,9 +544,7 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
                     mRelatedVideosAdapter.setIsWatchLaterOn(false);
                     imageView.setImageResource(R.drawable.ic_watch_later_off);
 
-                    Call removeVideoFromWatchLaterCall = mVimeoService.removeVideoFromWatchLater(String.valueOf(mVideoId));
-                    mCalls.add(removeVideoFromWatchLaterCall);
-                    removeVideoFromWatchLaterCall.enqueue(mRemoveVideoFromWatchLaterCallback);
+                    MutationQueue.getInstance().enqueue(VideoStore.COLLECTION_WATCH_LATER, mVideo, false);
                 }
             });
             alertDialogBuilder.setNegativeButton("No", new DialogInterface.OnClickListener() {
@@ -878,9 +557,7 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
             mRelatedVideosAdapter.setIsWatchLaterOn(true);
             imageView.setImageResource(R.drawable.ic_watch_later_on);
 
-            Call addVideoToWatchLaterCall = mVimeoService.addVideoToWatchLater(String.valueOf(mVideoId));
-            mCalls.add(addVideoToWatchLaterCall);
-            addVideoToWatchLaterCall.enqueue(mAddVideoToWatchLaterCallback);
+            MutationQueue.getInstance().enqueue(VideoStore.COLLECTION_WATCH_LATER, mVideo, true);
         }
     }
     // endregion
@@ -912,6 +589,37 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
     }
     // endregion
 
+    // region PaginationController.Callbacks Methods
+    @Override
+    public void onLoadPage(int page, String link) {
+        Call findRelatedVideosCall;
+        if (TextUtils.isEmpty(link)) {
+            findRelatedVideosCall = mVimeoService.findRelatedVideos(mVideoId, page, PAGE_SIZE, VimeoService.LIST_ROW_FIELDS);
+        } else {
+            findRelatedVideosCall = mVimeoService.getVideosPage(link);
+        }
+        mCalls.add(findRelatedVideosCall);
+        findRelatedVideosCall.enqueue(page == 1 ? mGetRelatedVideosFirstFetchCallback : mGetRelatedVideosNextFetchCallback);
+    }
+
+    @Override
+    public void onAppendPage(int page, List<Video> videos, boolean isLastPage) {
+        mRelatedVideosAdapter.removeLoading();
+
+        if (page == 1) {
+            VideoConfigPrefetcher.getInstance().prefetch(mVimeoPlayerService, videos);
+        }
+
+        if (videos != null) {
+            mRelatedVideosAdapter.addAll(videos);
+        }
+
+        if (!isLastPage) {
+            mRelatedVideosAdapter.addLoading();
+        }
+    }
+    // endregion
+
     // region Otto Methods
     @Subscribe
     public void onSearchPerformed(SearchPerformedEvent event) {
@@ -923,6 +631,26 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
     // endregion
 
     // region Helper Methods
+    // Videos opened from a list only carry VimeoService.LIST_ROW_FIELDS, which leaves out the metadata
+    private boolean isPartial(Video video) {
+        return video.getMetadata() == null;
+    }
+
+    private void logLikeEvent(String eventName) {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put(EventMapKeys.NAME, mVideo.getName());
+        map.put(EventMapKeys.DURATION, mVideo.getDuration());
+        map.put(EventMapKeys.VIDEO_ID, mVideoId);
+
+        Event event = new Event(eventName, map);
+        EventLogger.logEvent(event);
+    }
+
+    private void hydrateVideo() {
+        Call getVideoCall = mVimeoService.getVideo(mVideoId, VimeoService.VIDEO_DETAILS_FIELDS);
+        mCalls.add(getVideoCall);
+        getVideoCall.enqueue(mGetVideoCallback);
+    }
 
     private void setUpVideoThumbnail() {
         Pictures pictures = mVideo.getPictures();
@@ -944,16 +672,6 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
         }
     }
 
-    private void loadMoreItems() {
-        mIsLoading = true;
-
-        mCurrentPage += 1;
-
-        Call findRelatedVideosCall = mVimeoService.findRelatedVideos(mVideoId, mCurrentPage, PAGE_SIZE);
-        mCalls.add(findRelatedVideosCall);
-        findRelatedVideosCall.enqueue(mGetRelatedVideosNextFetchCallback);
-    }
-
     private void launchSearchActivity(String query) {
         Intent intent = new Intent(getContext(), SearchableActivity.class);
         intent.setAction(Intent.ACTION_SEARCH);
@@ -971,7 +689,9 @@ public class VideoDetailsFragment extends BaseFragment implements RelatedVideosA
     }
 
     private void removeListeners() {
-        mVideosRecyclerView.removeOnScrollListener(mRecyclerViewOnScrollListener);
+        if (mPaginationController != null) {
+            mVideosRecyclerView.removeOnScrollListener(mPaginationController);
+        }
     }
     // endregion
 }
@@ -1,6 +1,7 @@
 package com.etiennelawlor.loop.fragments;
 
 import android.media.MediaPlayer;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.text.TextUtils;
@@ -14,27 +15,25 @@ import android.widget.MediaController;
 import android.widget.VideoView;
 
 import com.etiennelawlor.loop.R;
+import com.etiennelawlor.loop.analytics.PlaybackSession;
 import com.etiennelawlor.loop.helper.PreferencesHelper;
 import com.etiennelawlor.loop.models.VideoSavedState;
+import com.etiennelawlor.loop.network.MediaProxy;
 import com.etiennelawlor.loop.network.ServiceGenerator;
+import com.etiennelawlor.loop.network.VideoConfigPrefetcher;
 import com.etiennelawlor.loop.network.VimeoPlayerService;
 import com.etiennelawlor.loop.models.AccessToken;
-import com.etiennelawlor.loop.network.models.response.Files;
-import com.etiennelawlor.loop.network.models.response.H264;
-import com.etiennelawlor.loop.network.models.response.HLS;
-import com.etiennelawlor.loop.network.models.response.ProgressiveData;
-import com.etiennelawlor.loop.network.models.response.Request;
-import com.etiennelawlor.loop.network.models.response.VP6;
 import com.etiennelawlor.loop.network.models.response.VideoConfig;
-import com.etiennelawlor.loop.network.models.response.VideoFormat;
 import com.etiennelawlor.loop.otto.BusProvider;
+import com.etiennelawlor.loop.realm.VideoDownloader;
 import com.etiennelawlor.loop.ui.LoadingImageView;
 import com.etiennelawlor.loop.utilities.LogUtility;
+import com.etiennelawlor.loop.utilities.VideoConfigUtility;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
-import java.util.List;
 
 import butterknife.Bind;
 import butterknife.ButterKnife;
@@ -58,6 +57,7 @@ public class VideoPlayerFragment extends BaseFragment {
     private MediaController mMediaController;
     private VimeoPlayerService mVimeoPlayerService;
     private VideoSavedState mVideoSavedState;
+    private PlaybackSession mPlaybackSession;
 
     @Bind(R.id.vv)
     VideoView mVideoView;
@@ -73,14 +73,9 @@ public class VideoPlayerFragment extends BaseFragment {
                 if(response.isSuccess()){
                     VideoConfig videoConfig = response.body();
                     if (videoConfig != null) {
-                        mVideoUrl = getVideoUrl(videoConfig);
-                        Timber.d("onResponse() : videoUrl - " + mVideoUrl);
-
-                        if (!TextUtils.isEmpty(mVideoUrl)) {
-                            Timber.d("playVideo()");
-
-                            playVideo(mVideoUrl, 0);
-                        }
+                        VideoConfigPrefetcher.getInstance().put(mVideoId, videoConfig);
+                        mPlaybackSession.onConfigLoaded(PlaybackSession.SOURCE_NETWORK);
+                        playVideo(videoConfig);
                     }
                 } else {
                     com.squareup.okhttp.Response rawResponse = response.raw();
@@ -119,6 +114,49 @@ public class VideoPlayerFragment extends BaseFragment {
         }
     };
 
+    private MediaPlayer.OnInfoListener mOnInfoListener = new MediaPlayer.OnInfoListener() {
+        @Override
+        public boolean onInfo(MediaPlayer mp, int what, int extra) {
+            switch (what) {
+                case MediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START:
+                    mPlaybackSession.onFirstFrame();
+                    break;
+                case MediaPlayer.MEDIA_INFO_BUFFERING_START:
+                    mPlaybackSession.onBufferingStarted();
+                    break;
+                case MediaPlayer.MEDIA_INFO_BUFFERING_END:
+                    mPlaybackSession.onBufferingEnded();
+                    break;
+                default:
+                    break;
+            }
+            return false;
+        }
+    };
+
+    private MediaPlayer.OnSeekCompleteListener mOnSeekCompleteListener = new MediaPlayer.OnSeekCompleteListener() {
+        @Override
+        public void onSeekComplete(MediaPlayer mp) {
+            mPlaybackSession.onSeekCompleted();
+        }
+    };
+
+    private MediaPlayer.OnErrorListener mOnErrorListener = new MediaPlayer.OnErrorListener() {
+        @Override
+        public boolean onError(MediaPlayer mp, int what, int extra) {
+            mPlaybackSession.onError(what, extra);
+            // Not handled, so VideoView still shows its error dialog
+            return false;
+        }
+    };
+
+    private MediaPlayer.OnCompletionListener mOnCompletionListener = new MediaPlayer.OnCompletionListener() {
+        @Override
+        public void onCompletion(MediaPlayer mp) {
+            mPlaybackSession.onPause();
+        }
+    };
+
     // endregion
 
     // region Constructors
@@ -153,6 +191,9 @@ public class VideoPlayerFragment extends BaseFragment {
             mVideoId = getArguments().getLong("video_id");
         }
 
+        // Lives as long as the fragment, which is retained across configuration changes
+        mPlaybackSession = new PlaybackSession(mVideoId);
+
         AccessToken token = PreferencesHelper.getAccessToken(getActivity());
         mVimeoPlayerService = ServiceGenerator.createService(
                 VimeoPlayerService.class,
@@ -175,7 +216,13 @@ public class VideoPlayerFragment extends BaseFragment {
     public void onViewCreated(View view, Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
-        mMediaController = new MediaController(getActivity());
+        mMediaController = new MediaController(getActivity()) {
+            @Override
+            public void setMediaPlayer(MediaPlayerControl player) {
+                // The VideoView attaches itself again each time it opens the video, so wrap it here
+                super.setMediaPlayer(mPlaybackSession.wrap(player));
+            }
+        };
         mMediaController.setAnchorView(mVideoView);
         mMediaController.setMediaPlayer(mVideoView);
         mVideoView.setMediaController(mMediaController);
@@ -186,11 +233,26 @@ public class VideoPlayerFragment extends BaseFragment {
         if(videoSavedState != null && !TextUtils.isEmpty(videoSavedState.getVideoUrl())){
             String videoUrl = videoSavedState.getVideoUrl();
             int currentPosition = videoSavedState.getCurrentPosition();
+            mPlaybackSession.onConfigLoaded(PlaybackSession.SOURCE_SAVED_STATE);
             playVideo(videoUrl, currentPosition);
         } else {
-            Call getVideoConfigCall = mVimeoPlayerService.getVideoConfig(mVideoId);
-            mCalls.add(getVideoConfigCall);
-            getVideoConfigCall.enqueue(mGetVideoConfigCallback);
+            File file = VideoDownloader.getInstance().getLocalFile(mVideoId);
+            VideoConfig videoConfig = file == null ? VideoConfigPrefetcher.getInstance().getVideoConfig(mVideoId) : null;
+            if (file != null) {
+                // Downloaded for offline playback, no need for the network
+                mVideoUrl = file.getPath();
+                mPlaybackSession.onConfigLoaded(PlaybackSession.SOURCE_OFFLINE);
+                mPlaybackSession.onUrlSelected(PlaybackSession.RENDITION_OFFLINE);
+                playVideo(mVideoUrl, 0);
+            } else if (videoConfig != null) {
+                mPlaybackSession.onConfigLoaded(PlaybackSession.SOURCE_PREFETCH);
+                playVideo(videoConfig);
+            } else {
+                mPlaybackSession.onConfigRequested();
+                Call getVideoConfigCall = mVimeoPlayerService.getVideoConfig(mVideoId);
+                mCalls.add(getVideoConfigCall);
+                getVideoConfigCall.enqueue(mGetVideoConfigCallback);
+            }
         }
     }
 
@@ -213,6 +275,8 @@ public class VideoPlayerFragment extends BaseFragment {
             setVideoSavedState(videoSavedState);
         }
 
+        mPlaybackSession.onPause();
+
         if (mVideoView.isPlaying())
             mVideoView.suspend();
     }
@@ -230,6 +294,7 @@ public class VideoPlayerFragment extends BaseFragment {
             mVideoView.stopPlayback();
 //            mVideoView.setVisibility(View.GONE);
         }
+        mPlaybackSession.end();
     }
     // endregion
 
@@ -296,159 +361,46 @@ public class VideoPlayerFragment extends BaseFragment {
                 });
     }
 
-    private String getVideoUrl(VideoConfig videoConfig) {
-        String videoUrl = "";
-
-        if (videoConfig != null) {
-            Request request = videoConfig.getRequest();
-            if (request != null) {
-                Files files = request.getFiles();
-                if (files != null) {
-                    H264 h264 = files.getH264();
-                    HLS hls = files.getHls();
-                    VP6 vp6 = files.getVp6();
-                    List<ProgressiveData> progressiveDataList = files.getProgressive();
-
-                    String progressiveDataUrl = getProgressiveDataUrl(progressiveDataList);
-                    String h264VideoUrl = getH264VideoUrl(h264);
-                    String vp6VideoUrl = getVP6VideoUrl(vp6);
-                    String hlsVideoUrl = getHLSVideoUrl(hls);
-
-                    if (!TextUtils.isEmpty(progressiveDataUrl)) {
-                        videoUrl = progressiveDataUrl;
-                    } else if (!TextUtils.isEmpty(h264VideoUrl)) {
-                        videoUrl = h264VideoUrl;
-                    } else if (!TextUtils.isEmpty(vp6VideoUrl)) {
-                        videoUrl = vp6VideoUrl;
-                    } else if (!TextUtils.isEmpty(hlsVideoUrl)) {
-                        videoUrl = hlsVideoUrl;
-                    }
-                }
-            }
-        }
-
-        return videoUrl;
-    }
-
-    private String getHLSVideoUrl(HLS hls) {
-        String videoUrl = "";
-        if (hls != null) {
-            String url = hls.getUrl();
-            videoUrl = url;
-        }
-        return videoUrl;
-    }
-
-    private String getProgressiveDataUrl(List<ProgressiveData> progressiveDataList){
-        String progressiveDataUrl = "";
-
-        String progessiveData270pUrl = "";
-        String progessiveData360pUrl = "";
-        String progessiveData1080pUrl = "";
-
-        for(ProgressiveData progressiveData : progressiveDataList){
-            String quality = progressiveData.getQuality();
-            switch (quality) {
-                case "1080p":
-                    progessiveData1080pUrl = progressiveData.getUrl();
-                    break;
-                case "360p":
-                    progessiveData360pUrl = progressiveData.getUrl();
-                    break;
-                case "270p":
-                    progessiveData270pUrl = progressiveData.getUrl();
-                    break;
-            }
-        }
+    private void playVideo(VideoConfig videoConfig) {
+        mPlaybackSession.onUrlSelectionStarted();
+        mVideoUrl = VideoConfigUtility.getVideoUrl(videoConfig);
+        mPlaybackSession.onUrlSelected(VideoConfigUtility.getRendition(videoConfig, mVideoUrl));
+        Timber.d("playVideo() : videoUrl - " + mVideoUrl);
 
-        if(!TextUtils.isEmpty(progessiveData1080pUrl)){
-            progressiveDataUrl = progessiveData1080pUrl;
-        } else if(!TextUtils.isEmpty(progessiveData360pUrl)){
-            progressiveDataUrl = progessiveData360pUrl;
-        } else if(!TextUtils.isEmpty(progessiveData270pUrl)){
-            progressiveDataUrl = progessiveData270pUrl;
+        if (!TextUtils.isEmpty(mVideoUrl)) {
+            playVideo(mVideoUrl, 0);
         }
-
-        return progressiveDataUrl;
-    }
-
-    private String getH264VideoUrl(H264 h264) {
-        String videoUrl = "";
-        if (h264 != null) {
-
-            VideoFormat hdVideoFormat = h264.getHd();
-            VideoFormat sdVideoFormat = h264.getSd();
-            VideoFormat mobileVideoFormat = h264.getMobile();
-
-            int width = -1;
-            int height = -1;
-            if (hdVideoFormat != null) {
-                videoUrl = hdVideoFormat.getUrl();
-                width = hdVideoFormat.getWidth();
-                height = hdVideoFormat.getHeight();
-            } else if (sdVideoFormat != null) {
-                videoUrl = sdVideoFormat.getUrl();
-                width = sdVideoFormat.getWidth();
-                height = sdVideoFormat.getHeight();
-            } else if (mobileVideoFormat != null) {
-                videoUrl = mobileVideoFormat.getUrl();
-                width = mobileVideoFormat.getWidth();
-                height = mobileVideoFormat.getHeight();
-            }
-
-            Timber.d(String.format("mGetVideoConfigCallback : url - %s", videoUrl));
-            Timber.d(String.format("mGetVideoConfigCallback : width - %d : height - %d", width, height));
-        }
-
-        return videoUrl;
-    }
-
-    private String getVP6VideoUrl(VP6 vp6) {
-        String videoUrl = "";
-        if (vp6 != null) {
-
-            VideoFormat hdVideoFormat = vp6.getHd();
-            VideoFormat sdVideoFormat = vp6.getSd();
-            VideoFormat mobileVideoFormat = vp6.getMobile();
-
-            int width = -1;
-            int height = -1;
-            if (hdVideoFormat != null) {
-                videoUrl = hdVideoFormat.getUrl();
-                width = hdVideoFormat.getWidth();
-                height = hdVideoFormat.getHeight();
-            } else if (sdVideoFormat != null) {
-                videoUrl = sdVideoFormat.getUrl();
-                width = sdVideoFormat.getWidth();
-                height = sdVideoFormat.getHeight();
-            } else if (mobileVideoFormat != null) {
-                videoUrl = mobileVideoFormat.getUrl();
-                width = mobileVideoFormat.getWidth();
-                height = mobileVideoFormat.getHeight();
-            }
-
-            Timber.d(String.format("mGetVideoConfigCallback : url - %s", videoUrl));
-            Timber.d(String.format("mGetVideoConfigCallback : width - %d : height - %d", width, height));
-        }
-
-        return videoUrl;
     }
 
     private void playVideo(String videoUrl, int currentPosition) {
-        mVideoView.setVideoPath(videoUrl);
+        mPlaybackSession.onPrepareStarted();
+        // Through the local proxy, so replays, seeks back and resumes are served from the disk cache
+        mVideoView.setVideoPath(MediaProxy.getInstance().getProxyUrl(videoUrl));
 
         mVideoView.requestFocus();
         mVideoView.seekTo(currentPosition);
 
         mVideoView.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
             @Override
-            public void onPrepared(MediaPlayer arg0) {
+            public void onPrepared(MediaPlayer mediaPlayer) {
+                mPlaybackSession.onPrepared();
+                // Set on the MediaPlayer, as VideoView only forwards info events from API 17
+                mediaPlayer.setOnInfoListener(mOnInfoListener);
+                mediaPlayer.setOnSeekCompleteListener(mOnSeekCompleteListener);
+
                 mLoadingImageView.setVisibility(View.GONE);
                 mVideoView.start();
+                mPlaybackSession.onPlay();
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                    // No MEDIA_INFO_VIDEO_RENDERING_START before API 17, starting is the closest
+                    mPlaybackSession.onFirstFrame();
+                }
 
 //                mVideoView.requestFocus();
             }
         });
+        mVideoView.setOnErrorListener(mOnErrorListener);
+        mVideoView.setOnCompletionListener(mOnCompletionListener);
     }
 
     public void setVideoSavedState(VideoSavedState videoSavedState) {
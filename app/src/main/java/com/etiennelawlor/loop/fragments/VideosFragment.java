@@ -3,6 +3,7 @@ package com.etiennelawlor.loop.fragments;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.design.widget.Snackbar;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.app.ActivityOptionsCompat;
@@ -12,6 +13,7 @@ import android.support.v7.app.AlertDialog;
 import android.support.v7.widget.DefaultItemAnimator;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -29,6 +31,9 @@ import com.etiennelawlor.loop.R;
 import com.etiennelawlor.loop.activities.VideoDetailsActivity;
 import com.etiennelawlor.loop.adapters.VideosAdapter;
 import com.etiennelawlor.loop.helper.PreferencesHelper;
+import com.etiennelawlor.loop.network.CachingCallback;
+import com.etiennelawlor.loop.network.FeedWarmer;
+import com.etiennelawlor.loop.network.ResponseCache;
 import com.etiennelawlor.loop.network.ServiceGenerator;
 import com.etiennelawlor.loop.network.VimeoService;
 import com.etiennelawlor.loop.models.AccessToken;
@@ -36,9 +41,11 @@ import com.etiennelawlor.loop.network.models.response.Video;
 import com.etiennelawlor.loop.network.models.response.VideosCollection;
 import com.etiennelawlor.loop.otto.BusProvider;
 import com.etiennelawlor.loop.ui.LoadingImageView;
+import com.etiennelawlor.loop.ui.PaginationController;
 import com.etiennelawlor.loop.utilities.LogUtility;
 
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
@@ -57,10 +64,12 @@ import timber.log.Timber;
 /**
  * Created by etiennelawlor on 5/23/15.
  */
-public class VideosFragment extends BaseFragment implements VideosAdapter.OnItemClickListener {
+public class VideosFragment extends BaseFragment implements VideosAdapter.OnItemClickListener, PaginationController.Callbacks<Video> {
 
     // region Constants
     public static final int PAGE_SIZE = 30;
+    public static final String DEFAULT_SORT_BY = "relevant";
+    public static final String DEFAULT_SORT_ORDER = "desc";
     // endregion
 
     // region Member Variables
@@ -77,64 +86,35 @@ public class VideosFragment extends BaseFragment implements VideosAdapter.OnItem
     @Bind(R.id.reload_btn)
     Button mReloadButton;
 
-    private boolean mIsLastPage = false;
-    private int mCurrentPage = 1;
     private int mSelectedSortByKey = 0;
     private int mSelectedSortOrderKey = 1;
-    private boolean mIsLoading = false;
-    private String mSortByValue = "relevant";
-    private String mSortOrderValue = "desc";
+    private String mSortByValue = DEFAULT_SORT_BY;
+    private String mSortOrderValue = DEFAULT_SORT_ORDER;
     private VideosAdapter mVideosAdapter;
 
     private String mQuery;
     private LinearLayoutManager mLayoutManager;
+    private PaginationController<Video> mPaginationController;
     private VimeoService mVimeoService;
+    private ResponseCache.Entry<VideosCollection> mCachedFirstPage;
+    private long mViewCreatedTime;
+    private boolean mIsFirstContentReported = false;
     // endregion
 
     // region Listeners
-    private RecyclerView.OnScrollListener mRecyclerViewOnScrollListener = new RecyclerView.OnScrollListener() {
-        @Override
-        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
-            super.onScrollStateChanged(recyclerView, newState);
-        }
-
-        @Override
-        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
-            super.onScrolled(recyclerView, dx, dy);
-            int visibleItemCount = mLayoutManager.getChildCount();
-            int totalItemCount = mLayoutManager.getItemCount();
-            int firstVisibleItemPosition = mLayoutManager.findFirstVisibleItemPosition();
-
-            if (!mIsLoading && !mIsLastPage) {
-                if ((visibleItemCount + firstVisibleItemPosition) >= totalItemCount
-                        && firstVisibleItemPosition >= 0
-                        && totalItemCount >= PAGE_SIZE) {
-                    loadMoreItems();
-                }
-            }
-        }
-    };
-
     @OnClick(R.id.reload_btn)
     public void onReloadButtonClicked() {
         mErrorLinearLayout.setVisibility(View.GONE);
         mLoadingImageView.setVisibility(View.VISIBLE);
 
-        Call findVideosCall = mVimeoService.findVideos(mQuery,
-                mSortByValue,
-                mSortOrderValue,
-                mCurrentPage,
-                PAGE_SIZE);
-        mCalls.add(findVideosCall);
-        findVideosCall.enqueue(mFindVideosFirstFetchCallback);
+        mPaginationController.loadFirstPage();
     }
 
     private View.OnClickListener mReloadOnClickListener = new View.OnClickListener() {
         @Override
         public void onClick(View v) {
-            mCurrentPage -= 1;
             mVideosAdapter.addLoading();
-            loadMoreItems();
+            mPaginationController.retry();
         }
     };
     // endregion
@@ -144,23 +124,35 @@ public class VideosFragment extends BaseFragment implements VideosAdapter.OnItem
         @Override
         public void onResponse(Response<VideosCollection> response, Retrofit retrofit) {
             mLoadingImageView.setVisibility(View.GONE);
-            mIsLoading = false;
+
+            ResponseCache.Entry<VideosCollection> cachedEntry = mCachedFirstPage;
+            mCachedFirstPage = null;
+
             if (response != null) {
+                if (cachedEntry != null && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    // Revalidation of a cached page that is already on screen, nothing changed
+                    return;
+                }
+
                 if (response.isSuccess()) {
+                    if (cachedEntry != null) {
+                        // Revalidation of a cached page that is already on screen
+                        if (!cachedEntry.isSameVersion(response.headers().get("ETag"), response.headers().get("Last-Modified"))) {
+                            swapFirstPage(cachedEntry, response.body());
+                        }
+                        return;
+                    }
+
                     VideosCollection videosCollection = response.body();
                     if (videosCollection != null) {
-                        List<Video> videos = videosCollection.getVideos();
-                        if (videos != null) {
-                            mVideosAdapter.addAll(videos);
-
-                            if (videos.size() >= PAGE_SIZE) {
-                                mVideosAdapter.addLoading();
-                            } else {
-                                mIsLastPage = true;
-                            }
-                        }
+                        mPaginationController.onPageLoaded(videosCollection);
+                        reportFirstContent(false);
+                    } else {
+                        mPaginationController.onPageLoadFailed();
                     }
-                } else {
+                } else if (cachedEntry == null) {
+                    mPaginationController.onPageLoadFailed();
+
                     com.squareup.okhttp.Response rawResponse = response.raw();
                     if (rawResponse != null) {
                         LogUtility.logFailedResponse(rawResponse);
@@ -182,6 +174,15 @@ public class VideosFragment extends BaseFragment implements VideosAdapter.OnItem
         @Override
         public void onFailure(Throwable t) {
             Timber.d("onFailure() : mQuery - " + mQuery);
+            if (mCachedFirstPage != null) {
+                // Keep showing the cached page
+                mCachedFirstPage = null;
+                LogUtility.logFailure(t);
+                return;
+            }
+
+            mPaginationController.onPageLoadFailed();
+
             if (t != null) {
                 String message = t.getMessage();
                 LogUtility.logFailure(t);
@@ -190,7 +191,6 @@ public class VideosFragment extends BaseFragment implements VideosAdapter.OnItem
                         || t instanceof UnknownHostException
                         || t instanceof SocketException) {
                     Timber.e("Timeout occurred");
-                    mIsLoading = false;
                     mLoadingImageView.setVisibility(View.GONE);
 
                     mErrorTextView.setText("Can't load data.\nCheck your network connection.");
@@ -210,24 +210,16 @@ public class VideosFragment extends BaseFragment implements VideosAdapter.OnItem
     private Callback<VideosCollection> mFindVideosNextFetchCallback = new Callback<VideosCollection>() {
         @Override
         public void onResponse(Response<VideosCollection> response, Retrofit retrofit) {
-            mVideosAdapter.removeLoading();
-            mIsLoading = false;
             if (response != null) {
                 if (response.isSuccess()) {
                     VideosCollection videosCollection = response.body();
                     if (videosCollection != null) {
-                        List<Video> videos = videosCollection.getVideos();
-                        if (videos != null) {
-                            mVideosAdapter.addAll(videos);
-
-                            if(videos.size() >= PAGE_SIZE){
-                                mVideosAdapter.addLoading();
-                            } else {
-                                mIsLastPage = true;
-                            }
-                        }
+                        mPaginationController.onPageLoaded(videosCollection);
                     }
                 } else {
+                    mVideosAdapter.removeLoading();
+                    mPaginationController.onPageLoadFailed();
+
                     com.squareup.okhttp.Response rawResponse = response.raw();
                     if (rawResponse != null) {
                         LogUtility.logFailedResponse(rawResponse);
@@ -259,6 +251,7 @@ public class VideosFragment extends BaseFragment implements VideosAdapter.OnItem
         @Override
         public void onFailure(Throwable t) {
             mVideosAdapter.removeLoading();
+            mPaginationController.onPageLoadFailed();
             if (t != null) {
                 String message = t.getMessage();
                 LogUtility.logFailure(t);
@@ -337,25 +330,45 @@ public class VideosFragment extends BaseFragment implements VideosAdapter.OnItem
         mVideosRecyclerView.setAdapter(mVideosAdapter);
 
         // Pagination
-        mVideosRecyclerView.addOnScrollListener(mRecyclerViewOnScrollListener);
+        mPaginationController = new PaginationController<>(mLayoutManager, PAGE_SIZE, this);
+        mVideosRecyclerView.addOnScrollListener(mPaginationController);
+
+        mViewCreatedTime = SystemClock.elapsedRealtime();
+        mIsFirstContentReported = false;
+        // A hit is instant when FeedWarmer already fetched this tab
+        ResponseCache.getInstance().get(getCacheKey(1),
+                VideosCollection.class,
+                new ResponseCache.OnEntryLoadedListener<VideosCollection>() {
+                    @Override
+                    public void onEntryLoaded(ResponseCache.Entry<VideosCollection> entry) {
+                        // The view may have been destroyed while reading from disk
+                        if (mVideosRecyclerView == null)
+                            return;
+
+                        if (entry == null) {
+                            mPaginationController.loadFirstPage();
+                            return;
+                        }
 
-        Call findVideosCall = mVimeoService.findVideos(mQuery,
-                mSortByValue,
-                mSortOrderValue,
-                mCurrentPage,
-                PAGE_SIZE);
-        Timber.d("mCalls.add() : mQuery - " + mQuery);
-        Timber.d("onViewCreated() : mCalls.add() : mCurrentPage - " + mCurrentPage);
+                        mLoadingImageView.setVisibility(View.GONE);
+                        mPaginationController.reset();
+                        mPaginationController.onPageLoaded(entry.getBody());
+                        reportFirstContent(true);
 
-        mCalls.add(findVideosCall);
-        findVideosCall.enqueue(mFindVideosFirstFetchCallback);
+                        if (entry.isStale()) {
+                            // Revalidate in the background while the cached page is on screen
+                            revalidateFirstPage(entry);
+                        }
+                    }
+                });
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
         removeListeners();
-        mCurrentPage = 1;
+        mPaginationController.reset();
+        mCachedFirstPage = null;
         ButterKnife.unbind(this);
     }
 
@@ -434,22 +447,96 @@ public class VideosFragment extends BaseFragment implements VideosAdapter.OnItem
     }
     // endregion
 
+    // region PaginationController.Callbacks Methods
+    @Override
+    public void onLoadPage(int page, String link) {
+        enqueueFindVideos(page, link, page == 1 ? mFindVideosFirstFetchCallback : mFindVideosNextFetchCallback);
+    }
+
+    @Override
+    public void onAppendPage(int page, List<Video> videos, boolean isLastPage) {
+        if (page > 1) {
+            mVideosAdapter.removeLoading();
+        }
+
+        if (videos != null) {
+            mVideosAdapter.addAll(videos);
+        }
+
+        if (!isLastPage) {
+            mVideosAdapter.addLoading();
+        }
+    }
+    // endregion
+
     // region Helper Methods
-    private void loadMoreItems() {
-        mIsLoading = true;
+    private void enqueueFindVideos(int page, String link, Callback<VideosCollection> callback) {
+        Call findVideosCall;
+        if (TextUtils.isEmpty(link)) {
+            findVideosCall = mVimeoService.findVideos(mQuery,
+                    mSortByValue,
+                    mSortOrderValue,
+                    page,
+                    PAGE_SIZE,
+                    VimeoService.LIST_ROW_FIELDS);
+        } else {
+            findVideosCall = mVimeoService.getVideosPage(link);
+        }
+        Timber.d("mCalls.add() : mQuery - " + mQuery);
+        Timber.d("enqueueFindVideos() : mCalls.add() : page - " + page);
+
+        mCalls.add(findVideosCall);
+        // Only the first page is ever read back from the cache
+        if (page == 1) {
+            callback = new CachingCallback<>(getCacheKey(page), ResponseCache.ENDPOINT_VIDEOS, callback);
+        }
+        findVideosCall.enqueue(callback);
+    }
 
-        mCurrentPage += 1;
+    // Conditional when the page has validators, so that an unchanged page costs a 304 instead of a full download
+    private void revalidateFirstPage(ResponseCache.Entry<VideosCollection> entry) {
+        mCachedFirstPage = entry;
 
-        Call findVideosCall = mVimeoService.findVideos(mQuery,
+        Call findVideosCall = mVimeoService.revalidateVideos(entry.getEtag(),
+                entry.getLastModified(),
+                mQuery,
                 mSortByValue,
                 mSortOrderValue,
-                mCurrentPage,
-                PAGE_SIZE);
-        Timber.d("mCalls.add() : mQuery - " + mQuery);
-        Timber.d("loadMoreItems() : mCalls.add() : mCurrentPage - " + mCurrentPage);
+                1,
+                PAGE_SIZE,
+                VimeoService.LIST_ROW_FIELDS);
 
         mCalls.add(findVideosCall);
-        findVideosCall.enqueue(mFindVideosNextFetchCallback);
+        findVideosCall.enqueue(new CachingCallback<>(getCacheKey(1), ResponseCache.ENDPOINT_VIDEOS, mFindVideosFirstFetchCallback));
+    }
+
+    /**
+     * Puts the revalidated first page in place of the cached one, as long as it is the only page on screen
+     * and the user has not scrolled. Otherwise the new page is only kept in the cache for next time.
+     */
+    private void swapFirstPage(ResponseCache.Entry<VideosCollection> cachedEntry, final VideosCollection videosCollection) {
+        if (videosCollection == null)
+            return;
+
+        ResponseCache.getInstance().compareBody(cachedEntry,
+                videosCollection,
+                new ResponseCache.OnBodyComparedListener() {
+                    @Override
+                    public void onBodyCompared(boolean isSameBody) {
+                        // The view may have been destroyed while comparing
+                        if (isSameBody || mVideosRecyclerView == null)
+                            return;
+
+                        boolean isFirstPageOnly = mPaginationController.getNextPage() == 2
+                                && !mPaginationController.isLoading();
+                        if (!isFirstPageOnly || mLayoutManager.findFirstVisibleItemPosition() > 0)
+                            return;
+
+                        mVideosAdapter.clear();
+                        mPaginationController.reset();
+                        mPaginationController.onPageLoaded(videosCollection);
+                    }
+                });
     }
 
     private void showSortDialog() {
@@ -487,15 +574,7 @@ public class VideosFragment extends BaseFragment implements VideosAdapter.OnItem
 
                 mLoadingImageView.setVisibility(View.VISIBLE);
 
-                mCurrentPage = 1;
-
-                Call findVideosCall = mVimeoService.findVideos(mQuery,
-                        mSortByValue,
-                        mSortOrderValue,
-                        mCurrentPage,
-                        PAGE_SIZE);
-                mCalls.add(findVideosCall);
-                findVideosCall.enqueue(mFindVideosFirstFetchCallback);
+                mPaginationController.loadFirstPage();
 
                 dialog.dismiss();
             }
@@ -514,6 +593,17 @@ public class VideosFragment extends BaseFragment implements VideosAdapter.OnItem
         return mQuery;
     }
 
+    private String getCacheKey(int page) {
+        return FeedWarmer.getCacheKey(mQuery, mSortByValue, mSortOrderValue, page, PAGE_SIZE);
+    }
+
+    private void reportFirstContent(boolean fromCache) {
+        if (!mIsFirstContentReported) {
+            mIsFirstContentReported = true;
+            FeedWarmer.getInstance().reportFirstContent(mQuery, fromCache, mViewCreatedTime);
+        }
+    }
+
     private void showReloadSnackbar(String message){
         Snackbar.make(getActivity().findViewById(android.R.id.content),
                 message,
@@ -524,7 +614,7 @@ public class VideosFragment extends BaseFragment implements VideosAdapter.OnItem
     }
 
     private void removeListeners(){
-        mVideosRecyclerView.removeOnScrollListener(mRecyclerViewOnScrollListener);
+        mVideosRecyclerView.removeOnScrollListener(mPaginationController);
     }
     // endregion
 }
@@ -2,6 +2,7 @@ package com.etiennelawlor.loop.fragments;
 
 import android.app.Activity;
 import android.app.SearchManager;
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.speech.RecognizerIntent;
@@ -20,12 +21,16 @@ import android.view.ViewGroup;
 
 import com.etiennelawlor.loop.R;
 import com.etiennelawlor.loop.activities.SearchableActivity;
+import com.etiennelawlor.loop.helper.PreferencesHelper;
+import com.etiennelawlor.loop.models.AccessToken;
+import com.etiennelawlor.loop.network.ServiceGenerator;
+import com.etiennelawlor.loop.network.VimeoService;
 import com.etiennelawlor.loop.otto.BusProvider;
 import com.etiennelawlor.loop.otto.events.HideSearchSuggestionsEvent;
 import com.etiennelawlor.loop.otto.events.SearchPerformedEvent;
 import com.etiennelawlor.loop.otto.events.ShowSearchSuggestionsEvent;
-import com.etiennelawlor.loop.realm.RealmUtility;
 import com.etiennelawlor.loop.ui.MaterialSearchView;
+import com.etiennelawlor.loop.ui.SuggestionPipeline;
 import com.squareup.otto.Subscribe;
 
 import java.util.ArrayList;
@@ -50,6 +55,18 @@ public class WatchNowFragment extends BaseFragment {
     TabLayout mTabLayout;
     @Bind(R.id.material_sv)
     MaterialSearchView mMaterialSearchView;
+
+    private VimeoService mVimeoService;
+    private SuggestionPipeline mSuggestionPipeline;
+    // endregion
+
+    // region Listeners
+    private SuggestionPipeline.OnSuggestionsLoadedListener mOnSuggestionsLoadedListener = new SuggestionPipeline.OnSuggestionsLoadedListener() {
+        @Override
+        public void onSuggestionsLoaded(List<String> suggestions) {
+            mMaterialSearchView.addSuggestions(suggestions);
+        }
+    };
     // endregion
 
     // region Callbacks
@@ -82,6 +99,12 @@ public class WatchNowFragment extends BaseFragment {
 //            mQuery = getArguments().getString("query");
         }
 
+        AccessToken token = PreferencesHelper.getAccessToken(getActivity());
+        mVimeoService = ServiceGenerator.createService(
+                VimeoService.class,
+                VimeoService.BASE_URL,
+                token);
+
         setHasOptionsMenu(true);
     }
 
@@ -114,6 +137,8 @@ public class WatchNowFragment extends BaseFragment {
 
         mTabLayout.setupWithViewPager(mViewPager);
         mTabLayout.setTabMode(TabLayout.MODE_SCROLLABLE);
+
+        mSuggestionPipeline = new SuggestionPipeline(mVimeoService, mOnSuggestionsLoadedListener);
     }
 
     @Override
@@ -131,6 +156,7 @@ public class WatchNowFragment extends BaseFragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        mSuggestionPipeline.cancel();
         ButterKnife.unbind(this);
     }
     // endregion
@@ -170,7 +196,7 @@ public class WatchNowFragment extends BaseFragment {
     public void onShowSearchSuggestions(ShowSearchSuggestionsEvent event) {
         String query = event.getQuery();
 
-        mMaterialSearchView.addSuggestions(RealmUtility.getSuggestions(query));
+        mSuggestionPipeline.request(query);
     }
 
     @Subscribe
@@ -197,18 +223,27 @@ public class WatchNowFragment extends BaseFragment {
     }
 
     // region Helper Methods
+    // One VideosFragment tab per query, also warmed up by FeedWarmer at launch
+    public static List<String> getTabQueries(Context context) {
+        List<String> queries = new ArrayList<>();
+        queries.add(context.getString(R.string.bodyboarding));
+        queries.add(context.getString(R.string.surfing));
+        queries.add(context.getString(R.string.wind_surfing));
+        queries.add(context.getString(R.string.snowboarding));
+        queries.add(context.getString(R.string.skiing));
+        queries.add(context.getString(R.string.skateboarding));
+        queries.add(context.getString(R.string.bmx));
+        queries.add(context.getString(R.string.motocross));
+        return queries;
+    }
+
     private void setupViewPager(ViewPager viewPager) {
 //        Adapter adapter = new Adapter(getActivity().getSupportFragmentManager());
         Adapter adapter = new Adapter(getChildFragmentManager());
 
-        adapter.addFragment(setUpFragment(getString(R.string.bodyboarding)), getString(R.string.bodyboarding));
-        adapter.addFragment(setUpFragment(getString(R.string.surfing)), getString(R.string.surfing));
-        adapter.addFragment(setUpFragment(getString(R.string.wind_surfing)), getString(R.string.wind_surfing));
-        adapter.addFragment(setUpFragment(getString(R.string.snowboarding)), getString(R.string.snowboarding));
-        adapter.addFragment(setUpFragment(getString(R.string.skiing)), getString(R.string.skiing));
-        adapter.addFragment(setUpFragment(getString(R.string.skateboarding)), getString(R.string.skateboarding));
-        adapter.addFragment(setUpFragment(getString(R.string.bmx)), getString(R.string.bmx));
-        adapter.addFragment(setUpFragment(getString(R.string.motocross)), getString(R.string.motocross));
+        for (String query : getTabQueries(getContext())) {
+            adapter.addFragment(setUpFragment(query), query);
+        }
         viewPager.setAdapter(adapter);
     }
 
@@ -0,0 +1,160 @@
+package com.etiennelawlor.loop.models;
+
+import android.text.TextUtils;
+
+import com.etiennelawlor.loop.network.models.response.Pictures;
+import com.etiennelawlor.loop.network.models.response.Size;
+import com.etiennelawlor.loop.network.models.response.Stats;
+import com.etiennelawlor.loop.network.models.response.User;
+import com.etiennelawlor.loop.network.models.response.Video;
+import com.etiennelawlor.loop.utilities.GzipUtility;
+import com.etiennelawlor.loop.utilities.RowFormatter;
+
+import java.util.List;
+
+/**
+ * Immutable, ready to bind projection of a {@link Video} for list rows.
+ *
+ * Only the text and thumbnail a row shows are kept as fields. The full Video is kept as gzipped JSON
+ * and only materialized through {@link #getVideo()}, e.g. when VideoDetailsActivity is opened.
+ *
+ * Created by etiennelawlor on 12/13/15.
+ */
+public class VideoRow {
+
+    // region Fields
+    private final String mTitle;
+    private final String mSubtitle;
+    private final String mThumbnailUrl;
+    private final String mDuration;
+    private final String mDetails;
+    private final long mCreatedTime;
+    private final String mViewCount;
+    // When the relative date in mDetails moves to its next bucket
+    private final long mDetailsExpiry;
+    private final byte[] mVideo;
+    // endregion
+
+    // region Constructors
+    private VideoRow(String title, String subtitle, String thumbnailUrl, String duration,
+                     long createdTime, String viewCount, long now, byte[] video) {
+        mTitle = title;
+        mSubtitle = subtitle;
+        mThumbnailUrl = thumbnailUrl;
+        mDuration = duration;
+        mCreatedTime = createdTime;
+        mViewCount = viewCount;
+        mDetails = RowFormatter.formatDetails(RowFormatter.formatRelativeDate(createdTime, now), viewCount);
+        mDetailsExpiry = RowFormatter.getRelativeDateExpiry(createdTime, now);
+        mVideo = video;
+    }
+    // endregion
+
+    // Row without a video, used for header and footer slots
+    public static VideoRow empty() {
+        return new VideoRow("", "", null, "", -1L, "", 0L, null);
+    }
+
+    // Does the formatting work, so call this off the main thread
+    public static VideoRow from(Video video, long now) {
+        return from(video, now, GzipUtility.toGzippedJson(video, Video.class));
+    }
+
+    // Rebuilds a row from getGzippedVideo(), off the main thread too. Empty when the video can not be read.
+    public static VideoRow from(byte[] gzippedVideo, long now) {
+        Video video = GzipUtility.fromGzippedJson(gzippedVideo, Video.class);
+        return video == null ? empty() : from(video, now, gzippedVideo);
+    }
+
+    private static VideoRow from(Video video, long now, byte[] gzippedVideo) {
+        Stats stats = video.getStats();
+        int viewCount = stats == null ? 0 : stats.getPlays();
+
+        return new VideoRow(getTitle(video),
+                getSubtitle(video),
+                getThumbnailUrl(video),
+                RowFormatter.formatDuration(video.getDuration()),
+                RowFormatter.parseTimestamp(video.getCreatedTime()),
+                viewCount > 0 ? RowFormatter.formatViewCount(viewCount) : "",
+                now,
+                gzippedVideo);
+    }
+
+    // Same row with its relative date brought up to date, call this off the main thread too
+    public VideoRow refresh(long now) {
+        return new VideoRow(mTitle, mSubtitle, mThumbnailUrl, mDuration, mCreatedTime, mViewCount, now, mVideo);
+    }
+
+    // region Getters
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public String getSubtitle() {
+        return mSubtitle;
+    }
+
+    public String getThumbnailUrl() {
+        return mThumbnailUrl;
+    }
+
+    public String getDuration() {
+        return mDuration;
+    }
+
+    public String getDetails() {
+        return mDetails;
+    }
+
+    // True once getDetails() shows a relative date that is out of date
+    public boolean isExpired(long now) {
+        return now >= mDetailsExpiry;
+    }
+
+    public boolean isEmpty() {
+        return mVideo == null;
+    }
+
+    // Inflates the full Video, returns null for empty rows
+    public Video getVideo() {
+        return GzipUtility.fromGzippedJson(mVideo, Video.class);
+    }
+
+    // The video as it is kept in memory, null for empty rows
+    public byte[] getGzippedVideo() {
+        return mVideo;
+    }
+    // endregion
+
+    // region Helper Methods
+    private static String getTitle(Video video) {
+        String name = video.getName();
+        return TextUtils.isEmpty(name) ? "" : name;
+    }
+
+    private static String getSubtitle(Video video) {
+        User user = video.getUser();
+        if (user != null) {
+            String userName = user.getName();
+            if (!TextUtils.isEmpty(userName)) {
+                return userName;
+            }
+        }
+        return "";
+    }
+
+    private static String getThumbnailUrl(Video video) {
+        Pictures pictures = video.getPictures();
+        if (pictures != null) {
+            List<Size> sizes = pictures.getSizes();
+            if (sizes != null && sizes.size() > 0) {
+                Size size = sizes.get(sizes.size() - 1);
+                if (size != null && !TextUtils.isEmpty(size.getLink())) {
+                    return size.getLink();
+                }
+            }
+        }
+        return null;
+    }
+    // endregion
+}
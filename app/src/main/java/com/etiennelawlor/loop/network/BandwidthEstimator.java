@@ -0,0 +1,302 @@
+package com.etiennelawlor.loop.network;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.etiennelawlor.loop.otto.BusProvider;
+import com.etiennelawlor.loop.otto.events.NetworkQualityChangedEvent;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Estimates the bandwidth and latency of the current link from the traffic that goes through OkHttp.
+ *
+ * {@link #getInterceptor()} is installed as a network interceptor on the shared client, so API calls,
+ * images and video bytes are all sampled, while responses served from the HTTP cache are not. Every
+ * response gives a latency sample (time to the response headers). Bodies of at least MIN_SAMPLE_SIZE
+ * that are read to the end also give a bandwidth sample: body bytes over the time spent inside read(),
+ * so that the time the consumer takes between reads does not count. Both are averaged over the
+ * samples of the last WINDOW.
+ *
+ * The bandwidth maps to a {@link Quality}. A new quality has to be seen for QUALITY_CONFIRMATIONS
+ * samples in a row before it is reported, then a {@link NetworkQualityChangedEvent} is posted on the
+ * main thread. Thread safe.
+ *
+ * Created by etiennelawlor on 12/24/15.
+ */
+public class BandwidthEstimator {
+
+    // region Constants
+    private static final long WINDOW = TimeUnit.SECONDS.toMillis(60);
+    private static final int MAX_SAMPLES = 50;
+    // Smaller bodies are mostly latency
+    private static final long MIN_SAMPLE_SIZE = 16 * 1024; // bytes
+    private static final int QUALITY_CONFIRMATIONS = 3;
+
+    private static final long POOR_BANDWIDTH = 150; // kbps
+    private static final long MODERATE_BANDWIDTH = 550; // kbps
+    private static final long GOOD_BANDWIDTH = 2000; // kbps
+    // endregion
+
+    // region Static Variables
+    private static final BandwidthEstimator sInstance = new BandwidthEstimator();
+    // endregion
+
+    // region Member Variables
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Deque<Sample> mBandwidthSamples = new ArrayDeque<>();
+    private final Deque<Sample> mLatencySamples = new ArrayDeque<>();
+    private Quality mQuality = Quality.UNKNOWN;
+    private Quality mCandidateQuality = Quality.UNKNOWN;
+    private int mCandidateCount = 0;
+    // endregion
+
+    // region Interfaces
+    public enum Quality {
+        UNKNOWN,
+        POOR,
+        MODERATE,
+        GOOD,
+        EXCELLENT
+    }
+    // endregion
+
+    // region Listeners
+    private final Interceptor mInterceptor = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            long requestTime = SystemClock.elapsedRealtime();
+            Response response = chain.proceed(chain.request());
+            long responseTime = SystemClock.elapsedRealtime();
+            addLatencySample(responseTime - requestTime);
+
+            ResponseBody body = response.body();
+            if (body == null)
+                return response;
+
+            return response.newBuilder()
+                    .body(new SamplingResponseBody(body))
+                    .build();
+        }
+    };
+    // endregion
+
+    // region Constructors
+    BandwidthEstimator() {
+    }
+    // endregion
+
+    public static BandwidthEstimator getInstance() {
+        return sInstance;
+    }
+
+    public Interceptor getInterceptor() {
+        return mInterceptor;
+    }
+
+    public synchronized Quality getQuality() {
+        return mQuality;
+    }
+
+    // Average over the window in kbps, -1 when there are no samples
+    public synchronized long getBandwidth() {
+        long now = SystemClock.elapsedRealtime();
+        evict(mBandwidthSamples, now);
+
+        long bytes = 0L;
+        long duration = 0L;
+        for (Sample sample : mBandwidthSamples) {
+            bytes += sample.mBytes;
+            duration += sample.mDuration;
+        }
+        return duration == 0L ? -1L : bytes * 8L / duration;
+    }
+
+    // Average time to the response headers over the window in ms, -1 when there are no samples
+    public synchronized long getLatency() {
+        long now = SystemClock.elapsedRealtime();
+        evict(mLatencySamples, now);
+
+        if (mLatencySamples.isEmpty())
+            return -1L;
+
+        long duration = 0L;
+        for (Sample sample : mLatencySamples) {
+            duration += sample.mDuration;
+        }
+        return duration / mLatencySamples.size();
+    }
+
+    // region Helper Methods
+    private synchronized void addLatencySample(long duration) {
+        long now = SystemClock.elapsedRealtime();
+        add(mLatencySamples, new Sample(now, 0L, duration), now);
+    }
+
+    private void addBandwidthSample(long bytes, long duration) {
+        Quality quality;
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            // Sub-millisecond reads come from a buffer, not the network
+            add(mBandwidthSamples, new Sample(now, bytes, Math.max(duration, 1L)), now);
+
+            quality = updateQuality(getBandwidth());
+        }
+
+        if (quality != null) {
+            postQualityChanged(quality);
+        }
+    }
+
+    // Returns the new quality once it is confirmed, null otherwise
+    private Quality updateQuality(long bandwidth) {
+        Quality quality = getQuality(bandwidth);
+        if (quality == mQuality) {
+            mCandidateCount = 0;
+            return null;
+        }
+
+        if (quality == mCandidateQuality) {
+            mCandidateCount++;
+        } else {
+            mCandidateQuality = quality;
+            mCandidateCount = 1;
+        }
+
+        if (mCandidateCount < QUALITY_CONFIRMATIONS && mQuality != Quality.UNKNOWN)
+            return null;
+
+        mQuality = quality;
+        mCandidateCount = 0;
+        return quality;
+    }
+
+    private static Quality getQuality(long bandwidth) {
+        if (bandwidth < 0L)
+            return Quality.UNKNOWN;
+        if (bandwidth < POOR_BANDWIDTH)
+            return Quality.POOR;
+        if (bandwidth < MODERATE_BANDWIDTH)
+            return Quality.MODERATE;
+        if (bandwidth < GOOD_BANDWIDTH)
+            return Quality.GOOD;
+        return Quality.EXCELLENT;
+    }
+
+    private void postQualityChanged(final Quality quality) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                BusProvider.getInstance().post(new NetworkQualityChangedEvent(quality));
+            }
+        });
+    }
+
+    private static void add(Deque<Sample> samples, Sample sample, long now) {
+        samples.addLast(sample);
+        if (samples.size() > MAX_SAMPLES) {
+            samples.removeFirst();
+        }
+        evict(samples, now);
+    }
+
+    private static void evict(Deque<Sample> samples, long now) {
+        while (!samples.isEmpty() && now - samples.peekFirst().mTime > WINDOW) {
+            samples.removeFirst();
+        }
+    }
+    // endregion
+
+    // region Inner Classes
+
+    private static class Sample {
+        private final long mTime;
+        private final long mBytes;
+        private final long mDuration; // ms
+
+        Sample(long time, long bytes, long duration) {
+            mTime = time;
+            mBytes = bytes;
+            mDuration = duration;
+        }
+    }
+
+    // Counts the body bytes as they are read and reports them once the body is read to the end
+    private class SamplingResponseBody extends ResponseBody {
+        private final ResponseBody mResponseBody;
+        private BufferedSource mBufferedSource;
+
+        SamplingResponseBody(ResponseBody responseBody) {
+            mResponseBody = responseBody;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mResponseBody.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return mResponseBody.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() throws IOException {
+            if (mBufferedSource == null) {
+                mBufferedSource = Okio.buffer(new SamplingSource(mResponseBody.source()));
+            }
+            return mBufferedSource;
+        }
+    }
+
+    private class SamplingSource extends ForwardingSource {
+        private long mBytes = 0L;
+        // Time spent waiting for the network inside read()
+        private long mReadNanos = 0L;
+        private boolean mIsReported = false;
+
+        SamplingSource(Source source) {
+            super(source);
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long startNanos = System.nanoTime();
+            long read = super.read(sink, byteCount);
+            mReadNanos += System.nanoTime() - startNanos;
+            if (read == -1L) {
+                report();
+            } else {
+                mBytes += read;
+            }
+            return read;
+        }
+
+        // Only at the end of the body. One closed early, e.g. a video the user stopped watching, is left out
+        private void report() {
+            if (mIsReported)
+                return;
+
+            mIsReported = true;
+            if (mBytes >= MIN_SAMPLE_SIZE) {
+                addBandwidthSample(mBytes, TimeUnit.NANOSECONDS.toMillis(mReadNanos));
+            }
+        }
+    }
+
+    // endregion
+}
@@ -0,0 +1,50 @@
+package com.etiennelawlor.loop.network;
+
+import java.net.HttpURLConnection;
+
+import retrofit.Callback;
+import retrofit.Response;
+import retrofit.Retrofit;
+
+/**
+ * Stores every successful response in the {@link ResponseCache} before handing it to the wrapped callback.
+ * A 304 answer to a conditional request marks the cached entry as fresh again.
+ *
+ * Created by etiennelawlor on 12/6/15.
+ */
+public class CachingCallback<T> implements Callback<T> {
+
+    // region Member Variables
+    private final String mKey;
+    private final String mEndpoint;
+    private final Callback<T> mCallback;
+    // endregion
+
+    // region Constructors
+    public CachingCallback(String key, String endpoint, Callback<T> callback) {
+        mKey = key;
+        mEndpoint = endpoint;
+        mCallback = callback;
+    }
+    // endregion
+
+    @Override
+    public void onResponse(Response<T> response, Retrofit retrofit) {
+        if (response != null && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            ResponseCache.getInstance().touch(mKey);
+        } else if (response != null && response.isSuccess() && response.body() != null) {
+            ResponseCache.getInstance().put(mKey,
+                    mEndpoint,
+                    response.body(),
+                    response.headers().get("ETag"),
+                    response.headers().get("Last-Modified"));
+        }
+
+        mCallback.onResponse(response, retrofit);
+    }
+
+    @Override
+    public void onFailure(Throwable t) {
+        mCallback.onFailure(t);
+    }
+}
@@ -0,0 +1,212 @@
+package com.etiennelawlor.loop.network;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.Response;
+import retrofit.Retrofit;
+import retrofit.http.GET;
+import timber.log.Timber;
+
+/**
+ * Collapses concurrent identical GET calls into a single network request.
+ *
+ * Every subscriber gets its own {@link Call} so that it can be added to BaseFragment.mCalls
+ * and cancelled as usual. The underlying request is only cancelled once the last subscriber
+ * has cancelled.
+ *
+ * Created by etiennelawlor on 12/5/15.
+ */
+public class CallCoalescer {
+
+    // region Static Variables
+    private static final CallCoalescer sInstance = new CallCoalescer();
+    // endregion
+
+    // region Member Variables
+    private final Map<String, InFlightCall> mInFlightCalls = new HashMap<>();
+    private int mRequestCount = 0;
+    private int mCoalescedCount = 0;
+    // endregion
+
+    // region Constructors
+    CallCoalescer() {
+    }
+    // endregion
+
+    public static CallCoalescer getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Wraps a Retrofit service so that every @GET method returns a coalescing {@link Call}.
+     * All other methods (PUT, POST, DELETE) are passed through untouched.
+     *
+     * Calls are only shared between services of the same serviceKey, which has to tell apart the
+     * base URL and the authorization of the service, so that a response is never handed to a caller
+     * with other credentials.
+     */
+    @SuppressWarnings("unchecked")
+    public <S> S coalesce(final String serviceKey, final Class<S> serviceClass, final S service) {
+        return (S) Proxy.newProxyInstance(serviceClass.getClassLoader(),
+                new Class<?>[]{serviceClass},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getDeclaringClass() == Object.class) {
+                            return method.invoke(this, args);
+                        }
+
+                        Object result;
+                        try {
+                            result = method.invoke(service, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+
+                        if (result instanceof Call && method.isAnnotationPresent(GET.class)) {
+                            String key = serviceKey + "#" + method.getName() + Arrays.toString(args);
+                            return new CoalescingCall<>(CallCoalescer.this, key, (Call<Object>) result);
+                        }
+
+                        return result;
+                    }
+                });
+    }
+
+    public synchronized int getRequestCount() {
+        return mRequestCount;
+    }
+
+    public synchronized int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    // region Helper Methods
+    @SuppressWarnings("unchecked")
+    synchronized <T> void subscribe(String key, Call<T> call, CoalescingCall<T> subscriber, Callback<T> callback) {
+        InFlightCall inFlightCall = mInFlightCalls.get(key);
+        if (inFlightCall != null) {
+            mCoalescedCount += 1;
+            Timber.d("subscribe() : coalesced %s (%d saved of %d)", key, mCoalescedCount, mRequestCount + mCoalescedCount);
+            inFlightCall.mSubscribers.put(subscriber, (Callback<Object>) (Callback<?>) callback);
+            return;
+        }
+
+        mRequestCount += 1;
+
+        final InFlightCall newInFlightCall = new InFlightCall(key, (Call<Object>) (Call<?>) call);
+        newInFlightCall.mSubscribers.put(subscriber, (Callback<Object>) (Callback<?>) callback);
+        mInFlightCalls.put(key, newInFlightCall);
+
+        newInFlightCall.mCall.enqueue(new Callback<Object>() {
+            @Override
+            public void onResponse(Response<Object> response, Retrofit retrofit) {
+                for (Callback<Object> cb : complete(newInFlightCall)) {
+                    cb.onResponse(response, retrofit);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                for (Callback<Object> cb : complete(newInFlightCall)) {
+                    cb.onFailure(t);
+                }
+            }
+        });
+    }
+
+    synchronized void unsubscribe(String key, CoalescingCall<?> subscriber) {
+        InFlightCall inFlightCall = mInFlightCalls.get(key);
+        if (inFlightCall == null || inFlightCall.mSubscribers.remove(subscriber) == null) {
+            return;
+        }
+
+        if (inFlightCall.mSubscribers.isEmpty()) {
+            mInFlightCalls.remove(key);
+            inFlightCall.mCall.cancel();
+        }
+    }
+
+    private synchronized List<Callback<Object>> complete(InFlightCall inFlightCall) {
+        if (mInFlightCalls.get(inFlightCall.mKey) == inFlightCall) {
+            mInFlightCalls.remove(inFlightCall.mKey);
+        }
+
+        List<Callback<Object>> callbacks = new ArrayList<>(inFlightCall.mSubscribers.values());
+        inFlightCall.mSubscribers.clear();
+        return callbacks;
+    }
+    // endregion
+
+    // region Inner Classes
+
+    private static class InFlightCall {
+        private final String mKey;
+        private final Call<Object> mCall;
+        // Insertion order keeps the callbacks firing in the order they were enqueued
+        private final Map<CoalescingCall<?>, Callback<Object>> mSubscribers = new LinkedHashMap<>();
+
+        InFlightCall(String key, Call<Object> call) {
+            mKey = key;
+            mCall = call;
+        }
+    }
+
+    static class CoalescingCall<T> implements Call<T> {
+        private final CallCoalescer mCoalescer;
+        private final String mKey;
+        private final Call<T> mCall;
+        private boolean mIsExecuted = false;
+
+        CoalescingCall(CallCoalescer coalescer, String key, Call<T> call) {
+            mCoalescer = coalescer;
+            mKey = key;
+            mCall = call;
+        }
+
+        @Override
+        public Response<T> execute() throws IOException {
+            // Synchronous calls are not shared
+            return mCall.execute();
+        }
+
+        @Override
+        public void enqueue(Callback<T> callback) {
+            synchronized (this) {
+                if (mIsExecuted) throw new IllegalStateException("Already executed");
+                mIsExecuted = true;
+            }
+            mCoalescer.subscribe(mKey, mCall, this, callback);
+        }
+
+        @Override
+        public void cancel() {
+            mCoalescer.unsubscribe(mKey, this);
+        }
+
+        @SuppressWarnings("CloneDoesntCallSuperClone")
+        @Override
+        public Call<T> clone() {
+            return new CoalescingCall<>(mCoalescer, mKey, mCall.clone());
+        }
+
+        @Override
+        public String toString() {
+            return "CoalescingCall{" + mKey + "}";
+        }
+    }
+
+    // endregion
+}
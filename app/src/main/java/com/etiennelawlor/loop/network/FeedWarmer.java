@@ -0,0 +1,166 @@
+package com.etiennelawlor.loop.network;
+
+import android.os.SystemClock;
+
+import com.etiennelawlor.loop.network.models.response.VideosCollection;
+import com.etiennelawlor.loop.utilities.LogUtility;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.Response;
+import retrofit.Retrofit;
+import timber.log.Timber;
+
+/**
+ * Fetches the first page of a set of video feeds (e.g. the WatchNowFragment tabs) right after launch,
+ * so that each tab finds its page in the {@link ResponseCache} instead of fetching it when it is first shown.
+ *
+ * At most MAX_CONCURRENT_REQUESTS feeds are fetched at a time, which leaves room in the OkHttp dispatcher
+ * for whatever the visible screen asks for, or one at a time when the {@link BandwidthEstimator} rates the
+ * link as poor. A tab that is opened while its feed is still in flight joins
+ * that request through the {@link CallCoalescer}. Must be used from the main thread.
+ *
+ * Created by etiennelawlor on 12/15/15.
+ */
+public class FeedWarmer {
+
+    // region Constants
+    private static final int MAX_CONCURRENT_REQUESTS = 3;
+    // endregion
+
+    // region Static Variables
+    private static final FeedWarmer sInstance = new FeedWarmer();
+    // endregion
+
+    // region Member Variables
+    private final Queue<String> mPendingQueries = new ArrayDeque<>();
+    // Query -> when its warm-up request was enqueued
+    private final Map<String, Long> mStartTimes = new HashMap<>();
+    private VimeoService mVimeoService;
+    private String mSort;
+    private String mDirection;
+    private int mPerPage;
+    private int mInFlightCount = 0;
+    private long mWarmUpStartTime = -1L;
+    // endregion
+
+    // region Constructors
+    FeedWarmer() {
+    }
+    // endregion
+
+    public static FeedWarmer getInstance() {
+        return sInstance;
+    }
+
+    public static String getCacheKey(String query, String sort, String direction, int page, int perPage) {
+        return ResponseCache.getKey(ResponseCache.ENDPOINT_VIDEOS, query, sort, direction, page, perPage);
+    }
+
+    /**
+     * Queues the first page of every query. Feeds that already have a fresh cached page are skipped.
+     */
+    public void warmUp(VimeoService vimeoService, List<String> queries, String sort, String direction, int perPage) {
+        mVimeoService = vimeoService;
+        mSort = sort;
+        mDirection = direction;
+        mPerPage = perPage;
+        mWarmUpStartTime = SystemClock.elapsedRealtime();
+
+        for (String query : queries) {
+            if (!mPendingQueries.contains(query) && !mStartTimes.containsKey(query)) {
+                mPendingQueries.add(query);
+            }
+        }
+
+        while (mInFlightCount < getMaxConcurrentRequests() && !mPendingQueries.isEmpty()) {
+            startNext();
+        }
+    }
+
+    /**
+     * Logs how long a feed took to show its first page, both from when its view was created and from
+     * the start of the warm-up.
+     *
+     * @param fromCache true when the page came straight from the cache
+     */
+    public void reportFirstContent(String query, boolean fromCache, long viewCreatedTime) {
+        long now = SystemClock.elapsedRealtime();
+        if (mWarmUpStartTime == -1L) {
+            Timber.d("reportFirstContent() : %s - %d ms (no warm-up)", query, now - viewCreatedTime);
+        } else {
+            Timber.d("reportFirstContent() : %s - %d ms since view created, %d ms since warm-up (%s)",
+                    query,
+                    now - viewCreatedTime,
+                    now - mWarmUpStartTime,
+                    fromCache ? "warm" : "cold");
+        }
+    }
+
+    // region Helper Methods
+    // Parallel requests only split a poor link between them
+    private static int getMaxConcurrentRequests() {
+        return BandwidthEstimator.getInstance().getQuality() == BandwidthEstimator.Quality.POOR
+                ? 1
+                : MAX_CONCURRENT_REQUESTS;
+    }
+
+    private void startNext() {
+        final String query = mPendingQueries.poll();
+        if (query == null)
+            return;
+
+        mInFlightCount += 1;
+        final String key = getCacheKey(query, mSort, mDirection, 1, mPerPage);
+        ResponseCache.getInstance().get(key,
+                VideosCollection.class,
+                new ResponseCache.OnEntryLoadedListener<VideosCollection>() {
+                    @Override
+                    public void onEntryLoaded(ResponseCache.Entry<VideosCollection> entry) {
+                        if (entry != null && !entry.isStale()) {
+                            onFinished();
+                            return;
+                        }
+
+                        mStartTimes.put(query, SystemClock.elapsedRealtime());
+                        // A stale page is only downloaded again when it has changed
+                        Call<VideosCollection> call = entry == null
+                                ? mVimeoService.findVideos(query, mSort, mDirection, 1, mPerPage, VimeoService.LIST_ROW_FIELDS)
+                                : mVimeoService.revalidateVideos(entry.getEtag(), entry.getLastModified(),
+                                        query, mSort, mDirection, 1, mPerPage, VimeoService.LIST_ROW_FIELDS);
+                        call.enqueue(new CachingCallback<>(key, ResponseCache.ENDPOINT_VIDEOS, new Callback<VideosCollection>() {
+                            @Override
+                            public void onResponse(Response<VideosCollection> response, Retrofit retrofit) {
+                                Timber.d("warmUp() : %s - %d ms, code - %d",
+                                        query,
+                                        SystemClock.elapsedRealtime() - mStartTimes.remove(query),
+                                        response == null ? -1 : response.code());
+                                onFinished();
+                            }
+
+                            @Override
+                            public void onFailure(Throwable t) {
+                                // The tab fetches the page itself when it is shown
+                                mStartTimes.remove(query);
+                                LogUtility.logFailure(t);
+                                onFinished();
+                            }
+                        }));
+                    }
+                });
+    }
+
+    private void onFinished() {
+        mInFlightCount -= 1;
+        while (mInFlightCount < getMaxConcurrentRequests() && !mPendingQueries.isEmpty()) {
+            startNext();
+        }
+    }
+    // endregion
+}
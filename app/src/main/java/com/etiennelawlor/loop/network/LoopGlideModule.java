@@ -0,0 +1,29 @@
+package com.etiennelawlor.loop.network;
+
+import android.content.Context;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.integration.okhttp.OkHttpUrlLoader;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.module.GlideModule;
+
+import java.io.InputStream;
+
+/**
+ * Loads images through the shared OkHttpClient instead of HttpUrlConnection, so they reuse its
+ * connection pool and are sampled by the BandwidthEstimator. Registered in the manifest.
+ *
+ * Created by etiennelawlor on 12/24/15.
+ */
+public class LoopGlideModule implements GlideModule {
+
+    @Override
+    public void applyOptions(Context context, GlideBuilder builder) {
+    }
+
+    @Override
+    public void registerComponents(Context context, Glide glide) {
+        glide.register(GlideUrl.class, InputStream.class, new OkHttpUrlLoader.Factory(ServiceGenerator.getBaseClient()));
+    }
+}
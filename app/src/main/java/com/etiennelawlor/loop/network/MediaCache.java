@@ -0,0 +1,265 @@
+package com.etiennelawlor.loop.network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import timber.log.Timber;
+
+/**
+ * Disk cache of video bytes, in blocks of BLOCK_SIZE.
+ *
+ * A video is identified by a key (see {@link MediaProxy}), its block n covers the bytes
+ * [n * BLOCK_SIZE, (n + 1) * BLOCK_SIZE) and is stored as the file "key.n". Only complete blocks, or
+ * the last block of a video, are stored. A "key.meta" file holds the length and content type of the
+ * video.
+ *
+ * Files are evicted least recently used first once the cache is over its max size, which is never more
+ * than a quarter of the free space. The order survives restarts through the files' last modified time.
+ * The directory is scanned on first use, which should be off the main thread. Plain Java so that it
+ * can run on the JVM. Thread safe.
+ *
+ * Created by etiennelawlor on 12/26/15.
+ */
+public class MediaCache {
+
+    // region Constants
+    public static final int BLOCK_SIZE = 512 * 1024; // bytes
+
+    // Never more than this fraction of the free space
+    private static final int FREE_SPACE_DIVISOR = 4;
+    private static final String META_EXTENSION = "meta";
+    private static final String TEMP_EXTENSION = "tmp";
+    private static final String LENGTH_PROPERTY = "length";
+    private static final String CONTENT_TYPE_PROPERTY = "contentType";
+    // endregion
+
+    // region Member Variables
+    private final File mDirectory;
+    private long mMaxSize;
+    // File name -> size, least recently used first
+    private final LinkedHashMap<String, Long> mFiles = new LinkedHashMap<>(16, 0.75f, true);
+    private long mSize = 0L;
+    private boolean mIsLoaded = false;
+    // endregion
+
+    // region Constructors
+    public MediaCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+    }
+    // endregion
+
+    public synchronized boolean hasBlock(String key, long block) {
+        load();
+        return mFiles.containsKey(getBlockName(key, block));
+    }
+
+    /**
+     * Returns the block opened for reading, or null when it is not cached. It is opened under the
+     * lock, so that trim() can't delete it first, and stays readable once it has been opened.
+     */
+    public synchronized InputStream openBlock(String key, long block) {
+        load();
+        String name = getBlockName(key, block);
+        if (mFiles.get(name) == null)
+            return null;
+
+        File file = new File(mDirectory, name);
+        try {
+            InputStream inputStream = new FileInputStream(file);
+            file.setLastModified(System.currentTimeMillis());
+            return inputStream;
+        } catch (FileNotFoundException e) {
+            remove(name);
+            return null;
+        }
+    }
+
+    public synchronized void putBlock(String key, long block, byte[] bytes, int byteCount) {
+        load();
+        write(getBlockName(key, block), bytes, byteCount);
+    }
+
+    // Returns -1 when the length is not known yet
+    public synchronized long getLength(String key) {
+        load();
+        Properties properties = readMeta(key);
+        if (properties == null)
+            return -1L;
+
+        try {
+            return Long.parseLong(properties.getProperty(LENGTH_PROPERTY, "-1"));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    // Returns null when the content type is not known yet
+    public synchronized String getContentType(String key) {
+        load();
+        Properties properties = readMeta(key);
+        return properties == null ? null : properties.getProperty(CONTENT_TYPE_PROPERTY);
+    }
+
+    public synchronized void putMeta(String key, long length, String contentType) {
+        load();
+        Properties properties = new Properties();
+        properties.setProperty(LENGTH_PROPERTY, String.valueOf(length));
+        if (contentType != null) {
+            properties.setProperty(CONTENT_TYPE_PROPERTY, contentType);
+        }
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try {
+            properties.store(byteArrayOutputStream, null);
+        } catch (IOException e) {
+            Timber.e(e, "putMeta() : unable to write %s", key);
+            return;
+        }
+        byte[] bytes = byteArrayOutputStream.toByteArray();
+        write(getMetaName(key), bytes, bytes.length);
+    }
+
+    public synchronized long getSize() {
+        load();
+        return mSize;
+    }
+
+    // region Helper Methods
+    private void load() {
+        if (mIsLoaded)
+            return;
+
+        mIsLoaded = true;
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Timber.e("load() : unable to create %s", mDirectory);
+            return;
+        }
+
+        // 0 when it can't be told
+        long usableSpace = mDirectory.getUsableSpace();
+        if (usableSpace > 0L) {
+            mMaxSize = Math.min(mMaxSize, usableSpace / FREE_SPACE_DIVISOR);
+        }
+
+        File[] files = mDirectory.listFiles();
+        if (files == null)
+            return;
+
+        // Oldest first, so the LinkedHashMap starts in LRU order
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsLastModified = lhs.lastModified();
+                long rhsLastModified = rhs.lastModified();
+                return lhsLastModified < rhsLastModified ? -1 : (lhsLastModified == rhsLastModified ? 0 : 1);
+            }
+        });
+
+        for (File file : files) {
+            if (file.getName().endsWith("." + TEMP_EXTENSION)) {
+                // Left over by a write that did not finish
+                file.delete();
+            } else {
+                mFiles.put(file.getName(), file.length());
+                mSize += file.length();
+            }
+        }
+        trim();
+    }
+
+    private Properties readMeta(String key) {
+        String name = getMetaName(key);
+        if (mFiles.get(name) == null)
+            return null;
+
+        Properties properties = new Properties();
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(new File(mDirectory, name));
+            properties.load(inputStream);
+            return properties;
+        } catch (IOException e) {
+            remove(name);
+            return null;
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
+    // Written to a temp file first, so that a crash never leaves a partial block behind
+    private void write(String name, byte[] bytes, int byteCount) {
+        File tempFile = new File(mDirectory, name + "." + TEMP_EXTENSION);
+        File file = new File(mDirectory, name);
+        OutputStream outputStream = null;
+        try {
+            if (!mDirectory.exists()) {
+                mDirectory.mkdirs();
+            }
+            outputStream = new FileOutputStream(tempFile);
+            outputStream.write(bytes, 0, byteCount);
+            outputStream.close();
+            outputStream = null;
+            if (!tempFile.renameTo(file))
+                throw new IOException("Unable to rename " + tempFile);
+
+            remove(name);
+            mFiles.put(name, (long) byteCount);
+            mSize += byteCount;
+            trim();
+        } catch (IOException e) {
+            Timber.e(e, "write() : unable to write %s", name);
+            tempFile.delete();
+        } finally {
+            closeQuietly(outputStream);
+        }
+    }
+
+    private void remove(String name) {
+        Long size = mFiles.remove(name);
+        if (size != null) {
+            mSize -= size;
+        }
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> iterator = mFiles.entrySet().iterator();
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            new File(mDirectory, entry.getKey()).delete();
+            mSize -= entry.getValue();
+            iterator.remove();
+        }
+    }
+
+    private static String getBlockName(String key, long block) {
+        return key + "." + block;
+    }
+
+    private static String getMetaName(String key) {
+        return key + "." + META_EXTENSION;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+    // endregion
+}
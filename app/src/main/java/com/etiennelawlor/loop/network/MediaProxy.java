@@ -0,0 +1,523 @@
+package com.etiennelawlor.loop.network;
+
+import com.etiennelawlor.loop.LoopApplication;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+import timber.log.Timber;
+
+/**
+ * Loopback HTTP server that sits between VideoView and the CDN and keeps the bytes it streams in a
+ * {@link MediaCache}.
+ *
+ * {@link #getProxyUrl(String)} turns a video URL into a 127.0.0.1 URL. Requests to it, including range
+ * requests for seeks, are served block by block: cached blocks from disk, missing ones from the CDN
+ * while they are written to the cache, so replays, seeks back and resumes after onPause cost nothing.
+ * {@link #prefetch(String)} caches the first PREFETCH_SIZE bytes of a video ahead of time.
+ *
+ * Any app on the device can reach the port, so a proxy URL carries a token drawn once per process,
+ * and only the videos handed out by getProxyUrl() are served. Requests for anything else get a 404.
+ *
+ * Videos are cached by the path of their URL, the signed query parameters change on every VideoConfig.
+ * HLS playlists reference their segments relatively, so they are not proxied. Plain Java apart from
+ * {@link #getInstance()}, so that it can run on the JVM against a fake CDN.
+ *
+ * Created by etiennelawlor on 12/26/15.
+ */
+public class MediaProxy {
+
+    // region Constants
+    private static final String CACHE_DIRECTORY = "media";
+    private static final long MAX_CACHE_SIZE = 200L * 1024L * 1024L; // 200MB
+    // About the first 2 seconds of the 1080p rendition VideoConfigUtility.getVideoUrl() picks first,
+    // 10 or so of a 360p one. Enough to start playing from the cache while the rest streams
+    private static final long PREFETCH_SIZE = 2L * MediaCache.BLOCK_SIZE;
+    private static final String DEFAULT_CONTENT_TYPE = "video/mp4";
+    private static final String HOST = "127.0.0.1";
+    private static final int TOKEN_SIZE = 16; // bytes
+    private static final String RANGE_PREFIX = "bytes=";
+    // endregion
+
+    // region Static Variables
+    private static MediaProxy sInstance;
+    // endregion
+
+    // region Member Variables
+    private final OkHttpClient mOkHttpClient;
+    private final MediaCache mMediaCache;
+    private final ExecutorService mConnectionExecutorService = Executors.newCachedThreadPool();
+    // One prefetch at a time, it should not compete with what is playing
+    private final ExecutorService mPrefetchExecutorService = Executors.newSingleThreadExecutor();
+    private final Set<String> mPrefetchKeys = Collections.synchronizedSet(new HashSet<String>());
+    // First path segment of every proxy URL
+    private final String mToken;
+    // Key -> latest URL of the videos handed out by getProxyUrl()
+    private final Map<String, String> mUrls = new HashMap<>();
+    private ServerSocket mServerSocket;
+    // endregion
+
+    // region Constructors
+    public MediaProxy(OkHttpClient okHttpClient, MediaCache mediaCache) {
+        mOkHttpClient = okHttpClient;
+        mMediaCache = mediaCache;
+
+        byte[] token = new byte[TOKEN_SIZE];
+        new SecureRandom().nextBytes(token);
+        mToken = ByteString.of(token).hex();
+    }
+    // endregion
+
+    // Cheap enough for the main thread, the cache directory is only scanned on first use
+    public static synchronized MediaProxy getInstance() {
+        if (sInstance == null) {
+            File directory = new File(LoopApplication.getCacheDirectory(), CACHE_DIRECTORY);
+
+            // Video bodies are too big for the HTTP cache, MediaCache keeps them instead
+            OkHttpClient okHttpClient = ServiceGenerator.getBaseClient().clone();
+            okHttpClient.setCache(null);
+            // The base client trusts any certificate, null verifies the CDN against the platform's CAs
+            okHttpClient.setSslSocketFactory(null);
+
+            sInstance = new MediaProxy(okHttpClient, new MediaCache(directory, MAX_CACHE_SIZE));
+        }
+        return sInstance;
+    }
+
+    public synchronized void start() throws IOException {
+        if (mServerSocket != null)
+            return;
+
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName(HOST));
+        final ServerSocket serverSocket = mServerSocket;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept(serverSocket);
+            }
+        }, "MediaProxy");
+        thread.setDaemon(true);
+        thread.start();
+        Timber.d("start() : listening on port %d", mServerSocket.getLocalPort());
+    }
+
+    public synchronized void stop() {
+        if (mServerSocket == null)
+            return;
+
+        try {
+            mServerSocket.close();
+        } catch (IOException e) {
+            Timber.e(e, "stop()");
+        }
+        mServerSocket = null;
+    }
+
+    /**
+     * Returns the URL to hand to the player for the given video URL. Falls back to the video URL
+     * itself when it can't be proxied.
+     */
+    public String getProxyUrl(String url) {
+        if (!isProxiable(url))
+            return url;
+
+        try {
+            start();
+            String key = getKey(url);
+            int port;
+            synchronized (this) {
+                // The signed query parameters change, the latest ones are used for the CDN
+                mUrls.put(key, url);
+                port = mServerSocket.getLocalPort();
+            }
+            return String.format(Locale.US, "http://%s:%d/%s/%s", HOST, port, mToken, key);
+        } catch (IOException e) {
+            Timber.e(e, "getProxyUrl() : unable to proxy %s", url);
+            return url;
+        }
+    }
+
+    // Caches the head of the video in the background, so that it starts from the cache when played
+    public void prefetch(final String url) {
+        if (!isProxiable(url))
+            return;
+
+        final String key = getKey(url);
+        if (!mPrefetchKeys.add(key))
+            return;
+
+        mPrefetchExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                Transfer transfer = new Transfer(key, url);
+                try {
+                    if (mMediaCache.hasBlock(key, 0L))
+                        return;
+
+                    transfer.open(0L);
+                    transfer.copy(0L, Math.min(PREFETCH_SIZE, transfer.mLength) - 1, null);
+                    Timber.d("prefetch() : %s - %d bytes", key, transfer.mNetworkBytes);
+                } catch (IOException e) {
+                    Timber.w("prefetch() : %s - %s", key, e.getMessage());
+                } finally {
+                    transfer.close();
+                    mPrefetchKeys.remove(key);
+                }
+            }
+        });
+    }
+
+    // region Helper Methods
+    private void accept(ServerSocket serverSocket) {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                mConnectionExecutorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    Timber.e(e, "accept()");
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        Transfer transfer = null;
+        try {
+            BufferedSource source = Okio.buffer(Okio.source(socket));
+            BufferedSink sink = Okio.buffer(Okio.sink(socket));
+
+            // e.g. GET /token/key HTTP/1.1
+            String[] requestLine = source.readUtf8LineStrict().split(" ");
+            String range = null;
+            for (String header = source.readUtf8LineStrict(); !header.isEmpty(); header = source.readUtf8LineStrict()) {
+                if (header.toLowerCase(Locale.US).startsWith("range:")) {
+                    range = header.substring("range:".length()).trim();
+                }
+            }
+
+            String key = requestLine.length < 2 ? null : getKey(requestLine[1], mToken);
+            String url;
+            synchronized (this) {
+                url = key == null ? null : mUrls.get(key);
+            }
+            if (url == null) {
+                writeStatus(sink, "404 Not Found");
+                return;
+            }
+
+            transfer = new Transfer(key, url);
+            long[] bounds = parseRange(range);
+            long start = bounds[0];
+            try {
+                // Suffix ranges are resolved once the length is known
+                transfer.open(start < 0L ? 0L : start);
+            } catch (IOException e) {
+                Timber.w("handle() : %s - %s", transfer.mKey, e.getMessage());
+                writeStatus(sink, "502 Bad Gateway");
+                return;
+            }
+
+            long length = transfer.mLength;
+            long end;
+            if (start < 0L) {
+                start = Math.max(0L, length - bounds[1]);
+                end = length - 1;
+            } else {
+                end = bounds[1] < 0L ? length - 1 : Math.min(bounds[1], length - 1);
+            }
+            if (start >= length || start > end) {
+                writeStatus(sink, "416 Requested Range Not Satisfiable");
+                return;
+            }
+
+            sink.writeUtf8(range == null ? "HTTP/1.1 200 OK\r\n" : "HTTP/1.1 206 Partial Content\r\n");
+            sink.writeUtf8("Content-Type: " + transfer.mContentType + "\r\n");
+            sink.writeUtf8("Accept-Ranges: bytes\r\n");
+            sink.writeUtf8("Content-Length: " + (end - start + 1) + "\r\n");
+            if (range != null) {
+                sink.writeUtf8("Content-Range: bytes " + start + "-" + end + "/" + length + "\r\n");
+            }
+            sink.writeUtf8("Connection: close\r\n\r\n");
+
+            if (!"HEAD".equals(requestLine[0])) {
+                transfer.copy(start, end, sink);
+            }
+            sink.flush();
+            Timber.d("handle() : %s - bytes %d-%d/%d, %d from the cache, %d from the network",
+                    transfer.mKey, start, end, length, transfer.mCacheBytes, transfer.mNetworkBytes);
+        } catch (IOException e) {
+            // Mostly the player closing the connection to seek
+            Timber.d("handle() : %s", e.getMessage());
+        } finally {
+            if (transfer != null) {
+                transfer.close();
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static void writeStatus(BufferedSink sink, String status) throws IOException {
+        sink.writeUtf8("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+        sink.flush();
+    }
+
+    private static boolean isProxiable(String url) {
+        if (url == null || url.isEmpty())
+            return false;
+
+        try {
+            // Local files, e.g. downloads, are played as they are
+            URI uri = new URI(url);
+            String scheme = uri.getScheme();
+            String path = uri.getPath();
+            return ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))
+                    && path != null
+                    && !path.endsWith(".m3u8");
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    // The path without the signed query parameters, which change on every VideoConfig
+    private static String getKey(String url) {
+        String path;
+        try {
+            path = new URI(url).getPath();
+        } catch (URISyntaxException e) {
+            path = url;
+        }
+        return ByteString.encodeUtf8(path).md5().hex();
+    }
+
+    // The key of a request target "/token/key", null when the token is not the given one
+    private static String getKey(String target, String token) {
+        String prefix = "/" + token + "/";
+        if (!target.startsWith(prefix))
+            return null;
+
+        return target.substring(prefix.length());
+    }
+
+    /**
+     * Returns {start, end} for "bytes=start-end" and "bytes=start-" (end -1), {-1, suffix length} for
+     * "bytes=-suffix", and {0, -1} for no or an unsupported range.
+     */
+    private static long[] parseRange(String range) {
+        long[] bounds = {0L, -1L};
+        if (range == null || !range.startsWith(RANGE_PREFIX) || range.contains(","))
+            return bounds;
+
+        String[] values = range.substring(RANGE_PREFIX.length()).split("-", -1);
+        try {
+            if (values.length == 2 && values[0].isEmpty()) {
+                bounds[0] = -1L;
+                bounds[1] = Long.parseLong(values[1].trim());
+            } else if (values.length == 2) {
+                bounds[0] = Long.parseLong(values[0].trim());
+                bounds[1] = values[1].trim().isEmpty() ? -1L : Long.parseLong(values[1].trim());
+            }
+        } catch (NumberFormatException e) {
+            bounds[0] = 0L;
+            bounds[1] = -1L;
+        }
+        return bounds;
+    }
+    // endregion
+
+    // region Inner Classes
+
+    // Copies a range of one video, block by block, from the cache or the CDN
+    private class Transfer {
+        private final String mKey;
+        private final String mUrl;
+        private long mLength = -1L;
+        private String mContentType;
+        private BufferedSource mUpstream;
+        private Response mUpstreamResponse;
+        private long mUpstreamPosition = -1L;
+        private byte[] mBlock;
+        private long mCacheBytes = 0L;
+        private long mNetworkBytes = 0L;
+
+        Transfer(String key, String url) {
+            mKey = key;
+            mUrl = url;
+        }
+
+        // Looks up the length and content type, from the CDN if the cache does not know them
+        void open(long position) throws IOException {
+            mLength = mMediaCache.getLength(mKey);
+            mContentType = mMediaCache.getContentType(mKey);
+            if (mLength == -1L) {
+                openUpstream(getBlockStart(position));
+            }
+            if (mContentType == null) {
+                mContentType = DEFAULT_CONTENT_TYPE;
+            }
+        }
+
+        // Copies [start, end] to the sink, which can be null to only fill the cache
+        void copy(long start, long end, BufferedSink sink) throws IOException {
+            long position = start;
+            while (position <= end) {
+                long block = position / MediaCache.BLOCK_SIZE;
+                long blockStart = block * MediaCache.BLOCK_SIZE;
+                int blockLength = (int) Math.min(MediaCache.BLOCK_SIZE, mLength - blockStart);
+                int from = (int) (position - blockStart);
+                int to = (int) Math.min(blockLength - 1, end - blockStart);
+
+                InputStream blockInputStream = mMediaCache.openBlock(mKey, block);
+                if (blockInputStream != null) {
+                    closeUpstream();
+                    BufferedSource blockSource = Okio.buffer(Okio.source(blockInputStream));
+                    try {
+                        if (sink != null) {
+                            blockSource.skip(from);
+                            sink.write(blockSource, to - from + 1);
+                        }
+                    } finally {
+                        blockSource.close();
+                    }
+                    mCacheBytes += to - from + 1;
+                } else {
+                    if (mUpstream == null || mUpstreamPosition != blockStart) {
+                        closeUpstream();
+                        openUpstream(blockStart);
+                    }
+                    readBlock(blockLength, from, to, sink);
+                    mMediaCache.putBlock(mKey, block, mBlock, blockLength);
+                }
+
+                position = blockStart + to + 1;
+            }
+        }
+
+        void close() {
+            closeUpstream();
+        }
+
+        // Reads the whole block, so it can be cached, and writes [from, to] of it as it arrives
+        private void readBlock(int blockLength, int from, int to, BufferedSink sink) throws IOException {
+            if (mBlock == null) {
+                mBlock = new byte[MediaCache.BLOCK_SIZE];
+            }
+
+            int read = 0;
+            while (read < blockLength) {
+                int count = mUpstream.read(mBlock, read, blockLength - read);
+                if (count == -1)
+                    throw new EOFException("Unexpected end of " + mKey);
+
+                int writeStart = Math.max(read, from);
+                int writeEnd = Math.min(read + count - 1, to);
+                if (sink != null && writeStart <= writeEnd) {
+                    sink.write(mBlock, writeStart, writeEnd - writeStart + 1);
+                    sink.flush();
+                }
+                read += count;
+            }
+            mUpstreamPosition += blockLength;
+            mNetworkBytes += blockLength;
+        }
+
+        private void openUpstream(long position) throws IOException {
+            Request request = new Request.Builder()
+                    .url(mUrl)
+                    .header("Range", RANGE_PREFIX + position + "-")
+                    .build();
+            mUpstreamResponse = mOkHttpClient.newCall(request).execute();
+
+            int code = mUpstreamResponse.code();
+            long length;
+            if (code == 206) {
+                // e.g. bytes 0-1023/146515
+                String contentRange = mUpstreamResponse.header("Content-Range");
+                int index = contentRange == null ? -1 : contentRange.lastIndexOf('/');
+                length = index == -1 ? -1L : parseLong(contentRange.substring(index + 1));
+            } else if (code == 200) {
+                length = mUpstreamResponse.body().contentLength();
+            } else {
+                closeUpstream();
+                throw new IOException("Unexpected code " + code + " for " + mKey);
+            }
+
+            mUpstream = mUpstreamResponse.body().source();
+            if (code == 200) {
+                // The CDN ignored the range
+                mUpstream.skip(position);
+            }
+            mUpstreamPosition = position;
+
+            if (length <= 0L) {
+                closeUpstream();
+                throw new IOException("Unknown length for " + mKey);
+            }
+            if (mLength == -1L) {
+                mLength = length;
+                String contentType = mUpstreamResponse.header("Content-Type");
+                if (contentType != null) {
+                    mContentType = contentType;
+                }
+                mMediaCache.putMeta(mKey, mLength, mContentType);
+            }
+        }
+
+        private void closeUpstream() {
+            if (mUpstreamResponse != null) {
+                try {
+                    mUpstreamResponse.body().close();
+                } catch (IOException ignored) {
+                }
+                mUpstreamResponse = null;
+            }
+            mUpstream = null;
+            mUpstreamPosition = -1L;
+        }
+
+        private long getBlockStart(long position) {
+            return (position / MediaCache.BLOCK_SIZE) * MediaCache.BLOCK_SIZE;
+        }
+
+        private long parseLong(String value) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return -1L;
+            }
+        }
+    }
+
+    // endregion
+}
@@ -0,0 +1,112 @@
+package com.etiennelawlor.loop.network;
+
+import android.text.TextUtils;
+
+import com.etiennelawlor.loop.network.models.response.PagedCollection;
+import com.etiennelawlor.loop.network.models.response.Paging;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of the pages of a Vimeo collection using the total, per_page and paging links of each response.
+ *
+ * The last page is known from the total (or from an empty next link), so no extra request is made
+ * on exact multiples of the page size. Only the links of the pages are kept, never their items: once a
+ * page is handed to an adapter, its WindowedList decides which pages stay resident. A page can be
+ * fetched again, in either direction, through the link remembered for it.
+ *
+ * Created by etiennelawlor on 12/10/15.
+ */
+public class Pager<T> {
+
+    // region Member Variables
+    private final int mPageSize;
+    // Links are tiny, so they are kept for every page we have heard of
+    private final Map<Integer, String> mLinks = new HashMap<>();
+    private int mPerPage;
+    private int mTotal = -1;
+    private int mLastPage = -1;
+    // endregion
+
+    // region Constructors
+    public Pager(int pageSize) {
+        mPageSize = pageSize;
+        mPerPage = pageSize;
+    }
+    // endregion
+
+    // region Helper Methods
+    public void reset() {
+        mLinks.clear();
+        mPerPage = mPageSize;
+        mTotal = -1;
+        mLastPage = -1;
+    }
+
+    /**
+     * Records everything the paging metadata of a page tells us about its neighbours.
+     *
+     * @param requestedPage used when the response does not echo its page number
+     * @return the page number of the collection
+     */
+    public int onPageLoaded(PagedCollection<T> collection, int requestedPage) {
+        int page = collection.getPage() > 0 ? collection.getPage() : requestedPage;
+        if (collection.getPerPage() > 0) {
+            mPerPage = collection.getPerPage();
+        }
+
+        if (collection.getTotal() >= 0) {
+            mTotal = collection.getTotal();
+            mLastPage = Math.max(1, (mTotal + mPerPage - 1) / mPerPage);
+        }
+
+        Paging paging = collection.getPaging();
+        if (paging != null) {
+            if (!TextUtils.isEmpty(paging.getFirst())) {
+                mLinks.put(1, paging.getFirst());
+            }
+            if (!TextUtils.isEmpty(paging.getPrevious()) && page > 1) {
+                mLinks.put(page - 1, paging.getPrevious());
+            }
+            if (!TextUtils.isEmpty(paging.getNext())) {
+                mLinks.put(page + 1, paging.getNext());
+            } else {
+                mLastPage = page;
+            }
+            if (!TextUtils.isEmpty(paging.getLast()) && mLastPage > 0) {
+                mLinks.put(mLastPage, paging.getLast());
+            }
+        } else if (mTotal < 0 && (collection.getItems() == null || collection.getItems().size() < mPerPage)) {
+            mLastPage = page;
+        }
+
+        return page;
+    }
+
+    // Returns the Vimeo paging link for this page, or null when it has not been seen yet
+    public String getLink(int page) {
+        return mLinks.get(page);
+    }
+
+    public boolean isLastPage(int page) {
+        return mLastPage > 0 && page >= mLastPage;
+    }
+
+    public boolean hasPage(int page) {
+        return page >= 1 && (mLastPage < 0 || page <= mLastPage);
+    }
+
+    public int getTotal() {
+        return mTotal;
+    }
+
+    public int getLastPage() {
+        return mLastPage;
+    }
+
+    public int getPerPage() {
+        return mPerPage;
+    }
+    // endregion
+}
@@ -0,0 +1,396 @@
+package com.etiennelawlor.loop.network;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
+import android.text.TextUtils;
+
+import com.etiennelawlor.loop.LoopApplication;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.annotations.SerializedName;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okio.ByteString;
+import timber.log.Timber;
+
+/**
+ * Typed memory + disk cache of parsed API responses (e.g. pages of {@link com.etiennelawlor.loop.network.models.response.VideosCollection}).
+ *
+ * Screens render a cached entry instantly and revalidate it in the background, with a conditional
+ * request when the entry has an ETag or Last-Modified validator.
+ * An entry is considered stale once its endpoint's TTL has elapsed.
+ *
+ * On disk an entry is stored as "endpoint.md5(key)", with the slashes of the endpoint replaced, so that
+ * {@link #removeAll(String)} can tell the entries of an endpoint apart by name.
+ *
+ * Created by etiennelawlor on 12/6/15.
+ */
+public class ResponseCache {
+
+    // region Constants
+    public static final String ENDPOINT_VIDEOS = "/videos";
+    public static final String ENDPOINT_LIKES = "/me/likes";
+    public static final String ENDPOINT_WATCH_LATER = "/me/watchlater";
+    public static final String ENDPOINT_CATEGORIES = "/categories";
+
+    private static final int MEMORY_CACHE_SIZE = 64; // entries
+    private static final String DISK_CACHE_DIRECTORY = "responses";
+    private static final char FILE_NAME_SEPARATOR = '.';
+    private static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(5);
+    private static final Map<String, Long> TTLS = new HashMap<>();
+
+    static {
+        TTLS.put(ENDPOINT_VIDEOS, TimeUnit.MINUTES.toMillis(15));
+        // Liked and watch later lists change as soon as the user taps, so keep these short
+        TTLS.put(ENDPOINT_LIKES, TimeUnit.MINUTES.toMillis(1));
+        TTLS.put(ENDPOINT_WATCH_LATER, TimeUnit.MINUTES.toMillis(1));
+        TTLS.put(ENDPOINT_CATEGORIES, TimeUnit.DAYS.toMillis(1));
+    }
+    // endregion
+
+    // region Static Variables
+    private static ResponseCache sInstance;
+    // endregion
+
+    // region Member Variables
+    private final LruCache<String, Entry<?>> mMemoryCache = new LruCache<>(MEMORY_CACHE_SIZE);
+    private final File mDirectory;
+    private final ExecutorService mExecutorService = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // Same adapters as the network layer, so cached pages are read back without reflection
+    private final Gson mGson = ServiceGenerator.getGson();
+    // endregion
+
+    // region Interfaces
+    public interface OnEntryLoadedListener<T> {
+        // entry is null on a cache miss
+        void onEntryLoaded(Entry<T> entry);
+    }
+
+    public interface OnBodyComparedListener {
+        void onBodyCompared(boolean isSameBody);
+    }
+    // endregion
+
+    // region Constructors
+    private ResponseCache(File directory) {
+        mDirectory = directory;
+    }
+    // endregion
+
+    public static synchronized ResponseCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new ResponseCache(new File(LoopApplication.getCacheDirectory(), DISK_CACHE_DIRECTORY));
+        }
+        return sInstance;
+    }
+
+    public static String getKey(String endpoint, Object... params) {
+        StringBuilder sb = new StringBuilder(endpoint);
+        for (Object param : params) {
+            sb.append('|').append(param);
+        }
+        return sb.toString();
+    }
+
+    public static long getTtl(String endpoint) {
+        Long ttl = TTLS.get(endpoint);
+        return ttl == null ? DEFAULT_TTL : ttl;
+    }
+
+    /**
+     * Looks up an entry in memory first, then on disk.
+     * The listener is always called on the main thread; synchronously on a memory hit.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void get(final String key, final Class<T> type, final OnEntryLoadedListener<T> listener) {
+        Entry<?> entry = mMemoryCache.get(key);
+        if (entry != null) {
+            listener.onEntryLoaded((Entry<T>) entry);
+            return;
+        }
+
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Entry<T> diskEntry = readFromDisk(key, type);
+                if (diskEntry != null) {
+                    mMemoryCache.put(key, diskEntry);
+                }
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onEntryLoaded(diskEntry);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Returns the in-memory entry for this key, or null. Never touches the disk.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Entry<T> peek(String key) {
+        return (Entry<T>) mMemoryCache.get(key);
+    }
+
+    public <T> void put(final String key, String endpoint, final T body, String etag, String lastModified) {
+        if (body == null)
+            return;
+
+        final Entry<T> entry = new Entry<>(body, endpoint, System.currentTimeMillis(), etag, lastModified);
+        mMemoryCache.put(key, entry);
+
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeToDisk(key, entry);
+            }
+        });
+    }
+
+    /**
+     * Marks the entry as fetched now, after the server said it has not changed (a 304).
+     */
+    public void touch(final String key) {
+        Entry<?> entry = mMemoryCache.get(key);
+        if (entry != null) {
+            put(key, entry.getEndpoint(), entry.getBody(), entry.getEtag(), entry.getLastModified());
+        }
+    }
+
+    /**
+     * Tells whether the body is the same as the cached one, for servers that send no validators.
+     * Both bodies are serialized on the cache thread, the listener is called on the main thread.
+     */
+    public void compareBody(final Entry<?> entry, final Object body, final OnBodyComparedListener listener) {
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                final boolean isSameBody = body != null
+                        && mGson.toJsonTree(entry.getBody()).equals(mGson.toJsonTree(body));
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onBodyCompared(isSameBody);
+                    }
+                });
+            }
+        });
+    }
+
+    public void remove(final String key) {
+        mMemoryCache.remove(key);
+
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                File file = getFile(key);
+                if (file.exists() && !file.delete()) {
+                    Timber.e("remove() : unable to delete %s", file);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops every entry that belongs to this endpoint, e.g. after a like or watch later mutation.
+     */
+    public void removeAll(final String endpoint) {
+        for (String key : mMemoryCache.snapshot().keySet()) {
+            if (key.startsWith(endpoint + "|") || key.equals(endpoint)) {
+                remove(key);
+            }
+        }
+
+        final String prefix = getFileNamePrefix(endpoint);
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                File[] files = mDirectory.listFiles();
+                if (files == null)
+                    return;
+
+                for (File file : files) {
+                    String name = file.getName();
+                    // Names without a separator were written before the endpoint was part of the name
+                    boolean isLegacy = name.indexOf(FILE_NAME_SEPARATOR) == -1;
+                    if ((isLegacy || name.startsWith(prefix)) && !file.delete()) {
+                        Timber.e("removeAll() : unable to delete %s", file);
+                    }
+                }
+            }
+        });
+    }
+
+    // region Helper Methods
+    private File getFile(String key) {
+        // Keys start with their endpoint, see getKey()
+        int separatorIndex = key.indexOf('|');
+        String endpoint = separatorIndex == -1 ? key : key.substring(0, separatorIndex);
+        return new File(mDirectory, getFileNamePrefix(endpoint) + ByteString.encodeUtf8(key).md5().hex());
+    }
+
+    private static String getFileNamePrefix(String endpoint) {
+        return endpoint.replace('/', '_') + FILE_NAME_SEPARATOR;
+    }
+
+    private <T> Entry<T> readFromDisk(String key, Class<T> type) {
+        DiskEntry diskEntry = readDiskEntry(getFile(key));
+        if (diskEntry == null || !key.equals(diskEntry.key) || diskEntry.body == null)
+            return null;
+
+        try {
+            T body = mGson.fromJson(diskEntry.body, type);
+            return new Entry<>(body, diskEntry.endpoint, diskEntry.timestamp, diskEntry.etag, diskEntry.lastModified);
+        } catch (RuntimeException e) {
+            Timber.e(e, "readFromDisk() : unable to parse %s", key);
+            return null;
+        }
+    }
+
+    private DiskEntry readDiskEntry(File file) {
+        if (!file.exists())
+            return null;
+
+        Reader reader = null;
+        try {
+            reader = new FileReader(file);
+            return mGson.fromJson(reader, DiskEntry.class);
+        } catch (IOException | RuntimeException e) {
+            Timber.e(e, "readDiskEntry() : unable to read %s", file);
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private void writeToDisk(String key, Entry<?> entry) {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Timber.e("writeToDisk() : unable to create %s", mDirectory);
+            return;
+        }
+
+        DiskEntry diskEntry = new DiskEntry();
+        diskEntry.key = key;
+        diskEntry.endpoint = entry.getEndpoint();
+        diskEntry.timestamp = entry.getTimestamp();
+        diskEntry.etag = entry.getEtag();
+        diskEntry.lastModified = entry.getLastModified();
+        diskEntry.body = mGson.toJsonTree(entry.getBody());
+
+        File tmpFile = new File(mDirectory, getFile(key).getName() + ".tmp");
+        Writer writer = null;
+        try {
+            writer = new FileWriter(tmpFile);
+            mGson.toJson(diskEntry, writer);
+        } catch (IOException e) {
+            Timber.e(e, "writeToDisk() : unable to write %s", key);
+            return;
+        } finally {
+            closeQuietly(writer);
+        }
+
+        if (!tmpFile.renameTo(getFile(key))) {
+            Timber.e("writeToDisk() : unable to rename %s", tmpFile);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+    // endregion
+
+    // region Inner Classes
+
+    public static class Entry<T> {
+        private final T mBody;
+        private final String mEndpoint;
+        private final long mTimestamp;
+        private final String mEtag;
+        private final String mLastModified;
+
+        Entry(T body, String endpoint, long timestamp, String etag, String lastModified) {
+            mBody = body;
+            mEndpoint = endpoint;
+            mTimestamp = timestamp;
+            mEtag = etag;
+            mLastModified = lastModified;
+        }
+
+        public T getBody() {
+            return mBody;
+        }
+
+        public String getEndpoint() {
+            return mEndpoint;
+        }
+
+        public long getTimestamp() {
+            return mTimestamp;
+        }
+
+        public String getEtag() {
+            return mEtag;
+        }
+
+        public String getLastModified() {
+            return mLastModified;
+        }
+
+        public boolean isStale() {
+            return System.currentTimeMillis() - mTimestamp > getTtl(mEndpoint);
+        }
+
+        /**
+         * True when the server says this response is the same as the cached one.
+         * Only meaningful when the server sent validators; otherwise the entry is assumed changed.
+         */
+        public boolean isSameVersion(String etag, String lastModified) {
+            if (!TextUtils.isEmpty(etag) && !TextUtils.isEmpty(mEtag))
+                return etag.equals(mEtag);
+            if (!TextUtils.isEmpty(lastModified) && !TextUtils.isEmpty(mLastModified))
+                return lastModified.equals(mLastModified);
+            return false;
+        }
+    }
+
+    private static class DiskEntry {
+        @SerializedName("key")
+        String key;
+        @SerializedName("endpoint")
+        String endpoint;
+        @SerializedName("timestamp")
+        long timestamp;
+        @SerializedName("etag")
+        String etag;
+        @SerializedName("last_modified")
+        String lastModified;
+        @SerializedName("body")
+        JsonElement body;
+    }
+
+    // endregion
+}
@@ -6,7 +6,10 @@ import android.util.Base64;
 import com.etiennelawlor.loop.BuildConfig;
 import com.etiennelawlor.loop.LoopApplication;
 import com.etiennelawlor.loop.models.AccessToken;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.squareup.okhttp.Cache;
+import com.squareup.okhttp.ConnectionPool;
 import com.squareup.okhttp.Interceptor;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.Request;
@@ -17,6 +20,8 @@ import java.io.File;
 import java.io.IOException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
@@ -42,82 +47,101 @@ public class ServiceGenerator {
 //            .setClient(getClient())
 //            .setLogLevel(getLogLevel());
 
-    private static Retrofit.Builder sRetrofitBuilder =
-            new Retrofit.Builder();
+    // region Static Variables
+    // Shared by every service so that all callers reuse one connection pool, one disk cache and one SSL factory
+    private static OkHttpClient sBaseClient;
+    private static Gson sGson;
+    // Keyed by baseUrl + Authorization header value
+    private static final Map<String, Retrofit> sRetrofits = new HashMap<>();
+    // Keyed by Retrofit key + service class name
+    private static final Map<String, Object> sServices = new HashMap<>();
+    // endregion
 
     // No need to instantiate this class.
     private ServiceGenerator() {
     }
 
     public static <S> S createService(Class<S> serviceClass, String baseUrl, final String clientId, final String clientSecret) {
+        String authorization = null;
+        if (!TextUtils.isEmpty(clientId) && !TextUtils.isEmpty(clientSecret)) {
+            // concatenate username and password with colon for authentication
+            final String credentials = clientId + ":" + clientSecret;
 
-        OkHttpClient okHttpClient = getClient();
-        okHttpClient.setConnectTimeout(10, TimeUnit.SECONDS);
-        okHttpClient.setReadTimeout(10, TimeUnit.SECONDS);
-        okHttpClient.setWriteTimeout(10, TimeUnit.SECONDS);
+            authorization = "Basic " + Base64.encodeToString(credentials.getBytes(), Base64.NO_WRAP);
+        }
 
-        okHttpClient.networkInterceptors().add(new Interceptor() {
-            @Override
-            public Response intercept(Chain chain) throws IOException {
-                if (chain != null) {
-                    Request originalRequest = chain.request();
+        return getService(serviceClass, baseUrl, authorization, "application/json");
+    }
 
-                    if (!TextUtils.isEmpty(clientId) && !TextUtils.isEmpty(clientSecret)) {
-                        // concatenate username and password with colon for authentication
-                        final String credentials = clientId + ":" + clientSecret;
+    public static <S> S createService(Class<S> serviceClass, String baseUrl, final AccessToken accessToken) {
+        String authorization = null;
+        if (accessToken != null) {
+            authorization = accessToken.getTokenType() + " " + accessToken.getAccessToken();
+        }
 
-                        String authorization = "Basic " + Base64.encodeToString(credentials.getBytes(), Base64.NO_WRAP);
+        return getService(serviceClass, baseUrl, authorization, "application/vnd.vimeo.*+json; version=3.2");
+    }
 
-                        Request modifiedRequest = originalRequest.newBuilder()
-                                .header("Authorization", authorization)
-                                .header("Accept", "application/json")
-                                .build();
-                        Timber.d("Authorization : "+ authorization);
+    /**
+     * Returns the process-wide client that every service is derived from.
+     * Other components (e.g. image loading) can use it to share the same connection pool.
+     */
+    public static synchronized OkHttpClient getBaseClient() {
+        if (sBaseClient == null) {
+            sBaseClient = getClient();
+        }
+        return sBaseClient;
+    }
 
-                        return chain.proceed(modifiedRequest);
-                    } else {
-                        return chain.proceed(originalRequest);
-                    }
-                }
+    /**
+     * Returns the Gson used to parse responses, with streaming adapters for pages of videos.
+     */
+    public static synchronized Gson getGson() {
+        if (sGson == null) {
+            sGson = new GsonBuilder()
+                    .registerTypeAdapterFactory(new StreamingTypeAdapterFactory())
+                    .create();
+        }
+        return sGson;
+    }
 
-                return null;
+    private static synchronized <S> S getService(Class<S> serviceClass, String baseUrl, String authorization, String accept) {
+        String retrofitKey = baseUrl + "|" + (authorization == null ? "" : authorization);
+        String serviceKey = retrofitKey + "|" + serviceClass.getName();
+
+        Object service = sServices.get(serviceKey);
+        if (service == null) {
+            Retrofit retrofit = sRetrofits.get(retrofitKey);
+            if (retrofit == null) {
+                retrofit = new Retrofit.Builder()
+                        .client(createAuthorizedClient(authorization, accept))
+                        .baseUrl(baseUrl)
+                        .addConverterFactory(GsonConverterFactory.create(getGson()))
+                        .build();
+                sRetrofits.put(retrofitKey, retrofit);
             }
-        });
 
-        HttpLoggingInterceptor httpLoggingInterceptor = new HttpLoggingInterceptor();
-        if (BuildConfig.DEBUG) {
-            httpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
-        } else {
-            httpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.NONE);
+            service = CallCoalescer.getInstance().coalesce(serviceKey, serviceClass, retrofit.create(serviceClass));
+            sServices.put(serviceKey, service);
         }
-        okHttpClient.interceptors().add(httpLoggingInterceptor); // Add only for debugging purposes
-
-        sRetrofitBuilder.client(okHttpClient);
-        sRetrofitBuilder.baseUrl(baseUrl);
-        sRetrofitBuilder.addConverterFactory(GsonConverterFactory.create());
 
-        Retrofit retrofit = sRetrofitBuilder.build();
-        return retrofit.create(serviceClass);
+        return serviceClass.cast(service);
     }
 
-    public static <S> S createService(Class<S> serviceClass, String baseUrl, final AccessToken accessToken) {
-        OkHttpClient okHttpClient = getClient();
-        okHttpClient.setConnectTimeout(10, TimeUnit.SECONDS);
-        okHttpClient.setReadTimeout(10, TimeUnit.SECONDS);
-        okHttpClient.setWriteTimeout(10, TimeUnit.SECONDS);
+    private static OkHttpClient createAuthorizedClient(final String authorization, final String accept) {
+        // clone() is a shallow copy, so the connection pool, cache and SSL factory stay shared
+        OkHttpClient okHttpClient = getBaseClient().clone();
 
         okHttpClient.networkInterceptors().add(new Interceptor() {
             @Override
             public Response intercept(Chain chain) throws IOException {
-                if(chain != null){
+                if (chain != null) {
                     Request originalRequest = chain.request();
 
-                    if (accessToken != null) {
-                        String authorization = accessToken.getTokenType() + " " + accessToken.getAccessToken();
-
+                    if (!TextUtils.isEmpty(authorization)) {
                         Request modifiedRequest = originalRequest.newBuilder()
                                 .header("Authorization", authorization)
-                                .header("Accept", "application/vnd.vimeo.*+json; version=3.2")
+                                .header("Accept", accept)
                                 .build();
                         Timber.d("Authorization : "+ authorization);
 
@@ -136,18 +160,18 @@ public class ServiceGenerator {
             httpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
         } else {
             httpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.NONE);
-        }        okHttpClient.interceptors().add(httpLoggingInterceptor); // Add only for debugging purposes
-
-        sRetrofitBuilder.client(okHttpClient);
-        sRetrofitBuilder.baseUrl(baseUrl);
-        sRetrofitBuilder.addConverterFactory(GsonConverterFactory.create());
+        }
+        okHttpClient.interceptors().add(httpLoggingInterceptor); // Add only for debugging purposes
 
-        Retrofit retrofit = sRetrofitBuilder.build();
-        return retrofit.create(serviceClass);
+        return okHttpClient;
     }
 
     private static OkHttpClient getClient() {
         OkHttpClient client = new OkHttpClient();
+        client.setConnectTimeout(10, TimeUnit.SECONDS);
+        client.setReadTimeout(10, TimeUnit.SECONDS);
+        client.setWriteTimeout(10, TimeUnit.SECONDS);
+        client.setConnectionPool(ConnectionPool.getDefault());
 
         // Install an HTTP cache in the application cache directory.
         try {
@@ -158,6 +182,8 @@ public class ServiceGenerator {
             Timber.e(e, "Unable to install disk cache.");
         }
         client.setSslSocketFactory(createBadSslSocketFactory());
+        // Samples every response that goes over the network, cloned clients inherit it
+        client.networkInterceptors().add(BandwidthEstimator.getInstance().getInterceptor());
 
         return client;
     }
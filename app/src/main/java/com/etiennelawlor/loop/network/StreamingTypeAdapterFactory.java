@@ -0,0 +1,458 @@
+package com.etiennelawlor.loop.network;
+
+import com.etiennelawlor.loop.network.models.response.Interactions;
+import com.etiennelawlor.loop.network.models.response.Metadata;
+import com.etiennelawlor.loop.network.models.response.Paging;
+import com.etiennelawlor.loop.network.models.response.Pictures;
+import com.etiennelawlor.loop.network.models.response.Size;
+import com.etiennelawlor.loop.network.models.response.Stats;
+import com.etiennelawlor.loop.network.models.response.Tag;
+import com.etiennelawlor.loop.network.models.response.User;
+import com.etiennelawlor.loop.network.models.response.Video;
+import com.etiennelawlor.loop.network.models.response.VideosCollection;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written streaming TypeAdapters for the models in a page of videos.
+ *
+ * Every page of {@link VideosCollection} is read with a JsonReader instead of reflection, and the
+ * subtrees the app never reads (embed html, metadata connections, files, privacy, app, ...) are
+ * skipped without being materialized. Writing still goes through Gson's reflective adapters.
+ *
+ * Created by etiennelawlor on 12/15/15.
+ */
+public class StreamingTypeAdapterFactory implements TypeAdapterFactory {
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+
+        if (rawType == VideosCollection.class)
+            return (TypeAdapter<T>) new VideosCollectionAdapter(gson, (TypeAdapter<VideosCollection>) delegate);
+        if (rawType == Video.class)
+            return (TypeAdapter<T>) new VideoAdapter(gson, (TypeAdapter<Video>) delegate);
+        if (rawType == Pictures.class)
+            return (TypeAdapter<T>) new PicturesAdapter(gson, (TypeAdapter<Pictures>) delegate);
+        if (rawType == Size.class)
+            return (TypeAdapter<T>) new SizeAdapter((TypeAdapter<Size>) delegate);
+        if (rawType == User.class)
+            return (TypeAdapter<T>) new UserAdapter(gson, (TypeAdapter<User>) delegate);
+        if (rawType == Stats.class)
+            return (TypeAdapter<T>) new StatsAdapter((TypeAdapter<Stats>) delegate);
+        if (rawType == Metadata.class)
+            return (TypeAdapter<T>) new MetadataAdapter(gson, (TypeAdapter<Metadata>) delegate);
+        if (rawType == Paging.class)
+            return (TypeAdapter<T>) new PagingAdapter((TypeAdapter<Paging>) delegate);
+
+        return null;
+    }
+
+    // region Helper Methods
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static Integer nextInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+
+    private static Boolean nextBoolean(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextBoolean();
+    }
+
+    private static <E> List<E> nextList(JsonReader in, TypeAdapter<E> elementAdapter) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        List<E> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(elementAdapter.read(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    // Returns false after consuming a null, so the caller can return null
+    private static boolean beginObject(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return false;
+        }
+        in.beginObject();
+        return true;
+    }
+    // endregion
+
+    // region Inner Classes
+
+    private static abstract class StreamingAdapter<T> extends TypeAdapter<T> {
+        private final TypeAdapter<T> mDelegate;
+
+        StreamingAdapter(TypeAdapter<T> delegate) {
+            mDelegate = delegate;
+        }
+
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            mDelegate.write(out, value);
+        }
+    }
+
+    private static class VideosCollectionAdapter extends StreamingAdapter<VideosCollection> {
+        private final TypeAdapter<Paging> mPagingAdapter;
+        private final TypeAdapter<Video> mVideoAdapter;
+
+        VideosCollectionAdapter(Gson gson, TypeAdapter<VideosCollection> delegate) {
+            super(delegate);
+            mPagingAdapter = gson.getAdapter(Paging.class);
+            mVideoAdapter = gson.getAdapter(Video.class);
+        }
+
+        @Override
+        public VideosCollection read(JsonReader in) throws IOException {
+            if (!beginObject(in))
+                return null;
+
+            VideosCollection videosCollection = new VideosCollection();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "total":
+                        videosCollection.setTotal(nextInteger(in));
+                        break;
+                    case "page":
+                        videosCollection.setPage(nextInteger(in));
+                        break;
+                    case "per_page":
+                        videosCollection.setPerPage(nextInteger(in));
+                        break;
+                    case "paging":
+                        videosCollection.setPaging(mPagingAdapter.read(in));
+                        break;
+                    case "data":
+                        videosCollection.setVideos(nextList(in, mVideoAdapter));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return videosCollection;
+        }
+    }
+
+    private static class VideoAdapter extends StreamingAdapter<Video> {
+        private final TypeAdapter<Pictures> mPicturesAdapter;
+        private final TypeAdapter<Tag> mTagAdapter;
+        private final TypeAdapter<Stats> mStatsAdapter;
+        private final TypeAdapter<Metadata> mMetadataAdapter;
+        private final TypeAdapter<User> mUserAdapter;
+
+        VideoAdapter(Gson gson, TypeAdapter<Video> delegate) {
+            super(delegate);
+            mPicturesAdapter = gson.getAdapter(Pictures.class);
+            mTagAdapter = gson.getAdapter(Tag.class);
+            mStatsAdapter = gson.getAdapter(Stats.class);
+            mMetadataAdapter = gson.getAdapter(Metadata.class);
+            mUserAdapter = gson.getAdapter(User.class);
+        }
+
+        @Override
+        public Video read(JsonReader in) throws IOException {
+            if (!beginObject(in))
+                return null;
+
+            Video video = new Video();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "uri":
+                        video.setUri(nextString(in));
+                        break;
+                    case "name":
+                        video.setName(nextString(in));
+                        break;
+                    case "description":
+                        video.setDescription(nextString(in));
+                        break;
+                    case "link":
+                        video.setLink(nextString(in));
+                        break;
+                    case "duration":
+                        video.setDuration(nextInteger(in));
+                        break;
+                    case "width":
+                        video.setWidth(nextInteger(in));
+                        break;
+                    case "height":
+                        video.setHeight(nextInteger(in));
+                        break;
+                    case "language":
+                        video.setLanguage(nextString(in));
+                        break;
+                    case "created_time":
+                        video.setCreatedTime(nextString(in));
+                        break;
+                    case "modified_time":
+                        video.setModifiedTime(nextString(in));
+                        break;
+                    case "status":
+                        video.setStatus(nextString(in));
+                        break;
+                    case "pictures":
+                        video.setPictures(mPicturesAdapter.read(in));
+                        break;
+                    case "tags":
+                        video.setTags(nextList(in, mTagAdapter));
+                        break;
+                    case "stats":
+                        video.setStats(mStatsAdapter.read(in));
+                        break;
+                    case "metadata":
+                        video.setMetadata(mMetadataAdapter.read(in));
+                        break;
+                    case "user":
+                        video.setUser(mUserAdapter.read(in));
+                        break;
+                    default:
+                        // embed, content_rating, files, privacy, app, license, embed_presets, ...
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return video;
+        }
+    }
+
+    private static class PicturesAdapter extends StreamingAdapter<Pictures> {
+        private final TypeAdapter<Size> mSizeAdapter;
+
+        PicturesAdapter(Gson gson, TypeAdapter<Pictures> delegate) {
+            super(delegate);
+            mSizeAdapter = gson.getAdapter(Size.class);
+        }
+
+        @Override
+        public Pictures read(JsonReader in) throws IOException {
+            if (!beginObject(in))
+                return null;
+
+            Pictures pictures = new Pictures();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "uri":
+                        pictures.setUri(nextString(in));
+                        break;
+                    case "active":
+                        pictures.setActive(nextBoolean(in));
+                        break;
+                    case "sizes":
+                        pictures.setSizes(nextList(in, mSizeAdapter));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return pictures;
+        }
+    }
+
+    private static class SizeAdapter extends StreamingAdapter<Size> {
+        SizeAdapter(TypeAdapter<Size> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Size read(JsonReader in) throws IOException {
+            if (!beginObject(in))
+                return null;
+
+            Size size = new Size();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "width":
+                        size.setWidth(nextInteger(in));
+                        break;
+                    case "height":
+                        size.setHeight(nextInteger(in));
+                        break;
+                    case "link":
+                        size.setLink(nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return size;
+        }
+    }
+
+    private static class UserAdapter extends StreamingAdapter<User> {
+        private final TypeAdapter<Pictures> mPicturesAdapter;
+
+        UserAdapter(Gson gson, TypeAdapter<User> delegate) {
+            super(delegate);
+            mPicturesAdapter = gson.getAdapter(Pictures.class);
+        }
+
+        @Override
+        public User read(JsonReader in) throws IOException {
+            if (!beginObject(in))
+                return null;
+
+            User user = new User();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "uri":
+                        user.setUri(nextString(in));
+                        break;
+                    case "name":
+                        user.setName(nextString(in));
+                        break;
+                    case "link":
+                        user.setLink(nextString(in));
+                        break;
+                    case "location":
+                        user.setLocation(nextString(in));
+                        break;
+                    case "bio":
+                        user.setBio(nextString(in));
+                        break;
+                    case "created_time":
+                        user.setCreatedTime(nextString(in));
+                        break;
+                    case "account":
+                        user.setAccount(nextString(in));
+                        break;
+                    case "pictures":
+                        user.setPictures(mPicturesAdapter.read(in));
+                        break;
+                    default:
+                        // metadata, websites, preferences, ...
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return user;
+        }
+    }
+
+    private static class StatsAdapter extends StreamingAdapter<Stats> {
+        StatsAdapter(TypeAdapter<Stats> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Stats read(JsonReader in) throws IOException {
+            if (!beginObject(in))
+                return null;
+
+            Stats stats = new Stats();
+            while (in.hasNext()) {
+                if (in.nextName().equals("plays")) {
+                    stats.setPlays(nextInteger(in));
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return stats;
+        }
+    }
+
+    private static class MetadataAdapter extends StreamingAdapter<Metadata> {
+        private final TypeAdapter<Interactions> mInteractionsAdapter;
+
+        MetadataAdapter(Gson gson, TypeAdapter<Metadata> delegate) {
+            super(delegate);
+            mInteractionsAdapter = gson.getAdapter(Interactions.class);
+        }
+
+        @Override
+        public Metadata read(JsonReader in) throws IOException {
+            if (!beginObject(in))
+                return null;
+
+            Metadata metadata = new Metadata();
+            while (in.hasNext()) {
+                if (in.nextName().equals("interactions")) {
+                    metadata.setInteractions(mInteractionsAdapter.read(in));
+                } else {
+                    // connections are never read by the app
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return metadata;
+        }
+    }
+
+    private static class PagingAdapter extends StreamingAdapter<Paging> {
+        PagingAdapter(TypeAdapter<Paging> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Paging read(JsonReader in) throws IOException {
+            if (!beginObject(in))
+                return null;
+
+            Paging paging = new Paging();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "next":
+                        paging.setNext(nextString(in));
+                        break;
+                    case "previous":
+                        paging.setPrevious(nextString(in));
+                        break;
+                    case "first":
+                        paging.setFirst(nextString(in));
+                        break;
+                    case "last":
+                        paging.setLast(nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return paging;
+        }
+    }
+
+    // endregion
+}
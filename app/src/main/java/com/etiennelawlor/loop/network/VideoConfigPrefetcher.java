@@ -0,0 +1,275 @@
+package com.etiennelawlor.loop.network;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.v4.util.LruCache;
+import android.text.TextUtils;
+
+import com.etiennelawlor.loop.network.models.response.Files;
+import com.etiennelawlor.loop.network.models.response.H264;
+import com.etiennelawlor.loop.network.models.response.HLS;
+import com.etiennelawlor.loop.network.models.response.ProgressiveData;
+import com.etiennelawlor.loop.network.models.response.Request;
+import com.etiennelawlor.loop.network.models.response.VP6;
+import com.etiennelawlor.loop.network.models.response.Video;
+import com.etiennelawlor.loop.network.models.response.VideoConfig;
+import com.etiennelawlor.loop.network.models.response.VideoFormat;
+import com.etiennelawlor.loop.utilities.LogUtility;
+import com.etiennelawlor.loop.utilities.VideoConfigUtility;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.Callback;
+import retrofit.Response;
+import retrofit.Retrofit;
+import timber.log.Timber;
+
+/**
+ * Resolves the {@link VideoConfig} of videos the user is likely to play (the one shown in
+ * VideoDetailsFragment and the top related videos) while they read the details, so that
+ * VideoPlayerFragment can start streaming without waiting for the player API.
+ *
+ * The video URLs in a VideoConfig are signed and stop working once their "expires" parameter has
+ * passed, so an entry is only handed out until the earliest of them, minus EXPIRY_MARGIN. Entries are
+ * kept in memory only. At most MAX_CONCURRENT_REQUESTS configs are fetched at a time, the most recently
+ * requested first. A player that asks while a prefetch is in flight joins it through the
+ * {@link CallCoalescer}. Once a config is resolved, the head of its video is cached by the
+ * {@link MediaProxy} unless the link is poor. Must be used from the main thread.
+ *
+ * Created by etiennelawlor on 12/25/15.
+ */
+public class VideoConfigPrefetcher {
+
+    // region Constants
+    private static final int MAX_ENTRIES = 20;
+    private static final int MAX_PENDING = 6;
+    private static final int MAX_CONCURRENT_REQUESTS = 2;
+    private static final int RELATED_VIDEO_COUNT = 3;
+    // Seeks request the URL again while the video plays, so it has to stay valid for a while
+    private static final long EXPIRY_MARGIN = TimeUnit.MINUTES.toMillis(5);
+    // For URLs without an "expires" parameter
+    private static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(10);
+    private static final String EXPIRES_PARAMETER = "expires";
+    // endregion
+
+    // region Static Variables
+    private static final VideoConfigPrefetcher sInstance = new VideoConfigPrefetcher();
+    // endregion
+
+    // region Member Variables
+    private final LruCache<Long, Entry> mEntries = new LruCache<>(MAX_ENTRIES);
+    // Most recently requested first
+    private final Deque<Long> mPendingVideoIds = new LinkedList<>();
+    private final Set<Long> mInFlightVideoIds = new HashSet<>();
+    private VimeoPlayerService mVimeoPlayerService;
+    private int mHitCount = 0;
+    private int mMissCount = 0;
+    // endregion
+
+    // region Constructors
+    VideoConfigPrefetcher() {
+    }
+    // endregion
+
+    public static VideoConfigPrefetcher getInstance() {
+        return sInstance;
+    }
+
+    // The video the user is looking at, ahead of anything queued before
+    public void prefetch(VimeoPlayerService vimeoPlayerService, long videoId) {
+        mVimeoPlayerService = vimeoPlayerService;
+        enqueue(videoId);
+        startPending();
+    }
+
+    // The first RELATED_VIDEO_COUNT videos, skipped when the link is too poor to spare
+    public void prefetch(VimeoPlayerService vimeoPlayerService, List<Video> videos) {
+        if (videos == null || BandwidthEstimator.getInstance().getQuality() == BandwidthEstimator.Quality.POOR)
+            return;
+
+        mVimeoPlayerService = vimeoPlayerService;
+        // Enqueued last to first so that the first video ends up at the head
+        for (int i = Math.min(videos.size(), RELATED_VIDEO_COUNT) - 1; i >= 0; i--) {
+            long videoId = videos.get(i).getId();
+            if (videoId != -1L) {
+                enqueue(videoId);
+            }
+        }
+        startPending();
+    }
+
+    // Returns a config whose URLs are still valid, null otherwise
+    public VideoConfig getVideoConfig(long videoId) {
+        Entry entry = mEntries.get(videoId);
+        if (entry != null && entry.isExpired()) {
+            mEntries.remove(videoId);
+            entry = null;
+        }
+
+        if (entry == null) {
+            mMissCount++;
+        } else {
+            mHitCount++;
+        }
+        Timber.d("getVideoConfig() : %d - %s (hits - %d, misses - %d)",
+                videoId, entry == null ? "miss" : "hit", mHitCount, mMissCount);
+        return entry == null ? null : entry.mVideoConfig;
+    }
+
+    // For configs fetched elsewhere, e.g. by the player, so a replay does not fetch it again
+    public void put(long videoId, VideoConfig videoConfig) {
+        long expiryTime = getExpiryTime(videoConfig);
+        if (expiryTime > System.currentTimeMillis()) {
+            mEntries.put(videoId, new Entry(videoConfig, expiryTime));
+        }
+    }
+
+    // region Helper Methods
+    private void enqueue(long videoId) {
+        Entry entry = mEntries.get(videoId);
+        if (mInFlightVideoIds.contains(videoId) || (entry != null && !entry.isExpired()))
+            return;
+
+        mPendingVideoIds.remove(videoId);
+        mPendingVideoIds.addFirst(videoId);
+        while (mPendingVideoIds.size() > MAX_PENDING) {
+            mPendingVideoIds.removeLast();
+        }
+    }
+
+    private void startPending() {
+        while (mInFlightVideoIds.size() < MAX_CONCURRENT_REQUESTS && !mPendingVideoIds.isEmpty()) {
+            start(mPendingVideoIds.removeFirst());
+        }
+    }
+
+    private void start(final long videoId) {
+        final long startTime = SystemClock.elapsedRealtime();
+        mInFlightVideoIds.add(videoId);
+        mVimeoPlayerService.getVideoConfig(videoId).enqueue(new Callback<VideoConfig>() {
+            @Override
+            public void onResponse(Response<VideoConfig> response, Retrofit retrofit) {
+                if (response != null && response.isSuccess() && response.body() != null) {
+                    put(videoId, response.body());
+                    Timber.d("prefetch() : %d - %d ms", videoId, SystemClock.elapsedRealtime() - startTime);
+                    prefetchHead(response.body());
+                } else if (response != null) {
+                    LogUtility.logFailedResponse(response.raw());
+                }
+                onFinished(videoId);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                // The player fetches the config itself when it is opened
+                LogUtility.logFailure(t);
+                onFinished(videoId);
+            }
+        });
+    }
+
+    // The first seconds of the video, so it starts playing from the disk cache
+    private static void prefetchHead(VideoConfig videoConfig) {
+        if (BandwidthEstimator.getInstance().getQuality() == BandwidthEstimator.Quality.POOR)
+            return;
+
+        MediaProxy.getInstance().prefetch(VideoConfigUtility.getVideoUrl(videoConfig));
+    }
+
+    private void onFinished(long videoId) {
+        mInFlightVideoIds.remove(videoId);
+        startPending();
+    }
+
+    // The earliest "expires" of the video URLs minus the margin, or DEFAULT_TTL from now
+    private static long getExpiryTime(VideoConfig videoConfig) {
+        long expiresAt = Long.MAX_VALUE;
+        for (String url : getVideoUrls(videoConfig)) {
+            String expires = Uri.parse(url).getQueryParameter(EXPIRES_PARAMETER);
+            if (TextUtils.isEmpty(expires))
+                continue;
+
+            try {
+                // In seconds since the epoch
+                expiresAt = Math.min(expiresAt, TimeUnit.SECONDS.toMillis(Long.parseLong(expires)));
+            } catch (NumberFormatException e) {
+                Timber.w("getExpiryTime() : unexpected expires - %s", expires);
+            }
+        }
+
+        return expiresAt == Long.MAX_VALUE
+                ? System.currentTimeMillis() + DEFAULT_TTL
+                : expiresAt - EXPIRY_MARGIN;
+    }
+
+    private static List<String> getVideoUrls(VideoConfig videoConfig) {
+        List<String> urls = new ArrayList<>();
+        Request request = videoConfig.getRequest();
+        Files files = request == null ? null : request.getFiles();
+        if (files == null)
+            return urls;
+
+        if (files.getProgressive() != null) {
+            for (ProgressiveData progressiveData : files.getProgressive()) {
+                addUrl(urls, progressiveData.getUrl());
+            }
+        }
+
+        H264 h264 = files.getH264();
+        if (h264 != null) {
+            addUrl(urls, h264.getHd());
+            addUrl(urls, h264.getSd());
+            addUrl(urls, h264.getMobile());
+        }
+
+        VP6 vp6 = files.getVp6();
+        if (vp6 != null) {
+            addUrl(urls, vp6.getHd());
+            addUrl(urls, vp6.getSd());
+            addUrl(urls, vp6.getMobile());
+        }
+
+        HLS hls = files.getHls();
+        if (hls != null) {
+            addUrl(urls, hls.getUrl());
+        }
+        return urls;
+    }
+
+    private static void addUrl(List<String> urls, VideoFormat videoFormat) {
+        if (videoFormat != null) {
+            addUrl(urls, videoFormat.getUrl());
+        }
+    }
+
+    private static void addUrl(List<String> urls, String url) {
+        if (!TextUtils.isEmpty(url)) {
+            urls.add(url);
+        }
+    }
+    // endregion
+
+    // region Inner Classes
+
+    private static class Entry {
+        private final VideoConfig mVideoConfig;
+        private final long mExpiryTime; // ms since the epoch
+
+        Entry(VideoConfig videoConfig, long expiryTime) {
+            mVideoConfig = videoConfig;
+            mExpiryTime = expiryTime;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= mExpiryTime;
+        }
+    }
+
+    // endregion
+}
@@ -5,6 +5,7 @@ import com.etiennelawlor.loop.network.models.response.CategoriesCollection;
 import com.etiennelawlor.loop.network.models.response.Comment;
 import com.etiennelawlor.loop.network.models.response.CommentsCollection;
 import com.etiennelawlor.loop.network.models.response.OAuthResponse;
+import com.etiennelawlor.loop.network.models.response.Video;
 import com.etiennelawlor.loop.network.models.response.VideosCollection;
 
 import retrofit.Call;
@@ -14,10 +15,12 @@ import retrofit.http.DELETE;
 import retrofit.http.Field;
 import retrofit.http.FormUrlEncoded;
 import retrofit.http.GET;
+import retrofit.http.Header;
 import retrofit.http.POST;
 import retrofit.http.PUT;
 import retrofit.http.Path;
 import retrofit.http.Query;
+import retrofit.http.Url;
 
 /**
  * Created by etiennelawlor on 6/14/15.
@@ -26,26 +29,53 @@ public interface VimeoService {
 
     String BASE_URL = "https://api.vimeo.com";
 
+    // Field projections (the fields= query), so only what a screen binds is sent over the wire.
+    // Vimeo carries the fields param over to the paging links of a collection.
+    // Just what a list row shows, see VideoRow
+    String LIST_ROW_FIELDS = "uri,name,duration,created_time,pictures.sizes,stats.plays,user.name";
+    // Everything VideoDetailsFragment and its header show
+    String VIDEO_DETAILS_FIELDS = "uri,name,description,link,duration,created_time,pictures.sizes,tags,"
+            + "stats.plays,metadata.interactions,user.uri,user.name,user.pictures.sizes";
+
     @GET("/videos")
     Call<VideosCollection> findVideos(@Query("query") String query,
                     @Query("sort") String sort,
                     @Query("direction") String direction,
                     @Query("page") Integer page,
-                    @Query("per_page") Integer perPage);
+                    @Query("per_page") Integer perPage,
+                    @Query("fields") String fields);
+
+    // findVideos() made conditional on a cached copy, answered with a 304 and no body when it has not changed.
+    // Null validators are left out.
+    @GET("/videos")
+    Call<VideosCollection> revalidateVideos(@Header("If-None-Match") String etag,
+                    @Header("If-Modified-Since") String lastModified,
+                    @Query("query") String query,
+                    @Query("sort") String sort,
+                    @Query("direction") String direction,
+                    @Query("page") Integer page,
+                    @Query("per_page") Integer perPage,
+                    @Query("fields") String fields);
+
+    // Follows a Vimeo paging link (next, previous, first or last) of any videos collection
+    @GET
+    Call<VideosCollection> getVideosPage(@Url String pageLink);
 
     @GET("/me/likes")
     Call<VideosCollection> findLikedVideos(@Query("query") String query,
                         @Query("sort") String sort,
                         @Query("direction") String direction,
                         @Query("page") Integer page,
-                        @Query("per_page") Integer perPage);
+                        @Query("per_page") Integer perPage,
+                        @Query("fields") String fields);
 
     @GET("/me/watchlater")
     Call<VideosCollection> findWatchLaterVideos(@Query("query") String query,
                              @Query("sort") String sort,
                              @Query("direction") String direction,
                              @Query("page") Integer page,
-                             @Query("per_page") Integer perPage);
+                             @Query("per_page") Integer perPage,
+                             @Query("fields") String fields);
 
     @GET("/videos/{videoId}/comments")
     Call<CommentsCollection> getComments(@Path("videoId") Long videoId,
@@ -54,6 +84,10 @@ public interface VimeoService {
                                          @Query("page") Integer page,
                                          @Query("per_page") Integer perPage);
 
+    // Follows a Vimeo paging link (next, previous, first or last) of a comments collection
+    @GET
+    Call<CommentsCollection> getCommentsPage(@Url String pageLink);
+
     @POST("/videos/{videoId}/comments")
     Call<Comment> addComment(@Path("videoId") Long videoId,
                              @Body CommentPost commentPost);
@@ -65,7 +99,13 @@ public interface VimeoService {
     @GET("/videos/{videoId}/videos?filter=related")
     Call<VideosCollection> findRelatedVideos( @Path("videoId") Long videoId,
                             @Query("page") Integer page,
-                            @Query("per_page") Integer perPage);
+                            @Query("per_page") Integer perPage,
+                            @Query("fields") String fields);
+
+    // Hydrates a video that was loaded with a smaller projection, e.g. LIST_ROW_FIELDS
+    @GET("/videos/{videoId}")
+    Call<Video> getVideo(@Path("videoId") Long videoId,
+                         @Query("fields") String fields);
 
     @GET("/categories")
     Call<CategoriesCollection> getCategories();
@@ -7,7 +7,7 @@ import java.util.List;
 /**
  * Created by etiennelawlor on 5/23/15.
  */
-public class CommentsCollection {
+public class CommentsCollection implements PagedCollection<Comment> {
 
     // region Fields
     @SerializedName("total")
@@ -23,18 +23,22 @@ public class CommentsCollection {
     // endregion
 
     // region Getters
+    @Override
     public Integer getTotal() {
         return total == null ? -1 : total;
     }
 
+    @Override
     public Integer getPage() {
         return page == null ? -1 : page;
     }
 
+    @Override
     public Integer getPerPage() {
         return perPage == null ? -1 : perPage;
     }
 
+    @Override
     public Paging getPaging() {
         return paging;
     }
@@ -42,6 +46,11 @@ public class CommentsCollection {
     public List<Comment> getComments() {
         return comments;
     }
+
+    @Override
+    public List<Comment> getItems() {
+        return getComments();
+    }
     // endregion
 
     // region Setters
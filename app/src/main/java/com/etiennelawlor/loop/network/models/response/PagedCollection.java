@@ -0,0 +1,21 @@
+package com.etiennelawlor.loop.network.models.response;
+
+import java.util.List;
+
+/**
+ * A page of a Vimeo collection response (total, page, per_page, paging and data).
+ *
+ * Created by etiennelawlor on 12/10/15.
+ */
+public interface PagedCollection<T> {
+
+    Integer getTotal();
+
+    Integer getPage();
+
+    Integer getPerPage();
+
+    Paging getPaging();
+
+    List<T> getItems();
+}
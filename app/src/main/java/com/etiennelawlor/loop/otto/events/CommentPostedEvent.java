@@ -0,0 +1,39 @@
+package com.etiennelawlor.loop.otto.events;
+
+import com.etiennelawlor.loop.network.models.response.Comment;
+
+/**
+ * Created by etiennelawlor on 12/20/15.
+ */
+public class CommentPostedEvent {
+
+    // region Member Variables
+    private final long mVideoId;
+    private final Comment mPendingComment;
+    private final Comment mComment;
+    // endregion
+
+    // region Constructors
+    public CommentPostedEvent(long videoId, Comment pendingComment, Comment comment) {
+        mVideoId = videoId;
+        mPendingComment = pendingComment;
+        mComment = comment;
+    }
+    // endregion
+
+    // region Getters
+    public long getVideoId() {
+        return mVideoId;
+    }
+
+    // The Comment that was shown while the post was pending
+    public Comment getPendingComment() {
+        return mPendingComment;
+    }
+
+    // The Comment as the server has it, null when the post was rejected
+    public Comment getComment() {
+        return mComment;
+    }
+    // endregion
+}
@@ -0,0 +1,25 @@
+package com.etiennelawlor.loop.otto.events;
+
+import com.etiennelawlor.loop.network.BandwidthEstimator;
+
+/**
+ * Created by etiennelawlor on 12/24/15.
+ */
+public class NetworkQualityChangedEvent {
+
+    // region Member Variables
+    private final BandwidthEstimator.Quality mQuality;
+    // endregion
+
+    // region Constructors
+    public NetworkQualityChangedEvent(BandwidthEstimator.Quality quality) {
+        mQuality = quality;
+    }
+    // endregion
+
+    // region Getters
+    public BandwidthEstimator.Quality getQuality() {
+        return mQuality;
+    }
+    // endregion
+}
@@ -1,7 +1,29 @@
 package com.etiennelawlor.loop.otto.events;
 
+import com.etiennelawlor.loop.network.models.response.Video;
+
 /**
  * Created by etiennelawlor on 9/20/15.
  */
 public class VideoLikedEvent {
+
+    // region Member Variables
+    private Video mVideo;
+    private boolean mIsLiked;
+    // endregion
+
+    // region Constructors
+    public VideoLikedEvent(Video video, boolean isLiked){
+        mVideo = video;
+        mIsLiked = isLiked;
+    }
+    // endregion
+
+    public Video getVideo() {
+        return mVideo;
+    }
+
+    public boolean isLiked() {
+        return mIsLiked;
+    }
 }
@@ -1,7 +1,29 @@
 package com.etiennelawlor.loop.otto.events;
 
+import com.etiennelawlor.loop.network.models.response.Video;
+
 /**
  * Created by etiennelawlor on 9/20/15.
  */
 public class WatchLaterEvent {
+
+    // region Member Variables
+    private Video mVideo;
+    private boolean mIsAdded;
+    // endregion
+
+    // region Constructors
+    public WatchLaterEvent(Video video, boolean isAdded){
+        mVideo = video;
+        mIsAdded = isAdded;
+    }
+    // endregion
+
+    public Video getVideo() {
+        return mVideo;
+    }
+
+    public boolean isAdded() {
+        return mIsAdded;
+    }
 }
@@ -0,0 +1,725 @@
+package com.etiennelawlor.loop.realm;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import com.etiennelawlor.loop.helper.PreferencesHelper;
+import com.etiennelawlor.loop.models.AccessToken;
+import com.etiennelawlor.loop.network.ServiceGenerator;
+import com.etiennelawlor.loop.network.VimeoService;
+import com.etiennelawlor.loop.network.models.request.CommentPost;
+import com.etiennelawlor.loop.network.models.response.AuthorizedUser;
+import com.etiennelawlor.loop.network.models.response.Comment;
+import com.etiennelawlor.loop.network.models.response.CommentsCollection;
+import com.etiennelawlor.loop.network.models.response.Picture;
+import com.etiennelawlor.loop.network.models.response.Pictures;
+import com.etiennelawlor.loop.network.models.response.Size;
+import com.etiennelawlor.loop.network.models.response.User;
+import com.etiennelawlor.loop.otto.BusProvider;
+import com.etiennelawlor.loop.otto.events.CommentPostedEvent;
+import com.etiennelawlor.loop.realm.objects.RealmCommentOperation;
+import com.etiennelawlor.loop.utilities.LogUtility;
+import com.etiennelawlor.loop.utilities.RowFormatter;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.realm.Realm;
+import io.realm.RealmResults;
+import retrofit.Response;
+import timber.log.Timber;
+
+/**
+ * Durable outbox of comment posts and deletions.
+ *
+ * A post shows up right away as a pending Comment, a deletion hides the comment right away. Both are
+ * persisted in Realm, survive process death and are sent one at a time in the order they were made,
+ * with exponential backoff, once the device is online. An operation that has to be retried holds back
+ * the ones after it, so that a deletion never reaches the server before the post it undoes.
+ *
+ * Every operation has a client id. A post whose earlier attempt may have reached the server is first
+ * looked up among the latest comments, so that a retry does not post it twice. Once a post is on the
+ * server, a {@link CommentPostedEvent} hands out the server's Comment to replace the pending one.
+ *
+ * Created by etiennelawlor on 12/20/15.
+ */
+public class CommentOutbox {
+
+    // region Constants
+    public static final String TYPE_POST = "post";
+    public static final String TYPE_DELETE = "delete";
+
+    private static final long INITIAL_BACKOFF = 5000L; // ms
+    private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(10);
+    private static final int MAX_ATTEMPTS = 10;
+    // How many of the latest comments are searched for a post that may already be on the server
+    private static final int RECENT_COMMENTS_PAGE_SIZE = 10;
+    private static final long MAX_CLOCK_SKEW = TimeUnit.MINUTES.toMillis(5);
+
+    private static final int RESULT_SENT = 0;
+    private static final int RESULT_REJECTED = 1;
+    private static final int RESULT_RETRY = 2;
+
+    // What a deletion of a pending post does, see getDeleteAction()
+    static final int DELETE_NOTHING = 0;
+    static final int DELETE_UNSENT_POST = 1;
+    static final int DELETE_SENT_COMMENT = 2;
+    static final int DELETE_AFTER_POST = 3;
+    // endregion
+
+    // region Static Variables
+    private static final CommentOutbox sInstance = new CommentOutbox();
+    // endregion
+
+    // region Member Variables
+    // Realm work and sending happen on this thread, one operation at a time
+    private final ExecutorService mExecutorService = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Gson mGson = ServiceGenerator.getGson();
+    // Client id -> pending post, in posting order. Main thread only
+    private final Map<String, PendingPost> mPendingPosts = new LinkedHashMap<>();
+    // Ids of the comments waiting to be deleted. Main thread only
+    private final Set<Long> mPendingDeletions = new HashSet<>();
+    private Context mContext;
+    // endregion
+
+    // region Listeners
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mExecutorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    };
+
+    private final BroadcastReceiver mConnectivityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (isConnected()) {
+                scheduleFlush(0L);
+            }
+        }
+    };
+    // endregion
+
+    // region Constructors
+    CommentOutbox() {
+    }
+    // endregion
+
+    public static CommentOutbox getInstance() {
+        return sInstance;
+    }
+
+    // Call once from Application.onCreate()
+    public void start(Context context) {
+        mContext = context.getApplicationContext();
+        mContext.registerReceiver(mConnectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+
+        // Pick up the operations the last process left behind
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadPendingOperations();
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Queues a comment for the server.
+     *
+     * @return the pending Comment to show until a CommentPostedEvent replaces it
+     */
+    public Comment post(final long videoId, String text) {
+        final long now = System.currentTimeMillis();
+        final String clientId = UUID.randomUUID().toString();
+
+        Comment comment = new Comment();
+        comment.setText(text);
+        comment.setCreatedOn(formatTimestamp(now));
+        comment.setUser(getUser());
+        mPendingPosts.put(clientId, new PendingPost(videoId, comment));
+
+        final String json = mGson.toJson(comment, Comment.class);
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                persistPost(clientId, videoId, json, now);
+            }
+        });
+        scheduleFlush(0L);
+
+        return comment;
+    }
+
+    /**
+     * Queues the deletion of a comment, which can be a pending one. A pending post that has not been
+     * sent yet is simply dropped.
+     */
+    public void delete(final long videoId, Comment comment) {
+        final String targetClientId = getClientId(comment);
+        final long commentId;
+        if (targetClientId == null) {
+            commentId = comment.getId();
+            mPendingDeletions.add(commentId);
+        } else {
+            commentId = -1L;
+            mPendingPosts.remove(targetClientId);
+        }
+
+        final String clientId = UUID.randomUUID().toString();
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                persistDelete(clientId, videoId, commentId, targetClientId);
+            }
+        });
+        scheduleFlush(0L);
+    }
+
+    // The pending Comments of a video, oldest first
+    public List<Comment> getPendingComments(long videoId) {
+        List<Comment> comments = new ArrayList<>();
+        for (PendingPost pendingPost : mPendingPosts.values()) {
+            if (pendingPost.mVideoId == videoId) {
+                comments.add(pendingPost.mComment);
+            }
+        }
+        return comments;
+    }
+
+    public boolean isPending(Comment comment) {
+        return getClientId(comment) != null;
+    }
+
+    // True for a server comment that is about to be deleted and should not be shown
+    public boolean isPendingDeletion(Comment comment) {
+        return mPendingDeletions.contains(comment.getId());
+    }
+
+    // region Helper Methods
+    private String getClientId(Comment comment) {
+        for (Map.Entry<String, PendingPost> entry : mPendingPosts.entrySet()) {
+            if (entry.getValue().mComment == comment)
+                return entry.getKey();
+        }
+        return null;
+    }
+
+    // Runs on the executor
+    private void loadPendingOperations() {
+        Realm realm = RealmUtility.getRealm();
+        try {
+            // Sent posts are only kept until the main thread has let go of them, which a new process has
+            realm.beginTransaction();
+            try {
+                getSentPosts(realm).clear();
+                realm.commitTransaction();
+            } catch (RuntimeException e) {
+                realm.cancelTransaction();
+                throw e;
+            }
+
+            RealmResults<RealmCommentOperation> realmOperations = realm.where(RealmCommentOperation.class)
+                    .findAllSorted("sequence");
+
+            // Posts the user deleted while they were pending stay hidden
+            Set<String> deletedClientIds = new HashSet<>();
+            for (int i = 0; i < realmOperations.size(); i++) {
+                String targetClientId = realmOperations.get(i).getTargetClientId();
+                if (!TextUtils.isEmpty(targetClientId)) {
+                    deletedClientIds.add(targetClientId);
+                }
+            }
+
+            final Map<String, PendingPost> pendingPosts = new LinkedHashMap<>();
+            final Set<Long> pendingDeletions = new HashSet<>();
+            for (int i = 0; i < realmOperations.size(); i++) {
+                RealmCommentOperation realmOperation = realmOperations.get(i);
+                if (TYPE_POST.equals(realmOperation.getType())) {
+                    if (!deletedClientIds.contains(realmOperation.getClientId())) {
+                        Comment comment = mGson.fromJson(realmOperation.getJson(), Comment.class);
+                        pendingPosts.put(realmOperation.getClientId(), new PendingPost(realmOperation.getVideoId(), comment));
+                    }
+                } else if (realmOperation.getCommentId() != -1L) {
+                    pendingDeletions.add(realmOperation.getCommentId());
+                }
+            }
+
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mPendingPosts.putAll(pendingPosts);
+                    mPendingDeletions.addAll(pendingDeletions);
+                }
+            });
+        } catch (RuntimeException e) {
+            Timber.e(e, "loadPendingOperations() : unable to load");
+        } finally {
+            realm.close();
+        }
+    }
+
+    // Runs on the executor
+    private void persistPost(String clientId, long videoId, String json, long createdTime) {
+        Realm realm = RealmUtility.getRealm();
+        try {
+            realm.beginTransaction();
+            RealmCommentOperation realmOperation = new RealmCommentOperation();
+            realmOperation.setClientId(clientId);
+            realmOperation.setSequence(getNextSequence(realm));
+            realmOperation.setType(TYPE_POST);
+            realmOperation.setVideoId(videoId);
+            realmOperation.setJson(json);
+            realmOperation.setCreatedTime(createdTime);
+            realmOperation.setCommentId(-1L);
+            realmOperation.setTargetClientId("");
+            realm.copyToRealm(realmOperation);
+            realm.commitTransaction();
+        } catch (RuntimeException e) {
+            realm.cancelTransaction();
+            Timber.e(e, "persistPost() : unable to queue %s", clientId);
+        } finally {
+            realm.close();
+        }
+    }
+
+    // Runs on the executor
+    private void persistDelete(String clientId, long videoId, long commentId, String targetClientId) {
+        Realm realm = RealmUtility.getRealm();
+        try {
+            realm.beginTransaction();
+            if (targetClientId != null) {
+                RealmCommentOperation realmPost = realm.where(RealmCommentOperation.class)
+                        .equalTo("clientId", targetClientId)
+                        .findFirst();
+                int deleteAction = getDeleteAction(realmPost);
+                if (deleteAction == DELETE_UNSENT_POST) {
+                    // Never sent, so there is nothing to delete on the server
+                    realmPost.removeFromRealm();
+                    realm.commitTransaction();
+                    return;
+                } else if (deleteAction == DELETE_NOTHING) {
+                    // The post was rejected
+                    realm.commitTransaction();
+                    return;
+                } else if (deleteAction == DELETE_SENT_COMMENT) {
+                    // The post was sent while the deletion was on its way here
+                    commentId = realmPost.getCommentId();
+                    targetClientId = null;
+                    postPendingDeletion(commentId);
+                }
+                // Otherwise the post may be on the server already, its comment id is filled in once it is sent
+            }
+
+            RealmCommentOperation realmOperation = new RealmCommentOperation();
+            realmOperation.setClientId(clientId);
+            realmOperation.setSequence(getNextSequence(realm));
+            realmOperation.setType(TYPE_DELETE);
+            realmOperation.setVideoId(videoId);
+            realmOperation.setJson("");
+            realmOperation.setCreatedTime(System.currentTimeMillis());
+            realmOperation.setCommentId(commentId);
+            realmOperation.setTargetClientId(targetClientId == null ? "" : targetClientId);
+            realm.copyToRealm(realmOperation);
+            realm.commitTransaction();
+        } catch (RuntimeException e) {
+            realm.cancelTransaction();
+            Timber.e(e, "persistDelete() : unable to queue %s", clientId);
+        } finally {
+            realm.close();
+        }
+    }
+
+    /**
+     * Decides what a deletion of a pending post does, from the post's row, null once it was rejected.
+     * A post sent on its first try keeps no attempts, so only one without a comment id is unsent.
+     */
+    static int getDeleteAction(RealmCommentOperation realmPost) {
+        if (realmPost == null)
+            return DELETE_NOTHING;
+        if (realmPost.getCommentId() != -1L)
+            return DELETE_SENT_COMMENT;
+        return realmPost.getAttempts() == 0 ? DELETE_UNSENT_POST : DELETE_AFTER_POST;
+    }
+
+    // Runs on the executor, once the main thread no longer knows the post as pending
+    private void removeSentPost(String clientId) {
+        Realm realm = RealmUtility.getRealm();
+        try {
+            realm.beginTransaction();
+            RealmCommentOperation realmPost = realm.where(RealmCommentOperation.class)
+                    .equalTo("clientId", clientId)
+                    .findFirst();
+            if (realmPost != null) {
+                realmPost.removeFromRealm();
+            }
+            realm.commitTransaction();
+        } catch (RuntimeException e) {
+            realm.cancelTransaction();
+            Timber.e(e, "removeSentPost() : unable to remove %s", clientId);
+        } finally {
+            realm.close();
+        }
+    }
+
+    private RealmResults<RealmCommentOperation> getSentPosts(Realm realm) {
+        return realm.where(RealmCommentOperation.class)
+                .equalTo("type", TYPE_POST)
+                .notEqualTo("commentId", -1L)
+                .findAll();
+    }
+
+    private long getNextSequence(Realm realm) {
+        Number sequence = realm.where(RealmCommentOperation.class).max("sequence");
+        return sequence == null ? 0L : sequence.longValue() + 1L;
+    }
+
+    // Runs on the executor. Sends the operations in order until one of them has to wait
+    private void flush() {
+        // When offline, the connectivity receiver flushes once the device is back online
+        VimeoService vimeoService = getVimeoService();
+        if (vimeoService == null || !isConnected())
+            return;
+
+        Realm realm = RealmUtility.getRealm();
+        try {
+            while (true) {
+                // Sent posts wait for removeSentPost() and are not sent again
+                RealmResults<RealmCommentOperation> realmOperations = realm.where(RealmCommentOperation.class)
+                        .beginGroup()
+                        .equalTo("type", TYPE_DELETE)
+                        .or()
+                        .equalTo("commentId", -1L)
+                        .endGroup()
+                        .findAllSorted("sequence");
+                if (realmOperations.isEmpty())
+                    break;
+
+                // Copied out first, as sending takes a while and changes the results
+                PendingOperation pendingOperation = new PendingOperation(realmOperations.first());
+                long now = System.currentTimeMillis();
+                if (pendingOperation.mNextAttemptTime > now) {
+                    scheduleFlush(pendingOperation.mNextAttemptTime - now);
+                    break;
+                }
+
+                int result = TYPE_POST.equals(pendingOperation.mType)
+                        ? sendPost(vimeoService, pendingOperation)
+                        : sendDelete(vimeoService, pendingOperation);
+                int attempts = pendingOperation.mAttempts + 1;
+                if (result == RESULT_RETRY && attempts >= MAX_ATTEMPTS) {
+                    result = RESULT_REJECTED;
+                }
+
+                boolean hasPendingDeletions = false;
+                long backoff = Math.min(MAX_BACKOFF, INITIAL_BACKOFF << Math.min(attempts - 1, 16));
+                realm.beginTransaction();
+                RealmCommentOperation realmOperation = realm.where(RealmCommentOperation.class)
+                        .equalTo("clientId", pendingOperation.mClientId)
+                        .findFirst();
+                if (result == RESULT_RETRY) {
+                    realmOperation.setAttempts(attempts);
+                    realmOperation.setNextAttemptTime(now + backoff);
+                } else if (result == RESULT_SENT && pendingOperation.mServerComment != null) {
+                    // Kept with its comment id, for a deletion of the pending comment still on its way here
+                    long commentId = pendingOperation.mServerComment.getId();
+                    realmOperation.setCommentId(commentId);
+
+                    // Deletions queued while the post was in flight can now name the comment
+                    RealmResults<RealmCommentOperation> realmDeletions = realm.where(RealmCommentOperation.class)
+                            .equalTo("targetClientId", pendingOperation.mClientId)
+                            .findAll();
+                    for (int i = 0; i < realmDeletions.size(); i++) {
+                        realmDeletions.get(i).setCommentId(commentId);
+                    }
+                    hasPendingDeletions = realmDeletions.size() > 0;
+                } else {
+                    realmOperation.removeFromRealm();
+                }
+                realm.commitTransaction();
+
+                postResult(pendingOperation, result, hasPendingDeletions);
+
+                if (result == RESULT_RETRY) {
+                    // The operations after this one wait for it, to reach the server in order
+                    scheduleFlush(backoff);
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            Timber.e(e, "flush() : unable to flush");
+        } finally {
+            realm.close();
+        }
+    }
+
+    private int sendPost(VimeoService vimeoService, PendingOperation pendingOperation) {
+        try {
+            if (pendingOperation.mAttempts > 0) {
+                // An earlier attempt may have reached the server before it failed
+                Response<CommentsCollection> response = vimeoService.getComments(pendingOperation.mVideoId,
+                        "date",
+                        "desc",
+                        1,
+                        RECENT_COMMENTS_PAGE_SIZE).execute();
+                if (!response.isSuccess()) {
+                    if (response.raw() != null) {
+                        LogUtility.logFailedResponse(response.raw());
+                    }
+                    // Posting again without knowing could leave a duplicate
+                    return RESULT_RETRY;
+                }
+
+                Comment comment = findComment(response.body(), pendingOperation);
+                if (comment != null) {
+                    Timber.d("sendPost() : %s was already posted", pendingOperation.mClientId);
+                    pendingOperation.mServerComment = comment;
+                    return RESULT_SENT;
+                }
+            }
+
+            CommentPost commentPost = new CommentPost();
+            commentPost.setText(pendingOperation.mComment.getText());
+            Response<Comment> response = vimeoService.addComment(pendingOperation.mVideoId, commentPost).execute();
+            if (response.isSuccess()) {
+                pendingOperation.mServerComment = response.body();
+                // Without a body the comment is looked up on the next attempt
+                return pendingOperation.mServerComment == null ? RESULT_RETRY : RESULT_SENT;
+            }
+
+            return getResult(response);
+        } catch (IOException e) {
+            LogUtility.logFailure(e);
+            return RESULT_RETRY;
+        }
+    }
+
+    private int sendDelete(VimeoService vimeoService, PendingOperation pendingOperation) {
+        // The post it undoes never made it to the server
+        if (pendingOperation.mCommentId == -1L)
+            return RESULT_SENT;
+
+        try {
+            Response<Object> response = vimeoService.deleteComment(pendingOperation.mVideoId,
+                    pendingOperation.mCommentId).execute();
+            // A 404 means an earlier attempt already deleted it
+            if (response.isSuccess() || response.code() == 404)
+                return RESULT_SENT;
+
+            return getResult(response);
+        } catch (IOException e) {
+            LogUtility.logFailure(e);
+            return RESULT_RETRY;
+        }
+    }
+
+    private int getResult(Response<?> response) {
+        if (response.raw() != null) {
+            LogUtility.logFailedResponse(response.raw());
+        }
+
+        int code = response.code();
+        // Timeouts, rate limiting and server errors are worth another try
+        return code == 408 || code == 429 || code >= 500 ? RESULT_RETRY : RESULT_REJECTED;
+    }
+
+    // The server comment matching a pending post: same author and text, posted after it was made
+    private Comment findComment(CommentsCollection commentsCollection, PendingOperation pendingOperation) {
+        if (commentsCollection == null || commentsCollection.getComments() == null)
+            return null;
+
+        Comment pendingComment = pendingOperation.mComment;
+        String userUri = pendingComment.getUser() == null ? "" : pendingComment.getUser().getUri();
+        for (Comment comment : commentsCollection.getComments()) {
+            if (comment.getText() == null || !comment.getText().equals(pendingComment.getText()))
+                continue;
+            if (!TextUtils.isEmpty(userUri) && (comment.getUser() == null || !userUri.equals(comment.getUser().getUri())))
+                continue;
+            if (RowFormatter.parseTimestamp(comment.getCreatedOn()) < pendingOperation.mCreatedTime - MAX_CLOCK_SKEW)
+                continue;
+
+            return comment;
+        }
+        return null;
+    }
+
+    private void postResult(final PendingOperation pendingOperation, final int result, final boolean hasPendingDeletions) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (TYPE_POST.equals(pendingOperation.mType)) {
+                    if (result == RESULT_REJECTED) {
+                        Timber.e("postResult() : post %s was rejected", pendingOperation.mClientId);
+                    }
+
+                    Comment comment = result == RESULT_SENT ? pendingOperation.mServerComment : null;
+                    if (comment != null && hasPendingDeletions) {
+                        mPendingDeletions.add(comment.getId());
+                    }
+
+                    // Gone already when the user deleted the pending comment
+                    PendingPost pendingPost = mPendingPosts.remove(pendingOperation.mClientId);
+                    if (pendingPost != null) {
+                        BusProvider.getInstance().post(new CommentPostedEvent(pendingOperation.mVideoId,
+                                pendingPost.mComment,
+                                comment));
+                    }
+
+                    if (comment != null) {
+                        // Deletions of the pending comment made before now are already queued ahead of this
+                        mExecutorService.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                removeSentPost(pendingOperation.mClientId);
+                            }
+                        });
+                    }
+                } else {
+                    if (result == RESULT_REJECTED) {
+                        // The comment shows up again the next time the comments are loaded
+                        Timber.e("postResult() : deletion %s was rejected", pendingOperation.mClientId);
+                    }
+
+                    mPendingDeletions.remove(pendingOperation.mCommentId);
+                }
+            }
+        });
+    }
+
+    private void postPendingDeletion(final long commentId) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mPendingDeletions.add(commentId);
+            }
+        });
+    }
+
+    private void scheduleFlush(final long delay) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mMainHandler.removeCallbacks(mFlushRunnable);
+                mMainHandler.postDelayed(mFlushRunnable, delay);
+            }
+        });
+    }
+
+    // The signed in user, as the author of a pending comment
+    private User getUser() {
+        User user = new User();
+        AuthorizedUser authorizedUser = PreferencesHelper.getAuthorizedUser(mContext);
+        if (authorizedUser == null)
+            return user;
+
+        user.setUri(authorizedUser.getUri());
+        user.setName(authorizedUser.getName());
+
+        List<Picture> pictures = authorizedUser.getPictures();
+        if (pictures != null) {
+            List<Size> sizes = new ArrayList<>();
+            for (Picture picture : pictures) {
+                Size size = new Size();
+                size.setWidth(picture.getWidth());
+                size.setHeight(picture.getHeight());
+                size.setLink(picture.getLink());
+                sizes.add(size);
+            }
+            Pictures userPictures = new Pictures();
+            userPictures.setSizes(sizes);
+            user.setPictures(userPictures);
+        }
+        return user;
+    }
+
+    // Same format as the API's created_on
+    private static String formatTimestamp(long time) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'+00:00'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return dateFormat.format(new Date(time));
+    }
+
+    private VimeoService getVimeoService() {
+        AccessToken token = PreferencesHelper.getAccessToken(mContext);
+        if (token == null)
+            return null;
+
+        return ServiceGenerator.createService(
+                VimeoService.class,
+                VimeoService.BASE_URL,
+                token);
+    }
+
+    private boolean isConnected() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+    // endregion
+
+    // region Inner Classes
+
+    private static class PendingPost {
+        private final long mVideoId;
+        private final Comment mComment;
+
+        PendingPost(long videoId, Comment comment) {
+            mVideoId = videoId;
+            mComment = comment;
+        }
+    }
+
+    // Plain copy of a RealmCommentOperation
+    private class PendingOperation {
+        private final String mClientId;
+        private final String mType;
+        private final long mVideoId;
+        private final Comment mComment;
+        private final long mCreatedTime;
+        private final long mCommentId;
+        private final int mAttempts;
+        private final long mNextAttemptTime;
+        // Set once a post is on the server
+        private Comment mServerComment;
+
+        PendingOperation(RealmCommentOperation realmOperation) {
+            mClientId = realmOperation.getClientId();
+            mType = realmOperation.getType();
+            mVideoId = realmOperation.getVideoId();
+            mComment = TYPE_POST.equals(mType) ? mGson.fromJson(realmOperation.getJson(), Comment.class) : null;
+            mCreatedTime = realmOperation.getCreatedTime();
+            mCommentId = realmOperation.getCommentId();
+            mAttempts = realmOperation.getAttempts();
+            mNextAttemptTime = realmOperation.getNextAttemptTime();
+        }
+    }
+
+    // endregion
+}
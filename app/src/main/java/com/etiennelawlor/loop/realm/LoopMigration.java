@@ -0,0 +1,125 @@
+package com.etiennelawlor.loop.realm;
+
+import com.etiennelawlor.loop.realm.objects.RealmCommentOperation;
+import com.etiennelawlor.loop.realm.objects.RealmDownload;
+import com.etiennelawlor.loop.realm.objects.RealmMutation;
+import com.etiennelawlor.loop.realm.objects.RealmSuggestion;
+import com.etiennelawlor.loop.realm.objects.RealmVideo;
+import com.etiennelawlor.loop.realm.objects.RealmVideoCollection;
+
+import io.realm.Realm;
+import io.realm.RealmMigration;
+import io.realm.internal.ColumnType;
+import io.realm.internal.Table;
+
+/**
+ * Upgrades the Realm schema one version at a time, so the search history and the queued changes
+ * survive app updates.
+ *
+ * Bump SCHEMA_VERSION and add a step to execute() for every change to a RealmObject.
+ *
+ * Created by etiennelawlor on 12/23/15.
+ */
+public class LoopMigration implements RealmMigration {
+
+    // region Constants
+    public static final long SCHEMA_VERSION = 3L;
+    // endregion
+
+    @Override
+    public long execute(Realm realm, long version) {
+        // Version 0 only had RealmSuggestion
+        if (version == 0L) {
+            addVideoTables(realm);
+            addMutationTable(realm);
+            addCommentOperationTable(realm);
+            version++;
+        }
+
+        // Version 2 ranks the search history
+        if (version == 1L) {
+            addSuggestionScore(realm);
+            version++;
+        }
+
+        // Version 3 adds the offline downloads
+        if (version == 2L) {
+            addDownloadTable(realm);
+            version++;
+        }
+
+        return version;
+    }
+
+    // region Helper Methods
+    private void addVideoTables(Realm realm) {
+        Table videoTable = realm.getTable(RealmVideo.class);
+        addPrimaryKey(videoTable, "key");
+        long collectionIndex = videoTable.addColumn(ColumnType.STRING, "collection", Table.NULLABLE);
+        videoTable.addSearchIndex(collectionIndex);
+        videoTable.addColumn(ColumnType.STRING, "uri", Table.NULLABLE);
+        videoTable.addColumn(ColumnType.INTEGER, "position", Table.NOT_NULLABLE);
+        videoTable.addColumn(ColumnType.STRING, "json", Table.NULLABLE);
+
+        Table collectionTable = realm.getTable(RealmVideoCollection.class);
+        addPrimaryKey(collectionTable, "name");
+        collectionTable.addColumn(ColumnType.INTEGER, "total", Table.NOT_NULLABLE);
+        collectionTable.addColumn(ColumnType.DATE, "syncedAt", Table.NULLABLE);
+    }
+
+    private void addMutationTable(Realm realm) {
+        Table table = realm.getTable(RealmMutation.class);
+        addPrimaryKey(table, "key");
+        table.addColumn(ColumnType.STRING, "collection", Table.NULLABLE);
+        table.addColumn(ColumnType.INTEGER, "videoId", Table.NOT_NULLABLE);
+        table.addColumn(ColumnType.BOOLEAN, "added", Table.NOT_NULLABLE);
+        table.addColumn(ColumnType.BOOLEAN, "serverAdded", Table.NOT_NULLABLE);
+        table.addColumn(ColumnType.STRING, "json", Table.NULLABLE);
+        table.addColumn(ColumnType.INTEGER, "attempts", Table.NOT_NULLABLE);
+        table.addColumn(ColumnType.INTEGER, "nextAttemptTime", Table.NOT_NULLABLE);
+    }
+
+    private void addCommentOperationTable(Realm realm) {
+        Table table = realm.getTable(RealmCommentOperation.class);
+        addPrimaryKey(table, "clientId");
+        table.addColumn(ColumnType.INTEGER, "sequence", Table.NOT_NULLABLE);
+        table.addColumn(ColumnType.STRING, "type", Table.NULLABLE);
+        table.addColumn(ColumnType.INTEGER, "videoId", Table.NOT_NULLABLE);
+        table.addColumn(ColumnType.STRING, "json", Table.NULLABLE);
+        table.addColumn(ColumnType.INTEGER, "createdTime", Table.NOT_NULLABLE);
+        table.addColumn(ColumnType.INTEGER, "commentId", Table.NOT_NULLABLE);
+        table.addColumn(ColumnType.STRING, "targetClientId", Table.NULLABLE);
+        table.addColumn(ColumnType.INTEGER, "attempts", Table.NOT_NULLABLE);
+        table.addColumn(ColumnType.INTEGER, "nextAttemptTime", Table.NOT_NULLABLE);
+    }
+
+    private void addSuggestionScore(Realm realm) {
+        Table table = realm.getTable(RealmSuggestion.class);
+        table.addSearchIndex(table.getColumnIndex("timestamp"));
+        long scoreIndex = table.addColumn(ColumnType.DOUBLE, "score", Table.NOT_NULLABLE);
+        // Every saved query has been searched at least once
+        for (long i = 0; i < table.size(); i++) {
+            table.setDouble(scoreIndex, i, 1.0);
+        }
+    }
+
+    private void addDownloadTable(Realm realm) {
+        Table table = realm.getTable(RealmDownload.class);
+        table.addColumn(ColumnType.INTEGER, "videoId", Table.NOT_NULLABLE);
+        table.setPrimaryKey("videoId");
+        table.addColumn(ColumnType.STRING, "state", Table.NULLABLE);
+        table.addColumn(ColumnType.STRING, "quality", Table.NULLABLE);
+        table.addColumn(ColumnType.STRING, "etag", Table.NULLABLE);
+        table.addColumn(ColumnType.INTEGER, "length", Table.NOT_NULLABLE);
+        table.addColumn(ColumnType.STRING, "chunks", Table.NULLABLE);
+        table.addColumn(ColumnType.INTEGER, "attempts", Table.NOT_NULLABLE);
+        table.addColumn(ColumnType.INTEGER, "nextAttemptTime", Table.NOT_NULLABLE);
+    }
+
+    // Primary keys can't be null
+    private void addPrimaryKey(Table table, String name) {
+        table.addColumn(ColumnType.STRING, name, Table.NOT_NULLABLE);
+        table.setPrimaryKey(name);
+    }
+    // endregion
+}
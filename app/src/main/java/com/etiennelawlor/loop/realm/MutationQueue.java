@@ -0,0 +1,422 @@
+package com.etiennelawlor.loop.realm;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.etiennelawlor.loop.helper.PreferencesHelper;
+import com.etiennelawlor.loop.models.AccessToken;
+import com.etiennelawlor.loop.network.ServiceGenerator;
+import com.etiennelawlor.loop.network.VimeoService;
+import com.etiennelawlor.loop.network.models.response.Interaction;
+import com.etiennelawlor.loop.network.models.response.Interactions;
+import com.etiennelawlor.loop.network.models.response.Metadata;
+import com.etiennelawlor.loop.network.models.response.Video;
+import com.etiennelawlor.loop.otto.BusProvider;
+import com.etiennelawlor.loop.otto.events.VideoLikedEvent;
+import com.etiennelawlor.loop.otto.events.WatchLaterEvent;
+import com.etiennelawlor.loop.realm.objects.RealmMutation;
+import com.etiennelawlor.loop.utilities.LogUtility;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.realm.Realm;
+import io.realm.RealmResults;
+import retrofit.Call;
+import retrofit.Response;
+import timber.log.Timber;
+
+/**
+ * Durable queue of like / unlike and watch later add / remove changes.
+ *
+ * A change shows up right away: it is persisted in Realm, where {@link VideoStore} lays it over the
+ * stored collection, and the matching Otto event is posted. It is sent a moment later, so that quick
+ * toggles of the same video cancel out instead of sending a PUT and a DELETE. Pending changes survive
+ * process death, are retried with exponential backoff and are all sent in one pass once connectivity
+ * returns. A change the server accepts is applied to VideoStore, one it rejects is dropped, which
+ * undoes it. A change refused with a 401 is kept as is until the user signs in again, see
+ * {@link #onAuthenticated()}.
+ *
+ * Created by etiennelawlor on 12/17/15.
+ */
+public class MutationQueue {
+
+    // region Constants
+    // Lets quick toggles cancel out before anything is sent
+    private static final long FLUSH_DELAY = 2000L; // ms
+    private static final long INITIAL_BACKOFF = 5000L; // ms
+    private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(10);
+    private static final int MAX_ATTEMPTS = 10;
+
+    private static final int RESULT_SENT = 0;
+    private static final int RESULT_REJECTED = 1;
+    private static final int RESULT_RETRY = 2;
+    private static final int RESULT_UNAUTHORIZED = 3;
+    // endregion
+
+    // region Static Variables
+    private static final MutationQueue sInstance = new MutationQueue();
+    // endregion
+
+    // region Member Variables
+    // Realm work and sending happen on this thread, one change at a time
+    private final ExecutorService mExecutorService = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Gson mGson = ServiceGenerator.getGson();
+    // Key -> state to send, mirrors the Realm queue for the main thread
+    private final Map<String, Boolean> mPendingStates = new HashMap<>();
+    private Context mContext;
+    // The access token the server last refused, only touched on the executor
+    private String mUnauthorizedToken;
+    // endregion
+
+    // region Listeners
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mExecutorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    };
+
+    private final BroadcastReceiver mConnectivityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (isConnected()) {
+                scheduleFlush(0L);
+            }
+        }
+    };
+    // endregion
+
+    // region Constructors
+    MutationQueue() {
+    }
+    // endregion
+
+    public static MutationQueue getInstance() {
+        return sInstance;
+    }
+
+    // Call once from Application.onCreate()
+    public void start(Context context) {
+        mContext = context.getApplicationContext();
+        mContext.registerReceiver(mConnectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+
+        // Pick up the changes the last process left behind
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                Realm realm = RealmUtility.getRealm();
+                try {
+                    RealmResults<RealmMutation> realmMutations = realm.where(RealmMutation.class).findAll();
+                    for (int i = 0; i < realmMutations.size(); i++) {
+                        postPendingState(realmMutations.get(i).getKey(), realmMutations.get(i).isAdded());
+                    }
+                } finally {
+                    realm.close();
+                }
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Applies the change locally and queues it for the server.
+     *
+     * @param collection VideoStore.COLLECTION_LIKES or VideoStore.COLLECTION_WATCH_LATER
+     */
+    public void enqueue(final String collection, final Video video, final boolean isAdded) {
+        final long videoId = video.getId();
+        final String json = mGson.toJson(video, Video.class);
+
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Posted once persisted, so that screens reloading from VideoStore see the change
+                if (persist(collection, videoId, isAdded, json)) {
+                    postEventOnMainThread(collection, video, isAdded);
+                }
+            }
+        });
+        scheduleFlush(FLUSH_DELAY);
+    }
+
+    // Call once a new access token is saved, sends the changes that were waiting for it
+    public void onAuthenticated() {
+        scheduleFlush(0L);
+    }
+
+    /**
+     * Overlays the changes that have not reached the server yet on a video, e.g. one that was just
+     * fetched, so that its like and watch later state match what the user did.
+     */
+    public void applyPendingStates(Video video) {
+        Metadata metadata = video.getMetadata();
+        if (metadata == null || metadata.getInteractions() == null)
+            return;
+
+        Interactions interactions = metadata.getInteractions();
+        applyPendingState(interactions.getLike(), getKey(VideoStore.COLLECTION_LIKES, video.getId()));
+        applyPendingState(interactions.getWatchlater(), getKey(VideoStore.COLLECTION_WATCH_LATER, video.getId()));
+    }
+
+    // region Helper Methods
+    private static String getKey(String collection, long videoId) {
+        return collection + "|" + videoId;
+    }
+
+    private void applyPendingState(Interaction interaction, String key) {
+        Boolean isAdded = mPendingStates.get(key);
+        if (interaction != null && isAdded != null) {
+            interaction.setAdded(isAdded);
+        }
+    }
+
+    // Runs on the executor. Returns false when the change could not be queued
+    private boolean persist(String collection, long videoId, boolean isAdded, String json) {
+        String key = getKey(collection, videoId);
+        Realm realm = RealmUtility.getRealm();
+        try {
+            realm.beginTransaction();
+            RealmMutation realmMutation = realm.where(RealmMutation.class).equalTo("key", key).findFirst();
+            if (realmMutation == null) {
+                realmMutation = new RealmMutation();
+                realmMutation.setKey(key);
+                realmMutation.setCollection(collection);
+                realmMutation.setVideoId(videoId);
+                realmMutation.setAdded(isAdded);
+                realmMutation.setServerAdded(!isAdded);
+                realmMutation.setJson(json);
+                realm.copyToRealmOrUpdate(realmMutation);
+                postPendingState(key, isAdded);
+            } else if (realmMutation.isServerAdded() == isAdded) {
+                // Back to what the server has, nothing to send
+                realmMutation.removeFromRealm();
+                postPendingState(key, null);
+            } else {
+                realmMutation.setAdded(isAdded);
+                realmMutation.setJson(json);
+                realmMutation.setAttempts(0);
+                realmMutation.setNextAttemptTime(0L);
+                postPendingState(key, isAdded);
+            }
+            realm.commitTransaction();
+            return true;
+        } catch (RuntimeException e) {
+            realm.cancelTransaction();
+            Timber.e(e, "persist() : unable to queue %s", key);
+            return false;
+        } finally {
+            realm.close();
+        }
+    }
+
+    // Runs on the executor. Sends every change that is due, then schedules the next pass
+    private void flush() {
+        // When offline, the connectivity receiver flushes once the device is back online
+        AccessToken token = PreferencesHelper.getAccessToken(mContext);
+        if (token == null || !isConnected())
+            return;
+        // Every change would get another 401, wait for onAuthenticated()
+        if (token.getAccessToken().equals(mUnauthorizedToken))
+            return;
+
+        VimeoService vimeoService = ServiceGenerator.createService(
+                VimeoService.class,
+                VimeoService.BASE_URL,
+                token);
+
+        Realm realm = RealmUtility.getRealm();
+        try {
+            long now = System.currentTimeMillis();
+            // Copied out first, as sending changes the results
+            List<PendingMutation> pendingMutations = new ArrayList<>();
+            RealmResults<RealmMutation> realmMutations = realm.where(RealmMutation.class).findAll();
+            for (int i = 0; i < realmMutations.size(); i++) {
+                pendingMutations.add(new PendingMutation(realmMutations.get(i)));
+            }
+
+            long nextAttemptTime = Long.MAX_VALUE;
+            for (PendingMutation pendingMutation : pendingMutations) {
+                if (pendingMutation.mNextAttemptTime > now) {
+                    nextAttemptTime = Math.min(nextAttemptTime, pendingMutation.mNextAttemptTime);
+                    continue;
+                }
+
+                int result = send(vimeoService, pendingMutation);
+                if (result == RESULT_UNAUTHORIZED) {
+                    // Not the change's fault, so it keeps its attempts and is sent again after re-authentication
+                    Timber.d("flush() : %s was refused, waiting for a new access token", pendingMutation.mKey);
+                    mUnauthorizedToken = token.getAccessToken();
+                    return;
+                }
+
+                int attempts = pendingMutation.mAttempts + 1;
+                if (result == RESULT_RETRY && attempts >= MAX_ATTEMPTS) {
+                    result = RESULT_REJECTED;
+                }
+                if (result == RESULT_SENT) {
+                    // Queued on VideoStore before the change leaves the queue, so that reads never miss it
+                    VideoStore.getInstance().applyMutation(pendingMutation.mCollection,
+                            mGson.fromJson(pendingMutation.mJson, Video.class), pendingMutation.mIsAdded);
+                }
+
+                realm.beginTransaction();
+                try {
+                    RealmMutation realmMutation = realm.where(RealmMutation.class)
+                            .equalTo("key", pendingMutation.mKey)
+                            .findFirst();
+                    if (result == RESULT_RETRY) {
+                        long backoff = Math.min(MAX_BACKOFF, INITIAL_BACKOFF << (attempts - 1));
+                        realmMutation.setAttempts(attempts);
+                        realmMutation.setNextAttemptTime(now + backoff);
+                        nextAttemptTime = Math.min(nextAttemptTime, now + backoff);
+                    } else {
+                        realmMutation.removeFromRealm();
+                        postPendingState(pendingMutation.mKey, null);
+                    }
+                    realm.commitTransaction();
+                } catch (RuntimeException e) {
+                    realm.cancelTransaction();
+                    throw e;
+                }
+
+                if (result == RESULT_REJECTED) {
+                    undo(pendingMutation);
+                }
+            }
+
+            if (nextAttemptTime != Long.MAX_VALUE) {
+                scheduleFlush(Math.max(0L, nextAttemptTime - System.currentTimeMillis()));
+            }
+        } catch (RuntimeException e) {
+            Timber.e(e, "flush() : unable to flush");
+        } finally {
+            realm.close();
+        }
+    }
+
+    private int send(VimeoService vimeoService, PendingMutation pendingMutation) {
+        String videoId = String.valueOf(pendingMutation.mVideoId);
+        Call<Object> call;
+        if (VideoStore.COLLECTION_LIKES.equals(pendingMutation.mCollection)) {
+            call = pendingMutation.mIsAdded ? vimeoService.likeVideo(videoId) : vimeoService.unlikeVideo(videoId);
+        } else {
+            call = pendingMutation.mIsAdded ? vimeoService.addVideoToWatchLater(videoId) : vimeoService.removeVideoFromWatchLater(videoId);
+        }
+
+        try {
+            Response<Object> response = call.execute();
+            if (response.isSuccess())
+                return RESULT_SENT;
+
+            if (response.raw() != null) {
+                LogUtility.logFailedResponse(response.raw());
+            }
+
+            int code = response.code();
+            if (code == HttpURLConnection.HTTP_UNAUTHORIZED)
+                return RESULT_UNAUTHORIZED;
+            // Timeouts, rate limiting and server errors are worth another try
+            return code == 408 || code == 429 || code >= 500 ? RESULT_RETRY : RESULT_REJECTED;
+        } catch (IOException e) {
+            LogUtility.logFailure(e);
+            return RESULT_RETRY;
+        }
+    }
+
+    // VideoStore stops showing the change once it leaves the queue, screens are told to put back the state the server has
+    private void undo(PendingMutation pendingMutation) {
+        Timber.e("undo() : %s was rejected", pendingMutation.mKey);
+        Video video = mGson.fromJson(pendingMutation.mJson, Video.class);
+        postEventOnMainThread(pendingMutation.mCollection, video, !pendingMutation.mIsAdded);
+    }
+
+    private void postPendingState(final String key, final Boolean isAdded) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isAdded == null) {
+                    mPendingStates.remove(key);
+                } else {
+                    mPendingStates.put(key, isAdded);
+                }
+            }
+        });
+    }
+
+    // Carries the change, so that screens can apply it to what they show
+    private void postEventOnMainThread(final String collection, final Video video, final boolean isAdded) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (VideoStore.COLLECTION_LIKES.equals(collection)) {
+                    BusProvider.getInstance().post(new VideoLikedEvent(video, isAdded));
+                } else {
+                    BusProvider.getInstance().post(new WatchLaterEvent(video, isAdded));
+                }
+            }
+        });
+    }
+
+    private void scheduleFlush(final long delay) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mMainHandler.removeCallbacks(mFlushRunnable);
+                mMainHandler.postDelayed(mFlushRunnable, delay);
+            }
+        });
+    }
+
+    private boolean isConnected() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+    // endregion
+
+    // region Inner Classes
+
+    // Plain copy of a RealmMutation
+    private static class PendingMutation {
+        private final String mKey;
+        private final String mCollection;
+        private final long mVideoId;
+        private final boolean mIsAdded;
+        private final String mJson;
+        private final int mAttempts;
+        private final long mNextAttemptTime;
+
+        PendingMutation(RealmMutation realmMutation) {
+            mKey = realmMutation.getKey();
+            mCollection = realmMutation.getCollection();
+            mVideoId = realmMutation.getVideoId();
+            mIsAdded = realmMutation.isAdded();
+            mJson = realmMutation.getJson();
+            mAttempts = realmMutation.getAttempts();
+            mNextAttemptTime = realmMutation.getNextAttemptTime();
+        }
+    }
+
+    // endregion
+}
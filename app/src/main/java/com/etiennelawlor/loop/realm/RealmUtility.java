@@ -1,118 +1,211 @@
 package com.etiennelawlor.loop.realm;
 
 import android.content.Context;
-import android.text.TextUtils;
 
 import com.etiennelawlor.loop.LoopApplication;
 import com.etiennelawlor.loop.realm.objects.RealmSuggestion;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import io.realm.Realm;
 import io.realm.RealmConfiguration;
 import io.realm.RealmResults;
 import io.realm.exceptions.RealmMigrationNeededException;
+import timber.log.Timber;
 
 /**
  * Created by etiennelawlor on 10/8/15.
  */
 public class RealmUtility {
 
-    private static Realm mRealm;
-
-    private static RealmConfiguration getRealmConfiguration(Context context) {
-//        return new RealmConfiguration.Builder(context)
-//                .name("loop.realm")
-//                .schemaVersion(1)
-//                .build();
-
-        return new RealmConfiguration.Builder(context).build();
+    // region Constants
+    private static final int MAX_SUGGESTIONS = 5;
+    private static final int DEFAULT_MAX_HISTORY_SIZE = 500;
+    // Compacting only once the history is this much over its cap keeps it off most searches
+    private static final int HISTORY_COMPACTION_SLACK = 50;
+    // endregion
+
+    // region Static Variables
+    // Writes of the search history happen on this thread, off the main thread
+    private static final ExecutorService sWriteExecutorService = Executors.newSingleThreadExecutor();
+    private static RealmConfiguration sRealmConfiguration;
+    private static volatile int sMaxHistorySize = DEFAULT_MAX_HISTORY_SIZE;
+    // endregion
+
+    private static synchronized RealmConfiguration getRealmConfiguration() {
+        if (sRealmConfiguration == null) {
+            Context context = LoopApplication.getInstance().getApplicationContext();
+            // Same file as the default configuration, so existing data is migrated in place
+            sRealmConfiguration = new RealmConfiguration.Builder(context)
+                    .schemaVersion(LoopMigration.SCHEMA_VERSION)
+                    .migration(new LoopMigration())
+                    .build();
+        }
+        return sRealmConfiguration;
     }
 
-    public static void saveQuery(String query){
-        Context context = LoopApplication.getInstance().getApplicationContext();
-        try{
-            mRealm = Realm.getInstance(context);
+    /**
+     * Opens a Realm for the calling thread, the caller has to close it. Realm keeps one instance per
+     * thread and configuration, so nested calls on the same thread share it.
+     */
+    static Realm getRealm() {
+        RealmConfiguration realmConfiguration = getRealmConfiguration();
+        try {
+            return Realm.getInstance(realmConfiguration);
         } catch (RealmMigrationNeededException e) {
-            Realm.deleteRealm(getRealmConfiguration(context));
-            mRealm = Realm.getInstance(context);
+            // Only for a schema LoopMigration does not know, e.g. after a downgrade
+            Timber.e(e, "getRealm() : unknown schema, deleting the Realm");
+            Realm.deleteRealm(realmConfiguration);
+            return Realm.getInstance(realmConfiguration);
         }
+    }
 
-        RealmSuggestion realmSuggestion = new RealmSuggestion();
-        realmSuggestion.setToken(query);
-        realmSuggestion.setTimestamp(new Date());
-        mRealm.beginTransaction();
-        // This will create a new one in Realm
-        // realm.copyToRealm(obj);
-        // This will update a existing one with the same id or create a new one instead
-        mRealm.copyToRealmOrUpdate(realmSuggestion);
-
-        mRealm.commitTransaction();
-
-        mRealm.close();
+    // How many searches the history keeps, the lowest ranked ones are dropped first
+    public static void setMaxHistorySize(int maxHistorySize) {
+        sMaxHistorySize = maxHistorySize;
     }
 
-    public static void deleteQuery(String query){
-        Context context = LoopApplication.getInstance().getApplicationContext();
-        try{
-            mRealm = Realm.getInstance(context);
-        } catch (RealmMigrationNeededException e) {
-            Realm.deleteRealm(getRealmConfiguration(context));
-            mRealm = Realm.getInstance(context);
-        }
+    public static void saveQuery(final String query){
+        final Date timestamp = new Date();
+        // Suggested right away, and again once written in case the index was loaded in between
+        SuggestionIndex.getInstance().addSearch(query, timestamp);
+        sWriteExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                Realm realm = getRealm();
+                try {
+                    realm.beginTransaction();
+                    RealmSuggestion realmSuggestion = realm.where(RealmSuggestion.class)
+                            .equalTo("token", query)
+                            .findFirst();
+                    double score = realmSuggestion == null
+                            ? 1.0
+                            : SuggestionIndex.getUpdatedScore(Math.max(realmSuggestion.getScore(), 1.0),
+                                    realmSuggestion.getTimestamp() == null ? 0L : realmSuggestion.getTimestamp().getTime(),
+                                    timestamp.getTime());
+
+                    realmSuggestion = new RealmSuggestion();
+                    realmSuggestion.setToken(query);
+                    realmSuggestion.setTimestamp(timestamp);
+                    realmSuggestion.setScore(score);
+                    // This will update a existing one with the same id or create a new one instead
+                    realm.copyToRealmOrUpdate(realmSuggestion);
+                    realm.commitTransaction();
+
+                    SuggestionIndex.getInstance().put(query, timestamp, score);
+                } catch (RuntimeException e) {
+                    realm.cancelTransaction();
+                    Timber.e(e, "saveQuery() : unable to save %s", query);
+                } finally {
+                    realm.close();
+                }
 
-        mRealm.beginTransaction();
+                compactHistory();
+            }
+        });
+    }
 
-        RealmSuggestion realmSuggestion
-                = mRealm.where(RealmSuggestion.class)
-                .equalTo("token", query)
-                .findFirst();
+    public static void deleteQuery(final String query){
+        // No longer suggested right away, and again once written in case the index was loaded in between
+        SuggestionIndex.getInstance().remove(query);
+        sWriteExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                Realm realm = getRealm();
+                try {
+                    realm.beginTransaction();
+                    RealmSuggestion realmSuggestion
+                            = realm.where(RealmSuggestion.class)
+                            .equalTo("token", query)
+                            .findFirst();
+
+                    if (realmSuggestion != null) {
+                        realmSuggestion.removeFromRealm();
+                    }
+                    realm.commitTransaction();
+
+                    SuggestionIndex.getInstance().remove(query);
+                } catch (RuntimeException e) {
+                    realm.cancelTransaction();
+                    Timber.e(e, "deleteQuery() : unable to delete %s", query);
+                } finally {
+                    realm.close();
+                }
+            }
+        });
+    }
 
-        if(realmSuggestion != null){
-            realmSuggestion.removeFromRealm();
+    // Runs on the write executor. Drops the lowest ranked searches once the history is over its cap
+    private static void compactHistory() {
+        Realm realm = getRealm();
+        try {
+            RealmResults<RealmSuggestion> realmSuggestions = realm.where(RealmSuggestion.class).findAll();
+            if (realmSuggestions.size() <= sMaxHistorySize + HISTORY_COMPACTION_SLACK)
+                return;
+
+            int excess = realmSuggestions.size() - sMaxHistorySize;
+            List<RankedToken> rankedTokens = new ArrayList<>(realmSuggestions.size());
+            for (int i = 0; i < realmSuggestions.size(); i++) {
+                RealmSuggestion realmSuggestion = realmSuggestions.get(i);
+                Date timestamp = realmSuggestion.getTimestamp();
+                rankedTokens.add(new RankedToken(realmSuggestion.getToken(),
+                        SuggestionIndex.getRank(Math.max(realmSuggestion.getScore(), 1.0),
+                                timestamp == null ? 0L : timestamp.getTime())));
+            }
+            Collections.sort(rankedTokens);
+
+            realm.beginTransaction();
+            try {
+                for (int i = 0; i < excess; i++) {
+                    String token = rankedTokens.get(i).mToken;
+                    RealmSuggestion realmSuggestion = realm.where(RealmSuggestion.class)
+                            .equalTo("token", token)
+                            .findFirst();
+                    if (realmSuggestion != null) {
+                        realmSuggestion.removeFromRealm();
+                    }
+                    SuggestionIndex.getInstance().remove(token);
+                }
+                realm.commitTransaction();
+            } catch (RuntimeException e) {
+                realm.cancelTransaction();
+                throw e;
+            }
+            Timber.d("compactHistory() : dropped %d searches", excess);
+        } catch (RuntimeException e) {
+            Timber.e(e, "compactHistory() : unable to compact");
+        } finally {
+            realm.close();
         }
-
-        mRealm.commitTransaction();
-
-        mRealm.close();
     }
 
+    // Served from memory, see SuggestionIndex
     public static List<String> getSuggestions(String query) {
-        Context context = LoopApplication.getInstance().getApplicationContext();
-
-        try{
-            mRealm = Realm.getInstance(context);
-        } catch (RealmMigrationNeededException e) {
-            Realm.deleteRealm(getRealmConfiguration(context));
-            mRealm = Realm.getInstance(context);
-        }
-
-        List<String> suggestions = new ArrayList<>();
+        return SuggestionIndex.getInstance().getSuggestions(query, MAX_SUGGESTIONS);
+    }
 
-        RealmResults<RealmSuggestion> realmResults
-                = mRealm.where(RealmSuggestion.class)
-                .contains("token", query)
-                .findAll();
+    // region Inner Classes
 
-        realmResults.sort("timestamp", RealmResults.SORT_ORDER_DESCENDING); // Sort descending
+    // Lowest rank first
+    private static class RankedToken implements Comparable<RankedToken> {
+        private final String mToken;
+        private final double mRank;
 
-        if (realmResults != null) {
-            int size = (realmResults.size() > 5) ? 5 : realmResults.size();
-            for (int i = 0; i < size; i++) {
-                RealmSuggestion realmSuggestion = realmResults.get(i);
-                if (realmSuggestion != null) {
-                    String token = realmSuggestion.getToken();
-                    if (!TextUtils.isEmpty(token)) {
-                        suggestions.add(token);
-                    }
-                }
-            }
+        RankedToken(String token, double rank) {
+            mToken = token;
+            mRank = rank;
         }
 
-        mRealm.close();
-
-        return suggestions;
+        @Override
+        public int compareTo(RankedToken another) {
+            return Double.compare(mRank, another.mRank);
+        }
     }
+
+    // endregion
 }
@@ -0,0 +1,428 @@
+package com.etiennelawlor.loop.realm;
+
+import android.text.TextUtils;
+
+import com.etiennelawlor.loop.realm.objects.RealmSuggestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import io.realm.Realm;
+import io.realm.RealmResults;
+import timber.log.Timber;
+
+/**
+ * In-memory index of the saved search queries (RealmSuggestion), loaded from Realm once and kept in
+ * sync by RealmUtility.saveQuery() and RealmUtility.deleteQuery().
+ *
+ * A query matches when it is a prefix of the saved query or of one of its words, ignoring case.
+ * Every word start of every saved query is kept in one sorted array, so the word starts a query is a
+ * prefix of are found with two binary searches. When that range is large (short queries), the saved
+ * queries are walked from the best ranked one instead, which finds enough matches right away. When
+ * there are not enough matches, queries one typo away from a match fill the remaining slots, looked
+ * for among the best ranked ones only.
+ *
+ * Saved queries are ranked by frecency: every search adds 1 to a score that halves every HALF_LIFE.
+ * Comparing log2(score) + time / HALF_LIFE ranks them as their decayed scores would at any later
+ * time, so the rank of an entry only changes when it is searched again.
+ *
+ * Thread safe.
+ *
+ * Created by etiennelawlor on 10/8/15.
+ */
+public class SuggestionIndex {
+
+    // region Constants
+    // Above this many matching word starts, walking the saved queries by rank is cheaper
+    private static final int MAX_RANGE_SCAN = 256;
+    private static final long HALF_LIFE = TimeUnit.DAYS.toMillis(14);
+    // Shorter queries only get exact prefix matches
+    private static final int MIN_FUZZY_QUERY_LENGTH = 3;
+    // Typos are only looked for among this many of the best ranked saved queries
+    private static final int MAX_FUZZY_SCAN = 500;
+    // endregion
+
+    // region Static Variables
+    private static final SuggestionIndex sInstance = new SuggestionIndex();
+    // endregion
+
+    // region Member Variables
+    // Saved query -> entry
+    private final Map<String, Entry> mEntries = new HashMap<>();
+    // Best ranked first
+    private final TreeSet<Entry> mRankedEntries = new TreeSet<>(new Comparator<Entry>() {
+        @Override
+        public int compare(Entry lhs, Entry rhs) {
+            int comparison = Double.compare(rhs.mRank, lhs.mRank);
+            return comparison != 0 ? comparison : lhs.mToken.compareTo(rhs.mToken);
+        }
+    });
+    // Word starts of all the saved queries, sorted by the text from the word start on
+    private WordStart[] mWordStarts = new WordStart[0];
+    private int mWordStartCount = 0;
+    private boolean mIsLoaded = false;
+    // endregion
+
+    // region Constructors
+    SuggestionIndex() {
+    }
+    // endregion
+
+    public static SuggestionIndex getInstance() {
+        return sInstance;
+    }
+
+    // Score of a saved query searched again at time, that was last searched at lastTime
+    static double getUpdatedScore(double score, long lastTime, long time) {
+        return score * Math.pow(2.0, -(double) Math.max(0L, time - lastTime) / HALF_LIFE) + 1.0;
+    }
+
+    // Lower ranked saved queries are the first to go when the history is compacted
+    static double getRank(double score, long time) {
+        return Math.log(Math.max(score, Double.MIN_NORMAL)) / Math.log(2.0) + (double) time / HALF_LIFE;
+    }
+
+    /**
+     * Returns up to limit saved queries matching query, best ranked first.
+     */
+    public synchronized List<String> getSuggestions(String query, int limit) {
+        load();
+
+        List<String> suggestions = new ArrayList<>(limit);
+        String normalizedQuery = normalize(query);
+        if (normalizedQuery.length() == 0) {
+            for (Entry entry : mRankedEntries) {
+                if (suggestions.size() >= limit)
+                    break;
+                suggestions.add(entry.mToken);
+            }
+            return suggestions;
+        }
+
+        int from = findFirstWordStart(normalizedQuery, false);
+        int to = findFirstWordStart(normalizedQuery, true);
+        if (to - from <= MAX_RANGE_SCAN) {
+            // Few enough matches to rank them all
+            Set<Entry> matches = new HashSet<>();
+            for (int i = from; i < to; i++) {
+                matches.add(mWordStarts[i].mEntry);
+            }
+            List<Entry> rankedMatches = new ArrayList<>(matches);
+            Collections.sort(rankedMatches, mRankedEntries.comparator());
+            for (int i = 0; i < rankedMatches.size() && i < limit; i++) {
+                suggestions.add(rankedMatches.get(i).mToken);
+            }
+        } else {
+            for (Entry entry : mRankedEntries) {
+                if (suggestions.size() >= limit)
+                    break;
+                if (entry.matches(normalizedQuery)) {
+                    suggestions.add(entry.mToken);
+                }
+            }
+        }
+
+        if (suggestions.size() < limit && normalizedQuery.length() >= MIN_FUZZY_QUERY_LENGTH) {
+            int scanned = 0;
+            for (Entry entry : mRankedEntries) {
+                if (suggestions.size() >= limit || scanned++ >= MAX_FUZZY_SCAN)
+                    break;
+                if (!suggestions.contains(entry.mToken) && entry.matchesWithTypo(normalizedQuery)) {
+                    suggestions.add(entry.mToken);
+                }
+            }
+        }
+        return suggestions;
+    }
+
+    // Counts a search right away, before it is saved in Realm
+    public synchronized void addSearch(String token, Date timestamp) {
+        if (!mIsLoaded)
+            return;
+
+        Entry entry = mEntries.get(token);
+        double score = entry == null ? 1.0 : getUpdatedScore(entry.mScore, entry.mTimestamp, timestamp.getTime());
+        put(token, timestamp, score);
+    }
+
+    // Called once the query has been saved in Realm, with its saved score
+    public synchronized void put(String token, Date timestamp, double score) {
+        if (!mIsLoaded)
+            return;
+
+        Entry entry = mEntries.get(token);
+        if (entry != null) {
+            // Only its rank changes
+            mRankedEntries.remove(entry);
+            entry.setScore(score, timestamp);
+            mRankedEntries.add(entry);
+            return;
+        }
+
+        entry = new Entry(token, timestamp, score);
+        mEntries.put(token, entry);
+        mRankedEntries.add(entry);
+        for (int offset : entry.mWordOffsets) {
+            insertWordStart(new WordStart(entry, offset));
+        }
+    }
+
+    // Called once the query has been deleted from Realm
+    public synchronized void remove(String token) {
+        if (!mIsLoaded)
+            return;
+
+        Entry entry = mEntries.remove(token);
+        if (entry == null)
+            return;
+
+        mRankedEntries.remove(entry);
+        int count = 0;
+        for (int i = 0; i < mWordStartCount; i++) {
+            if (mWordStarts[i].mEntry != entry) {
+                mWordStarts[count++] = mWordStarts[i];
+            }
+        }
+        for (int i = count; i < mWordStartCount; i++) {
+            mWordStarts[i] = null;
+        }
+        mWordStartCount = count;
+    }
+
+    // Loads saved queries that are not in Realm, each searched once at its timestamp. For benchmarks
+    synchronized void load(Map<String, Date> searches) {
+        List<Entry> entries = new ArrayList<>(searches.size());
+        for (Map.Entry<String, Date> search : searches.entrySet()) {
+            entries.add(new Entry(search.getKey(), search.getValue(), 1.0));
+        }
+        load(entries);
+    }
+
+    // region Helper Methods
+    private void load() {
+        if (mIsLoaded)
+            return;
+
+        Realm realm = RealmUtility.getRealm();
+        try {
+            RealmResults<RealmSuggestion> realmSuggestions = realm.where(RealmSuggestion.class).findAll();
+            List<Entry> entries = new ArrayList<>(realmSuggestions.size());
+            for (int i = 0; i < realmSuggestions.size(); i++) {
+                RealmSuggestion realmSuggestion = realmSuggestions.get(i);
+                String token = realmSuggestion.getToken();
+                if (TextUtils.isEmpty(token))
+                    continue;
+
+                entries.add(new Entry(token, realmSuggestion.getTimestamp(), realmSuggestion.getScore()));
+            }
+            load(entries);
+        } catch (RuntimeException e) {
+            Timber.e(e, "load() : unable to load suggestions");
+        } finally {
+            realm.close();
+        }
+    }
+
+    private void load(List<Entry> entries) {
+        mEntries.clear();
+        mRankedEntries.clear();
+        List<WordStart> wordStarts = new ArrayList<>(entries.size() * 2);
+        for (Entry entry : entries) {
+            mEntries.put(entry.mToken, entry);
+            mRankedEntries.add(entry);
+            for (int offset : entry.mWordOffsets) {
+                wordStarts.add(new WordStart(entry, offset));
+            }
+        }
+
+        mWordStarts = wordStarts.toArray(new WordStart[wordStarts.size()]);
+        mWordStartCount = mWordStarts.length;
+        Arrays.sort(mWordStarts, new Comparator<WordStart>() {
+            @Override
+            public int compare(WordStart lhs, WordStart rhs) {
+                return lhs.compareTo(rhs);
+            }
+        });
+        mIsLoaded = true;
+    }
+
+    private void insertWordStart(WordStart wordStart) {
+        if (mWordStartCount == mWordStarts.length) {
+            WordStart[] wordStarts = new WordStart[Math.max(16, mWordStarts.length * 2)];
+            System.arraycopy(mWordStarts, 0, wordStarts, 0, mWordStartCount);
+            mWordStarts = wordStarts;
+        }
+
+        int low = 0;
+        int high = mWordStartCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mWordStarts[middle].compareTo(wordStart) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        System.arraycopy(mWordStarts, low, mWordStarts, low + 1, mWordStartCount - low);
+        mWordStarts[low] = wordStart;
+        mWordStartCount += 1;
+    }
+
+    /**
+     * Index of the first word start whose text does not come before query, or with isAfter, of the
+     * first one that comes after every text starting with query.
+     */
+    private int findFirstWordStart(String query, boolean isAfter) {
+        int low = 0;
+        int high = mWordStartCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = mWordStarts[middle].compareToPrefix(query);
+            if (comparison < 0 || (isAfter && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.US);
+    }
+
+    private static boolean isPrefixWithTypo(String query, String text, int offset) {
+        int length = text.length() - offset;
+        int i = 0;
+        while (i < query.length() && i < length && query.charAt(i) == text.charAt(offset + i)) {
+            i++;
+        }
+        if (i == query.length())
+            return true;
+
+        // Substitution, a missing character in query, then an extra character in query
+        return startsWith(query, i + 1, text, offset + i + 1)
+                || startsWith(query, i, text, offset + i + 1)
+                || startsWith(query, i + 1, text, offset + i);
+    }
+
+    // True when query from queryIndex on is a prefix of text from textIndex on
+    private static boolean startsWith(String query, int queryIndex, String text, int textIndex) {
+        int remaining = query.length() - queryIndex;
+        return remaining <= 0 || text.regionMatches(textIndex, query, queryIndex, remaining);
+    }
+
+    private static boolean isWordStart(String text, int index) {
+        return Character.isLetterOrDigit(text.charAt(index))
+                && (index == 0 || !Character.isLetterOrDigit(text.charAt(index - 1)));
+    }
+    // endregion
+
+    // region Inner Classes
+
+    private static class Entry {
+        private final String mToken;
+        private final String mNormalizedToken;
+        private final int[] mWordOffsets;
+        private long mTimestamp;
+        private double mScore;
+        private double mRank;
+
+        Entry(String token, Date timestamp, double score) {
+            mToken = token;
+            mNormalizedToken = normalize(token);
+            setScore(score, timestamp);
+
+            int count = 0;
+            for (int i = 0; i < mNormalizedToken.length(); i++) {
+                if (i == 0 || isWordStart(mNormalizedToken, i)) {
+                    count++;
+                }
+            }
+            mWordOffsets = new int[count];
+            count = 0;
+            for (int i = 0; i < mNormalizedToken.length(); i++) {
+                if (i == 0 || isWordStart(mNormalizedToken, i)) {
+                    mWordOffsets[count++] = i;
+                }
+            }
+        }
+
+        void setScore(double score, Date timestamp) {
+            mTimestamp = timestamp == null ? 0L : timestamp.getTime();
+            // Queries saved before scores existed count as one search
+            mScore = Math.max(score, 1.0);
+            mRank = getRank(mScore, mTimestamp);
+        }
+
+        boolean matches(String query) {
+            for (int offset : mWordOffsets) {
+                if (mNormalizedToken.startsWith(query, offset))
+                    return true;
+            }
+            return false;
+        }
+
+        // True when one substitution, insertion or deletion turns query into a prefix of a word start
+        boolean matchesWithTypo(String query) {
+            for (int offset : mWordOffsets) {
+                if (isPrefixWithTypo(query, mNormalizedToken, offset))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    private static class WordStart {
+        private final Entry mEntry;
+        private final int mOffset;
+
+        WordStart(Entry entry, int offset) {
+            mEntry = entry;
+            mOffset = offset;
+        }
+
+        // Compares the text from this word start on with the one of another word start
+        int compareTo(WordStart other) {
+            String text = mEntry.mNormalizedToken;
+            String otherText = other.mEntry.mNormalizedToken;
+            int length = text.length() - mOffset;
+            int otherLength = otherText.length() - other.mOffset;
+            for (int i = 0; i < length && i < otherLength; i++) {
+                char c = text.charAt(mOffset + i);
+                char otherC = otherText.charAt(other.mOffset + i);
+                if (c != otherC)
+                    return c - otherC;
+            }
+            return length - otherLength;
+        }
+
+        // Like compareTo(), but 0 when the text from this word start on starts with prefix
+        int compareToPrefix(String prefix) {
+            String text = mEntry.mNormalizedToken;
+            int length = text.length() - mOffset;
+            for (int i = 0; i < prefix.length(); i++) {
+                if (i >= length)
+                    return -1;
+                char c = text.charAt(mOffset + i);
+                if (c != prefix.charAt(i))
+                    return c - prefix.charAt(i);
+            }
+            return 0;
+        }
+    }
+
+    // endregion
+}
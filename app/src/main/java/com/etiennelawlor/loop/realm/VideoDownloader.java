@@ -0,0 +1,791 @@
+package com.etiennelawlor.loop.realm;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.v4.net.ConnectivityManagerCompat;
+
+import com.etiennelawlor.loop.helper.PreferencesHelper;
+import com.etiennelawlor.loop.models.AccessToken;
+import com.etiennelawlor.loop.network.ServiceGenerator;
+import com.etiennelawlor.loop.network.VimeoPlayerService;
+import com.etiennelawlor.loop.network.models.response.ProgressiveData;
+import com.etiennelawlor.loop.network.models.response.Video;
+import com.etiennelawlor.loop.network.models.response.VideoConfig;
+import com.etiennelawlor.loop.otto.BusProvider;
+import com.etiennelawlor.loop.otto.events.WatchLaterEvent;
+import com.etiennelawlor.loop.realm.objects.RealmDownload;
+import com.etiennelawlor.loop.utilities.VideoConfigUtility;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.otto.Subscribe;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.realm.Realm;
+import io.realm.RealmResults;
+import okio.BufferedSource;
+import okio.ByteString;
+import timber.log.Timber;
+
+/**
+ * Downloads the watch later videos for offline playback.
+ *
+ * The downloads follow the watch later collection in {@link VideoStore}: a video added to it is
+ * queued, a video removed from it is cancelled and its file deleted. One video is downloaded at a
+ * time, as PARALLEL_CHUNKS range requests of CHUNK_SIZE in parallel. Finished chunks are recorded in
+ * Realm, so a download resumes where it stopped after a failure, a loss of connectivity or process
+ * death. Failures are retried with exponential backoff.
+ *
+ * Integrity: every chunk must come back as a 206 for exactly its range, chunks are requested with
+ * If-Range so a file that changed on the CDN restarts the download instead of mixing versions, and a
+ * finished file is checked against the CDN's ETag when that is an MD5.
+ *
+ * Downloads only run on unmetered networks unless {@link #setMeteredAllowed(boolean)}, can be
+ * throttled with {@link #setMaxBandwidth(long)} and stop at {@link #setMaxStorage(long)} or when less
+ * than MIN_FREE_SPACE would be left on the device.
+ *
+ * Created by etiennelawlor on 12/27/15.
+ */
+public class VideoDownloader {
+
+    // region Constants
+    public static final String STATE_QUEUED = "queued";
+    public static final String STATE_COMPLETED = "completed";
+    public static final String STATE_FAILED = "failed";
+
+    private static final String DOWNLOAD_DIRECTORY = "downloads";
+    // Small enough to keep a handful of videos, good enough on a phone
+    private static final String DOWNLOAD_QUALITY = "360p";
+    private static final int CHUNK_SIZE = 2 * 1024 * 1024; // bytes
+    private static final int PARALLEL_CHUNKS = 3;
+    private static final int BUFFER_SIZE = 16 * 1024; // bytes
+    private static final long DEFAULT_MAX_STORAGE = 1024L * 1024L * 1024L; // 1GB
+    private static final long MIN_FREE_SPACE = 200L * 1024L * 1024L; // 200MB
+    private static final long INITIAL_BACKOFF = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_BACKOFF = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_ATTEMPTS = 8;
+    // endregion
+
+    // region Static Variables
+    private static final VideoDownloader sInstance = new VideoDownloader();
+    // endregion
+
+    // region Member Variables
+    // Realm work and downloads happen on this thread, one video at a time
+    private final ExecutorService mExecutorService = Executors.newSingleThreadExecutor();
+    private final ExecutorService mChunkExecutorService = Executors.newFixedThreadPool(PARALLEL_CHUNKS);
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Throttle mThrottle = new Throttle();
+    // Video id -> downloaded file, read from the main thread
+    private final Map<Long, File> mCompletedFiles = new ConcurrentHashMap<>();
+    // Videos removed from watch later, their download stops at the next buffer
+    private final Set<Long> mCancelledVideoIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private volatile long mMaxBandwidth = 0L;
+    private volatile long mMaxStorage = DEFAULT_MAX_STORAGE;
+    private volatile boolean mIsMeteredAllowed = false;
+    // The video being downloaded, -1 when none
+    private volatile long mActiveVideoId = -1L;
+    private Context mContext;
+    private File mDirectory;
+    private OkHttpClient mOkHttpClient;
+    // endregion
+
+    // region Listeners
+    private final Runnable mRunRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mExecutorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    downloadPending();
+                }
+            });
+        }
+    };
+
+    private final BroadcastReceiver mConnectivityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (isAllowed()) {
+                scheduleRun(0L);
+            }
+        }
+    };
+    // endregion
+
+    // region Constructors
+    VideoDownloader() {
+    }
+    // endregion
+
+    public static VideoDownloader getInstance() {
+        return sInstance;
+    }
+
+    // Call once from Application.onCreate()
+    public void start(Context context) {
+        mContext = context.getApplicationContext();
+        mDirectory = new File(mContext.getFilesDir(), DOWNLOAD_DIRECTORY);
+
+        // Video bodies are too big for the HTTP cache
+        mOkHttpClient = ServiceGenerator.getBaseClient().clone();
+        mOkHttpClient.setCache(null);
+        mOkHttpClient.setReadTimeout(30, TimeUnit.SECONDS);
+
+        mContext.registerReceiver(mConnectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        BusProvider.getInstance().register(this);
+
+        // Pick up the downloads the last process left behind
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadCompletedFiles();
+            }
+        });
+        sync();
+    }
+
+    // Returns the downloaded file of the video, null when it is not downloaded (yet)
+    public File getLocalFile(long videoId) {
+        File file = mCompletedFiles.get(videoId);
+        return file != null && file.exists() ? file : null;
+    }
+
+    // In bytes per second across all chunks, 0 for no limit
+    public void setMaxBandwidth(long maxBandwidth) {
+        mMaxBandwidth = maxBandwidth;
+    }
+
+    // In bytes across all downloads
+    public void setMaxStorage(long maxStorage) {
+        mMaxStorage = maxStorage;
+    }
+
+    public void setMeteredAllowed(boolean isMeteredAllowed) {
+        mIsMeteredAllowed = isMeteredAllowed;
+        if (isMeteredAllowed) {
+            scheduleRun(0L);
+        }
+    }
+
+    // region Otto Methods
+    @Subscribe
+    public void onWatchLater(WatchLaterEvent event) {
+        sync();
+    }
+    // endregion
+
+    // region Helper Methods
+    // Brings the downloads in line with the stored watch later collection
+    private void sync() {
+        VideoStore.getInstance().load(VideoStore.COLLECTION_WATCH_LATER, new VideoStore.OnVideosLoadedListener() {
+            @Override
+            public void onVideosLoaded(List<Video> videos) {
+                // Never synced, WatchLaterVideosFragment posts a WatchLaterEvent once it is
+                if (videos == null)
+                    return;
+
+                final Set<Long> videoIds = new HashSet<>();
+                for (Video video : videos) {
+                    videoIds.add(video.getId());
+                }
+                // Stopped right away, reconcile() deletes it once the executor is free
+                long activeVideoId = mActiveVideoId;
+                if (activeVideoId != -1L && !videoIds.contains(activeVideoId)) {
+                    mCancelledVideoIds.add(activeVideoId);
+                }
+                mExecutorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        reconcile(videoIds);
+                    }
+                });
+                scheduleRun(0L);
+            }
+        });
+    }
+
+    // Runs on the executor
+    private void loadCompletedFiles() {
+        Realm realm = RealmUtility.getRealm();
+        try {
+            RealmResults<RealmDownload> realmDownloads = realm.where(RealmDownload.class)
+                    .equalTo("state", STATE_COMPLETED)
+                    .findAll();
+            List<Long> missingVideoIds = new ArrayList<>();
+            for (int i = 0; i < realmDownloads.size(); i++) {
+                RealmDownload realmDownload = realmDownloads.get(i);
+                File file = getFile(realmDownload.getVideoId());
+                if (file.length() == realmDownload.getLength()) {
+                    mCompletedFiles.put(realmDownload.getVideoId(), file);
+                } else {
+                    missingVideoIds.add(realmDownload.getVideoId());
+                }
+            }
+
+            // e.g. cleared by the user, downloaded again from scratch
+            for (Long videoId : missingVideoIds) {
+                Timber.w("loadCompletedFiles() : %d is missing, downloading it again", videoId);
+                getFile(videoId).delete();
+                realm.beginTransaction();
+                try {
+                    reset(realm.where(RealmDownload.class).equalTo("videoId", videoId).findFirst());
+                    realm.commitTransaction();
+                } catch (RuntimeException e) {
+                    realm.cancelTransaction();
+                    throw e;
+                }
+            }
+        } catch (RuntimeException e) {
+            Timber.e(e, "loadCompletedFiles()");
+        } finally {
+            realm.close();
+        }
+    }
+
+    // Runs on the executor
+    private void reconcile(Set<Long> videoIds) {
+        // No download runs alongside, so the one a cancellation was for is over, finished or not
+        mCancelledVideoIds.clear();
+
+        Realm realm = RealmUtility.getRealm();
+        try {
+            realm.beginTransaction();
+            RealmResults<RealmDownload> realmDownloads = realm.where(RealmDownload.class).findAll();
+            Set<Long> downloadedVideoIds = new HashSet<>();
+            List<RealmDownload> removedDownloads = new ArrayList<>();
+            for (int i = 0; i < realmDownloads.size(); i++) {
+                RealmDownload realmDownload = realmDownloads.get(i);
+                downloadedVideoIds.add(realmDownload.getVideoId());
+                if (!videoIds.contains(realmDownload.getVideoId())) {
+                    removedDownloads.add(realmDownload);
+                }
+            }
+
+            for (RealmDownload realmDownload : removedDownloads) {
+                long videoId = realmDownload.getVideoId();
+                mCompletedFiles.remove(videoId);
+                getFile(videoId).delete();
+                realmDownload.removeFromRealm();
+                Timber.d("reconcile() : removed %d", videoId);
+            }
+
+            for (Long videoId : videoIds) {
+                if (!downloadedVideoIds.contains(videoId)) {
+                    RealmDownload realmDownload = new RealmDownload();
+                    realmDownload.setVideoId(videoId);
+                    reset(realmDownload);
+                    realm.copyToRealmOrUpdate(realmDownload);
+                    Timber.d("reconcile() : queued %d", videoId);
+                }
+            }
+            realm.commitTransaction();
+        } catch (RuntimeException e) {
+            realm.cancelTransaction();
+            Timber.e(e, "reconcile()");
+        } finally {
+            realm.close();
+        }
+    }
+
+    // Runs on the executor. Downloads every video that is due, then schedules the next pass
+    private void downloadPending() {
+        // When not allowed, the connectivity receiver starts again once the network changes
+        if (!isAllowed())
+            return;
+
+        List<PendingDownload> pendingDownloads = new ArrayList<>();
+        Realm realm = RealmUtility.getRealm();
+        try {
+            RealmResults<RealmDownload> realmDownloads = realm.where(RealmDownload.class)
+                    .equalTo("state", STATE_QUEUED)
+                    .findAll();
+            for (int i = 0; i < realmDownloads.size(); i++) {
+                pendingDownloads.add(new PendingDownload(realmDownloads.get(i)));
+            }
+        } finally {
+            realm.close();
+        }
+
+        long nextAttemptTime = Long.MAX_VALUE;
+        for (PendingDownload pendingDownload : pendingDownloads) {
+            if (!isAllowed())
+                return;
+
+            if (pendingDownload.mNextAttemptTime > System.currentTimeMillis()) {
+                nextAttemptTime = Math.min(nextAttemptTime, pendingDownload.mNextAttemptTime);
+                continue;
+            }
+
+            mActiveVideoId = pendingDownload.mVideoId;
+            long retryTime = download(pendingDownload);
+            mActiveVideoId = -1L;
+            if (retryTime != -1L) {
+                nextAttemptTime = Math.min(nextAttemptTime, retryTime);
+            }
+        }
+
+        if (nextAttemptTime != Long.MAX_VALUE) {
+            scheduleRun(Math.max(0L, nextAttemptTime - System.currentTimeMillis()));
+        }
+    }
+
+    // Runs on the executor. Returns when to try again, -1 when done for good
+    private long download(PendingDownload pendingDownload) {
+        long videoId = pendingDownload.mVideoId;
+        long startTime = SystemClock.elapsedRealtime();
+        try {
+            String url = resolveUrl(pendingDownload);
+            if (pendingDownload.mLength == -1L) {
+                probe(pendingDownload, url);
+            }
+
+            if (!hasRoomFor(pendingDownload)) {
+                // Space may be freed later, e.g. by removing a video from watch later
+                Timber.w("download() : no room for %d (%d bytes)", videoId, pendingDownload.mLength);
+                return update(pendingDownload, STATE_QUEUED, pendingDownload.mAttempts, System.currentTimeMillis() + MAX_BACKOFF);
+            }
+
+            File file = getFile(videoId);
+            downloadChunks(pendingDownload, url, file);
+            verify(pendingDownload, file);
+
+            mCompletedFiles.put(videoId, file);
+            Timber.d("download() : %d - %d bytes in %d ms",
+                    videoId, pendingDownload.mLength, SystemClock.elapsedRealtime() - startTime);
+            return update(pendingDownload, STATE_COMPLETED, 0, 0L);
+        } catch (IOException | RuntimeException e) {
+            if (mCancelledVideoIds.remove(videoId))
+                return -1L;
+
+            if (e instanceof RuntimeException) {
+                // e.g. an unexpected config, retried like a network failure
+                Timber.e(e, "download() : %d", videoId);
+            } else {
+                Timber.w("download() : %d - %s", videoId, e.getMessage());
+            }
+            if (e instanceof FileChangedException) {
+                getFile(videoId).delete();
+                pendingDownload.mQuality = null;
+                pendingDownload.mLength = -1L;
+                pendingDownload.mEtag = null;
+                pendingDownload.mChunks = "";
+            }
+
+            int attempts = pendingDownload.mAttempts + 1;
+            if (attempts >= MAX_ATTEMPTS) {
+                getFile(videoId).delete();
+                return update(pendingDownload, STATE_FAILED, attempts, 0L);
+            }
+            long backoff = Math.min(MAX_BACKOFF, INITIAL_BACKOFF << (attempts - 1));
+            return update(pendingDownload, STATE_QUEUED, attempts, System.currentTimeMillis() + backoff);
+        }
+    }
+
+    // Signed URLs expire, so a fresh one is fetched for every attempt
+    private String resolveUrl(PendingDownload pendingDownload) throws IOException {
+        AccessToken token = PreferencesHelper.getAccessToken(mContext);
+        VimeoPlayerService vimeoPlayerService = ServiceGenerator.createService(
+                VimeoPlayerService.class,
+                VimeoPlayerService.BASE_URL,
+                token);
+
+        retrofit.Response<VideoConfig> response = vimeoPlayerService.getVideoConfig(pendingDownload.mVideoId).execute();
+        if (!response.isSuccess() || response.body() == null)
+            throw new IOException("Unable to get the config, code " + response.code());
+
+        // Stick to the rendition the download started with
+        String quality = pendingDownload.mQuality == null ? DOWNLOAD_QUALITY : pendingDownload.mQuality;
+        ProgressiveData progressiveData = VideoConfigUtility.getProgressiveData(response.body(), quality);
+        if (progressiveData == null)
+            throw new IOException("No progressive rendition");
+
+        if (pendingDownload.mQuality != null && !pendingDownload.mQuality.equals(progressiveData.getQuality()))
+            throw new FileChangedException("The " + pendingDownload.mQuality + " rendition is gone");
+
+        pendingDownload.mQuality = progressiveData.getQuality();
+        return progressiveData.getUrl();
+    }
+
+    // Asks the CDN for the length and ETag of the file
+    private void probe(PendingDownload pendingDownload, String url) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Range", "bytes=0-0")
+                .build();
+        Response response = mOkHttpClient.newCall(request).execute();
+        try {
+            if (response.code() != 206)
+                throw new IOException("Ranges are not supported, code " + response.code());
+
+            long length = getLength(response.header("Content-Range"));
+            if (length <= 0L)
+                throw new IOException("Unknown length");
+
+            pendingDownload.mLength = length;
+            pendingDownload.mEtag = response.header("ETag");
+            pendingDownload.mChunks = "";
+        } finally {
+            response.body().close();
+        }
+    }
+
+    private boolean hasRoomFor(PendingDownload pendingDownload) {
+        // Partial downloads count at their full length too, their files are preallocated
+        File pendingFile = getFile(pendingDownload.mVideoId);
+        long used = 0L;
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.equals(pendingFile)) {
+                    used += file.length();
+                }
+            }
+        }
+
+        long remaining = pendingDownload.mLength - getDownloadedBytes(pendingDownload);
+        return used + pendingDownload.mLength <= mMaxStorage
+                && mContext.getFilesDir().getUsableSpace() - remaining >= MIN_FREE_SPACE;
+    }
+
+    private void downloadChunks(final PendingDownload pendingDownload, final String url, final File file) throws IOException {
+        if (!mDirectory.exists() && !mDirectory.mkdirs())
+            throw new IOException("Unable to create " + mDirectory);
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            if (randomAccessFile.length() != pendingDownload.mLength) {
+                randomAccessFile.setLength(pendingDownload.mLength);
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+
+        final char[] chunks = getChunks(pendingDownload);
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(mChunkExecutorService);
+        final AtomicBoolean isAborted = new AtomicBoolean(false);
+        int submittedCount = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] == '1')
+                continue;
+
+            final int chunk = i;
+            completionService.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    downloadChunk(pendingDownload, url, file, chunk, isAborted);
+                    return chunk;
+                }
+            });
+            submittedCount++;
+        }
+
+        IOException failure = null;
+        for (int i = 0; i < submittedCount; i++) {
+            try {
+                int chunk = completionService.take().get();
+                chunks[chunk] = '1';
+                pendingDownload.mChunks = new String(chunks);
+                // Persisted as it goes, so that a later attempt resumes from here
+                update(pendingDownload, STATE_QUEUED, pendingDownload.mAttempts, pendingDownload.mNextAttemptTime);
+            } catch (ExecutionException e) {
+                // The other chunks stop at their next buffer
+                isAborted.set(true);
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause()
+                            : new IOException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted");
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    // Runs on a chunk thread
+    private void downloadChunk(PendingDownload pendingDownload, String url, File file, int chunk, AtomicBoolean isAborted)
+            throws IOException {
+        long start = (long) chunk * CHUNK_SIZE;
+        long end = Math.min(start + CHUNK_SIZE, pendingDownload.mLength) - 1;
+
+        Request.Builder requestBuilder = new Request.Builder()
+                .url(url)
+                .header("Range", "bytes=" + start + "-" + end);
+        if (pendingDownload.mEtag != null) {
+            requestBuilder.header("If-Range", pendingDownload.mEtag);
+        }
+        Response response = mOkHttpClient.newCall(requestBuilder.build()).execute();
+
+        RandomAccessFile randomAccessFile = null;
+        try {
+            if (response.code() == 200)
+                throw new FileChangedException("The file changed on the CDN");
+            if (response.code() != 206)
+                throw new IOException("Unexpected code " + response.code());
+
+            String contentRange = response.header("Content-Range");
+            if (contentRange == null
+                    || !contentRange.startsWith("bytes " + start + "-" + end + "/")
+                    || getLength(contentRange) != pendingDownload.mLength)
+                throw new FileChangedException("Unexpected range " + contentRange);
+
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            randomAccessFile.seek(start);
+
+            BufferedSource source = response.body().source();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = end - start + 1;
+            while (remaining > 0L) {
+                if (isAborted.get())
+                    throw new IOException("Aborted");
+                if (mCancelledVideoIds.contains(pendingDownload.mVideoId))
+                    throw new IOException("Cancelled");
+
+                int count = source.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (count == -1)
+                    throw new IOException("Short chunk " + chunk);
+
+                mThrottle.acquire(count, mMaxBandwidth);
+                randomAccessFile.write(buffer, 0, count);
+                remaining -= count;
+            }
+        } finally {
+            if (randomAccessFile != null) {
+                randomAccessFile.close();
+            }
+            response.body().close();
+        }
+    }
+
+    // Checks the finished file against its length and, when the ETag is one, its MD5
+    private void verify(PendingDownload pendingDownload, File file) throws IOException {
+        if (file.length() != pendingDownload.mLength)
+            throw new FileChangedException("Unexpected length " + file.length());
+
+        String etag = pendingDownload.mEtag == null
+                ? ""
+                : pendingDownload.mEtag.replace("W/", "").replace("\"", "").toLowerCase(Locale.US);
+        if (!etag.matches("[0-9a-f]{32}"))
+            return;
+
+        String md5 = getMd5(file);
+        if (!md5.equals(etag))
+            throw new FileChangedException("MD5 mismatch, expected " + etag + " got " + md5);
+    }
+
+    private static String getMd5(File file) throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int count = inputStream.read(buffer); count != -1; count = inputStream.read(buffer)) {
+                messageDigest.update(buffer, 0, count);
+            }
+        } finally {
+            inputStream.close();
+        }
+        return ByteString.of(messageDigest.digest()).hex();
+    }
+
+    // Runs on the executor. Returns the next attempt time, -1 when done for good
+    private long update(PendingDownload pendingDownload, String state, int attempts, long nextAttemptTime) {
+        pendingDownload.mAttempts = attempts;
+        pendingDownload.mNextAttemptTime = nextAttemptTime;
+
+        Realm realm = RealmUtility.getRealm();
+        try {
+            realm.beginTransaction();
+            RealmDownload realmDownload = realm.where(RealmDownload.class)
+                    .equalTo("videoId", pendingDownload.mVideoId)
+                    .findFirst();
+            // Removed from watch later in the meantime
+            if (realmDownload != null) {
+                realmDownload.setState(state);
+                realmDownload.setQuality(pendingDownload.mQuality);
+                realmDownload.setEtag(pendingDownload.mEtag);
+                realmDownload.setLength(pendingDownload.mLength);
+                realmDownload.setChunks(pendingDownload.mChunks);
+                realmDownload.setAttempts(attempts);
+                realmDownload.setNextAttemptTime(nextAttemptTime);
+            }
+            realm.commitTransaction();
+        } catch (RuntimeException e) {
+            realm.cancelTransaction();
+            Timber.e(e, "update() : unable to update %d", pendingDownload.mVideoId);
+        } finally {
+            realm.close();
+        }
+
+        return STATE_QUEUED.equals(state) ? nextAttemptTime : -1L;
+    }
+
+    private static void reset(RealmDownload realmDownload) {
+        if (realmDownload == null)
+            return;
+
+        realmDownload.setState(STATE_QUEUED);
+        realmDownload.setQuality(null);
+        realmDownload.setEtag(null);
+        realmDownload.setLength(-1L);
+        realmDownload.setChunks("");
+        realmDownload.setAttempts(0);
+        realmDownload.setNextAttemptTime(0L);
+    }
+
+    private static char[] getChunks(PendingDownload pendingDownload) {
+        int count = (int) ((pendingDownload.mLength + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        char[] chunks = new char[count];
+        Arrays.fill(chunks, '0');
+        String persistedChunks = pendingDownload.mChunks == null ? "" : pendingDownload.mChunks;
+        for (int i = 0; i < Math.min(count, persistedChunks.length()); i++) {
+            chunks[i] = persistedChunks.charAt(i);
+        }
+        return chunks;
+    }
+
+    private static long getDownloadedBytes(PendingDownload pendingDownload) {
+        char[] chunks = getChunks(pendingDownload);
+        long bytes = 0L;
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] == '1') {
+                bytes += Math.min(CHUNK_SIZE, pendingDownload.mLength - (long) i * CHUNK_SIZE);
+            }
+        }
+        return bytes;
+    }
+
+    // e.g. bytes 0-1023/146515
+    private static long getLength(String contentRange) {
+        int index = contentRange == null ? -1 : contentRange.lastIndexOf('/');
+        if (index == -1)
+            return -1L;
+
+        try {
+            return Long.parseLong(contentRange.substring(index + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private File getFile(long videoId) {
+        return new File(mDirectory, videoId + ".mp4");
+    }
+
+    private void scheduleRun(final long delay) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mMainHandler.removeCallbacks(mRunRunnable);
+                mMainHandler.postDelayed(mRunRunnable, delay);
+            }
+        });
+    }
+
+    private boolean isAllowed() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return networkInfo != null
+                && networkInfo.isConnected()
+                && (mIsMeteredAllowed || !ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager));
+    }
+    // endregion
+
+    // region Inner Classes
+
+    // Plain copy of a RealmDownload, updated as the download goes
+    private static class PendingDownload {
+        private final long mVideoId;
+        private String mQuality;
+        private String mEtag;
+        private long mLength;
+        private String mChunks;
+        private int mAttempts;
+        private long mNextAttemptTime;
+
+        PendingDownload(RealmDownload realmDownload) {
+            mVideoId = realmDownload.getVideoId();
+            mQuality = realmDownload.getQuality();
+            mEtag = realmDownload.getEtag();
+            mLength = realmDownload.getLength();
+            mChunks = realmDownload.getChunks();
+            mAttempts = realmDownload.getAttempts();
+            mNextAttemptTime = realmDownload.getNextAttemptTime();
+        }
+    }
+
+    // The bytes on disk can't be completed, the download starts over
+    private static class FileChangedException extends IOException {
+        FileChangedException(String message) {
+            super(message);
+        }
+    }
+
+    // Token bucket shared by the chunk threads, holds at most one second of bytes
+    private static class Throttle {
+        private long mAvailable = 0L;
+        private long mLastRefillTime = SystemClock.elapsedRealtime();
+
+        synchronized void acquire(int byteCount, long maxBandwidth) throws InterruptedIOException {
+            if (maxBandwidth <= 0L)
+                return;
+
+            long now = SystemClock.elapsedRealtime();
+            mAvailable = Math.min(maxBandwidth, mAvailable + (now - mLastRefillTime) * maxBandwidth / 1000L);
+            mLastRefillTime = now;
+            mAvailable -= byteCount;
+            if (mAvailable < 0L) {
+                // The other chunk threads wait their turn behind this one
+                try {
+                    Thread.sleep(-mAvailable * 1000L / maxBandwidth);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted");
+                }
+            }
+        }
+    }
+
+    // endregion
+}
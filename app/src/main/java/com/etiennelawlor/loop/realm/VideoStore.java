@@ -0,0 +1,501 @@
+package com.etiennelawlor.loop.realm;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import com.etiennelawlor.loop.network.ServiceGenerator;
+import com.etiennelawlor.loop.network.VimeoService;
+import com.etiennelawlor.loop.network.models.response.Video;
+import com.etiennelawlor.loop.network.models.response.VideosCollection;
+import com.etiennelawlor.loop.realm.objects.RealmMutation;
+import com.etiennelawlor.loop.realm.objects.RealmVideo;
+import com.etiennelawlor.loop.realm.objects.RealmVideoCollection;
+import com.etiennelawlor.loop.utilities.LogUtility;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.realm.Realm;
+import io.realm.RealmResults;
+import retrofit.Call;
+import retrofit.Response;
+import timber.log.Timber;
+
+/**
+ * Offline-first store of the liked and watch later collections, kept in Realm in the order the
+ * server sorts them by default (newest first).
+ *
+ * Screens open from {@link #load(String, OnVideosLoadedListener)} and then call
+ * {@link #sync(String, VimeoService, OnSyncedListener)}, which only fetches the pages that are new
+ * since the last sync. The rest of the collection is refetched only when the server total shows
+ * that videos were removed further down.
+ *
+ * The stored videos and total are the server's. Changes still in {@link MutationQueue} are laid over
+ * them when they are read, and are applied to them once the server accepts them.
+ *
+ * All Realm work happens on a single background thread; listeners are called on the main thread.
+ *
+ * Created by etiennelawlor on 12/16/15.
+ */
+public class VideoStore {
+
+    // region Constants
+    public static final String COLLECTION_LIKES = "likes";
+    public static final String COLLECTION_WATCH_LATER = "watchlater";
+
+    // The order collections are stored in, the default sort of LikedVideosFragment and WatchLaterVideosFragment
+    public static final String SORT = "date";
+    public static final String DIRECTION = "desc";
+
+    private static final int PAGE_SIZE = 50;
+    // Collections longer than this many pages are only stored in part
+    private static final int MAX_PAGES = 20;
+    private static final int MAX_STORED_VIDEOS = MAX_PAGES * PAGE_SIZE;
+    // endregion
+
+    // region Static Variables
+    private static final VideoStore sInstance = new VideoStore();
+    // endregion
+
+    // region Member Variables
+    private final ExecutorService mExecutorService = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Gson mGson = ServiceGenerator.getGson();
+    // Collection -> listeners of the sync in progress, only touched on the main thread
+    private final Map<String, List<OnSyncedListener>> mSyncListeners = new HashMap<>();
+    // endregion
+
+    // region Interfaces
+    public interface OnVideosLoadedListener {
+        // videos is null when the collection has never been synced
+        void onVideosLoaded(List<Video> videos);
+    }
+
+    public interface OnSyncedListener {
+        // isChanged is false when the stored collection was already up to date
+        void onSynced(List<Video> videos, boolean isChanged);
+
+        void onSyncFailed();
+    }
+    // endregion
+
+    // region Constructors
+    VideoStore() {
+    }
+    // endregion
+
+    public static VideoStore getInstance() {
+        return sInstance;
+    }
+
+    public void load(final String collection, final OnVideosLoadedListener listener) {
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                Realm realm = RealmUtility.getRealm();
+                final List<Video> videos;
+                try {
+                    videos = isSynced(realm, collection) ? readVideos(realm, collection) : null;
+                } finally {
+                    realm.close();
+                }
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onVideosLoaded(videos);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Brings the stored collection up to date. Calls made while a sync of the same collection is
+     * in progress share its result.
+     */
+    public void sync(final String collection, final VimeoService vimeoService, OnSyncedListener listener) {
+        List<OnSyncedListener> listeners = mSyncListeners.get(collection);
+        if (listeners != null) {
+            listeners.add(listener);
+            return;
+        }
+
+        listeners = new ArrayList<>();
+        listeners.add(listener);
+        mSyncListeners.put(collection, listeners);
+
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                Realm realm = RealmUtility.getRealm();
+                List<Video> videos = null;
+                boolean isChanged = false;
+                try {
+                    isChanged = syncCollection(realm, collection, vimeoService);
+                    videos = readVideos(realm, collection);
+                } catch (IOException | RuntimeException e) {
+                    LogUtility.logFailure(e);
+                } finally {
+                    realm.close();
+                }
+
+                final List<Video> syncedVideos = videos;
+                final boolean isSyncedChanged = isChanged;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (OnSyncedListener syncedListener : mSyncListeners.remove(collection)) {
+                            if (syncedVideos == null) {
+                                syncedListener.onSyncFailed();
+                            } else {
+                                syncedListener.onSynced(syncedVideos, isSyncedChanged);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Applies a like / unlike or watch later add / remove that the server accepted to the stored
+     * collection and total, so that they match the server's without refetching the collection.
+     * Added videos go on top, as the newest by date, so the stored collection is in the same order
+     * as the server's and the next sync stops at its first page.
+     */
+    public void applyMutation(final String collection, final Video video, final boolean isAdded) {
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                Realm realm = RealmUtility.getRealm();
+                try {
+                    // Collections that were never synced get the change with their first sync
+                    if (isSynced(realm, collection)) {
+                        if (isAdded) {
+                            addVideo(realm, collection, video);
+                        } else {
+                            removeVideo(realm, collection, video.getUri());
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    Timber.e(e, "applyMutation() : unable to update %s", collection);
+                } finally {
+                    realm.close();
+                }
+            }
+        });
+    }
+
+    // region Helper Methods
+    // Returns true when the stored collection changed
+    private boolean syncCollection(Realm realm, String collection, VimeoService vimeoService) throws IOException {
+        RealmResults<RealmVideo> storedVideos = getStoredVideos(realm, collection);
+        Map<String, Integer> storedPositions = new HashMap<>();
+        for (int i = 0; i < storedVideos.size(); i++) {
+            storedPositions.put(storedVideos.get(i).getUri(), i);
+        }
+
+        // Walk down from the newest video until one that is already stored turns up
+        List<Video> newVideos = new ArrayList<>();
+        int anchor = -1;
+        int total = -1;
+        boolean isComplete = false;
+        for (int page = 1; page <= MAX_PAGES && anchor == -1 && !isComplete; page++) {
+            VideosCollection videosCollection = fetchPage(vimeoService, collection, page);
+            total = videosCollection.getTotal();
+
+            List<Video> videos = videosCollection.getVideos();
+            if (videos != null) {
+                for (Video video : videos) {
+                    Integer position = storedPositions.get(video.getUri());
+                    if (position != null) {
+                        anchor = position;
+                        break;
+                    }
+                    newVideos.add(video);
+                }
+            }
+            isComplete = isLastPage(videosCollection, page);
+        }
+
+        if (anchor != -1) {
+            int expectedTotal = getExpectedTotal(realm, collection, storedVideos.size(), anchor, newVideos.size());
+            if (total != -1 && expectedTotal != total) {
+                // Videos were removed below the newest stored one
+                Timber.d("syncCollection() : %s - %d videos expected, %d found, refetching",
+                        collection, expectedTotal, total);
+                replaceVideos(realm, collection, fetchAll(vimeoService, collection), total);
+                return true;
+            }
+
+            prependVideos(realm, collection, newVideos, anchor, total);
+            Timber.d("syncCollection() : %s - %d new, %d removed", collection, newVideos.size(), anchor);
+            return !newVideos.isEmpty() || anchor > 0;
+        }
+
+        // Nothing in common with what is stored, e.g. the first sync
+        replaceVideos(realm, collection, newVideos, total);
+        return true;
+    }
+
+    /**
+     * Returns the server total to expect when the only changes since the last sync are the newCount
+     * videos on top and the anchor videos removed above the newest stored one. Based on the total
+     * stored by the last sync, since collections longer than MAX_STORED_VIDEOS are only stored in part.
+     */
+    private int getExpectedTotal(Realm realm, String collection, int storedCount, int anchor, int newCount) {
+        RealmVideoCollection realmVideoCollection = realm.where(RealmVideoCollection.class)
+                .equalTo("name", collection)
+                .findFirst();
+        if (realmVideoCollection != null && realmVideoCollection.getTotal() != -1)
+            return realmVideoCollection.getTotal() - anchor + newCount;
+
+        // No stored total, only the count of a collection that was stored in full can tell
+        return storedCount - anchor + newCount;
+    }
+
+    private List<Video> fetchAll(VimeoService vimeoService, String collection) throws IOException {
+        List<Video> videos = new ArrayList<>();
+        for (int page = 1; page <= MAX_PAGES; page++) {
+            VideosCollection videosCollection = fetchPage(vimeoService, collection, page);
+            if (videosCollection.getVideos() != null) {
+                videos.addAll(videosCollection.getVideos());
+            }
+            if (isLastPage(videosCollection, page))
+                break;
+        }
+        return videos;
+    }
+
+    private VideosCollection fetchPage(VimeoService vimeoService, String collection, int page) throws IOException {
+        Call<VideosCollection> call;
+        if (COLLECTION_LIKES.equals(collection)) {
+            call = vimeoService.findLikedVideos(null, SORT, DIRECTION, page, PAGE_SIZE, VimeoService.LIST_ROW_FIELDS);
+        } else {
+            call = vimeoService.findWatchLaterVideos(null, SORT, DIRECTION, page, PAGE_SIZE, VimeoService.LIST_ROW_FIELDS);
+        }
+
+        Response<VideosCollection> response = call.execute();
+        if (!response.isSuccess() || response.body() == null) {
+            if (response.raw() != null) {
+                LogUtility.logFailedResponse(response.raw());
+            }
+            throw new IOException(String.format("Unable to fetch page %d of %s : code - %d", page, collection, response.code()));
+        }
+        return response.body();
+    }
+
+    private boolean isLastPage(VideosCollection videosCollection, int page) {
+        List<Video> videos = videosCollection.getVideos();
+        if (videos == null || videos.isEmpty())
+            return true;
+        if (videosCollection.getPaging() != null)
+            return TextUtils.isEmpty(videosCollection.getPaging().getNext());
+        return videosCollection.getTotal() != -1 && page * PAGE_SIZE >= videosCollection.getTotal();
+    }
+
+    // Drops the stored videos above anchor and puts newVideos on top of the rest, up to MAX_STORED_VIDEOS
+    private void prependVideos(Realm realm, String collection, List<Video> newVideos, int anchor, int total) {
+        realm.beginTransaction();
+        try {
+            RealmResults<RealmVideo> storedVideos = getStoredVideos(realm, collection);
+            List<String> removedKeys = new ArrayList<>();
+            List<RealmVideo> keptVideos = new ArrayList<>();
+            for (int i = 0; i < storedVideos.size(); i++) {
+                if (i < anchor || newVideos.size() + keptVideos.size() >= MAX_STORED_VIDEOS) {
+                    removedKeys.add(storedVideos.get(i).getKey());
+                } else {
+                    keptVideos.add(storedVideos.get(i));
+                }
+            }
+            // Renumber before removing anything, so the results above are still in order
+            for (int i = 0; i < keptVideos.size(); i++) {
+                keptVideos.get(i).setPosition(newVideos.size() + i);
+            }
+            for (String key : removedKeys) {
+                RealmVideo realmVideo = realm.where(RealmVideo.class).equalTo("key", key).findFirst();
+                if (realmVideo != null) {
+                    realmVideo.removeFromRealm();
+                }
+            }
+            for (int i = 0; i < newVideos.size(); i++) {
+                realm.copyToRealmOrUpdate(toRealmVideo(collection, newVideos.get(i), i));
+            }
+            updateCollection(realm, collection, total);
+            realm.commitTransaction();
+        } catch (RuntimeException e) {
+            realm.cancelTransaction();
+            throw e;
+        }
+    }
+
+    private void addVideo(Realm realm, String collection, Video video) {
+        String key = collection + "|" + video.getUri();
+
+        realm.beginTransaction();
+        try {
+            RealmResults<RealmVideo> storedVideos = getStoredVideos(realm, collection);
+            List<RealmVideo> otherVideos = new ArrayList<>();
+            boolean isStored = false;
+            for (int i = 0; i < storedVideos.size(); i++) {
+                if (key.equals(storedVideos.get(i).getKey())) {
+                    isStored = true;
+                } else {
+                    otherVideos.add(storedVideos.get(i));
+                }
+            }
+            for (int i = 0; i < otherVideos.size(); i++) {
+                otherVideos.get(i).setPosition(i + 1);
+            }
+            realm.copyToRealmOrUpdate(toRealmVideo(collection, video, 0));
+            if (!isStored) {
+                addToTotal(realm, collection, 1);
+            }
+            realm.commitTransaction();
+        } catch (RuntimeException e) {
+            realm.cancelTransaction();
+            throw e;
+        }
+    }
+
+    private void removeVideo(Realm realm, String collection, String uri) {
+        String key = collection + "|" + uri;
+
+        realm.beginTransaction();
+        try {
+            RealmResults<RealmVideo> storedVideos = getStoredVideos(realm, collection);
+            List<RealmVideo> keptVideos = new ArrayList<>();
+            for (int i = 0; i < storedVideos.size(); i++) {
+                if (!key.equals(storedVideos.get(i).getKey())) {
+                    keptVideos.add(storedVideos.get(i));
+                }
+            }
+            if (keptVideos.size() < storedVideos.size()) {
+                // Renumber before removing, like prependVideos()
+                for (int i = 0; i < keptVideos.size(); i++) {
+                    keptVideos.get(i).setPosition(i);
+                }
+                realm.where(RealmVideo.class)
+                        .equalTo("key", key)
+                        .findFirst()
+                        .removeFromRealm();
+                addToTotal(realm, collection, -1);
+            }
+            realm.commitTransaction();
+        } catch (RuntimeException e) {
+            realm.cancelTransaction();
+            throw e;
+        }
+    }
+
+    private void addToTotal(Realm realm, String collection, int delta) {
+        RealmVideoCollection realmVideoCollection = realm.where(RealmVideoCollection.class)
+                .equalTo("name", collection)
+                .findFirst();
+        if (realmVideoCollection != null && realmVideoCollection.getTotal() != -1) {
+            realmVideoCollection.setTotal(Math.max(0, realmVideoCollection.getTotal() + delta));
+        }
+    }
+
+    private void replaceVideos(Realm realm, String collection, List<Video> videos, int total) {
+        realm.beginTransaction();
+        try {
+            getStoredVideos(realm, collection).clear();
+            for (int i = 0; i < videos.size(); i++) {
+                realm.copyToRealmOrUpdate(toRealmVideo(collection, videos.get(i), i));
+            }
+            updateCollection(realm, collection, total);
+            realm.commitTransaction();
+        } catch (RuntimeException e) {
+            realm.cancelTransaction();
+            throw e;
+        }
+    }
+
+    private void updateCollection(Realm realm, String collection, int total) {
+        RealmVideoCollection realmVideoCollection = new RealmVideoCollection();
+        realmVideoCollection.setName(collection);
+        realmVideoCollection.setTotal(total);
+        realmVideoCollection.setSyncedAt(new Date());
+        realm.copyToRealmOrUpdate(realmVideoCollection);
+    }
+
+    private RealmVideo toRealmVideo(String collection, Video video, int position) {
+        RealmVideo realmVideo = new RealmVideo();
+        realmVideo.setKey(collection + "|" + video.getUri());
+        realmVideo.setCollection(collection);
+        realmVideo.setUri(video.getUri());
+        realmVideo.setPosition(position);
+        realmVideo.setJson(mGson.toJson(video, Video.class));
+        return realmVideo;
+    }
+
+    private boolean isSynced(Realm realm, String collection) {
+        return realm.where(RealmVideoCollection.class)
+                .equalTo("name", collection)
+                .findFirst() != null;
+    }
+
+    private RealmResults<RealmVideo> getStoredVideos(Realm realm, String collection) {
+        return realm.where(RealmVideo.class)
+                .equalTo("collection", collection)
+                .findAllSorted("position");
+    }
+
+    private List<Video> readVideos(Realm realm, String collection) {
+        RealmResults<RealmVideo> storedVideos = getStoredVideos(realm, collection);
+        List<Video> videos = new ArrayList<>(storedVideos.size());
+        for (int i = 0; i < storedVideos.size(); i++) {
+            try {
+                videos.add(mGson.fromJson(storedVideos.get(i).getJson(), Video.class));
+            } catch (RuntimeException e) {
+                Timber.e(e, "readVideos() : unable to parse %s", storedVideos.get(i).getKey());
+            }
+        }
+        return overlayPendingMutations(realm, collection, videos);
+    }
+
+    // Changes still in MutationQueue are not on the server yet, so they are only shown, never stored
+    private List<Video> overlayPendingMutations(Realm realm, String collection, List<Video> storedVideos) {
+        RealmResults<RealmMutation> realmMutations = realm.where(RealmMutation.class)
+                .equalTo("collection", collection)
+                .findAll();
+        if (realmMutations.isEmpty())
+            return storedVideos;
+
+        List<Video> addedVideos = new ArrayList<>();
+        Set<String> changedUris = new HashSet<>();
+        for (int i = 0; i < realmMutations.size(); i++) {
+            try {
+                Video video = mGson.fromJson(realmMutations.get(i).getJson(), Video.class);
+                changedUris.add(video.getUri());
+                if (realmMutations.get(i).isAdded()) {
+                    addedVideos.add(video);
+                }
+            } catch (RuntimeException e) {
+                Timber.e(e, "overlayPendingMutations() : unable to parse %s", realmMutations.get(i).getKey());
+            }
+        }
+
+        // Added videos go on top, as applyMutation() stores them once they are sent
+        List<Video> videos = new ArrayList<>(addedVideos);
+        for (Video video : storedVideos) {
+            if (!changedUris.contains(video.getUri())) {
+                videos.add(video);
+            }
+        }
+        return videos;
+    }
+    // endregion
+}
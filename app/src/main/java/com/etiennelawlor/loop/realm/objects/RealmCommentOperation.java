@@ -0,0 +1,124 @@
+package com.etiennelawlor.loop.realm.objects;
+
+import io.realm.RealmObject;
+import io.realm.annotations.PrimaryKey;
+
+/**
+ * A comment post or deletion that has not reached the server yet, see CommentOutbox.
+ *
+ * Created by etiennelawlor on 12/20/15.
+ */
+public class RealmCommentOperation extends RealmObject {
+
+    // Generated on the device, identifies the operation across retries and process restarts
+    @PrimaryKey
+    private String clientId;
+
+    // Operations are sent in this order
+    private long sequence;
+
+    // CommentOutbox.TYPE_POST or CommentOutbox.TYPE_DELETE
+    private String type;
+
+    private long videoId;
+
+    // The Comment shown while a post is pending, as JSON
+    private String json;
+
+    // When the post was made on the device, used to recognize it on the server
+    private long createdTime;
+
+    // The comment to delete, or the comment a sent post became. -1 until it is known
+    private long commentId;
+
+    // The pending post to delete, empty when the comment was already on the server
+    private String targetClientId;
+
+    private int attempts;
+
+    private long nextAttemptTime;
+
+    // region Getters
+    public String getClientId() {
+        return clientId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getVideoId() {
+        return videoId;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+    public long getCommentId() {
+        return commentId;
+    }
+
+    public String getTargetClientId() {
+        return targetClientId;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getNextAttemptTime() {
+        return nextAttemptTime;
+    }
+    // endregion
+
+    // region Setters
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public void setVideoId(long videoId) {
+        this.videoId = videoId;
+    }
+
+    public void setJson(String json) {
+        this.json = json;
+    }
+
+    public void setCreatedTime(long createdTime) {
+        this.createdTime = createdTime;
+    }
+
+    public void setCommentId(long commentId) {
+        this.commentId = commentId;
+    }
+
+    public void setTargetClientId(String targetClientId) {
+        this.targetClientId = targetClientId;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public void setNextAttemptTime(long nextAttemptTime) {
+        this.nextAttemptTime = nextAttemptTime;
+    }
+    // endregion
+}
@@ -0,0 +1,102 @@
+package com.etiennelawlor.loop.realm.objects;
+
+import io.realm.RealmObject;
+import io.realm.annotations.PrimaryKey;
+
+/**
+ * A watch later video that is downloaded, or being downloaded, for offline playback, see VideoDownloader.
+ *
+ * Created by etiennelawlor on 12/27/15.
+ */
+public class RealmDownload extends RealmObject {
+
+    @PrimaryKey
+    private long videoId;
+
+    // VideoDownloader.STATE_QUEUED, STATE_COMPLETED or STATE_FAILED
+    private String state;
+
+    // The progressive rendition being downloaded, e.g. 360p
+    private String quality;
+
+    // Sent as If-Range, so that chunks of a file that changed on the CDN are not mixed with the old ones
+    private String etag;
+
+    // -1 until the CDN has been asked
+    private long length;
+
+    // One character per chunk, '1' once the chunk is on disk
+    private String chunks;
+
+    private int attempts;
+
+    private long nextAttemptTime;
+
+    // region Getters
+    public long getVideoId() {
+        return videoId;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public String getQuality() {
+        return quality;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public String getChunks() {
+        return chunks;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getNextAttemptTime() {
+        return nextAttemptTime;
+    }
+    // endregion
+
+    // region Setters
+    public void setVideoId(long videoId) {
+        this.videoId = videoId;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public void setQuality(String quality) {
+        this.quality = quality;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public void setLength(long length) {
+        this.length = length;
+    }
+
+    public void setChunks(String chunks) {
+        this.chunks = chunks;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public void setNextAttemptTime(long nextAttemptTime) {
+        this.nextAttemptTime = nextAttemptTime;
+    }
+    // endregion
+}
@@ -0,0 +1,102 @@
+package com.etiennelawlor.loop.realm.objects;
+
+import io.realm.RealmObject;
+import io.realm.annotations.PrimaryKey;
+
+/**
+ * A like or watch later change that has not reached the server yet, see MutationQueue.
+ *
+ * Created by etiennelawlor on 12/17/15.
+ */
+public class RealmMutation extends RealmObject {
+
+    // collection + "|" + videoId, there is at most one pending change per video and collection
+    @PrimaryKey
+    private String key;
+
+    // VideoStore.COLLECTION_LIKES or VideoStore.COLLECTION_WATCH_LATER
+    private String collection;
+
+    private long videoId;
+
+    // The state to send
+    private boolean added;
+
+    // The state the server had before the first pending change
+    private boolean serverAdded;
+
+    // The Video as returned by the API, to undo the change in VideoStore if it is rejected
+    private String json;
+
+    private int attempts;
+
+    private long nextAttemptTime;
+
+    // region Getters
+    public String getKey() {
+        return key;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public long getVideoId() {
+        return videoId;
+    }
+
+    public boolean isAdded() {
+        return added;
+    }
+
+    public boolean isServerAdded() {
+        return serverAdded;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getNextAttemptTime() {
+        return nextAttemptTime;
+    }
+    // endregion
+
+    // region Setters
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public void setCollection(String collection) {
+        this.collection = collection;
+    }
+
+    public void setVideoId(long videoId) {
+        this.videoId = videoId;
+    }
+
+    public void setAdded(boolean added) {
+        this.added = added;
+    }
+
+    public void setServerAdded(boolean serverAdded) {
+        this.serverAdded = serverAdded;
+    }
+
+    public void setJson(String json) {
+        this.json = json;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public void setNextAttemptTime(long nextAttemptTime) {
+        this.nextAttemptTime = nextAttemptTime;
+    }
+    // endregion
+}
@@ -3,6 +3,7 @@ package com.etiennelawlor.loop.realm.objects;
 import java.util.Date;
 
 import io.realm.RealmObject;
+import io.realm.annotations.Index;
 import io.realm.annotations.PrimaryKey;
 
 /**
@@ -13,14 +14,23 @@ public class RealmSuggestion extends RealmObject {
     @PrimaryKey
     private String token;
 
+    // When it was last searched
+    @Index
     private Date timestamp;
 
+    // Searches, halved every SuggestionIndex.HALF_LIFE, as of timestamp
+    private double score;
+
     // region Getters
     public String getToken() { return token; }
 
     public Date getTimestamp() {
         return timestamp;
     }
+
+    public double getScore() {
+        return score;
+    }
     // endregion
 
     // region Setters
@@ -31,5 +41,9 @@ public class RealmSuggestion extends RealmObject {
     public void setTimestamp(Date timestamp) {
         this.timestamp = timestamp;
     }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
     // endregion
 }
@@ -0,0 +1,72 @@
+package com.etiennelawlor.loop.realm.objects;
+
+import io.realm.RealmObject;
+import io.realm.annotations.Index;
+import io.realm.annotations.PrimaryKey;
+
+/**
+ * A video of a locally stored collection (e.g. likes or watch later), see VideoStore.
+ *
+ * Created by etiennelawlor on 12/16/15.
+ */
+public class RealmVideo extends RealmObject {
+
+    // collection + "|" + uri, a video can be in more than one collection
+    @PrimaryKey
+    private String key;
+
+    @Index
+    private String collection;
+
+    private String uri;
+
+    // Position in the collection as the server sorts it, newest first
+    private int position;
+
+    // The Video as returned by the API
+    private String json;
+
+    // region Getters
+    public String getKey() {
+        return key;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public String getJson() {
+        return json;
+    }
+    // endregion
+
+    // region Setters
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public void setCollection(String collection) {
+        this.collection = collection;
+    }
+
+    public void setUri(String uri) {
+        this.uri = uri;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    public void setJson(String json) {
+        this.json = json;
+    }
+    // endregion
+}
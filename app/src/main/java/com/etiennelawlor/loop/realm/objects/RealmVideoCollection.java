@@ -0,0 +1,50 @@
+package com.etiennelawlor.loop.realm.objects;
+
+import java.util.Date;
+
+import io.realm.RealmObject;
+import io.realm.annotations.PrimaryKey;
+
+/**
+ * Sync state of a locally stored collection, see VideoStore.
+ *
+ * Created by etiennelawlor on 12/16/15.
+ */
+public class RealmVideoCollection extends RealmObject {
+
+    @PrimaryKey
+    private String name;
+
+    // Total reported by the server on the last sync
+    private int total;
+
+    private Date syncedAt;
+
+    // region Getters
+    public String getName() {
+        return name;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public Date getSyncedAt() {
+        return syncedAt;
+    }
+    // endregion
+
+    // region Setters
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public void setSyncedAt(Date syncedAt) {
+        this.syncedAt = syncedAt;
+    }
+    // endregion
+}
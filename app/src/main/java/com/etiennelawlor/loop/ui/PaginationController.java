@@ -0,0 +1,249 @@
+package com.etiennelawlor.loop.ui;
+
+import android.os.SystemClock;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import com.etiennelawlor.loop.network.Pager;
+import com.etiennelawlor.loop.network.models.response.PagedCollection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Drives paginated lists.
+ *
+ * Page bookkeeping (links, totals, last page) is delegated to a {@link Pager}, so the next page
+ * is fetched through the Vimeo paging link whenever one is known.
+ *
+ * Page N+1 is requested when the user is within a configurable number of items of the end,
+ * or when the current scroll velocity would reach the end within a configurable time.
+ * A page that arrives while the user is still far from the end is buffered and only appended
+ * once they get close to it.
+ *
+ * Created by etiennelawlor on 12/8/15.
+ */
+public class PaginationController<T> extends RecyclerView.OnScrollListener {
+
+    // region Constants
+    private static final int DEFAULT_PREFETCH_DISTANCE = 10; // items
+    private static final long DEFAULT_PREFETCH_TIME = 2000L; // ms
+    private static final int DEFAULT_APPEND_DISTANCE = 3; // items
+    // endregion
+
+    // region Member Variables
+    private final LinearLayoutManager mLayoutManager;
+    private final Pager<T> mPager;
+    private final Callbacks<T> mCallbacks;
+
+    private int mPrefetchDistance = DEFAULT_PREFETCH_DISTANCE;
+    private long mPrefetchTime = DEFAULT_PREFETCH_TIME;
+    private int mAppendDistance = DEFAULT_APPEND_DISTANCE;
+
+    private int mNextPage = 1;
+    private boolean mIsLoading = false;
+    private boolean mIsLastPage = false;
+    private List<T> mBufferedItems;
+    private boolean mIsBufferedLastPage = false;
+    private int mBufferedPage = -1;
+
+    private long mLastScrollTime = -1L;
+    private float mVelocity = 0F; // px per ms
+    // endregion
+
+    // region Interfaces
+    public interface Callbacks<T> {
+        // Start fetching this page and report back through onPageLoaded() or onPageLoadFailed()
+        // link is the Vimeo paging link for the page, or null if it is not known yet
+        void onLoadPage(int page, String link);
+
+        // Add the items of a page to the adapter
+        void onAppendPage(int page, List<T> items, boolean isLastPage);
+    }
+    // endregion
+
+    // region Constructors
+    public PaginationController(LinearLayoutManager layoutManager, int pageSize, Callbacks<T> callbacks) {
+        mLayoutManager = layoutManager;
+        mPager = new Pager<>(pageSize);
+        mCallbacks = callbacks;
+    }
+    // endregion
+
+    // region RecyclerView.OnScrollListener Methods
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        super.onScrolled(recyclerView, dx, dy);
+
+        long now = SystemClock.uptimeMillis();
+        if (mLastScrollTime > 0 && now > mLastScrollTime) {
+            float velocity = (float) dy / (now - mLastScrollTime);
+            // Smooth out the jitter between frames
+            mVelocity = 0.7F * mVelocity + 0.3F * velocity;
+        }
+        mLastScrollTime = now;
+
+        int remainingItemCount = getRemainingItemCount();
+        if (remainingItemCount < 0)
+            return;
+
+        if (mBufferedItems != null && remainingItemCount <= mAppendDistance) {
+            appendBufferedPage();
+            return;
+        }
+
+        if (shouldPrefetch(recyclerView, remainingItemCount)) {
+            loadNextPage();
+        }
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        super.onScrollStateChanged(recyclerView, newState);
+
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            mVelocity = 0F;
+            mLastScrollTime = -1L;
+        }
+    }
+    // endregion
+
+    // region Helper Methods
+    public void setPrefetchDistance(int prefetchDistance) {
+        mPrefetchDistance = prefetchDistance;
+    }
+
+    public void setPrefetchTime(long prefetchTime) {
+        mPrefetchTime = prefetchTime;
+    }
+
+    public void setAppendDistance(int appendDistance) {
+        mAppendDistance = appendDistance;
+    }
+
+    public boolean isLoading() {
+        return mIsLoading;
+    }
+
+    public boolean isLastPage() {
+        return mIsLastPage;
+    }
+
+    public int getNextPage() {
+        return mNextPage;
+    }
+
+    public void loadFirstPage() {
+        reset();
+        loadNextPage();
+    }
+
+    public void reset() {
+        mNextPage = 1;
+        mIsLoading = false;
+        mIsLastPage = false;
+        mBufferedItems = null;
+        mBufferedPage = -1;
+        mIsBufferedLastPage = false;
+        mPager.reset();
+    }
+
+    // Stops paging, e.g. when the whole list came from a local store.
+    // Pages that are still in flight are dropped when they arrive.
+    public void markLastPage() {
+        reset();
+        mNextPage = -1;
+        mIsLastPage = true;
+    }
+
+    // Requests the page that failed last time again
+    public void retry() {
+        loadNextPage();
+    }
+
+    public void onPageLoaded(PagedCollection<T> collection) {
+        int page = collection.getPage();
+        // Results for a page we no longer expect (e.g. after reset()) are dropped
+        if (page > 0 && page != mNextPage) {
+            Timber.d("onPageLoaded() : ignoring page %d, expecting %d", page, mNextPage);
+            return;
+        }
+
+        mPager.onPageLoaded(collection, mNextPage);
+
+        // Not kept once handed over, the adapter decides which pages stay resident
+        List<T> items = collection.getItems();
+        if (items == null) {
+            items = new ArrayList<>();
+        }
+        boolean isLastPage = mPager.isLastPage(mNextPage) || items.isEmpty();
+
+        mIsLoading = false;
+        mIsLastPage = isLastPage;
+
+        if (mNextPage == 1 || getRemainingItemCount() <= mAppendDistance) {
+            mNextPage += 1;
+            mCallbacks.onAppendPage(mNextPage - 1, items, isLastPage);
+        } else {
+            mBufferedPage = mNextPage;
+            mBufferedItems = items;
+            mIsBufferedLastPage = isLastPage;
+            mNextPage += 1;
+        }
+    }
+
+    public void onPageLoadFailed() {
+        mIsLoading = false;
+    }
+
+    private void loadNextPage() {
+        if (mIsLoading || mIsLastPage || mBufferedItems != null)
+            return;
+
+        mIsLoading = true;
+        mCallbacks.onLoadPage(mNextPage, mPager.getLink(mNextPage));
+    }
+
+    private void appendBufferedPage() {
+        List<T> items = mBufferedItems;
+        int page = mBufferedPage;
+        boolean isLastPage = mIsBufferedLastPage;
+
+        mBufferedItems = null;
+        mBufferedPage = -1;
+        mIsBufferedLastPage = false;
+
+        mCallbacks.onAppendPage(page, items, isLastPage);
+    }
+
+    private int getRemainingItemCount() {
+        int firstVisibleItemPosition = mLayoutManager.findFirstVisibleItemPosition();
+        if (firstVisibleItemPosition < 0)
+            return -1;
+
+        int visibleItemCount = mLayoutManager.getChildCount();
+        int totalItemCount = mLayoutManager.getItemCount();
+        return totalItemCount - (firstVisibleItemPosition + visibleItemCount);
+    }
+
+    private boolean shouldPrefetch(RecyclerView recyclerView, int remainingItemCount) {
+        if (mIsLoading || mIsLastPage || mBufferedItems != null)
+            return false;
+
+        if (remainingItemCount <= mPrefetchDistance)
+            return true;
+
+        // Project how long it takes to reach the end at the current velocity
+        View child = recyclerView.getChildAt(0);
+        if (mVelocity > 0F && child != null && child.getHeight() > 0) {
+            float remainingPx = (float) remainingItemCount * child.getHeight();
+            return remainingPx / mVelocity <= mPrefetchTime;
+        }
+
+        return false;
+    }
+    // endregion
+}
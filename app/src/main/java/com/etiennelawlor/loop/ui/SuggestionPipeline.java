@@ -0,0 +1,204 @@
+package com.etiennelawlor.loop.ui;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import com.etiennelawlor.loop.network.VimeoService;
+import com.etiennelawlor.loop.network.models.response.Video;
+import com.etiennelawlor.loop.network.models.response.VideosCollection;
+import com.etiennelawlor.loop.realm.RealmUtility;
+import com.etiennelawlor.loop.utilities.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.Response;
+import retrofit.Retrofit;
+
+/**
+ * Turns the keystrokes of a MaterialSearchView into suggestions.
+ *
+ * Keystrokes are debounced. The search history is looked up on a background thread and shown first,
+ * then the names of matching videos are fetched and appended. Every keystroke supersedes the previous
+ * one: its pending lookups are cancelled and any result that still arrives for it is dropped.
+ *
+ * The time from a keystroke to its suggestions being shown is recorded in two latency histograms,
+ * one for the history and one for the merged suggestions. Must be used from the main thread.
+ *
+ * Created by etiennelawlor on 12/22/15.
+ */
+public class SuggestionPipeline {
+
+    // region Constants
+    private static final long DEBOUNCE_DELAY = 100L; // ms
+    // Remote lookups wait a little longer for the user to stop typing
+    private static final long REMOTE_DEBOUNCE_DELAY = 300L; // ms
+    private static final int MIN_REMOTE_QUERY_LENGTH = 2;
+    private static final int REMOTE_SUGGESTION_COUNT = 3;
+    private static final String REMOTE_FIELDS = "name";
+    // endregion
+
+    // region Static Variables
+    private static final ExecutorService sExecutorService = Executors.newSingleThreadExecutor();
+    private static final LatencyHistogram sLocalLatencies = new LatencyHistogram("Local suggestions");
+    private static final LatencyHistogram sMergedLatencies = new LatencyHistogram("Merged suggestions");
+    // endregion
+
+    // region Member Variables
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final VimeoService mVimeoService;
+    private final OnSuggestionsLoadedListener mOnSuggestionsLoadedListener;
+    // Bumped on every keystroke, results for an older one are dropped
+    private int mGeneration = 0;
+    private String mQuery;
+    private long mKeystrokeTime;
+    private List<String> mLocalSuggestions;
+    private VideosCollection mRemoteVideosCollection;
+    private Call<VideosCollection> mRemoteCall;
+    // endregion
+
+    // region Interfaces
+    public interface OnSuggestionsLoadedListener {
+        void onSuggestionsLoaded(List<String> suggestions);
+    }
+    // endregion
+
+    // region Listeners
+    private final Runnable mLocalLookupRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final int generation = mGeneration;
+            final String query = mQuery;
+            sExecutorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final List<String> suggestions = RealmUtility.getSuggestions(query);
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation != mGeneration)
+                                return;
+
+                            mLocalSuggestions = suggestions;
+                            sLocalLatencies.record(SystemClock.elapsedRealtime() - mKeystrokeTime);
+                            if (mRemoteVideosCollection == null) {
+                                mOnSuggestionsLoadedListener.onSuggestionsLoaded(suggestions);
+                            } else {
+                                showMergedSuggestions();
+                            }
+                        }
+                    });
+                }
+            });
+        }
+    };
+
+    private final Runnable mRemoteLookupRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final int generation = mGeneration;
+            mRemoteCall = mVimeoService.findVideos(mQuery,
+                    "relevant",
+                    "desc",
+                    1,
+                    REMOTE_SUGGESTION_COUNT,
+                    REMOTE_FIELDS);
+            mRemoteCall.enqueue(new Callback<VideosCollection>() {
+                @Override
+                public void onResponse(Response<VideosCollection> response, Retrofit retrofit) {
+                    if (generation != mGeneration)
+                        return;
+
+                    mRemoteCall = null;
+                    // The history is shown on its own when the lookup failed
+                    if (response != null && response.isSuccess() && response.body() != null) {
+                        mRemoteVideosCollection = response.body();
+                        // Otherwise the history lookup merges them once it is done
+                        if (mLocalSuggestions != null) {
+                            showMergedSuggestions();
+                        }
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    if (generation == mGeneration) {
+                        mRemoteCall = null;
+                    }
+                }
+            });
+        }
+    };
+    // endregion
+
+    // region Constructors
+    /**
+     * @param vimeoService used for the remote suggestions, can be null to only suggest from the history
+     */
+    public SuggestionPipeline(VimeoService vimeoService, OnSuggestionsLoadedListener onSuggestionsLoadedListener) {
+        mVimeoService = vimeoService;
+        mOnSuggestionsLoadedListener = onSuggestionsLoadedListener;
+    }
+    // endregion
+
+    // Call on every keystroke
+    public void request(String query) {
+        cancel();
+
+        mQuery = query == null ? "" : query;
+        mKeystrokeTime = SystemClock.elapsedRealtime();
+        mLocalSuggestions = null;
+        mRemoteVideosCollection = null;
+        mMainHandler.postDelayed(mLocalLookupRunnable, DEBOUNCE_DELAY);
+        if (mVimeoService != null && mQuery.trim().length() >= MIN_REMOTE_QUERY_LENGTH) {
+            mMainHandler.postDelayed(mRemoteLookupRunnable, REMOTE_DEBOUNCE_DELAY);
+        }
+    }
+
+    // Drops the lookups in progress, e.g. when the view goes away
+    public void cancel() {
+        mGeneration++;
+        mMainHandler.removeCallbacks(mLocalLookupRunnable);
+        mMainHandler.removeCallbacks(mRemoteLookupRunnable);
+        if (mRemoteCall != null) {
+            mRemoteCall.cancel();
+            mRemoteCall = null;
+        }
+    }
+
+    // region Helper Methods
+    private void showMergedSuggestions() {
+        sMergedLatencies.record(SystemClock.elapsedRealtime() - mKeystrokeTime);
+        mOnSuggestionsLoadedListener.onSuggestionsLoaded(merge(mLocalSuggestions, mRemoteVideosCollection));
+    }
+
+    // The history first, then the video names it does not have yet
+    private static List<String> merge(List<String> localSuggestions, VideosCollection videosCollection) {
+        List<String> suggestions = new ArrayList<>(localSuggestions);
+        Set<String> normalizedSuggestions = new HashSet<>();
+        for (String suggestion : localSuggestions) {
+            normalizedSuggestions.add(suggestion.trim().toLowerCase(Locale.US));
+        }
+
+        List<Video> videos = videosCollection.getVideos();
+        if (videos != null) {
+            for (Video video : videos) {
+                String name = video.getName();
+                if (!TextUtils.isEmpty(name) && normalizedSuggestions.add(name.trim().toLowerCase(Locale.US))) {
+                    suggestions.add(name.trim());
+                }
+            }
+        }
+        return suggestions;
+    }
+    // endregion
+}
@@ -1,9 +1,8 @@
 package com.etiennelawlor.loop.utilities;
 
-import android.text.format.DateUtils;
-
 import java.util.Calendar;
 import java.util.Date;
+import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -11,51 +10,200 @@ import java.util.concurrent.TimeUnit;
  */
 public class DateUtility {
 
+    // region Constants
+    private static final long SECOND = 1000L;
+    private static final long MINUTE = 60L * SECOND;
+    private static final long HOUR = 60L * MINUTE;
+    private static final long DAY = 24L * HOUR;
+
+    private static final String JUST_NOW = "Just now";
+    private static final String ONE_SECOND_AGO = "1 sec. ago";
+    private static final String ONE_MINUTE_AGO = "1 min. ago";
+    private static final String ONE_HOUR_AGO = "1 hour ago";
+    private static final String YESTERDAY = "Yesterday";
+    private static final String ONE_WEEK_AGO = "A week ago";
+    private static final String TWO_WEEKS_AGO = "2 weeks ago";
+    private static final String THREE_WEEKS_AGO = "3 weeks ago";
+    private static final String ONE_MONTH_AGO = "1 month ago";
+    private static final String ONE_YEAR_AGO = "1 year ago";
+
+    // Every relative date is one of these, so formatting a row never allocates a new string
+    private static final String[] SECONDS_AGO = new String[60];
+    private static final String[] MINUTES_AGO = new String[60];
+    private static final String[] HOURS_AGO = new String[24];
+    // Up to "7 days ago", for the last calendar day before a full week has passed
+    private static final String[] DAYS_AGO = new String[8];
+    private static final String[] MONTHS_AGO = new String[13];
+    private static final String[] YEARS_AGO = new String[100];
+
+    static {
+        SECONDS_AGO[1] = ONE_SECOND_AGO;
+        for (int i = 0; i < SECONDS_AGO.length; i++) {
+            if (i != 1) {
+                SECONDS_AGO[i] = (i + " secs. ago").intern();
+            }
+        }
+        MINUTES_AGO[1] = ONE_MINUTE_AGO;
+        for (int i = 2; i < MINUTES_AGO.length; i++) {
+            MINUTES_AGO[i] = (i + " min. ago").intern();
+        }
+        HOURS_AGO[1] = ONE_HOUR_AGO;
+        for (int i = 2; i < HOURS_AGO.length; i++) {
+            HOURS_AGO[i] = (i + " hours ago").intern();
+        }
+        DAYS_AGO[1] = YESTERDAY;
+        for (int i = 2; i < DAYS_AGO.length; i++) {
+            DAYS_AGO[i] = (i + " days ago").intern();
+        }
+        MONTHS_AGO[1] = ONE_MONTH_AGO;
+        for (int i = 2; i < MONTHS_AGO.length; i++) {
+            MONTHS_AGO[i] = (i + " months ago").intern();
+        }
+        YEARS_AGO[1] = ONE_YEAR_AGO;
+        for (int i = 2; i < YEARS_AGO.length; i++) {
+            YEARS_AGO[i] = (i + " years ago").intern();
+        }
+    }
+    // endregion
+
     public static String getRelativeDate(Calendar future) {
+        return getRelativeDate(future.getTimeInMillis(), System.currentTimeMillis());
+    }
+
+    /**
+     * Formats how long ago time was, e.g. "12 secs. ago", "5 min. ago", "Yesterday", "3 weeks ago" or "2 years ago".
+     * Times in the future are "Just now".
+     */
+    public static String getRelativeDate(long time, long now) {
+        return getRelativeDate(time, now, TimeZone.getDefault());
+    }
 
-        String relativeDate = "";
+    // Like DateUtils.getRelativeTimeSpanString(), the first week counts calendar days in this time zone
+    static String getRelativeDate(long time, long now, TimeZone timeZone) {
+        long age = now - time;
 
-        long days = getDateDiff(future.getTime(), Calendar.getInstance().getTime(), TimeUnit.DAYS);
+        if (age < 0L)
+            return JUST_NOW;
+        if (age < MINUTE)
+            return SECONDS_AGO[(int) (age / SECOND)];
+        if (age < HOUR)
+            return MINUTES_AGO[(int) (age / MINUTE)];
+        if (age < DAY)
+            return HOURS_AGO[(int) (age / HOUR)];
 
+        long days = age / DAY;
         if (days < 7) {
-            CharSequence relativeTime = DateUtils.getRelativeTimeSpanString(future.getTimeInMillis(), System.currentTimeMillis(),
-                    DateUtils.SECOND_IN_MILLIS,
-                    DateUtils.FORMAT_ABBREV_ALL);
-
-//      Timber.d("relativeTime - " + relativeTime);
-
-            if (relativeTime.toString().equals("0 minutes ago")
-                    || relativeTime.toString().equals("in 0 minutes")) {
-                relativeDate = "Just now";
-            } else if(relativeTime.toString().contains("hr. ")){
-                if(relativeTime.toString().equals("1 hr. ago")){
-                    relativeDate = "1 hour ago";
-                } else {
-                    relativeDate = relativeTime.toString().replace("hr. ", "hours ");
+            long calendarDays = getDay(now, timeZone) - getDay(time, timeZone);
+            return DAYS_AGO[(int) Math.max(1L, Math.min(calendarDays, 7L))];
+        }
+        if (days < 14)
+            return ONE_WEEK_AGO;
+        if (days < 21)
+            return TWO_WEEKS_AGO;
+        if (days < 30)
+            return THREE_WEEKS_AGO;
+
+        // Up to "12 months ago" for days 360 to 364, which are not a year yet
+        if (days < 365)
+            return MONTHS_AGO[(int) (days / 30)];
+
+        long years = days / 365;
+        return years < YEARS_AGO.length ? YEARS_AGO[(int) years] : String.format("%d years ago", years);
+    }
+
+    /**
+     * Returns when getRelativeDate(time, now) moves to its next bucket, i.e. until when text
+     * formatted at now stays correct.
+     */
+    public static long getRelativeDateExpiry(long time, long now) {
+        return getRelativeDateExpiry(time, now, TimeZone.getDefault());
+    }
+
+    static long getRelativeDateExpiry(long time, long now, TimeZone timeZone) {
+        long age = now - time;
+
+        if (age < 0L)
+            return time;
+        if (age < MINUTE)
+            return time + (age / SECOND + 1) * SECOND;
+        if (age < HOUR)
+            return time + (age / MINUTE + 1) * MINUTE;
+        if (age < DAY)
+            return time + (age / HOUR + 1) * HOUR;
+        if (age < 7 * DAY)
+            // The day count moves at the next midnight, unless a full week has passed before then
+            return Math.min((getDay(now, timeZone) + 1) * DAY - timeZone.getOffset(now), time + 7 * DAY);
+        // Weeks, months and years all roll over on a day boundary
+        return time + (age / DAY + 1) * DAY;
+    }
+
+    /**
+     * Parses a Vimeo timestamp such as "2015-11-08T14:30:12+00:00" straight to epoch millis,
+     * without SimpleDateFormat or Calendar. Also accepts "Z", "+0000" and "+00" offsets and
+     * fractional seconds. Safe to call from any thread.
+     *
+     * @return the time in ms, or -1 when the timestamp is malformed
+     */
+    public static long parseTimestamp(CharSequence timestamp) {
+        if (timestamp == null || timestamp.length() < 19)
+            return -1L;
+
+        if (timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-' || timestamp.charAt(10) != 'T'
+                || timestamp.charAt(13) != ':' || timestamp.charAt(16) != ':')
+            return -1L;
+
+        int year = parseDigits(timestamp, 0, 4);
+        int month = parseDigits(timestamp, 5, 7);
+        int day = parseDigits(timestamp, 8, 10);
+        int hour = parseDigits(timestamp, 11, 13);
+        int minute = parseDigits(timestamp, 14, 16);
+        int second = parseDigits(timestamp, 17, 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60)
+            return -1L;
+
+        int index = 19;
+        int length = timestamp.length();
+        int millis = 0;
+        if (index < length && timestamp.charAt(index) == '.') {
+            index++;
+            int scale = 100;
+            while (index < length && Character.isDigit(timestamp.charAt(index))) {
+                millis += (timestamp.charAt(index) - '0') * scale;
+                scale /= 10;
+                index++;
+            }
+        }
+
+        long offset = 0L;
+        if (index < length) {
+            char sign = timestamp.charAt(index);
+            if (sign == 'Z' && index + 1 == length) {
+                offset = 0L;
+            } else if ((sign == '+' || sign == '-') && (length - index == 3 || length - index == 5 || length - index == 6)) {
+                int offsetHours = parseDigits(timestamp, index + 1, index + 3);
+                int offsetMinutes = 0;
+                if (length - index == 5) {
+                    offsetMinutes = parseDigits(timestamp, index + 3, index + 5);
+                } else if (length - index == 6) {
+                    if (timestamp.charAt(index + 3) != ':')
+                        return -1L;
+                    offsetMinutes = parseDigits(timestamp, index + 4, index + 6);
+                }
+                if (offsetHours < 0 || offsetMinutes < 0)
+                    return -1L;
+
+                offset = offsetHours * HOUR + offsetMinutes * MINUTE;
+                if (sign == '-') {
+                    offset = -offset;
                 }
             } else {
-                relativeDate = relativeTime.toString();
+                return -1L;
             }
-        } else if (days >= 7 && days < 14) {
-            relativeDate = "A week ago";
-        } else if (days >= 14 && days < 21) {
-            relativeDate = "2 weeks ago";
-        } else if (days >= 21 && days < 30) {
-            relativeDate = "3 weeks ago";
-        } else if ((days / 30) == 1) {
-            relativeDate = "1 month ago";
-        } else if ((days / 30) >= 2 && (days / 30) < 12) {
-            relativeDate = String.format("%d months ago", (days / 30));
-        } else if ((days / 365) == 1) {
-            relativeDate = "1 year ago";
-        } else if ((days / 365) > 1) {
-            relativeDate = String.format("%d years ago", (days / 365));
         }
 
-//        Timber.d("getRelativeDate() : days - " + days);
-//        Timber.d("getRelativeDate() : relativeDate - " + relativeDate);
-
-        return relativeDate;
+        long days = getDaysSinceEpoch(year, month, day);
+        return days * DAY + hour * HOUR + minute * MINUTE + second * SECOND + millis - offset;
     }
 
     public static long getDateDiff(Date date1, Date date2, TimeUnit timeUnit) {
@@ -63,4 +211,34 @@ public class DateUtility {
         return timeUnit.convert(diffInMillies, TimeUnit.MILLISECONDS);
     }
 
+    // region Helper Methods
+    // Days from 1970-01-01 to the calendar day of time in this time zone
+    private static long getDay(long time, TimeZone timeZone) {
+        long localTime = time + timeZone.getOffset(time);
+        return localTime >= 0L ? localTime / DAY : (localTime + 1L) / DAY - 1L;
+    }
+
+    // Returns -1 unless every char in [start, end) is a digit
+    private static int parseDigits(CharSequence cs, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = cs.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Days from 1970-01-01 in the proleptic Gregorian calendar
+    private static long getDaysSinceEpoch(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468L;
+    }
+    // endregion
+
 }
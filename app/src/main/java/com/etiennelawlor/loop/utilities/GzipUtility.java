@@ -0,0 +1,74 @@
+package com.etiennelawlor.loop.utilities;
+
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import timber.log.Timber;
+
+/**
+ * Compacts objects that have to stay around but are rarely read into gzipped JSON.
+ *
+ * Created by etiennelawlor on 12/13/15.
+ */
+public class GzipUtility {
+
+    // region Static Variables
+    private static final Gson sGson = new Gson();
+    // endregion
+
+    // Returns null when the object could not be written
+    public static byte[] toGzippedJson(Object object, Type type) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new GZIPOutputStream(bos), "UTF-8");
+            sGson.toJson(object, type, writer);
+            writer.close();
+            writer = null;
+            return bos.toByteArray();
+        } catch (IOException | RuntimeException e) {
+            Timber.e(e, "toGzippedJson()");
+            return null;
+        } finally {
+            closeQuietly(writer);
+        }
+    }
+
+    // Returns null when the bytes could not be read
+    public static <T> T fromGzippedJson(byte[] bytes, Type type) {
+        if (bytes == null)
+            return null;
+
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(bytes)), "UTF-8");
+            return sGson.fromJson(reader, type);
+        } catch (IOException | RuntimeException e) {
+            Timber.e(e, "fromGzippedJson()");
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.etiennelawlor.loop.utilities;
+
+import timber.log.Timber;
+
+/**
+ * Counts latencies in power of two millisecond buckets (0-1 ms, 2-3 ms, 4-7 ms, ... and a last one
+ * for the rest, 1 s and up by default) and logs a summary with percentiles every LOG_INTERVAL
+ * samples. Not thread safe.
+ *
+ * Created by etiennelawlor on 12/22/15.
+ */
+public class LatencyHistogram {
+
+    // region Constants
+    // The last bucket holds 1024 ms and up
+    private static final int DEFAULT_BUCKET_COUNT = 11;
+
+    private static final int LOG_INTERVAL = 50; // samples
+    // endregion
+
+    // region Member Variables
+    private final String mName;
+    private final int mBucketCount;
+    private final int[] mCounts;
+    private int mCount = 0;
+    private long mMax = 0L;
+    // endregion
+
+    // region Constructors
+    public LatencyHistogram(String name) {
+        this(name, DEFAULT_BUCKET_COUNT);
+    }
+
+    // The last bucket holds 2^(bucketCount - 1) ms and up, e.g. 16 buckets for up to about 30 s
+    public LatencyHistogram(String name, int bucketCount) {
+        mName = name;
+        mBucketCount = bucketCount;
+        mCounts = new int[bucketCount];
+    }
+    // endregion
+
+    // Label of the bucket holding the given latency, e.g. "<512ms" or ">=1024ms", for analytics attributes
+    public String getBucketLabel(long latency) {
+        int bucket = getBucket(latency);
+        return bucket == mBucketCount - 1
+                ? ">=" + getUpperBound(bucket - 1) + "ms"
+                : "<" + getUpperBound(bucket) + "ms";
+    }
+
+    public void record(long latency) {
+        int bucket = getBucket(latency);
+        mCounts[bucket]++;
+        mCount++;
+        mMax = Math.max(mMax, latency);
+
+        if (mCount % LOG_INTERVAL == 0) {
+            log();
+        }
+    }
+
+    public void log() {
+        if (mCount == 0)
+            return;
+
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < mBucketCount; i++) {
+            if (mCounts[i] > 0) {
+                stringBuilder.append(i == mBucketCount - 1 ? " >=" : " <")
+                        .append(i == mBucketCount - 1 ? getUpperBound(i - 1) : getUpperBound(i))
+                        .append("ms:")
+                        .append(mCounts[i]);
+            }
+        }
+
+        Timber.d("%s : n - %d, p50 - <%d ms, p90 - <%d ms, p99 - <%d ms, max - %d ms,%s",
+                mName,
+                mCount,
+                getPercentile(50),
+                getPercentile(90),
+                getPercentile(99),
+                mMax,
+                stringBuilder.toString());
+    }
+
+    // region Helper Methods
+    // Upper bound of the bucket holding the given percentile, the max for the last bucket
+    private long getPercentile(int percentile) {
+        int rank = (int) Math.ceil(mCount * percentile / 100.0);
+        int count = 0;
+        for (int i = 0; i < mBucketCount - 1; i++) {
+            count += mCounts[i];
+            if (count >= rank)
+                return getUpperBound(i);
+        }
+        return mMax;
+    }
+
+    private int getBucket(long latency) {
+        int bucket = 0;
+        while (bucket < mBucketCount - 1 && latency >= (2L << bucket)) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static long getUpperBound(int bucket) {
+        return 2L << bucket;
+    }
+    // endregion
+}
@@ -0,0 +1,100 @@
+package com.etiennelawlor.loop.utilities;
+
+import android.text.TextUtils;
+
+/**
+ * Turns the raw fields of list rows into ready to bind text.
+ *
+ * Meant to be called off the main thread when a page arrives. Relative dates come with the time
+ * at which they stop being correct (the end of their bucket, e.g. the current minute or hour),
+ * so precomputed text only has to be redone once that time has passed.
+ * Timestamps are parsed by {@link DateUtility}, which does not allocate.
+ *
+ * Created by etiennelawlor on 12/14/15.
+ */
+public class RowFormatter {
+
+    // region Constants
+    public static final long NEVER = Long.MAX_VALUE;
+    // endregion
+
+    // Returns the time in ms of a Vimeo timestamp, or -1 when it can not be parsed
+    public static long parseTimestamp(String timestamp) {
+        return DateUtility.parseTimestamp(timestamp);
+    }
+
+    public static String formatRelativeDate(long time, long now) {
+        if (time < 0L)
+            return "";
+
+        return DateUtility.getRelativeDate(time, now);
+    }
+
+    /**
+     * Returns when the relative date of this time moves to its next bucket,
+     * i.e. when text from {@link #formatRelativeDate(long, long)} has to be recomputed.
+     */
+    public static long getRelativeDateExpiry(long time, long now) {
+        if (time < 0L)
+            return NEVER;
+
+        return DateUtility.getRelativeDateExpiry(time, now);
+    }
+
+    public static String formatDuration(Integer duration) {
+        if (duration == null)
+            return "0:00";
+
+        long minutes = duration / 60;
+        long seconds = duration % 60;
+
+        String time;
+        if (minutes == 0L) {
+            if (seconds > 0L) {
+                if (seconds < 10L)
+                    time = String.format("0:0%s", String.valueOf(seconds));
+                else
+                    time = String.format("0:%s", String.valueOf(seconds));
+            } else {
+                time = "0:00";
+            }
+
+        } else {
+            if (seconds > 0L) {
+                if (seconds < 10L)
+                    time = String.format("%s:0%s", String.valueOf(minutes), String.valueOf(seconds));
+                else
+                    time = String.format("%s:%s", String.valueOf(minutes), String.valueOf(seconds));
+            } else {
+                time = String.format("%s:00", String.valueOf(minutes));
+            }
+        }
+
+        return time;
+    }
+
+    public static String formatViewCount(int viewCount) {
+        String formattedViewCount = "";
+
+        if (viewCount < 1000000000 && viewCount >= 1000000) {
+            formattedViewCount = String.format("%dM views", viewCount / 1000000);
+        } else if (viewCount < 1000000 && viewCount >= 1000) {
+            formattedViewCount = String.format("%dK views", viewCount / 1000);
+        } else if (viewCount < 1000 && viewCount > 1) {
+            formattedViewCount = String.format("%d views", viewCount);
+        } else if (viewCount == 1) {
+            formattedViewCount = String.format("%d view", viewCount);
+        }
+
+        return formattedViewCount;
+    }
+
+    // e.g. "2 weeks ago - 12K views"
+    public static String formatDetails(String relativeDate, String formattedViewCount) {
+        if (TextUtils.isEmpty(formattedViewCount))
+            return relativeDate;
+        if (TextUtils.isEmpty(relativeDate))
+            return formattedViewCount;
+        return String.format("%s - %s", relativeDate, formattedViewCount);
+    }
+}
@@ -0,0 +1,246 @@
+package com.etiennelawlor.loop.utilities;
+
+import android.text.TextUtils;
+
+import com.etiennelawlor.loop.network.models.response.Files;
+import com.etiennelawlor.loop.network.models.response.H264;
+import com.etiennelawlor.loop.network.models.response.HLS;
+import com.etiennelawlor.loop.network.models.response.ProgressiveData;
+import com.etiennelawlor.loop.network.models.response.Request;
+import com.etiennelawlor.loop.network.models.response.VP6;
+import com.etiennelawlor.loop.network.models.response.VideoConfig;
+import com.etiennelawlor.loop.network.models.response.VideoFormat;
+
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Picks the URL to play from a VideoConfig, shared by the player and the prefetchers so they agree on it.
+ *
+ * Created by etiennelawlor on 12/26/15.
+ */
+public class VideoConfigUtility {
+
+    // region Constants
+    public static final String RENDITION_UNKNOWN = "unknown";
+    // endregion
+
+    public static String getVideoUrl(VideoConfig videoConfig) {
+        String videoUrl = "";
+
+        if (videoConfig != null) {
+            Request request = videoConfig.getRequest();
+            if (request != null) {
+                Files files = request.getFiles();
+                if (files != null) {
+                    H264 h264 = files.getH264();
+                    HLS hls = files.getHls();
+                    VP6 vp6 = files.getVp6();
+                    List<ProgressiveData> progressiveDataList = files.getProgressive();
+
+                    String progressiveDataUrl = getProgressiveDataUrl(progressiveDataList);
+                    String h264VideoUrl = getH264VideoUrl(h264);
+                    String vp6VideoUrl = getVP6VideoUrl(vp6);
+                    String hlsVideoUrl = getHLSVideoUrl(hls);
+
+                    if (!TextUtils.isEmpty(progressiveDataUrl)) {
+                        videoUrl = progressiveDataUrl;
+                    } else if (!TextUtils.isEmpty(h264VideoUrl)) {
+                        videoUrl = h264VideoUrl;
+                    } else if (!TextUtils.isEmpty(vp6VideoUrl)) {
+                        videoUrl = vp6VideoUrl;
+                    } else if (!TextUtils.isEmpty(hlsVideoUrl)) {
+                        videoUrl = hlsVideoUrl;
+                    }
+                }
+            }
+        }
+
+        return videoUrl;
+    }
+
+    // Names the rendition a URL of the config points to, e.g. "progressive 360p" or "h264 sd"
+    public static String getRendition(VideoConfig videoConfig, String videoUrl) {
+        Request request = videoConfig == null ? null : videoConfig.getRequest();
+        Files files = request == null ? null : request.getFiles();
+        if (files == null || TextUtils.isEmpty(videoUrl))
+            return RENDITION_UNKNOWN;
+
+        if (files.getProgressive() != null) {
+            for (ProgressiveData progressiveData : files.getProgressive()) {
+                if (videoUrl.equals(progressiveData.getUrl()))
+                    return "progressive " + progressiveData.getQuality();
+            }
+        }
+
+        H264 h264 = files.getH264();
+        if (h264 != null) {
+            String rendition = getRendition("h264", h264.getHd(), h264.getSd(), h264.getMobile(), videoUrl);
+            if (rendition != null)
+                return rendition;
+        }
+
+        VP6 vp6 = files.getVp6();
+        if (vp6 != null) {
+            String rendition = getRendition("vp6", vp6.getHd(), vp6.getSd(), vp6.getMobile(), videoUrl);
+            if (rendition != null)
+                return rendition;
+        }
+
+        if (files.getHls() != null && videoUrl.equals(files.getHls().getUrl()))
+            return "hls";
+
+        return RENDITION_UNKNOWN;
+    }
+
+    /**
+     * Returns the progressive rendition of the given quality (e.g. "360p"), or the smallest one when
+     * there is none of that quality. Null when the config has no progressive rendition.
+     */
+    public static ProgressiveData getProgressiveData(VideoConfig videoConfig, String quality) {
+        Request request = videoConfig == null ? null : videoConfig.getRequest();
+        Files files = request == null ? null : request.getFiles();
+        List<ProgressiveData> progressiveDataList = files == null ? null : files.getProgressive();
+        if (progressiveDataList == null)
+            return null;
+
+        ProgressiveData smallestProgressiveData = null;
+        for (ProgressiveData progressiveData : progressiveDataList) {
+            if (TextUtils.isEmpty(progressiveData.getUrl()))
+                continue;
+
+            if (quality != null && quality.equals(progressiveData.getQuality()))
+                return progressiveData;
+
+            if (smallestProgressiveData == null || getHeight(progressiveData) < getHeight(smallestProgressiveData)) {
+                smallestProgressiveData = progressiveData;
+            }
+        }
+        return smallestProgressiveData;
+    }
+
+    // Renditions without a height come last
+    private static int getHeight(ProgressiveData progressiveData) {
+        Integer height = progressiveData.getHeight();
+        return height == null ? Integer.MAX_VALUE : height;
+    }
+
+    private static String getRendition(String codec, VideoFormat hd, VideoFormat sd, VideoFormat mobile, String videoUrl) {
+        if (hd != null && videoUrl.equals(hd.getUrl()))
+            return codec + " hd";
+        if (sd != null && videoUrl.equals(sd.getUrl()))
+            return codec + " sd";
+        if (mobile != null && videoUrl.equals(mobile.getUrl()))
+            return codec + " mobile";
+        return null;
+    }
+
+    private static String getHLSVideoUrl(HLS hls) {
+        String videoUrl = "";
+        if (hls != null) {
+            String url = hls.getUrl();
+            videoUrl = url;
+        }
+        return videoUrl;
+    }
+
+    private static String getProgressiveDataUrl(List<ProgressiveData> progressiveDataList){
+        String progressiveDataUrl = "";
+
+        String progessiveData270pUrl = "";
+        String progessiveData360pUrl = "";
+        String progessiveData1080pUrl = "";
+
+        if (progressiveDataList == null)
+            return progressiveDataUrl;
+
+        for(ProgressiveData progressiveData : progressiveDataList){
+            String quality = progressiveData.getQuality();
+            if (quality == null)
+                continue;
+
+            switch (quality) {
+                case "1080p":
+                    progessiveData1080pUrl = progressiveData.getUrl();
+                    break;
+                case "360p":
+                    progessiveData360pUrl = progressiveData.getUrl();
+                    break;
+                case "270p":
+                    progessiveData270pUrl = progressiveData.getUrl();
+                    break;
+            }
+        }
+
+        if(!TextUtils.isEmpty(progessiveData1080pUrl)){
+            progressiveDataUrl = progessiveData1080pUrl;
+        } else if(!TextUtils.isEmpty(progessiveData360pUrl)){
+            progressiveDataUrl = progessiveData360pUrl;
+        } else if(!TextUtils.isEmpty(progessiveData270pUrl)){
+            progressiveDataUrl = progessiveData270pUrl;
+        }
+
+        return progressiveDataUrl;
+    }
+
+    private static String getH264VideoUrl(H264 h264) {
+        String videoUrl = "";
+        if (h264 != null) {
+
+            VideoFormat hdVideoFormat = h264.getHd();
+            VideoFormat sdVideoFormat = h264.getSd();
+            VideoFormat mobileVideoFormat = h264.getMobile();
+
+            int width = -1;
+            int height = -1;
+            if (hdVideoFormat != null) {
+                videoUrl = hdVideoFormat.getUrl();
+                width = hdVideoFormat.getWidth();
+                height = hdVideoFormat.getHeight();
+            } else if (sdVideoFormat != null) {
+                videoUrl = sdVideoFormat.getUrl();
+                width = sdVideoFormat.getWidth();
+                height = sdVideoFormat.getHeight();
+            } else if (mobileVideoFormat != null) {
+                videoUrl = mobileVideoFormat.getUrl();
+                width = mobileVideoFormat.getWidth();
+                height = mobileVideoFormat.getHeight();
+            }
+
+            Timber.d("getH264VideoUrl() : url - %s : width - %d : height - %d", videoUrl, width, height);
+        }
+
+        return videoUrl;
+    }
+
+    private static String getVP6VideoUrl(VP6 vp6) {
+        String videoUrl = "";
+        if (vp6 != null) {
+
+            VideoFormat hdVideoFormat = vp6.getHd();
+            VideoFormat sdVideoFormat = vp6.getSd();
+            VideoFormat mobileVideoFormat = vp6.getMobile();
+
+            int width = -1;
+            int height = -1;
+            if (hdVideoFormat != null) {
+                videoUrl = hdVideoFormat.getUrl();
+                width = hdVideoFormat.getWidth();
+                height = hdVideoFormat.getHeight();
+            } else if (sdVideoFormat != null) {
+                videoUrl = sdVideoFormat.getUrl();
+                width = sdVideoFormat.getWidth();
+                height = sdVideoFormat.getHeight();
+            } else if (mobileVideoFormat != null) {
+                videoUrl = mobileVideoFormat.getUrl();
+                width = mobileVideoFormat.getWidth();
+                height = mobileVideoFormat.getHeight();
+            }
+
+            Timber.d("getVP6VideoUrl() : url - %s : width - %d : height - %d", videoUrl, width, height);
+        }
+
+        return videoUrl;
+    }
+}
@@ -0,0 +1,121 @@
+package com.etiennelawlor.loop.adapters;
+
+import com.etiennelawlor.loop.models.VideoRow;
+import com.etiennelawlor.loop.network.models.response.Stats;
+import com.etiennelawlor.loop.network.models.response.Video;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Heap retained by a long feed, once with every row resident and once windowed, while scrolling
+ * down page after page. The numbers are printed, the test only fails when the window stops being
+ * bounded or when windowing does not save memory.
+ *
+ * Created by etiennelawlor on 12/29/15.
+ */
+public class WindowedListHeapBenchmark {
+
+    // region Constants
+    private static final int PAGE_SIZE = 30;
+    private static final int PAGE_COUNT = 40;
+    private static final int REPORT_EVERY = 10; // pages
+    // endregion
+
+    @Test
+    public void scrollingALongFeed_keepsTheHeapBounded() {
+        long now = System.currentTimeMillis();
+        Executor directExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+
+        long baseline = getUsedHeap();
+        List<VideoRow> allRows = new ArrayList<>();
+        for (int page = 0; page < PAGE_COUNT; page++) {
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                allRows.add(VideoRow.from(createVideo(page * PAGE_SIZE + i), now));
+            }
+        }
+        long allResidentHeap = getUsedHeap() - baseline;
+        System.out.printf("%d rows all resident: %d KB%n", allRows.size(), allResidentHeap / 1024);
+        allRows = null;
+
+        baseline = getUsedHeap();
+        WindowedList<VideoRow> rows = new WindowedList<>(VideoRowProjector.COMPACTOR, PAGE_SIZE, 0,
+                directExecutor, directExecutor);
+        int maxResidentItemCount = WindowedList.DEFAULT_MAX_RESIDENT_PAGES * PAGE_SIZE;
+        for (int page = 0; page < PAGE_COUNT; page++) {
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                rows.add(VideoRow.from(createVideo(page * PAGE_SIZE + i), now));
+            }
+            // Scroll through the page that was just loaded
+            for (int position = page * PAGE_SIZE; position < rows.size(); position++) {
+                rows.onPositionBound(position);
+            }
+            assertTrue(rows.getResidentItemCount() <= maxResidentItemCount);
+
+            if ((page + 1) % REPORT_EVERY == 0) {
+                System.out.printf("%d pages scrolled, %d rows resident: %d KB%n",
+                        page + 1, rows.getResidentItemCount(), (getUsedHeap() - baseline) / 1024);
+            }
+        }
+        long windowedHeap = getUsedHeap() - baseline;
+        assertEquals(PAGE_COUNT * PAGE_SIZE, rows.size());
+        assertTrue(windowedHeap < allResidentHeap);
+
+        // Scrolling back to the top brings the evicted rows back as they were
+        rows.onPositionBound(0);
+        assertEquals("Video 0", rows.get(0).getTitle());
+    }
+
+    // region Helper Methods
+    private static Video createVideo(int index) {
+        Video video = new Video();
+        video.setUri("/videos/" + index);
+        video.setName("Video " + index);
+        video.setLink("https://vimeo.com/" + index);
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            description.append("Description line ").append(i).append(" of video ").append(index).append('\n');
+        }
+        video.setDescription(description.toString());
+        video.setDuration(60 + index);
+        video.setCreatedTime("2015-12-01T10:00:00+00:00");
+        Stats stats = new Stats();
+        stats.setPlays(1000 + index);
+        video.setStats(stats);
+        return video;
+    }
+
+    // Collects until the used heap holds still, as sockets and files other tests closed are only freed by later collections
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long usedHeap = Long.MAX_VALUE;
+        int stableCount = 0;
+        for (int i = 0; i < 50 && stableCount < 3; i++) {
+            System.gc();
+            System.runFinalization();
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            long previousUsedHeap = usedHeap;
+            usedHeap = runtime.totalMemory() - runtime.freeMemory();
+            stableCount = usedHeap >= previousUsedHeap ? stableCount + 1 : 0;
+        }
+        return usedHeap;
+    }
+    // endregion
+}
@@ -0,0 +1,179 @@
+package com.etiennelawlor.loop.adapters;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by etiennelawlor on 12/29/15.
+ */
+public class WindowedListTest {
+
+    // region Constants
+    private static final int PAGE_SIZE = 10;
+    private static final int PAGE_COUNT = 10;
+
+    private static final WindowedList.Compactor<String> COMPACTOR = new WindowedList.Compactor<String>() {
+        @Override
+        public byte[] compact(String item) {
+            return item.getBytes();
+        }
+
+        @Override
+        public String expand(byte[] compacted) {
+            return new String(compacted);
+        }
+    };
+    // endregion
+
+    // region Member Variables
+    // Rehydrations are held here until run() so that tests can look at the pending state
+    private final List<Runnable> mPendingTasks = new ArrayList<>();
+    private WindowedList<String> mList;
+    // endregion
+
+    @Before
+    public void setUp() {
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mPendingTasks.add(command);
+            }
+        };
+        Executor directExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        mList = new WindowedList<>(COMPACTOR, PAGE_SIZE, 0, executor, directExecutor);
+        mList.setMaxResidentPages(3);
+        for (int i = 0; i < PAGE_SIZE * PAGE_COUNT; i++) {
+            mList.add("item " + i);
+        }
+    }
+
+    @Test
+    public void onPositionBound_keepsOnlyTheWindowResident() {
+        for (int position = 0; position < mList.size(); position++) {
+            mList.onPositionBound(position);
+            runPendingTasks();
+            assertTrue(mList.getResidentItemCount() <= 3 * PAGE_SIZE);
+        }
+
+        assertNull(mList.get(0));
+        assertTrue(mList.isPlaceholder(0));
+        assertEquals("item " + (mList.size() - 1), mList.get(mList.size() - 1));
+    }
+
+    @Test
+    public void onPositionBound_rehydratesEvictedPages() {
+        mList.onPositionBound(mList.size() - 1);
+        assertNull(mList.get(0));
+
+        mList.onPositionBound(0);
+        runPendingTasks();
+
+        for (int i = 0; i < 2 * PAGE_SIZE; i++) {
+            assertEquals("item " + i, mList.get(i));
+        }
+    }
+
+    @Test
+    public void fill_leavesEvictedSlotsAlone() {
+        mList.onPositionBound(mList.size() - 1);
+
+        // Late projection results for the first page must not take the place of its evicted items
+        assertEquals(0, mList.fill(0, Arrays.asList("stale 0", "stale 1")));
+        assertNull(mList.get(0));
+
+        mList.onPositionBound(0);
+        runPendingTasks();
+        assertEquals("item 0", mList.get(0));
+    }
+
+    @Test
+    public void evict_skipsPagesStillBeingProjected() {
+        int start = mList.size();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            mList.addPlaceholder();
+        }
+
+        mList.onPositionBound(0);
+        assertEquals(PAGE_SIZE, mList.fill(start, Arrays.asList(
+                "a", "b", "c", "d", "e", "f", "g", "h", "i", "j")));
+        assertEquals("a", mList.get(start));
+        assertFalse(mList.isPlaceholder(start));
+    }
+
+    @Test
+    public void add_shiftsEvictedItems() {
+        mList.onPositionBound(mList.size() - 1);
+        mList.add(0, "new");
+        assertEquals("new", mList.get(0));
+
+        mList.onPositionBound(0);
+        runPendingTasks();
+
+        assertEquals(PAGE_SIZE * PAGE_COUNT + 1, mList.size());
+        for (int i = 1; i < 2 * PAGE_SIZE; i++) {
+            assertEquals("item " + (i - 1), mList.get(i));
+        }
+    }
+
+    @Test
+    public void remove_shiftsEvictedItems() {
+        mList.onPositionBound(mList.size() - 1);
+        assertNull(mList.remove(5));
+
+        mList.onPositionBound(0);
+        runPendingTasks();
+
+        assertEquals(PAGE_SIZE * PAGE_COUNT - 1, mList.size());
+        assertEquals("item 4", mList.get(4));
+        assertEquals("item 6", mList.get(5));
+    }
+
+    @Test
+    public void rehydration_landsWhereItsItemsMoved() {
+        mList.onPositionBound(mList.size() - 1);
+        mList.onPositionBound(0);
+
+        // The rehydration of the first pages is in flight while rows come and go above them
+        mList.add(0, "new");
+        mList.remove(3);
+        runPendingTasks();
+
+        assertEquals("new", mList.get(0));
+        assertEquals("item 0", mList.get(1));
+        assertEquals("item 1", mList.get(2));
+        assertEquals("item 3", mList.get(3));
+    }
+
+    @Test
+    public void fill_followsInsertedPlaceholders() {
+        mList.addPlaceholder(0);
+        assertTrue(mList.isPlaceholder(0));
+        assertFalse(mList.fill(1, "stale"));
+        assertTrue(mList.fill(0, "new"));
+        assertEquals("new", mList.get(0));
+        assertEquals("item 0", mList.get(1));
+    }
+
+    // region Helper Methods
+    private void runPendingTasks() {
+        while (!mPendingTasks.isEmpty()) {
+            mPendingTasks.remove(0).run();
+        }
+    }
+    // endregion
+}
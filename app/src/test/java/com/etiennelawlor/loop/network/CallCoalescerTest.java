@@ -0,0 +1,174 @@
+package com.etiennelawlor.loop.network;
+
+import com.etiennelawlor.loop.models.AccessToken;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.Response;
+import retrofit.Retrofit;
+import retrofit.http.GET;
+import retrofit.http.Query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by etiennelawlor on 12/28/15.
+ */
+public class CallCoalescerTest {
+
+    // region Constants
+    private static final int SUBSCRIBER_COUNT = 5;
+    private static final long TIMEOUT = 5; // seconds
+    // endregion
+
+    // region Member Variables
+    private MockWebServer mServer;
+    private String mBaseUrl;
+    // Held until every caller has enqueued, so that the calls overlap
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+    // endregion
+
+    // region Interfaces
+    interface VideosService {
+        @GET("/videos")
+        Call<Page> findVideos(@Query("query") String query, @Query("page") Integer page);
+    }
+    // endregion
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                mRelease.await(TIMEOUT, TimeUnit.SECONDS);
+                return new MockResponse().setBody("{\"page\":1}");
+            }
+        });
+        mServer.start();
+        mBaseUrl = mServer.url("/").toString();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void identicalCalls_shareOneRequest() throws Exception {
+        VideosService service = createService("token");
+        RecordingCallback callback = new RecordingCallback(SUBSCRIBER_COUNT);
+
+        for (int i = 0; i < SUBSCRIBER_COUNT; i++) {
+            service.findVideos("surfing", 1).enqueue(callback);
+        }
+        mRelease.countDown();
+
+        assertTrue(callback.await());
+        assertEquals(SUBSCRIBER_COUNT, callback.mPages.size());
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void differentArguments_makeOneRequestEach() throws Exception {
+        VideosService service = createService("token");
+        RecordingCallback callback = new RecordingCallback(3);
+
+        service.findVideos("surfing", 1).enqueue(callback);
+        service.findVideos("surfing", 2).enqueue(callback);
+        service.findVideos("skiing", 1).enqueue(callback);
+        mRelease.countDown();
+
+        assertTrue(callback.await());
+        assertEquals(3, mServer.getRequestCount());
+    }
+
+    @Test
+    public void differentAuthorizations_makeOneRequestEach() throws Exception {
+        RecordingCallback callback = new RecordingCallback(2);
+
+        createService("token a").findVideos("surfing", 1).enqueue(callback);
+        createService("token b").findVideos("surfing", 1).enqueue(callback);
+        mRelease.countDown();
+
+        assertTrue(callback.await());
+        assertEquals(2, mServer.getRequestCount());
+        List<String> authorizations = new ArrayList<>();
+        authorizations.add(mServer.takeRequest().getHeader("Authorization"));
+        authorizations.add(mServer.takeRequest().getHeader("Authorization"));
+        Collections.sort(authorizations);
+        assertEquals("Bearer token a", authorizations.get(0));
+        assertEquals("Bearer token b", authorizations.get(1));
+    }
+
+    @Test
+    public void cancelledSubscriber_doesNotCancelTheOthers() throws Exception {
+        VideosService service = createService("token");
+        RecordingCallback cancelledCallback = new RecordingCallback(1);
+        RecordingCallback callback = new RecordingCallback(1);
+
+        Call<Page> cancelledCall = service.findVideos("surfing", 1);
+        cancelledCall.enqueue(cancelledCallback);
+        service.findVideos("surfing", 1).enqueue(callback);
+        cancelledCall.cancel();
+        mRelease.countDown();
+
+        assertTrue(callback.await());
+        assertEquals(1, callback.mPages.size());
+        assertEquals(0, cancelledCallback.mPages.size());
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    // region Helper Methods
+    private VideosService createService(String token) {
+        return ServiceGenerator.createService(VideosService.class, mBaseUrl, new AccessToken("bearer", token));
+    }
+    // endregion
+
+    // region Inner Classes
+
+    static class Page {
+        int page;
+    }
+
+    static class RecordingCallback implements Callback<Page> {
+        private final CountDownLatch mLatch;
+        private final List<Page> mPages = Collections.synchronizedList(new ArrayList<Page>());
+
+        RecordingCallback(int count) {
+            mLatch = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onResponse(Response<Page> response, Retrofit retrofit) {
+            mPages.add(response.body());
+            mLatch.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            mLatch.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return mLatch.await(TIMEOUT, TimeUnit.SECONDS);
+        }
+    }
+
+    // endregion
+}
@@ -0,0 +1,176 @@
+package com.etiennelawlor.loop.network;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by etiennelawlor on 12/29/15.
+ */
+public class MediaProxyTest {
+
+    // region Constants
+    // Two full blocks and a partial last one
+    private static final int VIDEO_LENGTH = 2 * MediaCache.BLOCK_SIZE + 1000;
+    private static final String VIDEO_PATH = "/videos/1.mp4";
+    private static final long TIMEOUT = 5; // seconds
+    // endregion
+
+    // region Member Variables
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private final byte[] mVideo = new byte[VIDEO_LENGTH];
+    private MockWebServer mCdn;
+    private MediaProxy mMediaProxy;
+    private MediaCache mMediaCache;
+    private OkHttpClient mPlayer;
+    // endregion
+
+    @Before
+    public void setUp() throws Exception {
+        new Random(42L).nextBytes(mVideo);
+
+        // Serves the video with range requests, like the CDN
+        mCdn = new MockWebServer();
+        mCdn.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (!request.getPath().startsWith(VIDEO_PATH))
+                    return new MockResponse().setResponseCode(404);
+
+                String range = request.getHeader("Range");
+                int start = range == null ? 0 : Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+                return new MockResponse()
+                        .setResponseCode(206)
+                        .setHeader("Content-Type", "video/mp4")
+                        .setHeader("Content-Range", "bytes " + start + "-" + (VIDEO_LENGTH - 1) + "/" + VIDEO_LENGTH)
+                        .setBody(new Buffer().write(Arrays.copyOfRange(mVideo, start, VIDEO_LENGTH)));
+            }
+        });
+        mCdn.start();
+
+        mMediaCache = new MediaCache(mTemporaryFolder.newFolder("media"), 100L * MediaCache.BLOCK_SIZE);
+        mMediaProxy = new MediaProxy(new OkHttpClient(), mMediaCache);
+        mPlayer = new OkHttpClient();
+        mPlayer.setReadTimeout(TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mMediaProxy.stop();
+        mCdn.shutdown();
+    }
+
+    @Test
+    public void getProxyUrl_servesTheVideoAndCachesIt() throws Exception {
+        String proxyUrl = mMediaProxy.getProxyUrl(getVideoUrl("signature=a"));
+
+        Response response = get(proxyUrl, null);
+        assertEquals(200, response.code());
+        assertArrayEquals(mVideo, response.body().bytes());
+        int cdnRequestCount = mCdn.getRequestCount();
+        assertTrue(cdnRequestCount > 0);
+
+        // Played again with a newly signed URL, from the cache only
+        proxyUrl = mMediaProxy.getProxyUrl(getVideoUrl("signature=b"));
+        response = get(proxyUrl, null);
+        assertArrayEquals(mVideo, response.body().bytes());
+        assertEquals(cdnRequestCount, mCdn.getRequestCount());
+    }
+
+    @Test
+    public void rangeRequest_servesTheRangeAcrossBlocks() throws Exception {
+        String proxyUrl = mMediaProxy.getProxyUrl(getVideoUrl("signature=a"));
+        int start = MediaCache.BLOCK_SIZE - 10;
+        int end = MediaCache.BLOCK_SIZE + 10;
+
+        Response response = get(proxyUrl, "bytes=" + start + "-" + end);
+        assertEquals(206, response.code());
+        assertEquals("bytes " + start + "-" + end + "/" + VIDEO_LENGTH, response.header("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(mVideo, start, end + 1), response.body().bytes());
+
+        // Seeking to the end
+        response = get(proxyUrl, "bytes=-100");
+        assertEquals(206, response.code());
+        assertArrayEquals(Arrays.copyOfRange(mVideo, VIDEO_LENGTH - 100, VIDEO_LENGTH), response.body().bytes());
+    }
+
+    @Test
+    public void wrongToken_isRejected() throws Exception {
+        String proxyUrl = mMediaProxy.getProxyUrl(getVideoUrl("signature=a"));
+        String[] segments = proxyUrl.split("/");
+        String token = segments[3];
+        String forgedUrl = proxyUrl.replace(token, "00000000000000000000000000000000");
+        assertNotEquals(proxyUrl, forgedUrl);
+
+        assertEquals(404, get(forgedUrl, null).code());
+        assertEquals(0, mCdn.getRequestCount());
+    }
+
+    @Test
+    public void unknownVideo_isRejected() throws Exception {
+        String proxyUrl = mMediaProxy.getProxyUrl(getVideoUrl("signature=a"));
+        String unknownUrl = proxyUrl.substring(0, proxyUrl.lastIndexOf('/') + 1) + "0123456789abcdef0123456789abcdef";
+
+        assertEquals(404, get(unknownUrl, null).code());
+        // The old open proxy form is gone too
+        String openProxyUrl = proxyUrl.substring(0, proxyUrl.indexOf('/', "http://".length()))
+                + "/?url=" + getVideoUrl("signature=a");
+        assertEquals(404, get(openProxyUrl, null).code());
+        assertEquals(0, mCdn.getRequestCount());
+    }
+
+    @Test
+    public void prefetch_cachesTheHead() throws Exception {
+        String videoUrl = getVideoUrl("signature=a");
+        mMediaProxy.prefetch(videoUrl);
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+        while (mMediaCache.getSize() < 2L * MediaCache.BLOCK_SIZE && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        int cdnRequestCount = mCdn.getRequestCount();
+        assertEquals(1, cdnRequestCount);
+
+        // The head is played from the cache
+        Response response = get(mMediaProxy.getProxyUrl(videoUrl), "bytes=0-" + (2 * MediaCache.BLOCK_SIZE - 1));
+        assertArrayEquals(Arrays.copyOfRange(mVideo, 0, 2 * MediaCache.BLOCK_SIZE), response.body().bytes());
+        assertEquals(cdnRequestCount, mCdn.getRequestCount());
+    }
+
+    // region Helper Methods
+    private String getVideoUrl(String query) {
+        return mCdn.url(VIDEO_PATH).toString() + "?" + query;
+    }
+
+    private Response get(String url, String range) throws Exception {
+        Request.Builder builder = new Request.Builder().url(url);
+        if (range != null) {
+            builder.header("Range", range);
+        }
+        return mPlayer.newCall(builder.build()).execute();
+    }
+    // endregion
+}
@@ -0,0 +1,105 @@
+package com.etiennelawlor.loop.network;
+
+import com.etiennelawlor.loop.models.AccessToken;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import retrofit.Call;
+import retrofit.http.GET;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Created by etiennelawlor on 12/28/15.
+ */
+public class ServiceGeneratorTest {
+
+    // region Constants
+    private static final int SERVICE_COUNT = 8;
+    // endregion
+
+    // region Member Variables
+    private MockWebServer mServer;
+    private String mBaseUrl;
+    // endregion
+
+    // region Interfaces
+    interface PingService {
+        @GET("/ping")
+        Call<Pong> ping();
+    }
+
+    interface OtherPingService {
+        @GET("/ping")
+        Call<Pong> ping();
+    }
+    // endregion
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.start();
+        mBaseUrl = mServer.url("/").toString();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void createService_sharesOneConnectionPool() throws Exception {
+        for (int i = 0; i < SERVICE_COUNT; i++) {
+            mServer.enqueue(new MockResponse().setBody("{\"status\":\"ok\"}"));
+        }
+
+        for (int i = 0; i < SERVICE_COUNT; i++) {
+            // A new token every time, so that every service gets its own Retrofit and client
+            PingService service = ServiceGenerator.createService(PingService.class, mBaseUrl,
+                    new AccessToken("bearer", "token" + i));
+            assertEquals("ok", service.ping().execute().body().status);
+        }
+
+        for (int i = 0; i < SERVICE_COUNT; i++) {
+            // The n-th request made on a socket has sequence number n, so they all went over the first one
+            assertEquals(i, mServer.takeRequest().getSequenceNumber());
+        }
+    }
+
+    @Test
+    public void createService_memoizesServices() {
+        AccessToken accessToken = new AccessToken("bearer", "token");
+
+        PingService service = ServiceGenerator.createService(PingService.class, mBaseUrl, accessToken);
+
+        assertSame(service, ServiceGenerator.createService(PingService.class, mBaseUrl, accessToken));
+        assertNotSame(service, ServiceGenerator.createService(PingService.class, mBaseUrl,
+                new AccessToken("bearer", "other token")));
+        assertNotSame(service, ServiceGenerator.createService(OtherPingService.class, mBaseUrl, accessToken));
+    }
+
+    @Test
+    public void createService_sendsTheAuthorizationOfTheService() throws Exception {
+        mServer.enqueue(new MockResponse().setBody("{\"status\":\"ok\"}"));
+
+        ServiceGenerator.createService(PingService.class, mBaseUrl, new AccessToken("bearer", "abc"))
+                .ping()
+                .execute();
+
+        assertEquals("Bearer abc", mServer.takeRequest().getHeader("Authorization"));
+    }
+
+    // region Inner Classes
+
+    static class Pong {
+        String status;
+    }
+
+    // endregion
+}
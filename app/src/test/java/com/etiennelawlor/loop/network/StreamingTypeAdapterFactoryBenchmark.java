@@ -0,0 +1,101 @@
+package com.etiennelawlor.loop.network;
+
+import com.etiennelawlor.loop.network.models.response.VideosCollection;
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of parsing a page of 30 videos (src/test/resources/videos_page.json, shaped like a
+ * /videos response of the Vimeo API) with the reflective Gson the converter used to get and with
+ * the Gson of {@link ServiceGenerator}, which goes through {@link StreamingTypeAdapterFactory}.
+ *
+ * Run with ./gradlew jmh -PjmhInclude="StreamingTypeAdapterFactoryBenchmark -prof gc" to also get
+ * the bytes allocated per page.
+ *
+ * Created by etiennelawlor on 12/29/15.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamingTypeAdapterFactoryBenchmark {
+
+    // region Constants
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // endregion
+
+    // region Member Variables
+    private byte[] mPage;
+    private Gson mReflectiveGson;
+    private Gson mStreamingGson;
+    // endregion
+
+    @Setup
+    public void setUp() throws IOException {
+        mPage = readResource("videos_page.json");
+        mReflectiveGson = new Gson();
+        mStreamingGson = ServiceGenerator.getGson();
+
+        // Both have to see the same page, or the comparison means nothing
+        int reflectiveCount = reflective().getVideos().size();
+        int streamingCount = streaming().getVideos().size();
+        if (reflectiveCount != 30 || streamingCount != 30)
+            throw new IllegalStateException("Expected 30 videos, got " + reflectiveCount + " and " + streamingCount);
+    }
+
+    @Benchmark
+    public VideosCollection reflective() {
+        return mReflectiveGson.fromJson(newReader(), VideosCollection.class);
+    }
+
+    @Benchmark
+    public VideosCollection streaming() {
+        return mStreamingGson.fromJson(newReader(), VideosCollection.class);
+    }
+
+    // region Helper Methods
+    // Same as the converter, which reads the response body as a stream
+    private Reader newReader() {
+        return new InputStreamReader(new ByteArrayInputStream(mPage), UTF_8);
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        InputStream in = StreamingTypeAdapterFactoryBenchmark.class.getClassLoader().getResourceAsStream(name);
+        if (in == null)
+            throw new IOException("Missing resource " + name);
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+    // endregion
+}
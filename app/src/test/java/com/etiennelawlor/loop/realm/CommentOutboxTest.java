@@ -0,0 +1,54 @@
+package com.etiennelawlor.loop.realm;
+
+import com.etiennelawlor.loop.realm.objects.RealmCommentOperation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created by etiennelawlor on 12/29/15.
+ */
+public class CommentOutboxTest {
+
+    // region Constants
+    private static final long COMMENT_ID = 42L;
+    // endregion
+
+    @Test
+    public void deleteAction_postNeverSent_dropsThePost() {
+        assertEquals(CommentOutbox.DELETE_UNSENT_POST, CommentOutbox.getDeleteAction(createPost()));
+    }
+
+    @Test
+    public void deleteAction_postSentWhileDeletionWasQueued_deletesTheComment() {
+        // The deletion is persisted after the flush that sent the post, as both run on the executor
+        RealmCommentOperation realmPost = createPost();
+        realmPost.setCommentId(COMMENT_ID);
+
+        assertEquals(CommentOutbox.DELETE_SENT_COMMENT, CommentOutbox.getDeleteAction(realmPost));
+    }
+
+    @Test
+    public void deleteAction_postRetried_waitsForThePost() {
+        RealmCommentOperation realmPost = createPost();
+        realmPost.setAttempts(1);
+
+        assertEquals(CommentOutbox.DELETE_AFTER_POST, CommentOutbox.getDeleteAction(realmPost));
+    }
+
+    @Test
+    public void deleteAction_postRejected_doesNothing() {
+        assertEquals(CommentOutbox.DELETE_NOTHING, CommentOutbox.getDeleteAction(null));
+    }
+
+    // region Helper Methods
+    // A post as persistPost() queues it
+    private RealmCommentOperation createPost() {
+        RealmCommentOperation realmPost = new RealmCommentOperation();
+        realmPost.setType(CommentOutbox.TYPE_POST);
+        realmPost.setCommentId(-1L);
+        return realmPost;
+    }
+    // endregion
+}
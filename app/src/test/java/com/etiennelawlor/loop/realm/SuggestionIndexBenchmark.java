@@ -0,0 +1,148 @@
+package com.etiennelawlor.loop.realm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the suggestions for one keystroke with 10k and 100k saved queries, from the
+ * {@link SuggestionIndex} and from a scan like the Realm query it replaced: every saved query
+ * containing the text, sorted by last search, top 5.
+ *
+ * The keystrokes type "surfing big waves" one character at a time, plus a typo.
+ *
+ * Run with ./gradlew jmh -PjmhInclude=SuggestionIndexBenchmark
+ *
+ * Created by etiennelawlor on 12/29/15.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SuggestionIndexBenchmark {
+
+    // region Constants
+    private static final int LIMIT = 5;
+    private static final String[] WORDS = {
+            "surfing", "skiing", "skateboarding", "snowboarding", "climbing", "hiking", "cooking", "music",
+            "jazz", "guitar", "drone", "timelapse", "wedding", "travel", "japan", "iceland", "big", "waves",
+            "mountain", "city", "night", "short", "film", "documentary", "animation", "tutorial", "live",
+            "concert", "street", "food"
+    };
+    private static final String[] KEYSTROKES = {
+            "s", "su", "sur", "surf", "surfi", "surfin", "surfing", "surfing ", "surfing b", "surfing bi",
+            "surfing big", "surfing big w", "surfing big wa", "surfing big wav", "surfing big wave",
+            "surfing big waves", "srufing"
+    };
+    // endregion
+
+    // region Member Variables
+    @Param({"10000", "100000"})
+    public int mQueryCount;
+
+    private SuggestionIndex mIndex;
+    private List<SavedQuery> mSavedQueries;
+    // endregion
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42L);
+        long now = System.currentTimeMillis();
+        Map<String, Date> searches = new LinkedHashMap<>();
+        while (searches.size() < mQueryCount) {
+            int wordCount = 1 + random.nextInt(4);
+            StringBuilder query = new StringBuilder();
+            for (int i = 0; i < wordCount; i++) {
+                if (i > 0) {
+                    query.append(' ');
+                }
+                query.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            // A number keeps the queries distinct, as a long history would be
+            query.append(' ').append(random.nextInt(1000000));
+            searches.put(query.toString(), new Date(now - (long) random.nextInt(365) * TimeUnit.DAYS.toMillis(1)));
+        }
+
+        mIndex = new SuggestionIndex();
+        mIndex.load(searches);
+
+        mSavedQueries = new ArrayList<>(searches.size());
+        for (Map.Entry<String, Date> search : searches.entrySet()) {
+            mSavedQueries.add(new SavedQuery(search.getKey(), search.getValue()));
+        }
+    }
+
+    @Benchmark
+    public void index(Blackhole blackhole) {
+        for (String keystroke : KEYSTROKES) {
+            blackhole.consume(mIndex.getSuggestions(keystroke, LIMIT));
+        }
+    }
+
+    @Benchmark
+    public void scan(Blackhole blackhole) {
+        for (String keystroke : KEYSTROKES) {
+            blackhole.consume(scan(keystroke));
+        }
+    }
+
+    // region Helper Methods
+    private List<String> scan(String query) {
+        String normalizedQuery = query.toLowerCase(Locale.US);
+        List<SavedQuery> matches = new ArrayList<>();
+        for (SavedQuery savedQuery : mSavedQueries) {
+            if (savedQuery.mToken.toLowerCase(Locale.US).contains(normalizedQuery)) {
+                matches.add(savedQuery);
+            }
+        }
+        Collections.sort(matches, new Comparator<SavedQuery>() {
+            @Override
+            public int compare(SavedQuery lhs, SavedQuery rhs) {
+                return rhs.mTimestamp.compareTo(lhs.mTimestamp);
+            }
+        });
+
+        List<String> suggestions = new ArrayList<>(LIMIT);
+        for (int i = 0; i < matches.size() && i < LIMIT; i++) {
+            suggestions.add(matches.get(i).mToken);
+        }
+        return suggestions;
+    }
+    // endregion
+
+    // region Inner Classes
+
+    private static class SavedQuery {
+        private final String mToken;
+        private final Date mTimestamp;
+
+        SavedQuery(String token, Date timestamp) {
+            mToken = token;
+            mTimestamp = timestamp;
+        }
+    }
+
+    // endregion
+}
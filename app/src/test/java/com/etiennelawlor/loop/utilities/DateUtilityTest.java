@@ -0,0 +1,149 @@
+package com.etiennelawlor.loop.utilities;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created by etiennelawlor on 12/29/15.
+ */
+public class DateUtilityTest {
+
+    // region Constants
+    private static final long SECOND = TimeUnit.SECONDS.toMillis(1);
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+
+    private static final long TIME = DateUtility.parseTimestamp("2015-11-08T14:30:12+00:00");
+    // endregion
+
+    @Test
+    public void parseTimestamp_acceptsVimeoTimestamps() {
+        assertEquals(1446993012000L, TIME);
+        assertEquals(TIME, DateUtility.parseTimestamp("2015-11-08T14:30:12Z"));
+        assertEquals(TIME, DateUtility.parseTimestamp("2015-11-08T14:30:12+0000"));
+        assertEquals(TIME, DateUtility.parseTimestamp("2015-11-08T14:30:12+00"));
+        assertEquals(TIME, DateUtility.parseTimestamp("2015-11-08T09:30:12-05:00"));
+        assertEquals(TIME + 250L, DateUtility.parseTimestamp("2015-11-08T14:30:12.25+00:00"));
+    }
+
+    @Test
+    public void parseTimestamp_rejectsMalformedTimestamps() {
+        assertEquals(-1L, DateUtility.parseTimestamp(null));
+        assertEquals(-1L, DateUtility.parseTimestamp(""));
+        assertEquals(-1L, DateUtility.parseTimestamp("2015-11-08"));
+        assertEquals(-1L, DateUtility.parseTimestamp("2015/11/08T14:30:12+00:00"));
+        assertEquals(-1L, DateUtility.parseTimestamp("2015-13-08T14:30:12+00:00"));
+        assertEquals(-1L, DateUtility.parseTimestamp("2015-11-08T14:30:12+00:0"));
+        assertEquals(-1L, DateUtility.parseTimestamp("2015-11-08T14:30:12 UTC"));
+    }
+
+    @Test
+    public void getRelativeDate_seconds() {
+        assertEquals("Just now", getRelativeDate(-5 * SECOND));
+        assertEquals("0 secs. ago", getRelativeDate(0L));
+        assertEquals("1 sec. ago", getRelativeDate(SECOND));
+        assertEquals("59 secs. ago", getRelativeDate(MINUTE - 1));
+    }
+
+    @Test
+    public void getRelativeDate_minutes() {
+        assertEquals("1 min. ago", getRelativeDate(MINUTE));
+        assertEquals("2 min. ago", getRelativeDate(2 * MINUTE));
+        assertEquals("59 min. ago", getRelativeDate(HOUR - 1));
+    }
+
+    @Test
+    public void getRelativeDate_hours() {
+        assertEquals("1 hour ago", getRelativeDate(HOUR));
+        assertEquals("2 hours ago", getRelativeDate(2 * HOUR));
+        assertEquals("23 hours ago", getRelativeDate(DAY - 1));
+    }
+
+    @Test
+    public void getRelativeDate_days() {
+        assertEquals("Yesterday", getRelativeDate(DAY));
+        assertEquals("2 days ago", getRelativeDate(2 * DAY));
+        assertEquals("7 days ago", getRelativeDate(7 * DAY - 1));
+    }
+
+    @Test
+    public void getRelativeDate_daysAreCalendarDays() {
+        long midnight = DateUtility.parseTimestamp("2015-11-10T00:00:00+00:00");
+        assertEquals("Yesterday", DateUtility.getRelativeDate(TIME, midnight - 1, UTC));
+        assertEquals("2 days ago", DateUtility.getRelativeDate(TIME, midnight, UTC));
+
+        // Midnight in New York is five hours later
+        assertEquals("Yesterday", DateUtility.getRelativeDate(TIME, midnight + 5 * HOUR - 1, NEW_YORK));
+        assertEquals("2 days ago", DateUtility.getRelativeDate(TIME, midnight + 5 * HOUR, NEW_YORK));
+    }
+
+    @Test
+    public void getRelativeDate_weeks() {
+        assertEquals("A week ago", getRelativeDate(7 * DAY));
+        assertEquals("A week ago", getRelativeDate(14 * DAY - 1));
+        assertEquals("2 weeks ago", getRelativeDate(14 * DAY));
+        assertEquals("2 weeks ago", getRelativeDate(21 * DAY - 1));
+        assertEquals("3 weeks ago", getRelativeDate(21 * DAY));
+        assertEquals("3 weeks ago", getRelativeDate(30 * DAY - 1));
+    }
+
+    @Test
+    public void getRelativeDate_months() {
+        assertEquals("1 month ago", getRelativeDate(30 * DAY));
+        assertEquals("1 month ago", getRelativeDate(60 * DAY - 1));
+        assertEquals("2 months ago", getRelativeDate(60 * DAY));
+        assertEquals("11 months ago", getRelativeDate(360 * DAY - 1));
+        assertEquals("12 months ago", getRelativeDate(360 * DAY));
+        assertEquals("12 months ago", getRelativeDate(365 * DAY - 1));
+    }
+
+    @Test
+    public void getRelativeDate_years() {
+        assertEquals("1 year ago", getRelativeDate(365 * DAY));
+        assertEquals("1 year ago", getRelativeDate(730 * DAY - 1));
+        assertEquals("2 years ago", getRelativeDate(730 * DAY));
+        assertEquals("99 years ago", getRelativeDate(100 * 365 * DAY - 1));
+        assertEquals("100 years ago", getRelativeDate(100 * 365 * DAY));
+    }
+
+    @Test
+    public void getRelativeDateExpiry_endsWithTheBucket() {
+        assertEquals(TIME, DateUtility.getRelativeDateExpiry(TIME, TIME - 5 * SECOND));
+        assertEquals(TIME + 13 * SECOND, DateUtility.getRelativeDateExpiry(TIME, TIME + 12 * SECOND + 500L));
+        assertEquals(TIME + 6 * MINUTE, DateUtility.getRelativeDateExpiry(TIME, TIME + 5 * MINUTE));
+        assertEquals(TIME + 4 * HOUR, DateUtility.getRelativeDateExpiry(TIME, TIME + 3 * HOUR + MINUTE, UTC));
+        assertEquals(DateUtility.parseTimestamp("2015-11-10T00:00:00+00:00"),
+                DateUtility.getRelativeDateExpiry(TIME, TIME + DAY + HOUR, UTC));
+        assertEquals(TIME + 7 * DAY, DateUtility.getRelativeDateExpiry(TIME, TIME + 6 * DAY + 10 * HOUR, UTC));
+        assertEquals(TIME + 41 * DAY, DateUtility.getRelativeDateExpiry(TIME, TIME + 40 * DAY + HOUR, UTC));
+    }
+
+    @Test
+    public void getRelativeDateExpiry_isWhenTheTextChanges() {
+        long[] ages = {-SECOND, 0L, 30 * SECOND, 59 * MINUTE, 5 * HOUR, DAY, 3 * DAY + 12 * HOUR, 6 * DAY,
+                6 * DAY + 10 * HOUR, 29 * DAY, 364 * DAY, 800 * DAY};
+        for (TimeZone timeZone : new TimeZone[] {UTC, NEW_YORK}) {
+            for (long age : ages) {
+                long now = TIME + age;
+                long expiry = DateUtility.getRelativeDateExpiry(TIME, now, timeZone);
+                String relativeDate = DateUtility.getRelativeDate(TIME, now, timeZone);
+
+                assertEquals(relativeDate, DateUtility.getRelativeDate(TIME, expiry - 1, timeZone));
+            }
+        }
+    }
+
+    // region Helper Methods
+    private static String getRelativeDate(long age) {
+        return DateUtility.getRelativeDate(TIME, TIME + age, UTC);
+    }
+    // endregion
+}
@@ -0,0 +1,126 @@
+package com.etiennelawlor.loop.utilities;
+
+import com.etiennelawlor.loop.models.VideoRow;
+import com.etiennelawlor.loop.network.models.response.Stats;
+import com.etiennelawlor.loop.network.models.response.Video;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of binding a page of 30 video rows on the main thread, before and after the row text was
+ * precomputed by {@link RowFormatter}, plus the background cost of precomputing it.
+ *
+ * Run with ./gradlew jmh -PjmhInclude=RowFormatterBenchmark
+ *
+ * Created by etiennelawlor on 12/29/15.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowFormatterBenchmark {
+
+    // region Constants
+    private static final int PAGE_SIZE = 30;
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    // endregion
+
+    // region Member Variables
+    private final List<Video> mVideos = new ArrayList<>();
+    private final List<VideoRow> mRows = new ArrayList<>();
+    private long mNow;
+    // endregion
+
+    @Setup
+    public void setUp() {
+        mNow = System.currentTimeMillis();
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.ENGLISH);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Video video = new Video();
+            video.setName("Video " + i);
+            video.setDuration(45 + i * 37);
+            // From a few minutes to a few years old, so that every kind of bucket shows up
+            video.setCreatedTime(sdf.format(new Date(mNow - (i * i * i + 1) * DAY / 20)));
+            Stats stats = new Stats();
+            stats.setPlays(i * i * 1234);
+            video.setStats(stats);
+
+            mVideos.add(video);
+            mRows.add(VideoRow.from(video, mNow));
+        }
+    }
+
+    // What onBindViewHolder() used to do for every row
+    @Benchmark
+    public void bindBefore(Blackhole blackhole) {
+        for (Video video : mVideos) {
+            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'hh:mm:ssZ", Locale.ENGLISH);
+            String uploadDate = "";
+            try {
+                Date date = sdf.parse(video.getCreatedTime());
+                Calendar futureCalendar = Calendar.getInstance();
+                futureCalendar.setTime(date);
+                uploadDate = DateUtility.getRelativeDate(futureCalendar);
+            } catch (ParseException e) {
+                // Same as the adapters, the date is left out
+            }
+
+            int viewCount = video.getStats().getPlays();
+            String details = viewCount > 0
+                    ? String.format("%s - %s", uploadDate, RowFormatter.formatViewCount(viewCount))
+                    : String.format("%s", uploadDate);
+
+            blackhole.consume(video.getName());
+            blackhole.consume(RowFormatter.formatDuration(video.getDuration()));
+            blackhole.consume(details);
+        }
+    }
+
+    // What onBindViewHolder() does now that the rows are projected
+    @Benchmark
+    public void bindAfter(Blackhole blackhole) {
+        for (VideoRow row : mRows) {
+            blackhole.consume(row.isExpired(mNow));
+            blackhole.consume(row.getTitle());
+            blackhole.consume(row.getDuration());
+            blackhole.consume(row.getDetails());
+        }
+    }
+
+    // Off the main thread, once per page
+    @Benchmark
+    public void projectPage(Blackhole blackhole) {
+        for (Video video : mVideos) {
+            blackhole.consume(VideoRow.from(video, mNow));
+        }
+    }
+
+    // Off the main thread, once a relative date moves to its next bucket
+    @Benchmark
+    public void refreshPage(Blackhole blackhole) {
+        for (VideoRow row : mRows) {
+            blackhole.consume(row.refresh(mNow));
+        }
+    }
+}